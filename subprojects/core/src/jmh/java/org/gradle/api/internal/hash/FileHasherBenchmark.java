@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import com.google.common.hash.HashCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the throughput of the stream based {@link DefaultHasher} with the {@link FileChannelHasher} using different hash functions, for files from 1KB to 500MB.
+ */
+@State(Scope.Benchmark)
+public class FileHasherBenchmark {
+    @Param({"1024", "65536", "1048576", "67108864", "524288000"})
+    long fileSize;
+
+    @Param({"default", "md5", "murmur3_128"})
+    String hasherType;
+
+    private File file;
+    private Hasher hasher;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        hasher = hasherType.equals("default") ? new DefaultHasher() : new FileChannelHasher(FileHashFunction.forId(hasherType));
+        file = File.createTempFile("file-hasher-benchmark", ".bin");
+        Random random = new Random(1234L);
+        byte[] chunk = new byte[1024 * 1024];
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            for (long remaining = fileSize; remaining > 0; remaining -= chunk.length) {
+                random.nextBytes(chunk);
+                output.write(chunk, 0, (int) Math.min(chunk.length, remaining));
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public HashCode hash() {
+        return hasher.hash(file);
+    }
+}
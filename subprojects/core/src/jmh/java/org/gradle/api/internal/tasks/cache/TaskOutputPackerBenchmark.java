@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.TaskOutputsInternal;
+import org.gradle.api.internal.tasks.TaskOutputFilePropertySpec;
+import org.gradle.api.internal.tasks.TaskPropertySpec;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.nativeintegration.services.FileSystems;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URISyntaxException;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Compares packing and unpacking throughput of the task output packers on the output of a typical compile and jar task, using the classes
+ * and the jar of a library on the benchmark's classpath.
+ *
+ * <p>The pack benchmark also reports the rate at which packed bytes are produced as {@code packedBytes}. Dividing it by the score of the pack
+ * benchmark gives the packed size for each format.</p>
+ */
+@State(Scope.Benchmark)
+public class TaskOutputPackerBenchmark {
+
+    @Param({"zip", "tar"})
+    String format;
+
+    private File tempDir;
+    private TaskOutputPacker packer;
+    private TaskOutputsInternal sourceOutputs;
+    private TaskOutputsInternal targetOutputs;
+    private byte[] packed;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tempDir = Files.createTempDir();
+        packer = format.equals("tar") ? new TarTaskOutputPacker(FileSystems.getDefault()) : new ZipTaskOutputPacker();
+
+        File classesDir = new File(tempDir, "source/classes");
+        File jarFile = new File(tempDir, "source/output.jar");
+        createOutputs(classesDir, jarFile);
+        sourceOutputs = outputs(
+            property("classes", TaskOutputFilePropertySpec.OutputType.DIRECTORY, classesDir),
+            property("jar", TaskOutputFilePropertySpec.OutputType.FILE, jarFile)
+        );
+        targetOutputs = outputs(
+            property("classes", TaskOutputFilePropertySpec.OutputType.DIRECTORY, new File(tempDir, "target/classes")),
+            property("jar", TaskOutputFilePropertySpec.OutputType.FILE, new File(tempDir, "target/output.jar"))
+        );
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        packer.pack(sourceOutputs, output);
+        packed = output.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public byte[] pack(PackedSize packedSize) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(packed.length);
+        packer.pack(sourceOutputs, output);
+        byte[] result = output.toByteArray();
+        packedSize.packedBytes += result.length;
+        return result;
+    }
+
+    @Benchmark
+    public void unpack() throws IOException {
+        packer.unpack(targetOutputs, new ByteArrayInputStream(packed));
+    }
+
+    /**
+     * Creates the outputs from the Guava jar: the jar itself, and a directory with the class files it contains.
+     */
+    private static void createOutputs(File classesDir, File jarFile) throws IOException {
+        File libraryJar = getJar(ImmutableSortedSet.class);
+        Files.copy(libraryJar, jarFile);
+        ZipFile zipFile = new ZipFile(libraryJar);
+        try {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                File classFile = new File(classesDir, entry.getName());
+                Files.createParentDirs(classFile);
+                InputStream inputStream = zipFile.getInputStream(entry);
+                try {
+                    Files.asByteSink(classFile).writeFrom(inputStream);
+                } finally {
+                    inputStream.close();
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    private static File getJar(Class<?> type) {
+        try {
+            File file = new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (!file.isFile()) {
+                throw new IllegalStateException(String.format("Expected %s to be loaded from a jar, but it was loaded from %s.", type.getName(), file));
+            }
+            return file;
+        } catch (URISyntaxException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static TaskOutputsInternal outputs(TaskOutputFilePropertySpec... properties) {
+        final ImmutableSortedSet<TaskOutputFilePropertySpec> fileProperties = ImmutableSortedSet.copyOf(properties);
+        return proxy(TaskOutputsInternal.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getFileProperties")) {
+                    return fileProperties;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static TaskOutputFilePropertySpec property(final String name, final TaskOutputFilePropertySpec.OutputType type, final File file) {
+        return proxy(TaskOutputFilePropertySpec.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String methodName = method.getName();
+                if (methodName.equals("getPropertyName")) {
+                    return name;
+                } else if (methodName.equals("getOutputType")) {
+                    return type;
+                } else if (methodName.equals("getOutputFile")) {
+                    return file;
+                } else if (methodName.equals("compareTo")) {
+                    return name.compareTo(((TaskPropertySpec) args[0]).getPropertyName());
+                }
+                throw new UnsupportedOperationException(methodName);
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(TaskOutputPackerBenchmark.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Counts the bytes produced by the pack benchmark. JMH reports the count as a rate, like the score of the benchmark.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class PackedSize {
+        public long packedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            packedBytes = 0;
+        }
+    }
+}
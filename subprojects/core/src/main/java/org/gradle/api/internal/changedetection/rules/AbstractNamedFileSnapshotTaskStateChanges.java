@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshot;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshotter;
@@ -67,6 +68,11 @@ abstract class AbstractNamedFileSnapshotTaskStateChanges implements TaskStateCha
 
     protected abstract Map<String, FileCollectionSnapshot> getPrevious();
 
+    /**
+     * Returns the summary hashes of the previous snapshots, or null when they are not known.
+     */
+    protected abstract Map<String, HashCode> getPreviousSummaries();
+
     protected abstract void saveCurrent();
 
     protected FileCollectionSnapshotter getSnapshotter() {
@@ -122,6 +128,10 @@ abstract class AbstractNamedFileSnapshotTaskStateChanges implements TaskStateCha
             public Iterator<TaskStateChange> apply(Map.Entry<String, FileCollectionSnapshot> entry) {
                 String propertyName = entry.getKey();
                 FileCollectionSnapshot currentSnapshot = entry.getValue();
+                if (hasSameSummary(propertyName, currentSnapshot)) {
+                    // Avoid loading the previous snapshot when nothing can have changed
+                    return Iterators.<TaskStateChange>emptyIterator();
+                }
                 FileCollectionSnapshot previousSnapshot = getPrevious().get(propertyName);
                 String propertyTitle = title + " property '" + propertyName + "'";
                 return currentSnapshot.iterateContentChangesSince(previousSnapshot, propertyTitle);
@@ -129,6 +139,15 @@ abstract class AbstractNamedFileSnapshotTaskStateChanges implements TaskStateCha
         }).iterator());
     }
 
+    private boolean hasSameSummary(String propertyName, FileCollectionSnapshot currentSnapshot) {
+        Map<String, HashCode> previousSummaries = getPreviousSummaries();
+        if (previousSummaries == null) {
+            return false;
+        }
+        HashCode previousSummary = previousSummaries.get(propertyName);
+        return previousSummary != null && previousSummary.equals(currentSnapshot.getSummaryHash());
+    }
+
     @Override
     public void snapshotAfterTask() {
         saveCurrent();
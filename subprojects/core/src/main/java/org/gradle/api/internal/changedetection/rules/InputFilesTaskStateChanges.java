@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.changedetection.rules;
 
+import com.google.common.hash.HashCode;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshot;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshotter;
@@ -35,6 +36,11 @@ public class InputFilesTaskStateChanges extends AbstractNamedFileSnapshotTaskSta
         return previous.getInputFilesSnapshot();
     }
 
+    @Override
+    protected Map<String, HashCode> getPreviousSummaries() {
+        return previous.getInputFilesSummaries();
+    }
+
     @Override
     public void saveCurrent() {
         // Inputs have already been saved in constructor
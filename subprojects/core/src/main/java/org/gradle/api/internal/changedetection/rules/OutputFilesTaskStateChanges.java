@@ -17,6 +17,7 @@
 package org.gradle.api.internal.changedetection.rules;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshot;
@@ -36,6 +37,11 @@ public class OutputFilesTaskStateChanges extends AbstractNamedFileSnapshotTaskSt
         return previous.getOutputFilesSnapshot();
     }
 
+    @Override
+    protected Map<String, HashCode> getPreviousSummaries() {
+        return previous.getOutputFilesSummaries();
+    }
+
     @Override
     public void saveCurrent() {
         final Map<String, FileCollectionSnapshot> outputFilesAfter = buildSnapshots(getTaskName(), getSnapshotter(), getTitle(), getFileProperties());
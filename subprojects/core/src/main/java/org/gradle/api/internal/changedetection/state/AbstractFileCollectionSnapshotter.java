@@ -16,18 +16,24 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.internal.hash.FileHashFunction;
 import org.gradle.api.internal.tasks.TaskFilePropertySpec;
 import org.gradle.cache.CacheAccess;
 import org.gradle.internal.serialize.SerializerRegistry;
 
 import java.io.File;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -38,12 +44,24 @@ abstract class AbstractFileCollectionSnapshotter implements FileCollectionSnapsh
     protected final StringInterner stringInterner;
     protected final FileResolver fileResolver;
     protected CacheAccess cacheAccess;
+    private final InMemoryFileCollectionSnapshotCache snapshotCache;
+    private final FileHashFunction fileHashFunction;
 
     public AbstractFileCollectionSnapshotter(FileSnapshotter snapshotter, CacheAccess cacheAccess, StringInterner stringInterner, FileResolver fileResolver) {
+        this(snapshotter, cacheAccess, stringInterner, fileResolver, null, null);
+    }
+
+    /**
+     * Creates a snapshotter that reuses the snapshots held by the given cache. Snapshots are only shared between snapshotters using the same file hash function.
+     */
+    public AbstractFileCollectionSnapshotter(FileSnapshotter snapshotter, CacheAccess cacheAccess, StringInterner stringInterner, FileResolver fileResolver,
+                                             InMemoryFileCollectionSnapshotCache snapshotCache, FileHashFunction fileHashFunction) {
         this.snapshotter = snapshotter;
         this.cacheAccess = cacheAccess;
         this.stringInterner = stringInterner;
         this.fileResolver = fileResolver;
+        this.snapshotCache = snapshotCache;
+        this.fileHashFunction = fileHashFunction;
     }
 
     @Override
@@ -65,22 +83,41 @@ abstract class AbstractFileCollectionSnapshotter implements FileCollectionSnapsh
             return emptySnapshot();
         }
 
+        HashCode cacheKey = null;
+        if (snapshotCache != null) {
+            cacheKey = calculateCacheKey(fileTreeElements, missingFiles, compareType, pathSensitivity);
+            FileCollectionSnapshot cachedSnapshot = snapshotCache.get(cacheKey);
+            if (cachedSnapshot != null) {
+                return cachedSnapshot;
+            }
+        }
+
         final Map<String, NormalizedFileSnapshot> snapshots = Maps.newLinkedHashMap();
 
         cacheAccess.useCache("Create file snapshot", new Runnable() {
             public void run() {
+                Map<String, FileTreeElement> uniqueElements = Maps.newLinkedHashMap();
+                List<FileTreeElement> files = Lists.newArrayList();
                 for (FileTreeElement fileDetails : fileTreeElements) {
                     String absolutePath = getInternedAbsolutePath(fileDetails.getFile());
-                    if (!snapshots.containsKey(absolutePath)) {
-                        IncrementalFileSnapshot snapshot;
-                        if (fileDetails.isDirectory()) {
-                            snapshot = DirSnapshot.getInstance();
-                        } else {
-                            snapshot = new FileHashSnapshot(snapshotter.snapshot(fileDetails).getHash(), fileDetails.getLastModified());
+                    if (!uniqueElements.containsKey(absolutePath)) {
+                        uniqueElements.put(absolutePath, fileDetails);
+                        if (!fileDetails.isDirectory()) {
+                            files.add(fileDetails);
                         }
-                        snapshots.put(absolutePath, pathSensitivity.getNormalizedSnapshot(fileDetails, snapshot, stringInterner));
                     }
                 }
+                Iterator<FileSnapshot> fileSnapshots = snapshotter.snapshotAll(files).iterator();
+                for (Map.Entry<String, FileTreeElement> entry : uniqueElements.entrySet()) {
+                    FileTreeElement fileDetails = entry.getValue();
+                    IncrementalFileSnapshot snapshot;
+                    if (fileDetails.isDirectory()) {
+                        snapshot = DirSnapshot.getInstance();
+                    } else {
+                        snapshot = new FileHashSnapshot(fileSnapshots.next().getHash(), fileDetails.getLastModified());
+                    }
+                    snapshots.put(entry.getKey(), pathSensitivity.getNormalizedSnapshot(fileDetails, snapshot, stringInterner));
+                }
                 for (FileTreeElement missingFileDetails : missingFiles) {
                     String absolutePath = getInternedAbsolutePath(missingFileDetails.getFile());
                     if (!snapshots.containsKey(absolutePath)) {
@@ -89,7 +126,39 @@ abstract class AbstractFileCollectionSnapshotter implements FileCollectionSnapsh
                 }
             }
         });
-        return new DefaultFileCollectionSnapshot(snapshots, compareType);
+        FileCollectionSnapshot snapshot = new DefaultFileCollectionSnapshot(snapshots, compareType);
+        if (cacheKey != null) {
+            snapshotCache.put(cacheKey, snapshot);
+        }
+        return snapshot;
+    }
+
+    private HashCode calculateCacheKey(List<FileTreeElement> fileTreeElements, List<FileTreeElement> missingFiles, TaskFilePropertyCompareType compareType, TaskFilePropertyPathSensitivityType pathSensitivity) {
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putString(fileHashFunction.getId(), Charsets.UTF_8);
+        hasher.putInt(compareType.ordinal());
+        hasher.putInt(pathSensitivity.ordinal());
+        for (FileTreeElement fileDetails : fileTreeElements) {
+            putElement(hasher, fileDetails, fileDetails.isDirectory() ? 1 : 3);
+            if (!fileDetails.isDirectory()) {
+                hasher.putLong(fileDetails.getSize());
+                hasher.putLong(fileDetails.getLastModified());
+            }
+        }
+        for (FileTreeElement missingFileDetails : missingFiles) {
+            putElement(hasher, missingFileDetails, 2);
+        }
+        return hasher.hash();
+    }
+
+    private static void putElement(Hasher hasher, FileTreeElement fileDetails, int kind) {
+        String absolutePath = fileDetails.getFile().getAbsolutePath();
+        String relativePath = fileDetails.getPath();
+        hasher.putInt(kind);
+        hasher.putInt(absolutePath.length());
+        hasher.putString(absolutePath, Charsets.UTF_8);
+        hasher.putInt(relativePath.length());
+        hasher.putString(relativePath, Charsets.UTF_8);
     }
 
     @Override
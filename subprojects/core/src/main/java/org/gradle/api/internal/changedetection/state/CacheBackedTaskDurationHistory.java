@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.execution.taskgraph.TaskDurationHistory;
+import org.gradle.internal.Factory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.gradle.internal.serialize.BaseSerializerFactory.LONG_SERIALIZER;
+
+/**
+ * Stores task durations in the task history cache. The expected duration of a task is a moving average that weighs the most recent
+ * execution as much as all previous executions together.
+ */
+public class CacheBackedTaskDurationHistory implements TaskDurationHistory {
+    private final TaskArtifactStateCacheAccess cacheAccess;
+    private final PersistentIndexedCache<String, Long> durations;
+
+    public CacheBackedTaskDurationHistory(TaskArtifactStateCacheAccess cacheAccess) {
+        this.cacheAccess = cacheAccess;
+        this.durations = cacheAccess.createCache("taskDurations", String.class, LONG_SERIALIZER);
+    }
+
+    @Override
+    public Map<String, Long> getExpectedDurations(final Collection<String> taskPaths) {
+        return cacheAccess.useCache("Load task durations", new Factory<Map<String, Long>>() {
+            @Override
+            public Map<String, Long> create() {
+                Map<String, Long> result = new HashMap<String, Long>();
+                for (String taskPath : taskPaths) {
+                    Long duration = durations.get(taskPath);
+                    if (duration != null) {
+                        result.put(taskPath, duration);
+                    }
+                }
+                return result;
+            }
+        });
+    }
+
+    @Override
+    public void recordDurations(final Map<String, Long> executedDurations) {
+        cacheAccess.useCache("Store task durations", new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<String, Long> entry : executedDurations.entrySet()) {
+                    Long previous = durations.get(entry.getKey());
+                    long duration = previous == null ? entry.getValue() : (previous + entry.getValue()) / 2;
+                    durations.put(entry.getKey(), duration);
+                }
+            }
+        });
+    }
+}
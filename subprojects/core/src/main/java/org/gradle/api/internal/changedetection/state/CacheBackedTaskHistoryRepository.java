@@ -15,7 +15,10 @@
  */
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.hash.HashCode;
 import org.gradle.api.internal.TaskInternal;
@@ -28,11 +31,14 @@ import org.gradle.internal.serialize.Serializer;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -80,17 +86,23 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
                         previousExecutions.executions.addFirst(currentExecution);
                         if (currentExecution.inputFilesSnapshotIds == null && currentExecution.inputFilesSnapshot != null) {
                             ImmutableSortedMap.Builder<String, Long> builder = ImmutableSortedMap.naturalOrder();
+                            ImmutableSortedMap.Builder<String, HashCode> summaries = ImmutableSortedMap.naturalOrder();
                             for (Map.Entry<String, FileCollectionSnapshot> entry : currentExecution.inputFilesSnapshot.entrySet()) {
                                 builder.put(entry.getKey(), snapshotRepository.add(entry.getValue()));
+                                summaries.put(entry.getKey(), entry.getValue().getSummaryHash());
                             }
                             currentExecution.inputFilesSnapshotIds = builder.build();
+                            currentExecution.inputFilesSummaries = summaries.build();
                         }
                         if (currentExecution.outputFilesSnapshotIds == null && currentExecution.outputFilesSnapshot != null) {
                             ImmutableSortedMap.Builder<String, Long> builder = ImmutableSortedMap.naturalOrder();
+                            ImmutableSortedMap.Builder<String, HashCode> summaries = ImmutableSortedMap.naturalOrder();
                             for (Map.Entry<String, FileCollectionSnapshot> entry : currentExecution.outputFilesSnapshot.entrySet()) {
                                 builder.put(entry.getKey(), snapshotRepository.add(entry.getValue()));
+                                summaries.put(entry.getKey(), entry.getValue().getSummaryHash());
                             }
                             currentExecution.outputFilesSnapshotIds = builder.build();
+                            currentExecution.outputFilesSummaries = summaries.build();
                         }
                         if (currentExecution.discoveredFilesSnapshotId == null && currentExecution.discoveredFilesSnapshot != null) {
                             currentExecution.discoveredFilesSnapshotId = snapshotRepository.add(currentExecution.discoveredFilesSnapshot);
@@ -226,6 +238,8 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
     private static class LazyTaskExecution extends TaskExecution {
         private Map<String, Long> inputFilesSnapshotIds;
         private Map<String, Long> outputFilesSnapshotIds;
+        private Map<String, HashCode> inputFilesSummaries;
+        private Map<String, HashCode> outputFilesSummaries;
         private Long discoveredFilesSnapshotId;
         private transient FileSnapshotRepository snapshotRepository;
         private transient Map<String, FileCollectionSnapshot> inputFilesSnapshot;
@@ -236,23 +250,21 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         @Override
         public Map<String, FileCollectionSnapshot> getInputFilesSnapshot() {
             if (inputFilesSnapshot == null) {
-                inputFilesSnapshot = cacheAccess.useCache("fetch input files", new Factory<Map<String, FileCollectionSnapshot>>() {
-                    public Map<String, FileCollectionSnapshot> create() {
-                        ImmutableSortedMap.Builder<String, FileCollectionSnapshot> builder = ImmutableSortedMap.naturalOrder();
-                        for (Map.Entry<String, Long> entry : inputFilesSnapshotIds.entrySet()) {
-                            builder.put(entry.getKey(), snapshotRepository.get(entry.getValue()));
-                        }
-                        return builder.build();
-                    }
-                });
+                inputFilesSnapshot = new LazySnapshotMap("fetch input files", inputFilesSnapshotIds);
             }
             return inputFilesSnapshot;
         }
 
+        @Override
+        public Map<String, HashCode> getInputFilesSummaries() {
+            return inputFilesSummaries;
+        }
+
         @Override
         public void setInputFilesSnapshot(Map<String, FileCollectionSnapshot> inputFilesSnapshot) {
             this.inputFilesSnapshot = inputFilesSnapshot;
             this.inputFilesSnapshotIds = null;
+            this.inputFilesSummaries = null;
         }
 
         @Override
@@ -276,24 +288,88 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         @Override
         public Map<String, FileCollectionSnapshot> getOutputFilesSnapshot() {
             if (outputFilesSnapshot == null) {
-                outputFilesSnapshot = cacheAccess.useCache("fetch output files", new Factory<Map<String, FileCollectionSnapshot>>() {
-                    public Map<String, FileCollectionSnapshot> create() {
-                        ImmutableSortedMap.Builder<String, FileCollectionSnapshot> builder = ImmutableSortedMap.naturalOrder();
-                        for (Map.Entry<String, Long> entry : outputFilesSnapshotIds.entrySet()) {
-                            String propertyName = entry.getKey();
-                            builder.put(propertyName, snapshotRepository.get(entry.getValue()));
-                        }
-                        return builder.build();
-                    }
-                });
+                outputFilesSnapshot = new LazySnapshotMap("fetch output files", outputFilesSnapshotIds);
             }
             return outputFilesSnapshot;
         }
 
+        @Override
+        public Map<String, HashCode> getOutputFilesSummaries() {
+            return outputFilesSummaries;
+        }
+
         @Override
         public void setOutputFilesSnapshot(Map<String, FileCollectionSnapshot> outputFilesSnapshot) {
             this.outputFilesSnapshot = outputFilesSnapshot;
             outputFilesSnapshotIds = null;
+            outputFilesSummaries = null;
+        }
+
+        /**
+         * Loads the snapshot of each property from the snapshot repository the first time it is requested,
+         * so that checks only pay for the properties they actually look at.
+         */
+        private class LazySnapshotMap extends AbstractMap<String, FileCollectionSnapshot> {
+            private final String description;
+            private final Map<String, Long> snapshotIds;
+            private final Map<String, FileCollectionSnapshot> loadedSnapshots = new HashMap<String, FileCollectionSnapshot>();
+
+            LazySnapshotMap(String description, Map<String, Long> snapshotIds) {
+                this.description = description;
+                this.snapshotIds = snapshotIds;
+            }
+
+            @Override
+            public FileCollectionSnapshot get(Object propertyName) {
+                FileCollectionSnapshot snapshot = loadedSnapshots.get(propertyName);
+                if (snapshot == null) {
+                    final Long id = snapshotIds.get(propertyName);
+                    if (id == null) {
+                        return null;
+                    }
+                    snapshot = cacheAccess.useCache(description, new Factory<FileCollectionSnapshot>() {
+                        public FileCollectionSnapshot create() {
+                            return snapshotRepository.get(id);
+                        }
+                    });
+                    loadedSnapshots.put((String) propertyName, snapshot);
+                }
+                return snapshot;
+            }
+
+            @Override
+            public boolean containsKey(Object propertyName) {
+                return snapshotIds.containsKey(propertyName);
+            }
+
+            @Override
+            public Set<String> keySet() {
+                return snapshotIds.keySet();
+            }
+
+            @Override
+            public int size() {
+                return snapshotIds.size();
+            }
+
+            @Override
+            public Set<Map.Entry<String, FileCollectionSnapshot>> entrySet() {
+                return new AbstractSet<Map.Entry<String, FileCollectionSnapshot>>() {
+                    @Override
+                    public Iterator<Map.Entry<String, FileCollectionSnapshot>> iterator() {
+                        return Iterators.transform(snapshotIds.keySet().iterator(), new Function<String, Map.Entry<String, FileCollectionSnapshot>>() {
+                            public Map.Entry<String, FileCollectionSnapshot> apply(String propertyName) {
+                                return Maps.immutableEntry(propertyName, get(propertyName));
+                            }
+                        });
+                    }
+
+                    @Override
+                    public int size() {
+                        return snapshotIds.size();
+                    }
+                };
+            }
         }
 
         static class LazyTaskExecutionSerializer implements Serializer<LazyTaskExecution> {
@@ -309,6 +385,8 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
                 LazyTaskExecution execution = new LazyTaskExecution();
                 execution.inputFilesSnapshotIds = readSnapshotIds(decoder);
                 execution.outputFilesSnapshotIds = readSnapshotIds(decoder);
+                execution.inputFilesSummaries = readSummaries(decoder);
+                execution.outputFilesSummaries = readSummaries(decoder);
                 execution.discoveredFilesSnapshotId = decoder.readLong();
                 execution.setTaskClass(decoder.readString());
                 if (decoder.readBoolean()) {
@@ -337,6 +415,8 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
             public void write(Encoder encoder, LazyTaskExecution execution) throws Exception {
                 writeSnapshotIds(encoder, execution.inputFilesSnapshotIds);
                 writeSnapshotIds(encoder, execution.outputFilesSnapshotIds);
+                writeSummaries(encoder, execution.inputFilesSummaries);
+                writeSummaries(encoder, execution.outputFilesSummaries);
                 encoder.writeLong(execution.discoveredFilesSnapshotId);
                 encoder.writeString(execution.getTaskClass());
                 HashCode classLoaderHash = execution.getTaskClassLoaderHash();
@@ -383,6 +463,29 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
                     encoder.writeLong(entry.getValue());
                 }
             }
+
+            private static Map<String, HashCode> readSummaries(Decoder decoder) throws IOException {
+                int count = decoder.readInt();
+                ImmutableSortedMap.Builder<String, HashCode> builder = ImmutableSortedMap.naturalOrder();
+                for (int summaryIdx = 0; summaryIdx < count; summaryIdx++) {
+                    String property = decoder.readString();
+                    HashCode summary = HashCode.fromBytes(decoder.readBinary());
+                    builder.put(property, summary);
+                }
+                return builder.build();
+            }
+
+            private static void writeSummaries(Encoder encoder, Map<String, HashCode> summaries) throws IOException {
+                if (summaries == null) {
+                    encoder.writeInt(0);
+                    return;
+                }
+                encoder.writeInt(summaries.size());
+                for (Map.Entry<String, HashCode> entry : summaries.entrySet()) {
+                    encoder.writeString(entry.getKey());
+                    encoder.writeBinary(entry.getValue().asBytes());
+                }
+            }
         }
     }
 }
@@ -16,6 +16,7 @@
 package org.gradle.api.internal.changedetection.state;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
 import net.jcip.annotations.NotThreadSafe;
@@ -25,6 +26,10 @@ import org.gradle.api.internal.hash.Hasher;
 import org.gradle.cache.CacheAccess;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentStore;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
 import org.gradle.internal.resource.TextResource;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
@@ -32,19 +37,39 @@ import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.Serializer;
 
 import java.io.File;
-
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Snapshots files using a persistent cache of file hashes, keyed by absolute path and invalidated when the length or timestamp of a file changes.
+ *
+ * <p>When created with more than one hashing thread, {@link #snapshotAll(List)} hashes the files missing from the cache concurrently, releasing
+ * the cache lock while doing so. The cache itself is only ever updated by the calling thread.</p>
+ */
 @NotThreadSafe
-public class CachingFileSnapshotter implements FileSnapshotter {
+public class CachingFileSnapshotter implements FileSnapshotter, Stoppable {
     private final PersistentIndexedCache<String, FileInfo> cache;
     private final Hasher hasher;
     private final StringInterner stringInterner;
     private final CacheAccess cacheAccess;
+    private final ExecutorFactory executorFactory;
+    private final int hashingThreads;
+    private StoppableExecutor hashingExecutor;
 
     public CachingFileSnapshotter(Hasher hasher, PersistentStore store, StringInterner stringInterner) {
+        this(hasher, store, stringInterner, null, 1);
+    }
+
+    public CachingFileSnapshotter(Hasher hasher, PersistentStore store, StringInterner stringInterner, ExecutorFactory executorFactory, int hashingThreads) {
         this.hasher = hasher;
         this.cacheAccess = store;
         this.cache = store.createCache("fileHashes", String.class, new FileInfoSerializer());
         this.stringInterner = stringInterner;
+        this.executorFactory = executorFactory;
+        this.hashingThreads = executorFactory == null ? 1 : hashingThreads;
     }
 
     @Override
@@ -75,6 +100,85 @@ public class CachingFileSnapshotter implements FileSnapshotter {
         return snapshot(file.getFile(), file.getSize(), file.getLastModified());
     }
 
+    @Override
+    public List<FileSnapshot> snapshotAll(List<? extends FileTreeElement> fileDetails) {
+        FileInfo[] snapshots = new FileInfo[fileDetails.size()];
+        List<Integer> missing = Lists.newArrayList();
+        for (int i = 0; i < snapshots.length; i++) {
+            FileTreeElement file = fileDetails.get(i);
+            FileInfo info = cache.get(file.getFile().getAbsolutePath());
+            if (info != null && file.getSize() == info.length && file.getLastModified() == info.timestamp) {
+                snapshots[i] = info;
+            } else {
+                missing.add(i);
+            }
+        }
+
+        if (missing.size() > 1 && hashingThreads > 1) {
+            hashConcurrently(fileDetails, missing, snapshots);
+        } else {
+            for (int index : missing) {
+                FileTreeElement file = fileDetails.get(index);
+                snapshots[index] = new FileInfo(hasher.hash(file.getFile()), file.getSize(), file.getLastModified());
+            }
+        }
+
+        for (int index : missing) {
+            cache.put(stringInterner.intern(fileDetails.get(index).getFile().getAbsolutePath()), snapshots[index]);
+        }
+        return Arrays.<FileSnapshot>asList(snapshots);
+    }
+
+    private void hashConcurrently(final List<? extends FileTreeElement> fileDetails, final List<Integer> missing, final FileInfo[] snapshots) {
+        final StoppableExecutor executor = getHashingExecutor();
+        cacheAccess.longRunningOperation("Hash files", new Runnable() {
+            @Override
+            public void run() {
+                List<Future<HashCode>> hashes = Lists.newArrayListWithCapacity(missing.size());
+                for (int index : missing) {
+                    final File file = fileDetails.get(index).getFile();
+                    hashes.add(executor.submit(new Callable<HashCode>() {
+                        @Override
+                        public HashCode call() {
+                            return hasher.hash(file);
+                        }
+                    }));
+                }
+                try {
+                    for (int i = 0; i < missing.size(); i++) {
+                        int index = missing.get(i);
+                        FileTreeElement file = fileDetails.get(index);
+                        snapshots[index] = new FileInfo(hashes.get(i).get(), file.getSize(), file.getLastModified());
+                    }
+                } catch (ExecutionException e) {
+                    throw UncheckedException.throwAsUncheckedException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw UncheckedException.throwAsUncheckedException(e);
+                } finally {
+                    for (Future<HashCode> hash : hashes) {
+                        hash.cancel(false);
+                    }
+                }
+            }
+        });
+    }
+
+    private synchronized StoppableExecutor getHashingExecutor() {
+        if (hashingExecutor == null) {
+            hashingExecutor = executorFactory.create("File hashing", hashingThreads);
+        }
+        return hashingExecutor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (hashingExecutor != null) {
+            hashingExecutor.stop();
+            hashingExecutor = null;
+        }
+    }
+
     private FileInfo snapshot(File file, long length, long timestamp) {
         String absolutePath = file.getAbsolutePath();
         FileInfo info = cache.get(absolutePath);
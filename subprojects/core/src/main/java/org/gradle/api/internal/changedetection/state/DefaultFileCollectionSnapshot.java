@@ -16,7 +16,12 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.rules.TaskStateChange;
 import org.gradle.api.internal.tasks.cache.TaskCacheKeyBuilder;
@@ -30,8 +35,13 @@ import java.util.List;
 import java.util.Map;
 
 class DefaultFileCollectionSnapshot implements FileCollectionSnapshot {
+    static final HashFunction SUMMARY_HASH_FUNCTION = Hashing.md5();
+
     private final Map<String, NormalizedFileSnapshot> snapshots;
     private final TaskFilePropertyCompareType compareType;
+    private HashCode summaryHash;
+    // Created when first needed, and shared by all comparisons so that the directory hashes are only calculated once
+    private volatile PackedFileSnapshotMap packedSnapshots;
 
     public DefaultFileCollectionSnapshot(Map<String, NormalizedFileSnapshot> snapshots, TaskFilePropertyCompareType compareType) {
         this.snapshots = snapshots;
@@ -50,7 +60,25 @@ class DefaultFileCollectionSnapshot implements FileCollectionSnapshot {
 
     @Override
     public Iterator<TaskStateChange> iterateContentChangesSince(FileCollectionSnapshot oldSnapshot, String fileType) {
-        return compareType.iterateContentChangesSince(snapshots, oldSnapshot.getSnapshots(), fileType);
+        Map<String, NormalizedFileSnapshot> oldSnapshots = oldSnapshot.getSnapshots();
+        Map<String, NormalizedFileSnapshot> currentSnapshots = snapshots;
+        if (compareType != TaskFilePropertyCompareType.ORDERED && oldSnapshots instanceof PackedFileSnapshotMap) {
+            // Compare the packed form of the current snapshots as well, so that directories with matching hashes can be skipped
+            currentSnapshots = getPackedSnapshots();
+        }
+        return compareType.iterateContentChangesSince(currentSnapshots, oldSnapshots, fileType);
+    }
+
+    /**
+     * Returns the packed form of the snapshots. The snapshots themselves are left unchanged, as this snapshot may be shared between tasks.
+     */
+    PackedFileSnapshotMap getPackedSnapshots() {
+        PackedFileSnapshotMap packed = packedSnapshots;
+        if (packed == null) {
+            packed = PackedFileSnapshotMap.of(snapshots);
+            packedSnapshots = packed;
+        }
+        return packed;
     }
 
     @Override
@@ -58,6 +86,40 @@ class DefaultFileCollectionSnapshot implements FileCollectionSnapshot {
         compareType.appendToCacheKey(builder, snapshots);
     }
 
+    @Override
+    public HashCode getSummaryHash() {
+        if (summaryHash == null) {
+            summaryHash = calculateSummaryHash();
+        }
+        return summaryHash;
+    }
+
+    /**
+     * Derives the summary from the tree hash of the packed snapshots, which covers the paths, types and contents of the files and is persisted along with them.
+     */
+    private HashCode calculateSummaryHash() {
+        PackedFileSnapshotMap packed = getPackedSnapshots();
+        Hasher hasher = SUMMARY_HASH_FUNCTION.newHasher();
+        hasher.putInt(compareType.ordinal());
+        hasher.putBytes(packed.getRootHash().asBytes());
+        if (compareType == TaskFilePropertyCompareType.ORDERED) {
+            // The tree hash does not depend on the iteration order or the normalized paths, but ordered comparisons do
+            int[] insertionOrder = packed.getInsertionOrder();
+            for (int i = 0; i < packed.size(); i++) {
+                hasher.putInt(insertionOrder == null ? i : insertionOrder[i]);
+            }
+            for (NormalizedFileSnapshot snapshot : snapshots.values()) {
+                putString(hasher, snapshot.getNormalizedPath());
+            }
+        }
+        return hasher.hash();
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        hasher.putInt(value.length());
+        hasher.putString(value, Charsets.UTF_8);
+    }
+
     @Override
     public List<File> getFiles() {
         List<File> files = Lists.newArrayList();
@@ -25,6 +25,7 @@ import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.file.FileTreeInternal;
 import org.gradle.api.internal.file.collections.DefaultFileCollectionResolveContext;
+import org.gradle.api.internal.hash.FileHashFunction;
 
 import java.util.Collection;
 import java.util.List;
@@ -34,6 +35,11 @@ public class DefaultFileCollectionSnapshotter extends AbstractFileCollectionSnap
         super(snapshotter, cacheAccess, stringInterner, fileResolver);
     }
 
+    public DefaultFileCollectionSnapshotter(FileSnapshotter snapshotter, TaskArtifactStateCacheAccess cacheAccess, StringInterner stringInterner, FileResolver fileResolver,
+                                            InMemoryFileCollectionSnapshotCache snapshotCache, FileHashFunction fileHashFunction) {
+        super(snapshotter, cacheAccess, stringInterner, fileResolver, snapshotCache, fileHashFunction);
+    }
+
     @Override
     protected void visitFiles(FileCollection input, final List<FileTreeElement> fileTreeElements, final List<FileTreeElement> missingFiles) {
         DefaultFileCollectionResolveContext context = new DefaultFileCollectionResolveContext(fileResolver);
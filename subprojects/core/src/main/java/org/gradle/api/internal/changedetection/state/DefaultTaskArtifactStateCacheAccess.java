@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.changedetection.state;
 
+import org.gradle.api.internal.hash.FileHashFunction;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
@@ -26,6 +27,7 @@ import org.gradle.internal.Factory;
 import org.gradle.internal.serialize.Serializer;
 
 import java.io.Closeable;
+import java.util.Collections;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
@@ -33,12 +35,14 @@ public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCac
     private final CacheDecorator inMemoryDecorator;
     private final PersistentCache cache;
 
-    public DefaultTaskArtifactStateCacheAccess(Gradle gradle, CacheRepository cacheRepository, CacheDecorator decorator) {
+    public DefaultTaskArtifactStateCacheAccess(Gradle gradle, CacheRepository cacheRepository, CacheDecorator decorator, FileHashFunction fileHashFunction) {
         this.inMemoryDecorator = decorator;
         cache = cacheRepository
                 .cache(gradle, "taskArtifacts")
                 .withDisplayName("task history cache")
-                .withLockOptions(mode(FileLockManager.LockMode.None)) // Lock on demand
+                .withProperties(Collections.singletonMap("fileHashFunction", fileHashFunction.getId())) // Rebuild the cache when the hash function changes
+                // Lock on demand. The file hash and task history caches are thread safe, so tasks running in parallel do not have to take turns using them
+                .withLockOptions(mode(FileLockManager.LockMode.None).allowConcurrentAccess())
                 .open();
     }
 
@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.hash.HashCode;
 import org.gradle.api.internal.changedetection.rules.TaskStateChange;
 import org.gradle.api.internal.tasks.cache.TaskCacheKeyBuilder;
 
@@ -40,4 +41,10 @@ public interface FileCollectionSnapshot {
     Map<String, NormalizedFileSnapshot> getSnapshots();
 
     void appendToCacheKey(TaskCacheKeyBuilder builder);
+
+    /**
+     * Returns a hash of the paths, types and contents of the files in this snapshot. When two snapshots have the same summary hash,
+     * {@link #iterateContentChangesSince(FileCollectionSnapshot, String)} reports no changes between them.
+     */
+    HashCode getSummaryHash();
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.collect.AbstractIterator;
+import org.gradle.api.internal.changedetection.rules.ChangeType;
+import org.gradle.api.internal.changedetection.rules.FileChange;
+import org.gradle.api.internal.changedetection.rules.TaskStateChange;
+
+import java.util.BitSet;
+import java.util.Iterator;
+
+/**
+ * Compares two packed snapshot maps by walking their directory trees, descending only into the directories whose combined hashes differ.
+ * When the root hashes match, the comparison finishes without looking at any of the snapshots.
+ *
+ * <p>Added and modified files are reported in path order, followed by the removed files.</p>
+ */
+class FileSnapshotTreeDiff {
+    private final PackedFileSnapshotMap current;
+    private final PackedFileSnapshotMap previous;
+    private final BitSet added = new BitSet();
+    private final BitSet modified = new BitSet();
+    private final BitSet removed = new BitSet();
+
+    private FileSnapshotTreeDiff(PackedFileSnapshotMap current, PackedFileSnapshotMap previous) {
+        this.current = current;
+        this.previous = previous;
+    }
+
+    static Iterator<TaskStateChange> iterateContentChangesSince(PackedFileSnapshotMap current, PackedFileSnapshotMap previous, boolean includeAdded, String fileType) {
+        FileSnapshotTreeDiff diff = new FileSnapshotTreeDiff(current, previous);
+        diff.compareDirectories("", 0, current.size(), 0, previous.size());
+        return diff.changes(includeAdded, fileType);
+    }
+
+    private void compareDirectories(String directory, int currentStart, int currentEnd, int previousStart, int previousEnd) {
+        if (current.getDirectoryHash(directory, currentStart, currentEnd).equals(previous.getDirectoryHash(directory, previousStart, previousEnd))) {
+            return;
+        }
+        int currentIndex = currentStart;
+        int previousIndex = previousStart;
+        while (currentIndex < currentEnd || previousIndex < previousEnd) {
+            String currentChildDirectory = currentIndex < currentEnd ? current.getChildDirectory(directory, currentIndex) : null;
+            String previousChildDirectory = previousIndex < previousEnd ? previous.getChildDirectory(directory, previousIndex) : null;
+            int comparison;
+            if (currentIndex == currentEnd) {
+                comparison = 1;
+            } else if (previousIndex == previousEnd) {
+                comparison = -1;
+            } else {
+                String currentChild = currentChildDirectory != null ? currentChildDirectory : current.getPath(currentIndex);
+                String previousChild = previousChildDirectory != null ? previousChildDirectory : previous.getPath(previousIndex);
+                comparison = currentChild.compareTo(previousChild);
+            }
+
+            int currentChildEnd = currentChildDirectory != null ? current.getDirectoryEnd(currentChildDirectory, currentIndex, currentEnd) : currentIndex + 1;
+            int previousChildEnd = previousChildDirectory != null ? previous.getDirectoryEnd(previousChildDirectory, previousIndex, previousEnd) : previousIndex + 1;
+            if (comparison < 0) {
+                added.set(currentIndex, currentChildEnd);
+                currentIndex = currentChildEnd;
+            } else if (comparison > 0) {
+                removed.set(previousIndex, previousChildEnd);
+                previousIndex = previousChildEnd;
+            } else {
+                if (currentChildDirectory != null) {
+                    compareDirectories(currentChildDirectory, currentIndex, currentChildEnd, previousIndex, previousChildEnd);
+                } else if (!current.isContentUpToDate(currentIndex, previous, previousIndex)) {
+                    modified.set(currentIndex);
+                }
+                currentIndex = currentChildEnd;
+                previousIndex = previousChildEnd;
+            }
+        }
+    }
+
+    private Iterator<TaskStateChange> changes(final boolean includeAdded, final String fileType) {
+        return new AbstractIterator<TaskStateChange>() {
+            private int nextCurrent;
+            private int nextRemoved;
+
+            @Override
+            protected TaskStateChange computeNext() {
+                int nextAdded = includeAdded ? added.nextSetBit(nextCurrent) : -1;
+                int nextModified = modified.nextSetBit(nextCurrent);
+                if (nextAdded >= 0 && (nextModified < 0 || nextAdded < nextModified)) {
+                    nextCurrent = nextAdded + 1;
+                    return new FileChange(current.getPath(nextAdded), ChangeType.ADDED, fileType);
+                }
+                if (nextModified >= 0) {
+                    nextCurrent = nextModified + 1;
+                    return new FileChange(current.getPath(nextModified), ChangeType.MODIFIED, fileType);
+                }
+
+                nextRemoved = removed.nextSetBit(nextRemoved);
+                if (nextRemoved >= 0) {
+                    return new FileChange(previous.getPath(nextRemoved++), ChangeType.REMOVED, fileType);
+                }
+
+                return endOfData();
+            }
+        };
+    }
+}
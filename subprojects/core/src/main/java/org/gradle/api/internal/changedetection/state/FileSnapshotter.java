@@ -21,6 +21,7 @@ import org.gradle.api.internal.hash.Hasher;
 import org.gradle.internal.resource.TextResource;
 
 import java.io.File;
+import java.util.List;
 
 public interface FileSnapshotter extends Hasher {
     /**
@@ -37,4 +38,11 @@ public interface FileSnapshotter extends Hasher {
      * Takes a snapshot of the current content of the given file, assuming the given file metadata. The provided file must exist and be a file (rather than, say, a directory).
      */
     FileSnapshot snapshot(FileTreeElement fileDetails);
+
+    /**
+     * Takes a snapshot of the current content of each of the given files, assuming the given file metadata. Each of the provided files must exist and be a file.
+     *
+     * @return the snapshots, in the same order as the given files.
+     */
+    List<FileSnapshot> snapshotAll(List<? extends FileTreeElement> fileDetails);
 }
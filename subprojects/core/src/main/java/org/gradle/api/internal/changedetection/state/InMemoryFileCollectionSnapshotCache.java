@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.HashCode;
+import org.gradle.api.internal.cache.HeapProportionalCacheSizer;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+/**
+ * Keeps recently created file collection snapshots in memory, so that identical file collections are snapshotted once and then shared between tasks and builds.
+ *
+ * <p>Entries are keyed by a hash of everything the snapshot is derived from: the absolute and relative path, type, length and timestamp of each file,
+ * plus the compare type, the path sensitivity and the file hash function. A file that changes length or timestamp produces a different key, which
+ * is the same rule the persistent file hash cache uses to decide whether a file needs to be hashed again.</p>
+ *
+ * <p>The number of files held by all snapshots is bounded, scaled to the size of the heap. The least recently used snapshots are evicted first.</p>
+ */
+public class InMemoryFileCollectionSnapshotCache {
+    private static final Logger LOG = Logging.getLogger(InMemoryFileCollectionSnapshotCache.class);
+    private static final int DEFAULT_MAX_FILES = 100000;
+
+    private final Cache<HashCode, FileCollectionSnapshot> snapshots;
+
+    public InMemoryFileCollectionSnapshotCache() {
+        this(new HeapProportionalCacheSizer().scaleCacheSize(DEFAULT_MAX_FILES));
+    }
+
+    InMemoryFileCollectionSnapshotCache(long maxFiles) {
+        this.snapshots = CacheBuilder.newBuilder()
+            .maximumWeight(maxFiles)
+            .weigher(new SnapshotWeigher())
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Returns the snapshot stored for the given key, or null when there is none.
+     */
+    public FileCollectionSnapshot get(HashCode key) {
+        return snapshots.getIfPresent(key);
+    }
+
+    public void put(HashCode key, FileCollectionSnapshot snapshot) {
+        snapshots.put(key, snapshot);
+    }
+
+    /**
+     * Discards all snapshots. Called when the process is running low on memory.
+     */
+    public void invalidateAll() {
+        long size = snapshots.size();
+        snapshots.invalidateAll();
+        LOG.info("Discarded {} in-memory file collection snapshots.", size);
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts of this cache since it was created.
+     */
+    public CacheStats getStatistics() {
+        return snapshots.stats();
+    }
+
+    private static class SnapshotWeigher implements Weigher<HashCode, FileCollectionSnapshot> {
+        @Override
+        public int weigh(HashCode key, FileCollectionSnapshot value) {
+            return 1 + value.getSnapshots().size();
+        }
+    }
+}
@@ -21,8 +21,8 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 import org.gradle.api.internal.cache.HeapProportionalCacheSizer;
-import org.gradle.api.logging.LogLevel;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.cache.internal.CacheDecorator;
@@ -30,23 +30,34 @@ import org.gradle.cache.internal.FileLock;
 import org.gradle.cache.internal.MultiProcessSafePersistentIndexedCache;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Keeps the entries of the task artifact caches in memory.
+ *
+ * <p>All decorated caches share a single memory budget. Each entry is weighed by an estimate of its retained size, so a snapshot of a large directory
+ * takes up more of the budget than a snapshot of a single file. The least recently used entries are evicted when the budget is exceeded.</p>
+ *
+ * <p>The budget is enforced separately for each segment of the underlying Guava cache, so an entry heavier than {@link #getMaxEntryWeight()} is evicted
+ * as soon as it is stored. The number of segments is chosen so that each segment gets at least 16 MB of the budget.</p>
+ */
 public class InMemoryTaskArtifactCache implements CacheDecorator {
     private final static Logger LOG = Logging.getLogger(InMemoryTaskArtifactCache.class);
     private final static Object NULL = new Object();
-    private static final Map<String, Integer> CACHE_CAPS = new CacheCapSizer().calculateCaps();
+    private static final String EVICTION_MITIGATION_MESSAGE = "\nPerformance may suffer from in-memory cache misses. Increase max heap size of Gradle build process to reduce cache misses.";
+    private static final int EVICTION_LOG_INTERVAL = 10000;
+    private static final int MAX_CONCURRENCY_LEVEL = 4;
+    private static final long MIN_SEGMENT_WEIGHT = 16 * 1024 * 1024;
 
     static class CacheCapSizer {
-        private static final Map<String, Integer> DEFAULT_CAP_SIZES = new HashMap<String, Integer>();
-
-        static {
-            DEFAULT_CAP_SIZES.put("fileSnapshots", 10000);
-            DEFAULT_CAP_SIZES.put("taskArtifacts", 2000);
-            DEFAULT_CAP_SIZES.put("fileHashes", 400000);
-            DEFAULT_CAP_SIZES.put("compilationState", 1000);
-        }
+        private static final int DEFAULT_MAX_WEIGHT_KB = 200 * 1024;
 
         final HeapProportionalCacheSizer sizer;
 
@@ -58,25 +69,52 @@ public class InMemoryTaskArtifactCache implements CacheDecorator {
             this(0);
         }
 
-        public Map<String, Integer> calculateCaps() {
-            Map<String, Integer> capSizes = new HashMap<String, Integer>();
-            for (Map.Entry<String, Integer> entry : DEFAULT_CAP_SIZES.entrySet()) {
-                capSizes.put(entry.getKey(), sizer.scaleCacheSize(entry.getValue()));
-            }
-            return capSizes;
+        /**
+         * Returns the memory budget shared by all in-memory caches, in KB.
+         */
+        public int calculateMaxWeightKb() {
+            return sizer.scaleCacheSize(DEFAULT_MAX_WEIGHT_KB);
         }
     }
 
-
     private final Object lock = new Object();
-    private final Cache<String, Cache<Object, Object>> cache = CacheBuilder.newBuilder()
-            .maximumSize(CACHE_CAPS.size() * 2) //X2 to factor in a child build (for example buildSrc)
+    private final Map<String, FileLock.State> states = new HashMap<String, FileLock.State>();
+    private final ConcurrentMap<String, CacheGeneration> generations = new ConcurrentHashMap<String, CacheGeneration>();
+    private final ConcurrentMap<String, Statistics> statistics = new ConcurrentHashMap<String, Statistics>();
+    private final AtomicLong totalWeight = new AtomicLong();
+    private final AtomicLong evictionCounter = new AtomicLong();
+    private final long maxWeight;
+    private final int concurrencyLevel;
+    private final Cache<CacheEntryKey, Object> data;
+
+    public InMemoryTaskArtifactCache() {
+        this(new CacheCapSizer().calculateMaxWeightKb() * 1024L);
+    }
+
+    InMemoryTaskArtifactCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+        this.concurrencyLevel = concurrencyLevelFor(maxWeight);
+        this.data = CacheBuilder.newBuilder()
+            .maximumWeight(maxWeight)
+            .concurrencyLevel(concurrencyLevel)
+            .weigher(new EntryWeigher())
+            .removalListener(new WeightTrackingRemovalListener())
             .build();
+    }
 
-    private final Map<String, FileLock.State> states = new HashMap<String, FileLock.State>();
+    /**
+     * Guava uses a power of two number of segments, so the level is kept to a power of two for {@link #getMaxEntryWeight()} to be accurate.
+     */
+    private static int concurrencyLevelFor(long maxWeight) {
+        int concurrencyLevel = 1;
+        while (concurrencyLevel < MAX_CONCURRENCY_LEVEL && maxWeight / (concurrencyLevel * 2) >= MIN_SEGMENT_WEIGHT) {
+            concurrencyLevel *= 2;
+        }
+        return concurrencyLevel;
+    }
 
     public <K, V> MultiProcessSafePersistentIndexedCache<K, V> decorate(final String cacheId, String cacheName, final MultiProcessSafePersistentIndexedCache<K, V> original) {
-        final Cache<Object, Object> data = loadData(cacheId, cacheName);
+        final Statistics cacheStatistics = statisticsFor(cacheId);
 
         return new MultiProcessSafePersistentIndexedCache<K, V>() {
             public void close() {
@@ -85,25 +123,29 @@ public class InMemoryTaskArtifactCache implements CacheDecorator {
 
             public V get(K key) {
                 assert key instanceof String || key instanceof Long || key instanceof File : "Unsupported key type: " + key;
-                Object value = data.getIfPresent(key);
+                CacheEntryKey entryKey = new CacheEntryKey(getGeneration(cacheId), key);
+                Object value = data.getIfPresent(entryKey);
                 if (value == NULL) {
+                    cacheStatistics.hits.incrementAndGet();
                     return null;
                 }
                 if (value != null) {
+                    cacheStatistics.hits.incrementAndGet();
                     return (V) value;
                 }
+                cacheStatistics.misses.incrementAndGet();
                 V out = original.get(key);
-                data.put(key, out == null ? NULL : out);
+                store(entryKey, out == null ? NULL : out);
                 return out;
             }
 
             public void put(K key, V value) {
                 original.put(key, value);
-                data.put(key, value);
+                store(new CacheEntryKey(getGeneration(cacheId), key), value);
             }
 
             public void remove(K key) {
-                data.put(key, NULL);
+                store(new CacheEntryKey(getGeneration(cacheId), key), NULL);
                 original.remove(key);
             }
 
@@ -120,7 +162,7 @@ public class InMemoryTaskArtifactCache implements CacheDecorator {
                 }
 
                 if (outOfDate) {
-                    data.invalidateAll();
+                    invalidate(cacheId);
                 }
             }
 
@@ -132,51 +174,212 @@ public class InMemoryTaskArtifactCache implements CacheDecorator {
         };
     }
 
-    private Cache<Object, Object> loadData(String cacheId, String cacheName) {
-        Cache<Object, Object> theData;
-        synchronized (lock) {
-            theData = this.cache.getIfPresent(cacheId);
-            if (theData != null) {
-                LOG.info("In-memory cache of {}: Size{{}}, {}", cacheId, theData.size() , theData.stats());
-            } else {
-                Integer maxSize = CACHE_CAPS.get(cacheName);
-                assert maxSize != null : "Unknown cache.";
-                LOG.debug("Creating In-memory cache of {}: MaxSize{{}}", cacheId, maxSize);
-                LoggingEvictionListener evictionListener = new LoggingEvictionListener(cacheId, maxSize);
-                theData = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().removalListener(evictionListener).build();
-                evictionListener.setCache(theData);
-                this.cache.put(cacheId, theData);
-            }
+    private Statistics statisticsFor(String cacheId) {
+        Statistics cacheStatistics = statistics.get(cacheId);
+        if (cacheStatistics != null) {
+            return cacheStatistics;
+        }
+        LOG.debug("Creating in-memory cache of {}", cacheId);
+        statistics.putIfAbsent(cacheId, new Statistics());
+        return statistics.get(cacheId);
+    }
+
+    private CacheGeneration getGeneration(String cacheId) {
+        CacheGeneration generation = generations.get(cacheId);
+        if (generation == null) {
+            generations.putIfAbsent(cacheId, new CacheGeneration(cacheId));
+            generation = generations.get(cacheId);
+        }
+        return generation;
+    }
+
+    private void store(CacheEntryKey key, Object value) {
+        totalWeight.addAndGet(weigh(key, value));
+        key.generation.keys.add(key);
+        data.put(key, value);
+    }
+
+    /**
+     * Starts a new generation of entries for the given cache, so that entries stored before cannot be read, and discards the entries of the previous generation.
+     */
+    private void invalidate(String cacheId) {
+        CacheGeneration previous = generations.put(cacheId, new CacheGeneration(cacheId));
+        if (previous != null) {
+            data.invalidateAll(previous.keys);
+        }
+    }
+
+    /**
+     * Discards entries until the caches use at most half of their current estimated size. Called when the process is running low on memory.
+     */
+    public void shrink() {
+        long initialWeight = totalWeight.get();
+        long targetWeight = initialWeight / 2;
+        Iterator<CacheEntryKey> iterator = data.asMap().keySet().iterator();
+        while (totalWeight.get() > targetWeight && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        LOG.info("Shrunk in-memory task artifact caches from {} KB to {} KB.", initialWeight / 1024, totalWeight.get() / 1024);
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts for each cache, keyed by cache id.
+     */
+    public Map<String, Statistics> getStatistics() {
+        return new HashMap<String, Statistics>(statistics);
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts summed over all caches.
+     */
+    public Statistics getTotalStatistics() {
+        Statistics total = new Statistics();
+        for (Statistics cacheStatistics : statistics.values()) {
+            total.add(cacheStatistics);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the estimated size of the entries currently held in memory, in bytes.
+     */
+    public long getEstimatedSize() {
+        return totalWeight.get();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Returns the estimated size of the heaviest entry that can be held in memory, in bytes.
+     */
+    public long getMaxEntryWeight() {
+        return maxWeight / concurrencyLevel;
+    }
+
+    /**
+     * Estimates the retained size of a cache entry, in bytes.
+     */
+    static int weigh(CacheEntryKey key, Object value) {
+        long size = 96 + sizeOf(key.key) + sizeOf(value);
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static long sizeOf(Object object) {
+        if (object == NULL) {
+            return 0;
+        }
+        if (object instanceof String) {
+            return 40 + 2 * ((String) object).length();
         }
-        return theData;
+        if (object instanceof Long) {
+            return 16;
+        }
+        if (object instanceof File) {
+            return 24 + sizeOf(((File) object).getPath());
+        }
+        if (object instanceof CachingFileSnapshotter.FileInfo) {
+            return 88;
+        }
+        if (object instanceof FileCollectionSnapshot) {
+            return 64 + 256L * ((FileCollectionSnapshot) object).getSnapshots().size();
+        }
+        return 1024;
     }
 
-    private static class LoggingEvictionListener implements RemovalListener<Object, Object> {
-        private static Logger logger = Logging.getLogger(LoggingEvictionListener.class);
-        private static final String EVICTION_MITIGATION_MESSAGE = "\nPerformance may suffer from in-memory cache misses. Increase max heap size of Gradle build process to reduce cache misses.";
-        volatile int evictionCounter;
+    public static class Statistics {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        private void add(Statistics other) {
+            hits.addAndGet(other.hits.get());
+            misses.addAndGet(other.misses.get());
+            evictions.addAndGet(other.evictions.get());
+        }
+
+        public long getHitCount() {
+            return hits.get();
+        }
+
+        public long getMissCount() {
+            return misses.get();
+        }
+
+        public long getEvictionCount() {
+            return evictions.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s hits, %s misses, %s evictions", hits.get(), misses.get(), evictions.get());
+        }
+    }
+
+    /**
+     * The entries of a cache stored since it was last invalidated.
+     */
+    private static class CacheGeneration {
         private final String cacheId;
-        private Cache<Object, Object> cache;
-        private final int maxSize;
-        private final int logInterval;
+        private final Set<CacheEntryKey> keys = Collections.newSetFromMap(new ConcurrentHashMap<CacheEntryKey, Boolean>());
 
-        private LoggingEvictionListener(String cacheId, int maxSize) {
+        CacheGeneration(String cacheId) {
             this.cacheId = cacheId;
-            this.maxSize = maxSize;
-            this.logInterval = maxSize / 10;
+        }
+    }
+
+    static class CacheEntryKey {
+        private final CacheGeneration generation;
+        private final Object key;
+
+        CacheEntryKey(CacheGeneration generation, Object key) {
+            this.generation = generation;
+            this.key = key;
         }
 
-        public void setCache(Cache<Object, Object> cache) {
-            this.cache = cache;
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            CacheEntryKey other = (CacheEntryKey) obj;
+            return key.equals(other.key) && generation == other.generation;
         }
 
         @Override
-        public void onRemoval(RemovalNotification<Object, Object> notification) {
+        public int hashCode() {
+            return 31 * generation.hashCode() + key.hashCode();
+        }
+    }
+
+    private static class EntryWeigher implements Weigher<CacheEntryKey, Object> {
+        @Override
+        public int weigh(CacheEntryKey key, Object value) {
+            return InMemoryTaskArtifactCache.weigh(key, value);
+        }
+    }
+
+    private class WeightTrackingRemovalListener implements RemovalListener<CacheEntryKey, Object> {
+        @Override
+        public void onRemoval(RemovalNotification<CacheEntryKey, Object> notification) {
+            CacheEntryKey key = notification.getKey();
+            totalWeight.addAndGet(-weigh(key, notification.getValue()));
+            if (notification.getCause() != RemovalCause.REPLACED) {
+                key.generation.keys.remove(key);
+            }
             if (notification.getCause() == RemovalCause.SIZE) {
-                if (evictionCounter % logInterval == 0) {
-                    logger.log(LogLevel.INFO, "Cache entries evicted. In-memory cache of {}: Size{{}} MaxSize{{}}, {} {}", cacheId, cache.size(), maxSize, cache.stats(), EVICTION_MITIGATION_MESSAGE);
+                Statistics cacheStatistics = statistics.get(key.generation.cacheId);
+                if (cacheStatistics != null) {
+                    cacheStatistics.evictions.incrementAndGet();
+                }
+                if (evictionCounter.getAndIncrement() % EVICTION_LOG_INTERVAL == 0) {
+                    LOG.info("Cache entries evicted. In-memory task artifact caches: {} KB of {} KB used. {}", totalWeight.get() / 1024, maxWeight / 1024, EVICTION_MITIGATION_MESSAGE);
                 }
-                evictionCounter++;
             }
         }
     }
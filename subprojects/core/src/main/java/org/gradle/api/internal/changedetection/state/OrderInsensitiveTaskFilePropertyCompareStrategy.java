@@ -24,6 +24,7 @@ import org.gradle.api.internal.changedetection.rules.FileChange;
 import org.gradle.api.internal.changedetection.rules.TaskStateChange;
 import org.gradle.api.internal.tasks.cache.TaskCacheKeyBuilder;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -39,6 +40,12 @@ class OrderInsensitiveTaskFilePropertyCompareStrategy implements TaskFilePropert
 
     @Override
     public Iterator<TaskStateChange> iterateContentChangesSince(final Map<String, NormalizedFileSnapshot> current, Map<String, NormalizedFileSnapshot> previous, final String fileType) {
+        if (previous instanceof PackedFileSnapshotMap) {
+            if (current instanceof PackedFileSnapshotMap) {
+                return FileSnapshotTreeDiff.iterateContentChangesSince((PackedFileSnapshotMap) current, (PackedFileSnapshotMap) previous, includeAdded, fileType);
+            }
+            return iterateContentChangesSince(current, (PackedFileSnapshotMap) previous, fileType);
+        }
         final Map<String, NormalizedFileSnapshot> remainingPrevious = Maps.newHashMap(previous);
         final Iterator<String> currentFiles = current.keySet().iterator();
         return new AbstractIterator<TaskStateChange>() {
@@ -72,6 +79,43 @@ class OrderInsensitiveTaskFilePropertyCompareStrategy implements TaskFilePropert
         };
     }
 
+    /**
+     * Compares against packed snapshots by looking up the current files in the sorted path table, without copying the previous snapshots into a map.
+     */
+    private Iterator<TaskStateChange> iterateContentChangesSince(Map<String, NormalizedFileSnapshot> current, final PackedFileSnapshotMap previous, final String fileType) {
+        final BitSet matchedPrevious = new BitSet(previous.size());
+        final Iterator<Map.Entry<String, NormalizedFileSnapshot>> currentEntries = current.entrySet().iterator();
+        return new AbstractIterator<TaskStateChange>() {
+            private int nextRemoved;
+
+            @Override
+            protected TaskStateChange computeNext() {
+                while (currentEntries.hasNext()) {
+                    Map.Entry<String, NormalizedFileSnapshot> currentEntry = currentEntries.next();
+                    String currentFile = currentEntry.getKey();
+                    int previousIndex = previous.indexOf(currentFile);
+                    if (previousIndex < 0) {
+                        if (includeAdded) {
+                            return new FileChange(currentFile, ChangeType.ADDED, fileType);
+                        }
+                    } else {
+                        matchedPrevious.set(previousIndex);
+                        if (!previous.isContentUpToDate(previousIndex, currentEntry.getValue().getSnapshot())) {
+                            return new FileChange(currentFile, ChangeType.MODIFIED, fileType);
+                        }
+                    }
+                }
+
+                nextRemoved = matchedPrevious.nextClearBit(nextRemoved);
+                if (nextRemoved < previous.size()) {
+                    return new FileChange(previous.getPath(nextRemoved++), ChangeType.REMOVED, fileType);
+                }
+
+                return endOfData();
+            }
+        };
+    }
+
     @Override
     public void appendToCacheKey(TaskCacheKeyBuilder builder, Map<String, NormalizedFileSnapshot> snapshots) {
         List<NormalizedFileSnapshot> normalizedSnapshots = Lists.newArrayList(snapshots.values());
@@ -17,8 +17,11 @@
 package org.gradle.api.internal.changedetection.state;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterators;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.rules.ChangeType;
 import org.gradle.api.internal.changedetection.rules.FileChange;
@@ -35,6 +38,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 public class OutputFilesCollectionSnapshot implements FileCollectionSnapshot {
     private final Map<String, Boolean> roots;
@@ -118,6 +122,18 @@ public class OutputFilesCollectionSnapshot implements FileCollectionSnapshot {
         filesSnapshot.appendToCacheKey(builder);
     }
 
+    @Override
+    public HashCode getSummaryHash() {
+        Hasher hasher = DefaultFileCollectionSnapshot.SUMMARY_HASH_FUNCTION.newHasher();
+        for (Map.Entry<String, Boolean> entry : new TreeMap<String, Boolean>(roots).entrySet()) {
+            hasher.putInt(entry.getKey().length());
+            hasher.putString(entry.getKey(), Charsets.UTF_8);
+            hasher.putBoolean(entry.getValue());
+        }
+        hasher.putBytes(filesSnapshot.getSummaryHash().asBytes());
+        return hasher.hash();
+    }
+
     public static class SerializerImpl implements Serializer<OutputFilesCollectionSnapshot> {
         private final Serializer<FileCollectionSnapshot> serializer;
         private final StringInterner stringInterner;
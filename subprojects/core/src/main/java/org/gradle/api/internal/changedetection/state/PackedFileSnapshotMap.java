@@ -0,0 +1,462 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.DefaultNormalizedFileSnapshot;
+import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.IgnoredPathFileSnapshot;
+import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.IndexedNormalizedFileSnapshot;
+import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.NonNormalizedFileSnapshot;
+
+import java.io.File;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable map of file snapshots that keeps the absolute paths in a sorted table and the kinds and hashes of the snapshots in packed arrays.
+ * The {@link NormalizedFileSnapshot} values are only created when they are requested.
+ *
+ * <p>Iterates in the order the snapshots were added, so that it can stand in for the map it was created from.
+ * Lookups by path use a binary search on the sorted path table.</p>
+ *
+ * <p>As the paths under a directory form a contiguous range of the sorted path table, a combined hash can be calculated for each directory
+ * from the hashes of its children. These hashes let comparisons skip directories where nothing has changed. The hash of the root of the tree
+ * is persisted along with the snapshots, the hashes of the directories are calculated when they are first requested.</p>
+ */
+class PackedFileSnapshotMap extends AbstractMap<String, NormalizedFileSnapshot> {
+    static final byte DIR_SNAPSHOT = 1;
+    static final byte MISSING_FILE_SNAPSHOT = 2;
+    static final byte REGULAR_FILE_SNAPSHOT = 3;
+
+    static final byte NO_NORMALIZATION = 1;
+    static final byte DEFAULT_NORMALIZATION = 2;
+    static final byte INDEXED_NORMALIZATION = 3;
+    static final byte IGNORED_PATH_NORMALIZATION = 4;
+
+    private static final char SEPARATOR = File.separatorChar;
+    private static final HashFunction TREE_HASH_FUNCTION = Hashing.murmur3_128();
+    private static final HashCode EMPTY_TREE_HASH = TREE_HASH_FUNCTION.newHasher().hash();
+    private static final String ROOT_DIRECTORY = "";
+
+    private final String[] paths;
+    private final byte[] fileKinds;
+    private final byte[] normalizationKinds;
+    private final int hashLength;
+    private final byte[] hashes;
+    private final String[] normalizedPaths;
+    private final int[] normalizedPathIndexes;
+    private final int[] insertionOrder;
+    private final Map<String, HashCode> directoryHashes = new ConcurrentHashMap<String, HashCode>();
+    private Set<Entry<String, NormalizedFileSnapshot>> entrySet;
+
+    /**
+     * Creates a map from packed snapshot data. All arrays are indexed by the position of the path in the sorted path table.
+     *
+     * @param normalizedPaths the normalized path of each snapshot with default normalization, or {@code null} when there are no such snapshots.
+     * @param normalizedPathIndexes the start of the normalized path of each snapshot with indexed normalization, or {@code null} when there are no such snapshots.
+     * @param insertionOrder the positions of the snapshots in iteration order, or {@code null} when the snapshots are iterated in path order.
+     * @param rootHash the previously calculated combined hash of all snapshots, or {@code null} when it has not been calculated yet.
+     */
+    PackedFileSnapshotMap(String[] paths, byte[] fileKinds, byte[] normalizationKinds, int hashLength, byte[] hashes, String[] normalizedPaths, int[] normalizedPathIndexes, int[] insertionOrder, HashCode rootHash) {
+        this.paths = paths;
+        this.fileKinds = fileKinds;
+        this.normalizationKinds = normalizationKinds;
+        this.hashLength = hashLength;
+        this.hashes = hashes;
+        this.normalizedPaths = normalizedPaths;
+        this.normalizedPathIndexes = normalizedPathIndexes;
+        this.insertionOrder = insertionOrder;
+        if (rootHash != null) {
+            directoryHashes.put(ROOT_DIRECTORY, rootHash);
+        }
+    }
+
+    /**
+     * Packs the given snapshots, unless they are already packed.
+     */
+    static PackedFileSnapshotMap of(Map<String, NormalizedFileSnapshot> snapshots) {
+        if (snapshots instanceof PackedFileSnapshotMap) {
+            return (PackedFileSnapshotMap) snapshots;
+        }
+        int size = snapshots.size();
+        String[] paths = snapshots.keySet().toArray(new String[size]);
+        String[] sortedPaths = paths.clone();
+        Arrays.sort(sortedPaths);
+        int[] insertionOrder = new int[size];
+        boolean sorted = true;
+        for (int i = 0; i < size; i++) {
+            insertionOrder[i] = Arrays.binarySearch(sortedPaths, paths[i]);
+            sorted &= insertionOrder[i] == i;
+        }
+
+        int hashLength = 0;
+        for (NormalizedFileSnapshot snapshot : snapshots.values()) {
+            if (snapshot.getSnapshot() instanceof FileHashSnapshot) {
+                hashLength = snapshot.getSnapshot().getHash().bits() / 8;
+                break;
+            }
+        }
+
+        byte[] fileKinds = new byte[size];
+        byte[] normalizationKinds = new byte[size];
+        byte[] hashes = new byte[size * hashLength];
+        String[] normalizedPaths = null;
+        int[] normalizedPathIndexes = null;
+        int insertionIndex = 0;
+        for (NormalizedFileSnapshot value : snapshots.values()) {
+            int index = insertionOrder[insertionIndex++];
+            IncrementalFileSnapshot snapshot = value.getSnapshot();
+            if (snapshot instanceof DirSnapshot) {
+                fileKinds[index] = DIR_SNAPSHOT;
+            } else if (snapshot instanceof MissingFileSnapshot) {
+                fileKinds[index] = MISSING_FILE_SNAPSHOT;
+            } else if (snapshot instanceof FileHashSnapshot) {
+                fileKinds[index] = REGULAR_FILE_SNAPSHOT;
+                byte[] hash = snapshot.getHash().asBytes();
+                if (hash.length != hashLength) {
+                    throw new IllegalArgumentException(String.format("Cannot pack file hashes of different lengths (%d and %d bytes).", hashLength, hash.length));
+                }
+                System.arraycopy(hash, 0, hashes, index * hashLength, hashLength);
+            } else {
+                throw new AssertionError();
+            }
+
+            if (value instanceof NonNormalizedFileSnapshot) {
+                normalizationKinds[index] = NO_NORMALIZATION;
+            } else if (value instanceof DefaultNormalizedFileSnapshot) {
+                normalizationKinds[index] = DEFAULT_NORMALIZATION;
+                if (normalizedPaths == null) {
+                    normalizedPaths = new String[size];
+                }
+                normalizedPaths[index] = value.getNormalizedPath();
+            } else if (value instanceof IndexedNormalizedFileSnapshot) {
+                normalizationKinds[index] = INDEXED_NORMALIZATION;
+                if (normalizedPathIndexes == null) {
+                    normalizedPathIndexes = new int[size];
+                }
+                normalizedPathIndexes[index] = ((IndexedNormalizedFileSnapshot) value).getIndex();
+            } else if (value instanceof IgnoredPathFileSnapshot) {
+                normalizationKinds[index] = IGNORED_PATH_NORMALIZATION;
+            } else {
+                throw new AssertionError();
+            }
+        }
+        return new PackedFileSnapshotMap(sortedPaths, fileKinds, normalizationKinds, hashLength, hashes, normalizedPaths, normalizedPathIndexes, sorted ? null : insertionOrder, null);
+    }
+
+    @Override
+    public int size() {
+        return paths.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return paths.length == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public NormalizedFileSnapshot get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int index = indexOf((String) key);
+        return index < 0 ? null : getNormalizedSnapshot(index);
+    }
+
+    @Override
+    public Set<Entry<String, NormalizedFileSnapshot>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**
+     * Returns the position of the given path in the sorted path table, or a negative value when the path is not in the table.
+     */
+    int indexOf(String path) {
+        return Arrays.binarySearch(paths, path);
+    }
+
+    String getPath(int index) {
+        return paths[index];
+    }
+
+    byte getFileKind(int index) {
+        return fileKinds[index];
+    }
+
+    byte getNormalizationKind(int index) {
+        return normalizationKinds[index];
+    }
+
+    int getHashLength() {
+        return hashLength;
+    }
+
+    byte[] getHashes() {
+        return hashes;
+    }
+
+    String getNormalizedPath(int index) {
+        return normalizedPaths[index];
+    }
+
+    int getNormalizedPathIndex(int index) {
+        return normalizedPathIndexes[index];
+    }
+
+    /**
+     * Returns the positions of the snapshots in iteration order, or {@code null} when the snapshots are iterated in path order.
+     */
+    int[] getInsertionOrder() {
+        return insertionOrder;
+    }
+
+    /**
+     * Returns the combined hash of all snapshots.
+     */
+    HashCode getRootHash() {
+        return getDirectoryHash(ROOT_DIRECTORY, 0, paths.length);
+    }
+
+    /**
+     * Returns the combined hash of the snapshots in the given range of the path table, which must hold exactly the paths starting with the given directory prefix.
+     */
+    HashCode getDirectoryHash(String directory, int start, int end) {
+        HashCode hash = directoryHashes.get(directory);
+        if (hash == null) {
+            if (start == end) {
+                hash = EMPTY_TREE_HASH;
+            } else {
+                List<HashCode> childHashes = new ArrayList<HashCode>();
+                int index = start;
+                while (index < end) {
+                    String childDirectory = getChildDirectory(directory, index);
+                    if (childDirectory == null) {
+                        childHashes.add(getEntryHash(index));
+                        index++;
+                    } else {
+                        int childEnd = getDirectoryEnd(childDirectory, index, end);
+                        childHashes.add(getDirectoryHash(childDirectory, index, childEnd));
+                        index = childEnd;
+                    }
+                }
+                hash = Hashing.combineOrdered(childHashes);
+            }
+            directoryHashes.put(directory, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the prefix of the child directory of the given directory that contains the path at the given position,
+     * or {@code null} when the path is a direct child of the given directory.
+     */
+    String getChildDirectory(String directory, int index) {
+        String path = paths[index];
+        int separatorIndex = path.indexOf(SEPARATOR, directory.length());
+        return separatorIndex < 0 ? null : path.substring(0, separatorIndex + 1);
+    }
+
+    /**
+     * Returns the end of the range of paths starting with the given directory prefix, searching from the given start position.
+     */
+    int getDirectoryEnd(String directory, int start, int end) {
+        String upperBound = directory.substring(0, directory.length() - 1) + (char) (SEPARATOR + 1);
+        int index = Arrays.binarySearch(paths, start, end, upperBound);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    private HashCode getEntryHash(int index) {
+        Hasher hasher = TREE_HASH_FUNCTION.newHasher();
+        hasher.putUnencodedChars(paths[index]);
+        hasher.putByte(fileKinds[index]);
+        if (fileKinds[index] == REGULAR_FILE_SNAPSHOT) {
+            hasher.putBytes(hashes, index * hashLength, hashLength);
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Checks whether the snapshot at the given position has the same content as the snapshot at the given position of the other map.
+     */
+    boolean isContentUpToDate(int index, PackedFileSnapshotMap other, int otherIndex) {
+        if (fileKinds[index] != other.fileKinds[otherIndex]) {
+            return false;
+        }
+        if (fileKinds[index] != REGULAR_FILE_SNAPSHOT) {
+            return true;
+        }
+        if (hashLength != other.hashLength) {
+            return false;
+        }
+        int offset = index * hashLength;
+        int otherOffset = otherIndex * hashLength;
+        for (int i = 0; i < hashLength; i++) {
+            if (hashes[offset + i] != other.hashes[otherOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the snapshot at the given position has the same content as the given snapshot, without creating a snapshot object for the former.
+     */
+    boolean isContentUpToDate(int index, IncrementalFileSnapshot snapshot) {
+        if (snapshot instanceof FileHashSnapshot) {
+            if (fileKinds[index] != REGULAR_FILE_SNAPSHOT) {
+                return false;
+            }
+            byte[] hash = snapshot.getHash().asBytes();
+            if (hash.length != hashLength) {
+                return false;
+            }
+            int offset = index * hashLength;
+            for (int i = 0; i < hashLength; i++) {
+                if (hash[i] != hashes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (snapshot instanceof DirSnapshot) {
+            return fileKinds[index] == DIR_SNAPSHOT;
+        }
+        if (snapshot instanceof MissingFileSnapshot) {
+            return fileKinds[index] == MISSING_FILE_SNAPSHOT;
+        }
+        return snapshot.isContentUpToDate(getFileSnapshot(index));
+    }
+
+    private IncrementalFileSnapshot getFileSnapshot(int index) {
+        switch (fileKinds[index]) {
+            case DIR_SNAPSHOT:
+                return DirSnapshot.getInstance();
+            case MISSING_FILE_SNAPSHOT:
+                return MissingFileSnapshot.getInstance();
+            case REGULAR_FILE_SNAPSHOT:
+                return new FileHashSnapshot(HashCode.fromBytes(Arrays.copyOfRange(hashes, index * hashLength, (index + 1) * hashLength)));
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private NormalizedFileSnapshot getNormalizedSnapshot(int index) {
+        IncrementalFileSnapshot snapshot = getFileSnapshot(index);
+        switch (normalizationKinds[index]) {
+            case NO_NORMALIZATION:
+                return new NonNormalizedFileSnapshot(paths[index], snapshot);
+            case DEFAULT_NORMALIZATION:
+                return new DefaultNormalizedFileSnapshot(normalizedPaths[index], snapshot);
+            case INDEXED_NORMALIZATION:
+                return new IndexedNormalizedFileSnapshot(paths[index], normalizedPathIndexes[index], snapshot);
+            case IGNORED_PATH_NORMALIZATION:
+                return new IgnoredPathFileSnapshot(snapshot);
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, NormalizedFileSnapshot>> {
+        @Override
+        public int size() {
+            return paths.length;
+        }
+
+        @Override
+        public Iterator<Entry<String, NormalizedFileSnapshot>> iterator() {
+            return new Iterator<Entry<String, NormalizedFileSnapshot>>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < paths.length;
+                }
+
+                @Override
+                public Entry<String, NormalizedFileSnapshot> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int index = insertionOrder == null ? next : insertionOrder[next];
+                    next++;
+                    return new PackedEntry(index);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    private class PackedEntry implements Entry<String, NormalizedFileSnapshot> {
+        private final int index;
+
+        private PackedEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return paths[index];
+        }
+
+        @Override
+        public NormalizedFileSnapshot getValue() {
+            return getNormalizedSnapshot(index);
+        }
+
+        @Override
+        public NormalizedFileSnapshot setValue(NormalizedFileSnapshot value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> other = (Entry<?, ?>) obj;
+            return getKey().equals(other.getKey()) && getValue().equals(other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ getValue().hashCode();
+        }
+    }
+}
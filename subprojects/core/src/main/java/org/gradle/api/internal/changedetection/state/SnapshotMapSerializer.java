@@ -16,32 +16,29 @@
 
 package org.gradle.api.internal.changedetection.state;
 
-import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
 import org.gradle.api.internal.cache.StringInterner;
-import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.DefaultNormalizedFileSnapshot;
-import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.IgnoredPathFileSnapshot;
-import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.IndexedNormalizedFileSnapshot;
-import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.NonNormalizedFileSnapshot;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
-import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.Serializer;
 
 import java.io.EOFException;
-import java.io.IOException;
 import java.util.Map;
 
-public class SnapshotMapSerializer implements Serializer<Map<String, NormalizedFileSnapshot>> {
-    private static final byte DIR_SNAPSHOT = 1;
-    private static final byte MISSING_FILE_SNAPSHOT = 2;
-    private static final byte REGULAR_FILE_SNAPSHOT = 3;
-
-    private static final byte NO_NORMALIZATION = 1;
-    private static final byte DEFAULT_NORMALIZATION = 2;
-    private static final byte INDEXED_NORMALIZATION = 3;
-    private static final byte IGNORED_PATH_NORMALIZATION = 4;
+import static org.gradle.api.internal.changedetection.state.PackedFileSnapshotMap.DEFAULT_NORMALIZATION;
+import static org.gradle.api.internal.changedetection.state.PackedFileSnapshotMap.DIR_SNAPSHOT;
+import static org.gradle.api.internal.changedetection.state.PackedFileSnapshotMap.IGNORED_PATH_NORMALIZATION;
+import static org.gradle.api.internal.changedetection.state.PackedFileSnapshotMap.INDEXED_NORMALIZATION;
+import static org.gradle.api.internal.changedetection.state.PackedFileSnapshotMap.MISSING_FILE_SNAPSHOT;
+import static org.gradle.api.internal.changedetection.state.PackedFileSnapshotMap.NO_NORMALIZATION;
+import static org.gradle.api.internal.changedetection.state.PackedFileSnapshotMap.REGULAR_FILE_SNAPSHOT;
 
-    private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
+/**
+ * Serializes snapshots as a {@link PackedFileSnapshotMap}. The sorted path table is front coded: each path is written as the length of the prefix
+ * it shares with the previous path, followed by the rest of the path. Hashes are written as raw bytes of a common length.
+ * The combined hash of all snapshots is written last, so that it does not need to be calculated again when comparing against the snapshots.
+ */
+public class SnapshotMapSerializer implements Serializer<Map<String, NormalizedFileSnapshot>> {
     private final StringInterner stringInterner;
 
     public SnapshotMapSerializer(StringInterner stringInterner) {
@@ -50,85 +47,120 @@ public class SnapshotMapSerializer implements Serializer<Map<String, NormalizedF
 
     @Override
     public Map<String, NormalizedFileSnapshot> read(Decoder decoder) throws EOFException, Exception {
-        Map<String, NormalizedFileSnapshot> snapshots = Maps.newLinkedHashMap();
-        int snapshotsCount = decoder.readSmallInt();
-        for (int i = 0; i < snapshotsCount; i++) {
-            String absolutePath = stringInterner.intern(decoder.readString());
-            NormalizedFileSnapshot snapshot = readSnapshot(absolutePath, decoder, stringInterner);
-            snapshots.put(absolutePath, snapshot);
-        }
-        return snapshots;
-    }
+        int size = decoder.readSmallInt();
+        int hashLength = decoder.readSmallInt();
+        String[] paths = new String[size];
+        byte[] fileKinds = new byte[size];
+        byte[] normalizationKinds = new byte[size];
+        byte[] hashes = new byte[size * hashLength];
+        String[] normalizedPaths = null;
+        int[] normalizedPathIndexes = null;
+        String previousPath = "";
+        for (int i = 0; i < size; i++) {
+            int sharedPrefix = decoder.readSmallInt();
+            String suffix = decoder.readString();
+            String path = sharedPrefix == 0 ? suffix : previousPath.substring(0, sharedPrefix).concat(suffix);
+            paths[i] = stringInterner.intern(path);
+            previousPath = path;
 
-    private NormalizedFileSnapshot readSnapshot(String absolutePath, Decoder decoder, StringInterner stringInterner) throws IOException {
-        byte fileSnapshotKind = decoder.readByte();
-        IncrementalFileSnapshot snapshot;
-        switch (fileSnapshotKind) {
-            case DIR_SNAPSHOT:
-                snapshot = DirSnapshot.getInstance();
-                break;
-            case MISSING_FILE_SNAPSHOT:
-                snapshot = MissingFileSnapshot.getInstance();
-                break;
-            case REGULAR_FILE_SNAPSHOT:
-                snapshot = new FileHashSnapshot(hashCodeSerializer.read(decoder));
-                break;
-            default:
-                throw new RuntimeException("Unable to read serialized file snapshot. Unrecognized value found in the data stream.");
+            byte fileKind = decoder.readByte();
+            switch (fileKind) {
+                case DIR_SNAPSHOT:
+                case MISSING_FILE_SNAPSHOT:
+                    break;
+                case REGULAR_FILE_SNAPSHOT:
+                    decoder.readBytes(hashes, i * hashLength, hashLength);
+                    break;
+                default:
+                    throw new RuntimeException("Unable to read serialized file snapshot. Unrecognized value found in the data stream.");
+            }
+            fileKinds[i] = fileKind;
+
+            byte normalizationKind = decoder.readByte();
+            switch (normalizationKind) {
+                case NO_NORMALIZATION:
+                case IGNORED_PATH_NORMALIZATION:
+                    break;
+                case DEFAULT_NORMALIZATION:
+                    if (normalizedPaths == null) {
+                        normalizedPaths = new String[size];
+                    }
+                    normalizedPaths[i] = stringInterner.intern(decoder.readString());
+                    break;
+                case INDEXED_NORMALIZATION:
+                    if (normalizedPathIndexes == null) {
+                        normalizedPathIndexes = new int[size];
+                    }
+                    normalizedPathIndexes[i] = decoder.readSmallInt();
+                    break;
+                default:
+                    throw new RuntimeException("Unable to read serialized file snapshot. Unrecognized value found in the data stream.");
+            }
+            normalizationKinds[i] = normalizationKind;
         }
 
-        int normalizedSnapshotKind = decoder.readByte();
-        switch (normalizedSnapshotKind) {
-            case NO_NORMALIZATION:
-                return new NonNormalizedFileSnapshot(absolutePath, snapshot);
-            case DEFAULT_NORMALIZATION:
-                String normalizedPath = stringInterner.intern(decoder.readString());
-                return new DefaultNormalizedFileSnapshot(normalizedPath, snapshot);
-            case INDEXED_NORMALIZATION:
-                int index = decoder.readSmallInt();
-                return new IndexedNormalizedFileSnapshot(absolutePath, index, snapshot);
-            case IGNORED_PATH_NORMALIZATION:
-                return new IgnoredPathFileSnapshot(snapshot);
-            default:
-                throw new RuntimeException("Unable to read serialized file snapshot. Unrecognized value found in the data stream.");
+        int[] insertionOrder = null;
+        if (!decoder.readBoolean()) {
+            insertionOrder = new int[size];
+            for (int i = 0; i < size; i++) {
+                insertionOrder[i] = decoder.readSmallInt();
+            }
         }
+        HashCode rootHash = HashCode.fromBytes(decoder.readBinary());
+        return new PackedFileSnapshotMap(paths, fileKinds, normalizationKinds, hashLength, hashes, normalizedPaths, normalizedPathIndexes, insertionOrder, rootHash);
     }
 
     @Override
     public void write(Encoder encoder, Map<String, NormalizedFileSnapshot> value) throws Exception {
-        encoder.writeSmallInt(value.size());
-        for (String key : value.keySet()) {
-            encoder.writeString(key);
-            NormalizedFileSnapshot snapshot = value.get(key);
-            writeSnapshot(encoder, snapshot);
+        PackedFileSnapshotMap snapshots = PackedFileSnapshotMap.of(value);
+        int size = snapshots.size();
+        int hashLength = snapshots.getHashLength();
+        byte[] hashes = snapshots.getHashes();
+        encoder.writeSmallInt(size);
+        encoder.writeSmallInt(hashLength);
+        String previousPath = "";
+        for (int i = 0; i < size; i++) {
+            String path = snapshots.getPath(i);
+            int sharedPrefix = sharedPrefixLength(previousPath, path);
+            encoder.writeSmallInt(sharedPrefix);
+            encoder.writeString(path.substring(sharedPrefix));
+            previousPath = path;
+
+            byte fileKind = snapshots.getFileKind(i);
+            encoder.writeByte(fileKind);
+            if (fileKind == REGULAR_FILE_SNAPSHOT) {
+                encoder.writeBytes(hashes, i * hashLength, hashLength);
+            }
+
+            byte normalizationKind = snapshots.getNormalizationKind(i);
+            encoder.writeByte(normalizationKind);
+            if (normalizationKind == DEFAULT_NORMALIZATION) {
+                encoder.writeString(snapshots.getNormalizedPath(i));
+            } else if (normalizationKind == INDEXED_NORMALIZATION) {
+                encoder.writeSmallInt(snapshots.getNormalizedPathIndex(i));
+            }
         }
-    }
 
-    private void writeSnapshot(Encoder encoder, NormalizedFileSnapshot value) throws IOException {
-        IncrementalFileSnapshot snapshot = value.getSnapshot();
-        if (snapshot instanceof DirSnapshot) {
-            encoder.writeByte(DIR_SNAPSHOT);
-        } else if (snapshot instanceof MissingFileSnapshot) {
-            encoder.writeByte(MISSING_FILE_SNAPSHOT);
-        } else if (snapshot instanceof FileHashSnapshot) {
-            encoder.writeByte(REGULAR_FILE_SNAPSHOT);
-            hashCodeSerializer.write(encoder, snapshot.getHash());
-        } else {
-            throw new AssertionError();
+        int[] insertionOrder = snapshots.getInsertionOrder();
+        encoder.writeBoolean(insertionOrder == null);
+        if (insertionOrder != null) {
+            for (int index : insertionOrder) {
+                encoder.writeSmallInt(index);
+            }
         }
+        encoder.writeBinary(snapshots.getRootHash().asBytes());
+    }
 
-        if (value instanceof NonNormalizedFileSnapshot) {
-            encoder.writeByte(NO_NORMALIZATION);
-        } else if (value instanceof DefaultNormalizedFileSnapshot) {
-            encoder.writeByte(DEFAULT_NORMALIZATION);
-            encoder.writeString(value.getNormalizedPath());
-        } else if (value instanceof IndexedNormalizedFileSnapshot) {
-            encoder.writeByte(INDEXED_NORMALIZATION);
-            encoder.writeSmallInt(((IndexedNormalizedFileSnapshot) value).getIndex());
-        } else if (value instanceof IgnoredPathFileSnapshot) {
-            encoder.writeByte(IGNORED_PATH_NORMALIZATION);
-        } else {
-            throw new AssertionError();
+    private static int sharedPrefixLength(String previous, String current) {
+        int maxLength = Math.min(previous.length(), current.length());
+        int length = 0;
+        while (length < maxLength && previous.charAt(length) == current.charAt(length)) {
+            length++;
+        }
+        // Do not split a surrogate pair between the prefix and the suffix
+        if (length > 0 && Character.isHighSurrogate(current.charAt(length - 1))) {
+            length--;
         }
+        return length;
     }
 }
@@ -98,6 +98,22 @@ public abstract class TaskExecution {
 
     public abstract void setInputFilesSnapshot(Map<String, FileCollectionSnapshot> inputFilesSnapshot);
 
+    /**
+     * Returns the summary hash of each input file property, as of when this execution was stored.
+     *
+     * @return May return null.
+     * @see FileCollectionSnapshot#getSummaryHash()
+     */
+    public abstract Map<String, HashCode> getInputFilesSummaries();
+
+    /**
+     * Returns the summary hash of each output file property, as of when this execution was stored.
+     *
+     * @return May return null.
+     * @see FileCollectionSnapshot#getSummaryHash()
+     */
+    public abstract Map<String, HashCode> getOutputFilesSummaries();
+
     public abstract FileCollectionSnapshot getDiscoveredInputFilesSnapshot();
 
     public abstract void setDiscoveredInputFilesSnapshot(FileCollectionSnapshot inputFilesSnapshot);
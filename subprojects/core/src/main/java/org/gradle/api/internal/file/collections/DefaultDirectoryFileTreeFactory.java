@@ -17,33 +17,47 @@
 package org.gradle.api.internal.file.collections;
 
 import org.gradle.api.tasks.util.PatternSet;
+import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
 
 import java.io.File;
 
 public class DefaultDirectoryFileTreeFactory implements DirectoryFileTreeFactory {
     private final Factory<PatternSet> patternSetFactory;
+    private final Factory<DirectoryWalker> directoryWalkerFactory;
 
     public DefaultDirectoryFileTreeFactory() {
-        this.patternSetFactory = new Factory<PatternSet>() {
+        this(new Factory<PatternSet>() {
             @Override
             public PatternSet create() {
                 return new PatternSet();
             }
-        };
+        });
     }
 
     public DefaultDirectoryFileTreeFactory(Factory<PatternSet> patternSetFactory) {
+        this(patternSetFactory, DirectoryFileTree.DEFAULT_DIRECTORY_WALKER_FACTORY);
+    }
+
+    /**
+     * Creates trees that are walked using the given walker.
+     */
+    public DefaultDirectoryFileTreeFactory(Factory<PatternSet> patternSetFactory, DirectoryWalker directoryWalker) {
+        this(patternSetFactory, Factories.constant(directoryWalker));
+    }
+
+    private DefaultDirectoryFileTreeFactory(Factory<PatternSet> patternSetFactory, Factory<DirectoryWalker> directoryWalkerFactory) {
         this.patternSetFactory = patternSetFactory;
+        this.directoryWalkerFactory = directoryWalkerFactory;
     }
 
     @Override
     public DirectoryFileTree create(File directory) {
-        return new DirectoryFileTree(directory, patternSetFactory.create());
+        return new DirectoryFileTree(directory, patternSetFactory.create(), directoryWalkerFactory);
     }
 
     @Override
     public DirectoryFileTree create(File directory, PatternSet patternSet) {
-        return new DirectoryFileTree(directory, patternSet);
+        return new DirectoryFileTree(directory, patternSet, directoryWalkerFactory);
     }
 }
@@ -19,21 +19,35 @@ package org.gradle.api.internal.file.collections;
 import com.google.common.base.Charsets;
 import org.gradle.api.JavaVersion;
 import org.gradle.api.internal.file.collections.jdk7.Jdk7DirectoryWalker;
+import org.gradle.api.internal.file.collections.jdk7.ParallelDirectoryWalker;
 import org.gradle.internal.Factory;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.nativeintegration.services.FileSystems;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 
 import java.nio.charset.Charset;
 
 public class DefaultDirectoryWalkerFactory implements Factory<DirectoryWalker> {
+    public static final String PARALLEL_WALKER_PROPERTY = "org.gradle.internal.file.parallelDirectoryWalker";
+
     private final JavaVersion javaVersion;
+    private final ExecutorFactory executorFactory;
     private DirectoryWalker instance;
 
-    DefaultDirectoryWalkerFactory(JavaVersion javaVersion) {
+    /**
+     * @param executorFactory used to create the executor of the parallel walker, or null when the parallel walker should not be used.
+     * A parallel walker must be stopped by whoever owns it.
+     */
+    DefaultDirectoryWalkerFactory(JavaVersion javaVersion, ExecutorFactory executorFactory) {
         this.javaVersion = javaVersion;
+        this.executorFactory = executorFactory;
         reset();
     }
 
+    DefaultDirectoryWalkerFactory(JavaVersion javaVersion) {
+        this(javaVersion, null);
+    }
+
     DefaultDirectoryWalkerFactory() {
         this(JavaVersion.current());
     }
@@ -46,9 +60,12 @@ public class DefaultDirectoryWalkerFactory implements Factory<DirectoryWalker> {
         this.instance = createInstance();
     }
 
-    private DirectoryWalker createInstance() {
+    DirectoryWalker createInstance() {
         FileSystem fileSystem = FileSystems.getDefault();
         if (javaVersion.isJava8Compatible() || (javaVersion.isJava7Compatible() && defaultEncodingContainsPlatformEncoding())) {
+            if (executorFactory != null && Boolean.getBoolean(PARALLEL_WALKER_PROPERTY)) {
+                return new ParallelDirectoryWalker(fileSystem, executorFactory);
+            }
             return new Jdk7DirectoryWalker(fileSystem);
         } else {
             return new DefaultDirectoryWalker(fileSystem);
@@ -51,7 +51,7 @@ public class DirectoryFileTree implements MinimalFileTree, PatternFilterableFile
     private PatternSet patternSet;
     private boolean postfix;
     private final FileSystem fileSystem = FileSystems.getDefault();
-    private static final Factory<DirectoryWalker> DEFAULT_DIRECTORY_WALKER_FACTORY = new DefaultDirectoryWalkerFactory();
+    static final Factory<DirectoryWalker> DEFAULT_DIRECTORY_WALKER_FACTORY = new DefaultDirectoryWalkerFactory();
     private final Factory<DirectoryWalker> directoryWalkerFactory;
 
     public DirectoryFileTree(File dir) {
@@ -0,0 +1,581 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.file.collections;
+
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.JavaVersion;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.file.DefaultFileVisitDetails;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.specs.Specs;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.nativeintegration.services.FileSystems;
+import org.gradle.internal.os.OperatingSystem;
+import org.gradle.util.GFileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link DirectoryWalker} that keeps an in-memory copy of the directory trees it walks, and serves later walks of the same trees from that copy.
+ *
+ * <p>Every retained tree is watched for changes. The directories in which something changed are walked again on the next visit of the tree,
+ * and the rest of the tree is visited without touching the file system. An overflow of the watcher discards all retained trees, so that
+ * they are walked in full again.</p>
+ *
+ * <p>Watcher events are delivered asynchronously, so a change made just before a build starts may not have been reported yet when a tree is
+ * first used by that build. Before a retained tree is used for the first time in a build, the walker creates a marker file in a temporary
+ * directory of its own, watched by the same watcher, and waits for the event of that file. The watcher reports the events of all watched
+ * directories in order, so every change made before then has been reported by the time the marker event arrives. When it does not arrive
+ * in time, all retained trees are walked in full again. The watched trees themselves are never written to.</p>
+ *
+ * <p>Trees that contain symbolic links, or that would take the number of retained entries over the limit, are not retained.
+ * Postfix walks always go to the file system.</p>
+ */
+public class WatchingDirectoryWalker implements DirectoryWalker, FileWatcherListener, Stoppable {
+    public static final String RETAIN_FILE_TREES_PROPERTY = "org.gradle.internal.filewatch.retainFileTrees";
+    public static final String MAX_RETAINED_ENTRIES_PROPERTY = "org.gradle.internal.filewatch.maxRetainedFiles";
+    private static final int DEFAULT_MAX_RETAINED_ENTRIES = 500000;
+    private static final long DEFAULT_SYNC_TIMEOUT_MILLIS = 5000;
+    private static final Logger LOGGER = Logging.getLogger(WatchingDirectoryWalker.class);
+
+    private final FileWatcherFactory fileWatcherFactory;
+    private final DirectoryWalker delegate;
+    private final FileSystem fileSystem;
+    private final int maxRetainedEntries;
+    private final boolean enabled;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final long syncTimeoutMillis;
+    private final AtomicLong syncFileCounter = new AtomicLong();
+    // Only one thread waits for the watcher at a time, the others use the outcome
+    private final Object syncLock = new Object();
+
+    private final Object lock = new Object();
+    // Keyed by root directory. A root has an entry here once it is watched, holding the directories that changed since it was last walked.
+    private final Map<File, Set<File>> changedDirectories = new HashMap<File, Set<File>>();
+    private final Map<File, RetainedTree> retainedTrees = new HashMap<File, RetainedTree>();
+    private final Map<File, CountDownLatch> pendingSyncFiles = new HashMap<File, CountDownLatch>();
+    private File syncDir;
+    // Whether the retained trees have caught up with the watcher's events during the current build
+    private boolean synced;
+    private int retainedEntries;
+    private int generation;
+    private FileWatcher fileWatcher;
+    private boolean stopped;
+
+    private final AtomicInteger walks = new AtomicInteger();
+    private final AtomicLong avoidedStatCalls = new AtomicLong();
+    private final AtomicInteger overflows = new AtomicInteger();
+
+    public WatchingDirectoryWalker(FileWatcherFactory fileWatcherFactory, ExecutorFactory executorFactory, TemporaryFileProvider temporaryFileProvider) {
+        this(fileWatcherFactory, new DefaultDirectoryWalkerFactory(JavaVersion.current(), executorFactory).createInstance(), FileSystems.getDefault(), temporaryFileProvider,
+            Integer.getInteger(MAX_RETAINED_ENTRIES_PROPERTY, DEFAULT_MAX_RETAINED_ENTRIES), isEnabled(), DEFAULT_SYNC_TIMEOUT_MILLIS);
+    }
+
+    WatchingDirectoryWalker(FileWatcherFactory fileWatcherFactory, DirectoryWalker delegate, FileSystem fileSystem, TemporaryFileProvider temporaryFileProvider, int maxRetainedEntries, boolean enabled, long syncTimeoutMillis) {
+        this.fileWatcherFactory = fileWatcherFactory;
+        this.delegate = delegate;
+        this.fileSystem = fileSystem;
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.maxRetainedEntries = maxRetainedEntries;
+        this.enabled = enabled;
+        this.syncTimeoutMillis = syncTimeoutMillis;
+    }
+
+    /**
+     * Returns true when file trees should be retained between builds. This requires a JDK watch service that is backed by native
+     * file system notifications, rather than one that polls, and that reports the events of all watched directories in a single
+     * ordered stream, as inotify does.
+     */
+    public static boolean isEnabled() {
+        OperatingSystem operatingSystem = OperatingSystem.current();
+        return Boolean.getBoolean(RETAIN_FILE_TREES_PROPERTY)
+            && JavaVersion.current().isJava7Compatible()
+            && operatingSystem.isLinux();
+    }
+
+    @Override
+    public void walkDir(File rootDir, RelativePath rootPath, FileVisitor visitor, Spec<FileTreeElement> spec, AtomicBoolean stopFlag, boolean postfix) {
+        AtomicInteger recordedEntries = new AtomicInteger();
+        Node tree = postfix || !enabled ? null : getTree(rootDir, recordedEntries);
+        if (tree == null) {
+            delegate.walkDir(rootDir, rootPath, visitor, spec, stopFlag, postfix);
+            return;
+        }
+        walks.incrementAndGet();
+        int visited = visit(tree, rootDir, rootPath, visitor, spec, stopFlag);
+        avoidedStatCalls.addAndGet(Math.max(0, visited - recordedEntries.get()));
+    }
+
+    private int visit(Node dir, File dirFile, RelativePath dirPath, FileVisitor visitor, Spec<FileTreeElement> spec, AtomicBoolean stopFlag) {
+        int visited = 0;
+        for (Node child : dir.children) {
+            if (stopFlag.get()) {
+                break;
+            }
+            File childFile = new File(dirFile, child.name);
+            RelativePath childPath = dirPath.append(!child.directory, child.name);
+            FileVisitDetails details = new DefaultFileVisitDetails(childFile, childPath, stopFlag, fileSystem, fileSystem, child.directory, child.lastModified, child.length);
+            visited++;
+            if (!DirectoryFileTree.isAllowed(details, spec)) {
+                continue;
+            }
+            if (child.directory) {
+                visitor.visitDir(details);
+                visited += visit(child, childFile, childPath, visitor, spec, stopFlag);
+            } else {
+                visitor.visitFile(details);
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Returns the up-to-date tree for the given root, walking whatever changed since the last visit. Returns null when the tree cannot be retained.
+     */
+    private Node getTree(File rootDir, AtomicInteger recordedEntries) {
+        if (!awaitPendingEvents(rootDir)) {
+            return null;
+        }
+        Node tree;
+        List<File> changes;
+        int currentGeneration;
+        synchronized (lock) {
+            if (stopped) {
+                return null;
+            }
+            currentGeneration = generation;
+            Set<File> pendingChanges = changedDirectories.get(rootDir);
+            if (pendingChanges == null) {
+                changes = null;
+                tree = null;
+            } else {
+                changes = new ArrayList<File>(pendingChanges);
+                pendingChanges.clear();
+                RetainedTree retainedTree = retainedTrees.get(rootDir);
+                tree = retainedTree == null ? null : retainedTree.root;
+                if (tree != null && changes.isEmpty()) {
+                    return tree;
+                }
+            }
+        }
+
+        if (changes == null && !watch(rootDir)) {
+            return null;
+        }
+        try {
+            tree = tree == null ? record(rootDir, recordedEntries) : refresh(tree, rootDir, changes, recordedEntries);
+        } catch (GradleException e) {
+            // Let the file system walk report the problem, if the caller's spec includes the offending file
+            LOGGER.debug("Could not retain the contents of {}.", rootDir, e);
+            tree = null;
+        }
+
+        synchronized (lock) {
+            RetainedTree previous = retainedTrees.remove(rootDir);
+            if (previous != null) {
+                retainedEntries -= previous.entries;
+            }
+            if (tree == null || stopped || generation != currentGeneration || !changedDirectories.containsKey(rootDir)) {
+                // Not retainable, or the watcher lost track of changes while the tree was being walked
+                return tree;
+            }
+            int entries = countEntries(tree);
+            if (retainedEntries + entries <= maxRetainedEntries) {
+                retainedTrees.put(rootDir, new RetainedTree(tree, entries));
+                retainedEntries += entries;
+            } else {
+                LOGGER.debug("Not retaining the contents of {}, as that would exceed the limit of {} retained files.", rootDir, maxRetainedEntries);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Waits until the watcher has reported every change made before now, when the given root has a retained tree and the retained trees have not
+     * caught up with the watcher yet in this build. Discards all retained trees when that cannot be confirmed. Returns false when the walker has been stopped.
+     */
+    private boolean awaitPendingEvents(File rootDir) {
+        synchronized (syncLock) {
+            synchronized (lock) {
+                if (stopped) {
+                    return false;
+                }
+                if (synced || !retainedTrees.containsKey(rootDir)) {
+                    return true;
+                }
+            }
+            boolean confirmed = sync();
+            synchronized (lock) {
+                if (!confirmed) {
+                    LOGGER.debug("Could not confirm that all file changes have been reported, walking retained trees again.");
+                    retainedTrees.clear();
+                    retainedEntries = 0;
+                }
+                // When the trees are discarded, they are read from the file system again before they are used
+                synced = true;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Creates a marker file in the sync directory and waits for the watcher to report it. Returns false when it is not reported in time.
+     */
+    private boolean sync() {
+        File dir = getSyncDir();
+        if (dir == null) {
+            return false;
+        }
+        File syncFile = new File(dir, "sync-" + syncFileCounter.incrementAndGet());
+        CountDownLatch received = new CountDownLatch(1);
+        synchronized (lock) {
+            pendingSyncFiles.put(syncFile, received);
+        }
+        try {
+            if (syncFile.createNewFile()) {
+                try {
+                    return received.await(syncTimeoutMillis, TimeUnit.MILLISECONDS);
+                } finally {
+                    syncFile.delete();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not create {} to wait for pending file changes.", syncFile, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (lock) {
+                pendingSyncFiles.remove(syncFile);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the watched directory that holds the marker files, creating it when required. Returns null when it cannot be watched.
+     */
+    private File getSyncDir() {
+        FileWatcher watcher;
+        synchronized (lock) {
+            if (stopped || syncDir != null) {
+                return syncDir;
+            }
+            watcher = getWatcher();
+        }
+        File dir = temporaryFileProvider.createTemporaryDirectory("gradle-watch-sync", null);
+        try {
+            watcher.watch(FileSystemSubset.builder().add(dir).build());
+        } catch (IOException e) {
+            LOGGER.debug("Could not watch {} for changes.", dir, e);
+            GFileUtils.deleteQuietly(dir);
+            return null;
+        }
+        synchronized (lock) {
+            syncDir = dir;
+        }
+        return dir;
+    }
+
+    private FileWatcher getWatcher() {
+        if (fileWatcher == null) {
+            fileWatcher = fileWatcherFactory.watch(new Action<Throwable>() {
+                @Override
+                public void execute(Throwable throwable) {
+                    LOGGER.info("Watching for file changes failed, no longer retaining file trees.", throwable);
+                    stop();
+                }
+            }, this);
+        }
+        return fileWatcher;
+    }
+
+    private boolean watch(File rootDir) {
+        FileWatcher watcher;
+        synchronized (lock) {
+            watcher = getWatcher();
+        }
+        try {
+            // Start watching before walking, so that no change made during the walk is missed
+            watcher.watch(FileSystemSubset.builder().add(rootDir).build());
+        } catch (IOException e) {
+            LOGGER.debug("Could not watch {} for changes.", rootDir, e);
+            return false;
+        }
+        synchronized (lock) {
+            if (!changedDirectories.containsKey(rootDir)) {
+                changedDirectories.put(rootDir, new HashSet<File>());
+            }
+        }
+        return true;
+    }
+
+    private Node refresh(Node tree, File rootDir, List<File> changes, AtomicInteger recordedEntries) {
+        // Refresh ancestors first, and skip any directory that sits below one that has already been walked again
+        Collections.sort(changes);
+        List<String> refreshedPrefixes = new ArrayList<String>();
+        for (File changedDir : changes) {
+            String path = changedDir.getPath() + File.separator;
+            if (startsWithAny(path, refreshedPrefixes)) {
+                continue;
+            }
+            if (changedDir.equals(rootDir)) {
+                return record(rootDir, recordedEntries);
+            }
+            String relativePath = changedDir.getPath().substring(rootDir.getPath().length() + 1);
+            tree = refresh(tree, rootDir, relativePath.split(Pattern.quote(File.separator)), 0, recordedEntries);
+            if (tree == null) {
+                return null;
+            }
+            refreshedPrefixes.add(path);
+        }
+        return tree;
+    }
+
+    private Node refresh(Node dir, File dirFile, String[] segments, int index, AtomicInteger recordedEntries) {
+        if (index == segments.length) {
+            return record(dirFile, recordedEntries);
+        }
+        for (int i = 0; i < dir.children.size(); i++) {
+            Node child = dir.children.get(i);
+            if (child.directory && child.name.equals(segments[index])) {
+                Node refreshedChild = refresh(child, new File(dirFile, child.name), segments, index + 1, recordedEntries);
+                return refreshedChild == null ? null : dir.withChild(i, refreshedChild);
+            }
+        }
+        // Not part of the tree yet, so the change has already been picked up by walking one of its ancestors again
+        return dir;
+    }
+
+    private static boolean startsWithAny(String path, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the given directory in full and returns its contents, or null when it cannot be retained.
+     */
+    private Node record(File dir, AtomicInteger recordedEntries) {
+        RecordingVisitor recorder = new RecordingVisitor(dir, recordedEntries);
+        delegate.walkDir(dir, new RelativePath(false), recorder, Specs.<FileTreeElement>satisfyAll(), new AtomicBoolean(), false);
+        return recorder.containsSymlinks ? null : recorder.root;
+    }
+
+    private static int countEntries(Node dir) {
+        int count = dir.children.size();
+        for (Node child : dir.children) {
+            if (child.directory) {
+                count += countEntries(child);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+        synchronized (lock) {
+            if (event.getType() == FileWatcherEvent.Type.UNDEFINED || event.getFile() == null) {
+                overflows.incrementAndGet();
+                retainedTrees.clear();
+                retainedEntries = 0;
+                generation++;
+                return;
+            }
+            File file = event.getFile();
+            if (syncDir != null && syncDir.equals(file.getParentFile())) {
+                CountDownLatch received = pendingSyncFiles.get(file);
+                if (received != null) {
+                    received.countDown();
+                }
+                return;
+            }
+            String pathWithSeparator = file.getPath() + File.separator;
+            Iterator<Map.Entry<File, Set<File>>> iterator = changedDirectories.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<File, Set<File>> entry = iterator.next();
+                File rootDir = entry.getKey();
+                String rootPathWithSeparator = rootDir.getPath() + File.separator;
+                if (rootPathWithSeparator.startsWith(pathWithSeparator)) {
+                    // The root itself, or one of its ancestors, changed. Forget about it, so that it gets watched again when next walked
+                    RetainedTree removed = retainedTrees.remove(rootDir);
+                    if (removed != null) {
+                        retainedEntries -= removed.entries;
+                    }
+                    iterator.remove();
+                } else if (pathWithSeparator.startsWith(rootPathWithSeparator)) {
+                    entry.getValue().add(file.getParentFile());
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the start of a build. Each retained tree waits for the watcher to report pending changes before it is next used.
+     */
+    public void buildStarted() {
+        synchronized (lock) {
+            synced = false;
+        }
+    }
+
+    public void resetStatistics() {
+        walks.set(0);
+        avoidedStatCalls.set(0);
+        overflows.set(0);
+    }
+
+    /**
+     * Returns the number of walks that were served from retained trees since the statistics were last reset.
+     */
+    public int getWalkCount() {
+        return walks.get();
+    }
+
+    /**
+     * Returns the number of file system entries that were visited from retained trees, rather than by querying the file system, since the statistics were last reset.
+     */
+    public long getAvoidedStatCalls() {
+        return avoidedStatCalls.get();
+    }
+
+    public int getOverflowCount() {
+        return overflows.get();
+    }
+
+    @Override
+    public void stop() {
+        FileWatcher watcher;
+        File dir;
+        synchronized (lock) {
+            stopped = true;
+            retainedTrees.clear();
+            changedDirectories.clear();
+            retainedEntries = 0;
+            watcher = fileWatcher;
+            fileWatcher = null;
+            dir = syncDir;
+            syncDir = null;
+        }
+        CompositeStoppable.stoppable(watcher, delegate).stop();
+        if (dir != null) {
+            GFileUtils.deleteQuietly(dir);
+        }
+    }
+
+    private static class RetainedTree {
+        private final Node root;
+        private final int entries;
+
+        RetainedTree(Node root, int entries) {
+            this.root = root;
+            this.entries = entries;
+        }
+    }
+
+    private static class Node {
+        private final String name;
+        private final boolean directory;
+        private final long lastModified;
+        private final long length;
+        private final List<Node> children;
+
+        Node(String name, boolean directory, long lastModified, long length, List<Node> children) {
+            this.name = name;
+            this.directory = directory;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.children = children;
+        }
+
+        Node withChild(int index, Node child) {
+            List<Node> newChildren = new ArrayList<Node>(children);
+            newChildren.set(index, child);
+            return new Node(name, directory, lastModified, length, newChildren);
+        }
+    }
+
+    private class RecordingVisitor implements FileVisitor {
+        private final Node root;
+        private final Map<RelativePath, Node> directories = new HashMap<RelativePath, Node>();
+        private final AtomicInteger recordedEntries;
+        private boolean containsSymlinks;
+
+        RecordingVisitor(File dir, AtomicInteger recordedEntries) {
+            this.root = new Node(dir.getName(), true, dir.lastModified(), 0, new ArrayList<Node>());
+            this.recordedEntries = recordedEntries;
+        }
+
+        @Override
+        public void visitDir(FileVisitDetails dirDetails) {
+            Node node = new Node(dirDetails.getName(), true, dirDetails.getLastModified(), 0, new ArrayList<Node>());
+            add(dirDetails, node);
+            directories.put(dirDetails.getRelativePath(), node);
+        }
+
+        @Override
+        public void visitFile(FileVisitDetails fileDetails) {
+            add(fileDetails, new Node(fileDetails.getName(), false, fileDetails.getLastModified(), fileDetails.getSize(), null));
+        }
+
+        private void add(FileVisitDetails details, Node node) {
+            if (fileSystem.isSymlink(details.getFile())) {
+                // Changes to the target of a link are not reported by the watcher
+                containsSymlinks = true;
+                details.stopVisiting();
+                return;
+            }
+            RelativePath parentPath = details.getRelativePath().getParent();
+            Node parent = parentPath == null || parentPath.getSegments().length == 0 ? root : directories.get(parentPath);
+            parent.children.add(node);
+            recordedEntries.incrementAndGet();
+        }
+    }
+}
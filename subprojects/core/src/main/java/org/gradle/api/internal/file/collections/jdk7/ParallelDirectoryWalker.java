@@ -0,0 +1,236 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.file.collections.jdk7;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.file.DefaultFileVisitDetails;
+import org.gradle.api.internal.file.collections.DirectoryWalker;
+import org.gradle.api.specs.Spec;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link DirectoryWalker} that reads directories in parallel, using an executor that is stopped along with the walker.
+ *
+ * <p>The subdirectories of a directory are read ahead while the visitor works through the directory, but the visitor itself is only
+ * ever called from the thread that started the walk. The entries of each directory are visited in order of their names, so the order
+ * of the visit is the same from one walk to the next. Includes and excludes are applied before a subdirectory is read, so excluded
+ * subtrees are never read.</p>
+ */
+public class ParallelDirectoryWalker implements DirectoryWalker, Stoppable {
+    private final FileSystem fileSystem;
+    private final StoppableExecutor executor;
+
+    public ParallelDirectoryWalker(FileSystem fileSystem, ExecutorFactory executorFactory) {
+        this.fileSystem = fileSystem;
+        this.executor = executorFactory.create("Directory walker", Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void walkDir(File rootDir, RelativePath rootPath, FileVisitor visitor, Spec<FileTreeElement> spec, AtomicBoolean stopFlag, boolean postfix) {
+        DirectoryScan rootScan = new DirectoryScan(rootDir.toPath());
+        executor.execute(rootScan);
+        Set<Object> ancestors = new HashSet<Object>();
+        Object rootKey = fileKey(rootDir.toPath());
+        if (rootKey != null) {
+            ancestors.add(rootKey);
+        }
+        visitDirectory(rootScan, rootPath, visitor, spec, stopFlag, postfix, ancestors);
+    }
+
+    private void visitDirectory(DirectoryScan scan, RelativePath path, FileVisitor visitor, Spec<FileTreeElement> spec, AtomicBoolean stopFlag, boolean postfix, Set<Object> ancestors) {
+        List<Entry> entries = scan.getEntries();
+        List<Entry> allowedEntries = new ArrayList<Entry>(entries.size());
+        List<FileVisitDetails> allowed = new ArrayList<FileVisitDetails>(entries.size());
+        List<DirectoryScan> subdirectoryScans = new ArrayList<DirectoryScan>();
+        try {
+            // Decide which entries to visit, and start reading the subdirectories that will be visited
+            for (Entry entry : entries) {
+                if (entry.directory && entry.fileKey != null && ancestors.contains(entry.fileKey)) {
+                    // A link back to one of the directories being walked
+                    continue;
+                }
+                File file = entry.path.toFile();
+                FileVisitDetails details = new DefaultFileVisitDetails(file, path.append(!entry.directory, file.getName()), stopFlag, fileSystem, fileSystem, entry.directory, entry.lastModified, entry.size);
+                if (!spec.isSatisfiedBy(details)) {
+                    continue;
+                }
+                if (entry.brokenLink) {
+                    throw new GradleException(String.format("Could not list contents of '%s'. Couldn't follow symbolic link.", file));
+                }
+                allowedEntries.add(entry);
+                allowed.add(details);
+                if (entry.directory) {
+                    DirectoryScan subdirectoryScan = new DirectoryScan(entry.path);
+                    executor.execute(subdirectoryScan);
+                    subdirectoryScans.add(subdirectoryScan);
+                }
+            }
+
+            int nextScan = 0;
+            for (int i = 0; i < allowed.size() && !stopFlag.get(); i++) {
+                FileVisitDetails details = allowed.get(i);
+                if (!details.isDirectory()) {
+                    visitor.visitFile(details);
+                    continue;
+                }
+                if (!postfix) {
+                    visitor.visitDir(details);
+                }
+                Entry entry = allowedEntries.get(i);
+                DirectoryScan subdirectoryScan = subdirectoryScans.get(nextScan++);
+                if (entry.fileKey != null) {
+                    ancestors.add(entry.fileKey);
+                }
+                try {
+                    visitDirectory(subdirectoryScan, details.getRelativePath(), visitor, spec, stopFlag, postfix, ancestors);
+                } finally {
+                    if (entry.fileKey != null) {
+                        ancestors.remove(entry.fileKey);
+                    }
+                }
+                if (postfix && !stopFlag.get()) {
+                    visitor.visitDir(details);
+                }
+            }
+        } finally {
+            // Stop reading ahead when the walk ends early
+            for (DirectoryScan subdirectoryScan : subdirectoryScans) {
+                subdirectoryScan.cancel(false);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        executor.stop();
+    }
+
+    private static Object fileKey(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        private final Path path;
+        private final boolean directory;
+        private final boolean brokenLink;
+        private final long lastModified;
+        private final long size;
+        private final Object fileKey;
+
+        Entry(Path path, boolean directory, boolean brokenLink, long lastModified, long size, Object fileKey) {
+            this.path = path;
+            this.directory = directory;
+            this.brokenLink = brokenLink;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.fileKey = fileKey;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            return path.getFileName().toString().compareTo(o.path.getFileName().toString());
+        }
+    }
+
+    /**
+     * Reads the entries of a single directory, along with their attributes, sorted by name.
+     */
+    private static class DirectoryScan extends FutureTask<List<Entry>> {
+        DirectoryScan(final Path dir) {
+            super(new Callable<List<Entry>>() {
+                @Override
+                public List<Entry> call() {
+                    return readEntries(dir);
+                }
+            });
+        }
+
+        /**
+         * Waits for the directory to be read, and rethrows any failure to read it.
+         */
+        List<Entry> getEntries() {
+            try {
+                return get();
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            } catch (ExecutionException e) {
+                throw UncheckedException.throwAsUncheckedException(e.getCause());
+            }
+        }
+
+        private static List<Entry> readEntries(Path dir) {
+            List<Entry> entries = new ArrayList<Entry>();
+            try {
+                DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+                try {
+                    for (Path path : stream) {
+                        entries.add(readEntry(path));
+                    }
+                } finally {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                throw new GradleException(String.format("Could not list contents of directory '%s'.", dir), e);
+            }
+            Collections.sort(entries);
+            return entries;
+        }
+
+        private static Entry readEntry(Path path) throws IOException {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                // Either removed while the directory was being read, or a link that points to nothing
+                attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                return new Entry(path, false, attrs.isSymbolicLink(), attrs.lastModifiedTime().toMillis(), attrs.size(), null);
+            }
+            return new Entry(path, attrs.isDirectory(), false, attrs.lastModifiedTime().toMillis(), attrs.size(), attrs.fileKey());
+        }
+    }
+}
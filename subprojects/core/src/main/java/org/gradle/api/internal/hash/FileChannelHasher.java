@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.os.OperatingSystem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link Hasher} that reads files through a {@link FileChannel} rather than a stream.
+ *
+ * <p>Small files are read with a single read into a buffer of the exact file size. Large files are memory mapped, region by region,
+ * except on Windows, where a mapped file cannot be deleted until the mapping is garbage collected, and which therefore uses buffered reads instead.</p>
+ */
+public class FileChannelHasher implements Hasher {
+    private static final int SMALL_FILE_SIZE = 128 * 1024;
+    private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final FileHashFunction hashFunction;
+    private final byte[] signature;
+    private final boolean useMemoryMapping;
+
+    public FileChannelHasher(FileHashFunction hashFunction) {
+        this(hashFunction, !OperatingSystem.current().isWindows());
+    }
+
+    FileChannelHasher(FileHashFunction hashFunction, boolean useMemoryMapping) {
+        this.hashFunction = hashFunction;
+        this.signature = hashFunction.getHashFunction().hashString(FileChannelHasher.class.getName(), Charsets.UTF_8).asBytes();
+        this.useMemoryMapping = useMemoryMapping;
+    }
+
+    @Override
+    public HashCode hash(File file) {
+        try {
+            FileInputStream input = new FileInputStream(file);
+            try {
+                return hash(input.getChannel());
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s'.", hashFunction.getId(), file), e);
+        }
+    }
+
+    private HashCode hash(FileChannel channel) throws IOException {
+        HashFunction function = hashFunction.getHashFunction();
+        com.google.common.hash.Hasher hasher = function.newHasher();
+        hasher.putBytes(signature);
+        long size = channel.size();
+        if (size <= SMALL_FILE_SIZE) {
+            byte[] contents = new byte[(int) size];
+            ByteBuffer buffer = ByteBuffer.wrap(contents);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the buffer is full
+            }
+            hasher.putBytes(contents, 0, buffer.position());
+            if (!buffer.hasRemaining()) {
+                // The file may have grown since its size was queried
+                hashRemaining(channel, hasher);
+            }
+        } else if (useMemoryMapping) {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+                while (region.hasRemaining()) {
+                    int length = Math.min(chunk.length, region.remaining());
+                    region.get(chunk, 0, length);
+                    hasher.putBytes(chunk, 0, length);
+                }
+            }
+        } else {
+            hashRemaining(channel, hasher);
+        }
+        return hasher.hash();
+    }
+
+    private static void hashRemaining(FileChannel channel, com.google.common.hash.Hasher hasher) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        int read;
+        while ((read = channel.read(buffer)) >= 0) {
+            hasher.putBytes(chunk, 0, read);
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Locale;
+
+/**
+ * The hash functions that can be used to hash the content of files for up-to-date checks.
+ */
+public enum FileHashFunction {
+    MD5(Hashing.md5()),
+    SHA1(Hashing.sha1()),
+    MURMUR3_128(Hashing.murmur3_128());
+
+    private final HashFunction hashFunction;
+
+    FileHashFunction(HashFunction hashFunction) {
+        this.hashFunction = hashFunction;
+    }
+
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    public String getId() {
+        return name().toLowerCase(Locale.US);
+    }
+
+    public static FileHashFunction forId(String id) {
+        for (FileHashFunction function : values()) {
+            if (function.getId().equals(id)) {
+                return function;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown file hash function '%s'. Supported functions are md5, sha1 and murmur3_128.", id));
+    }
+}
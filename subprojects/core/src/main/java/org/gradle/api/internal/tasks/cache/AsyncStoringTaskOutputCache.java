@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import com.google.common.io.Files;
+import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.util.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores task outputs in the background, so that a slow cache backend does not hold up task execution.
+ *
+ * <p>The outputs are first written to a temporary file on the calling thread, so that tasks running later cannot change what is stored.
+ * The temporary file is then stored in the backing cache by a bounded pool of threads. When too many entries are waiting to be stored,
+ * the calling thread blocks until one of them is done. Closing the cache waits for all pending entries to be stored.</p>
+ *
+ * <p>Failures to store an entry are logged, and do not fail the build.</p>
+ */
+public class AsyncStoringTaskOutputCache implements TaskOutputCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncStoringTaskOutputCache.class);
+
+    private final TaskOutputCache delegate;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final StoppableExecutor executor;
+    private final Semaphore pendingStores;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicInteger storedEntries = new AtomicInteger();
+    private final AtomicInteger failedEntries = new AtomicInteger();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong storeTime = new AtomicLong();
+
+    public AsyncStoringTaskOutputCache(TaskOutputCache delegate, TemporaryFileProvider temporaryFileProvider, ExecutorFactory executorFactory, int threads, int maxPendingStores) {
+        this.delegate = delegate;
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.executor = executorFactory.create("Task output cache store", threads);
+        this.pendingStores = new Semaphore(maxPendingStores);
+    }
+
+    @Override
+    public boolean load(TaskCacheKey key, TaskOutputReader reader) throws IOException {
+        return delegate.load(key, reader);
+    }
+
+    @Override
+    public void store(final TaskCacheKey key, TaskOutputWriter writer) throws IOException {
+        final File snapshot = temporaryFileProvider.createTemporaryFile("task-output", ".bin");
+        try {
+            OutputStream output = new FileOutputStream(snapshot);
+            try {
+                writer.writeTo(output);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            deleteSnapshot(snapshot);
+            throw e;
+        } catch (RuntimeException e) {
+            deleteSnapshot(snapshot);
+            throw e;
+        }
+
+        acquirePendingStore();
+        updateMaxQueueDepth(queueDepth.incrementAndGet());
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        storeSnapshot(key, snapshot);
+                    } finally {
+                        queueDepth.decrementAndGet();
+                        pendingStores.release();
+                        deleteSnapshot(snapshot);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            queueDepth.decrementAndGet();
+            pendingStores.release();
+            deleteSnapshot(snapshot);
+            throw e;
+        }
+    }
+
+    private void storeSnapshot(TaskCacheKey key, final File snapshot) {
+        Clock clock = new Clock();
+        try {
+            delegate.store(key, new TaskOutputWriter() {
+                @Override
+                public void writeTo(OutputStream output) throws IOException {
+                    Files.copy(snapshot, output);
+                }
+            });
+            storedEntries.incrementAndGet();
+            storedBytes.addAndGet(snapshot.length());
+            LOGGER.info("Stored cache entry for key {} in {} (took {}).", key.getHashCode(), delegate.getDescription(), clock.getTime());
+        } catch (Exception e) {
+            failedEntries.incrementAndGet();
+            LOGGER.warn("Could not store cache entry for key {} in {}", key.getHashCode(), delegate.getDescription(), e);
+        } finally {
+            storeTime.addAndGet(clock.getTimeInMs());
+        }
+    }
+
+    private void acquirePendingStore() throws IOException {
+        try {
+            pendingStores.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to store task output in cache", e);
+        }
+    }
+
+    private void updateMaxQueueDepth(int depth) {
+        while (true) {
+            int max = maxQueueDepth.get();
+            if (depth <= max || maxQueueDepth.compareAndSet(max, depth)) {
+                return;
+            }
+        }
+    }
+
+    private static void deleteSnapshot(File snapshot) {
+        if (snapshot.exists() && !snapshot.delete()) {
+            LOGGER.debug("Could not delete temporary file {}", snapshot);
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            executor.stop();
+            if (storedEntries.get() > 0 || failedEntries.get() > 0) {
+                LOGGER.info("Stored {} entries ({} bytes) in {}, spent {} ms storing entries, maximum queue depth was {}, {} entries could not be stored.",
+                    storedEntries.get(), storedBytes.get(), delegate.getDescription(), storeTime.get(), maxQueueDepth.get(), failedEntries.get());
+            }
+        } finally {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import org.gradle.api.internal.TaskOutputsInternal;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Packs task outputs with the packer selected for the build, and unpacks them with the packer matching the format of the cached entry.
+ * This way entries stored by builds using a different format can still be used.
+ */
+public class FormatDetectingTaskOutputPacker implements TaskOutputPacker {
+    private final TaskOutputPacker packer;
+    private final ZipTaskOutputPacker zipPacker;
+    private final TarTaskOutputPacker tarPacker;
+
+    public FormatDetectingTaskOutputPacker(TaskOutputPacker packer, ZipTaskOutputPacker zipPacker, TarTaskOutputPacker tarPacker) {
+        this.packer = packer;
+        this.zipPacker = zipPacker;
+        this.tarPacker = tarPacker;
+    }
+
+    @Override
+    public void pack(TaskOutputsInternal taskOutputs, OutputStream output) throws IOException {
+        packer.pack(taskOutputs, output);
+    }
+
+    @Override
+    public void unpack(TaskOutputsInternal taskOutputs, InputStream input) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input);
+        byte[] header = new byte[TarTaskOutputPacker.HEADER.length];
+        bufferedInput.mark(header.length);
+        int read = 0;
+        while (read < header.length) {
+            int count = bufferedInput.read(header, read, header.length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        bufferedInput.reset();
+        if (read == header.length && TarTaskOutputPacker.isTarTaskOutput(header)) {
+            tarPacker.unpack(taskOutputs, bufferedInput);
+        } else {
+            zipPacker.unpack(taskOutputs, bufferedInput);
+        }
+    }
+}
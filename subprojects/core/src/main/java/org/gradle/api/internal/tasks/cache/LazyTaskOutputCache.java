@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import org.gradle.internal.Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Creates the actual cache backend on first use, as the backend is only configured once the build has started.
+ * Closing this cache closes the backend, if it was created.
+ */
+public class LazyTaskOutputCache implements TaskOutputCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LazyTaskOutputCache.class);
+
+    private final Factory<? extends TaskOutputCache> factory;
+    private TaskOutputCache delegate;
+
+    public LazyTaskOutputCache(Factory<? extends TaskOutputCache> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public boolean load(TaskCacheKey key, TaskOutputReader reader) throws IOException {
+        return getDelegate().load(key, reader);
+    }
+
+    @Override
+    public void store(TaskCacheKey key, TaskOutputWriter output) throws IOException {
+        getDelegate().store(key, output);
+    }
+
+    @Override
+    public String getDescription() {
+        return getDelegate().getDescription();
+    }
+
+    private synchronized TaskOutputCache getDelegate() {
+        if (delegate == null) {
+            delegate = factory.create();
+            LOGGER.info("Using {}", delegate.getDescription());
+        }
+        return delegate;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (delegate != null) {
+            delegate.close();
+            delegate = null;
+        }
+    }
+}
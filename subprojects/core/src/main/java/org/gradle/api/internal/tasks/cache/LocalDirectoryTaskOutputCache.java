@@ -17,17 +17,48 @@
 package org.gradle.api.internal.tasks.cache;
 
 import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.FileLockManager;
+import org.gradle.internal.Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * A task output cache backed by a local directory, which can be shared by multiple processes.
+ *
+ * <p>Entries are written to a temporary file first, and moved into place while holding the cache lock, so that readers never see partially written entries.
+ * The last modified time of an entry is updated whenever it is loaded, and the least recently used entries are removed once the cache grows beyond its target size.</p>
+ */
 public class LocalDirectoryTaskOutputCache implements TaskOutputCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalDirectoryTaskOutputCache.class);
+    private static final Pattern CACHE_ENTRY_NAME = Pattern.compile("\\p{XDigit}{32}");
+    private static final String TEMP_FILE_SUFFIX = ".part";
+    private static final long STALE_TEMP_FILE_AGE = TimeUnit.HOURS.toMillis(1);
+
     private final File directory;
+    private final long targetSizeInBytes;
+    private final PersistentCache persistentCache;
+    private final AtomicLong bytesStoredSinceCleanup = new AtomicLong();
 
-    public LocalDirectoryTaskOutputCache(File directory) {
+    public LocalDirectoryTaskOutputCache(CacheRepository cacheRepository, File directory, long targetSizeInBytes) {
         if (directory.exists()) {
             if (!directory.isDirectory()) {
                 throw new IllegalArgumentException(String.format("Cache directory %s must be a directory", directory));
@@ -43,32 +74,82 @@ public class LocalDirectoryTaskOutputCache implements TaskOutputCache {
                 throw new UncheckedIOException(String.format("Could not create cache directory: %s", directory));
             }
         }
+        if (targetSizeInBytes <= 0) {
+            throw new IllegalArgumentException(String.format("Target size of cache directory %s must be positive", directory));
+        }
         this.directory = directory;
+        this.targetSizeInBytes = targetSizeInBytes;
+        this.persistentCache = cacheRepository
+            .cache(directory)
+            .withCrossVersionCache()
+            .withDisplayName("Task output cache")
+            .withLockOptions(mode(FileLockManager.LockMode.None)) // Lock on demand
+            .open();
     }
 
     @Override
-    public boolean load(TaskCacheKey key, TaskOutputReader reader) throws IOException {
-        final File file = getFile(key.getHashCode());
-        if (file.isFile()) {
-            FileInputStream stream = new FileInputStream(file);
-            try {
-                reader.readFrom(stream);
-                return true;
-            } finally {
-                stream.close();
+    public boolean load(final TaskCacheKey key, TaskOutputReader reader) throws IOException {
+        // Open the entry while holding the lock, so that it cannot be removed before we start reading it.
+        // Entries are never modified in place, so the actual reading can happen without the lock.
+        InputStream stream = persistentCache.useCache("load task output from cache", new Factory<InputStream>() {
+            @Override
+            public InputStream create() {
+                File file = getFile(key.getHashCode());
+                if (!file.isFile()) {
+                    return null;
+                }
+                try {
+                    FileInputStream stream = new FileInputStream(file);
+                    markAccessed(file);
+                    return stream;
+                } catch (FileNotFoundException e) {
+                    return null;
+                }
             }
+        });
+        if (stream == null) {
+            return false;
+        }
+        try {
+            reader.readFrom(stream);
+            return true;
+        } finally {
+            stream.close();
         }
-        return false;
     }
 
     @Override
-    public void store(TaskCacheKey key, TaskOutputWriter result) throws IOException {
-        File file = getFile(key.getHashCode());
-        OutputStream output = new FileOutputStream(file);
+    public void store(final TaskCacheKey key, TaskOutputWriter result) throws IOException {
+        final File tempFile = File.createTempFile(key.getHashCode(), TEMP_FILE_SUFFIX, directory);
         try {
-            result.writeTo(output);
+            OutputStream output = new FileOutputStream(tempFile);
+            try {
+                result.writeTo(output);
+            } finally {
+                output.close();
+            }
+            final long size = tempFile.length();
+            persistentCache.useCache("store task output in cache", new Runnable() {
+                @Override
+                public void run() {
+                    File file = getFile(key.getHashCode());
+                    if (file.isFile()) {
+                        // Entries with the same key have the same contents, keep the existing one
+                        markAccessed(file);
+                        return;
+                    }
+                    if (!tempFile.renameTo(file)) {
+                        throw new UncheckedIOException(String.format("Could not move temporary cache entry %s to %s", tempFile, file));
+                    }
+                    if (bytesStoredSinceCleanup.addAndGet(size) > targetSizeInBytes / 10) {
+                        cleanup();
+                    }
+                }
+            });
         } finally {
-            output.close();
+            if (tempFile.exists() && !tempFile.delete()) {
+                LOGGER.debug("Could not remove temporary cache entry {}", tempFile);
+            }
         }
     }
 
@@ -76,8 +157,93 @@ public class LocalDirectoryTaskOutputCache implements TaskOutputCache {
         return new File(directory, key);
     }
 
+    private static void markAccessed(File file) {
+        // Using the last modified time to track access is cheap, and does not depend on the file system recording access times
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            LOGGER.debug("Could not update last modified time of cache entry {}", file);
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the cache fits its target size, along with any temporary files left behind by crashed processes.
+     * Must be called while holding the cache lock.
+     */
+    private void cleanup() {
+        bytesStoredSinceCleanup.set(0);
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long totalSize = 0;
+        List<CacheEntry> entries = new ArrayList<CacheEntry>(files.length);
+        for (File file : files) {
+            String name = file.getName();
+            if (CACHE_ENTRY_NAME.matcher(name).matches()) {
+                CacheEntry entry = new CacheEntry(file);
+                entries.add(entry);
+                totalSize += entry.size;
+            } else if (name.endsWith(TEMP_FILE_SUFFIX) && file.lastModified() < now - STALE_TEMP_FILE_AGE) {
+                if (!file.delete()) {
+                    LOGGER.debug("Could not remove stale temporary cache entry {}", file);
+                }
+            }
+        }
+        if (totalSize <= targetSizeInBytes) {
+            return;
+        }
+
+        CacheEntry[] sortedEntries = entries.toArray(new CacheEntry[0]);
+        Arrays.sort(sortedEntries, CacheEntry.LEAST_RECENTLY_USED_FIRST);
+        int removed = 0;
+        for (CacheEntry entry : sortedEntries) {
+            if (totalSize <= targetSizeInBytes) {
+                break;
+            }
+            // Removing an entry that is currently being read might fail on some platforms, so just skip it
+            if (entry.file.delete()) {
+                totalSize -= entry.size;
+                removed++;
+            }
+        }
+        LOGGER.info("Removed {} least recently used entries from {}, cache size is now {} bytes.", removed, getDescription(), totalSize);
+    }
+
     @Override
     public String getDescription() {
         return "local directory cache in " + directory;
     }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            persistentCache.useCache("clean up task output cache", new Runnable() {
+                @Override
+                public void run() {
+                    cleanup();
+                }
+            });
+        } finally {
+            persistentCache.close();
+        }
+    }
+
+    private static class CacheEntry {
+        private static final Comparator<CacheEntry> LEAST_RECENTLY_USED_FIRST = new Comparator<CacheEntry>() {
+            @Override
+            public int compare(CacheEntry o1, CacheEntry o2) {
+                return o1.lastModified < o2.lastModified ? -1 : (o1.lastModified == o2.lastModified ? 0 : 1);
+            }
+        };
+
+        private final File file;
+        private final long size;
+        private final long lastModified;
+
+        CacheEntry(File file) {
+            this.file = file;
+            this.size = file.length();
+            this.lastModified = file.lastModified();
+        }
+    }
 }
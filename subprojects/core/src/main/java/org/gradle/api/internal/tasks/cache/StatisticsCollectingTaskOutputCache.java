@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import org.gradle.util.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts hits, misses and stores of a cache, along with the time spent loading and storing entries. The statistics are logged when the cache is closed.
+ */
+public class StatisticsCollectingTaskOutputCache implements TaskOutputCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsCollectingTaskOutputCache.class);
+
+    private final TaskOutputCache delegate;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger stores = new AtomicInteger();
+    private final AtomicLong loadTime = new AtomicLong();
+    private final AtomicLong storeTime = new AtomicLong();
+
+    public StatisticsCollectingTaskOutputCache(TaskOutputCache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean load(TaskCacheKey key, TaskOutputReader reader) throws IOException {
+        Clock clock = new Clock();
+        boolean success = false;
+        try {
+            boolean found = delegate.load(key, reader);
+            (found ? hits : misses).incrementAndGet();
+            success = true;
+            return found;
+        } finally {
+            if (!success) {
+                failures.incrementAndGet();
+            }
+            loadTime.addAndGet(clock.getTimeInMs());
+        }
+    }
+
+    @Override
+    public void store(TaskCacheKey key, TaskOutputWriter writer) throws IOException {
+        Clock clock = new Clock();
+        boolean success = false;
+        try {
+            delegate.store(key, writer);
+            stores.incrementAndGet();
+            success = true;
+        } finally {
+            if (!success) {
+                failures.incrementAndGet();
+            }
+            storeTime.addAndGet(clock.getTimeInMs());
+        }
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public int getStores() {
+        return stores.get();
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (hits.get() + misses.get() + stores.get() + failures.get() > 0) {
+                int loads = hits.get() + misses.get();
+                LOGGER.info("{}: {} hits, {} misses, {} ms average load time, {} stores, {} ms average store time, {} failures.",
+                    delegate.getDescription(), hits.get(), misses.get(), average(loadTime.get(), loads), stores.get(), average(storeTime.get(), stores.get()), failures.get());
+            }
+        } finally {
+            delegate.close();
+        }
+    }
+
+    private static long average(long total, int count) {
+        return count == 0 ? 0 : total / count;
+    }
+}
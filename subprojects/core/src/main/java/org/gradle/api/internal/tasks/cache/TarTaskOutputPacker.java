@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import com.google.common.base.Function;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+import org.apache.tools.tar.TarOutputStream;
+import org.apache.tools.zip.UnixStat;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
+import org.gradle.api.internal.TaskOutputsInternal;
+import org.gradle.api.internal.file.collections.DirectoryFileTree;
+import org.gradle.api.internal.tasks.TaskFilePropertySpec;
+import org.gradle.api.internal.tasks.TaskOutputFilePropertySpec;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Packs task outputs into a single deflate compressed tar stream, using the fastest compression level.
+ *
+ * <p>Compared to {@link ZipTaskOutputPacker}, entries are compressed as one stream instead of one by one, and the Unix mode and
+ * last modified time of each file are recorded. The Unix mode is restored when unpacking.</p>
+ *
+ * <p>The stream starts with a {@link #HEADER header} that identifies the format, so that entries can be told apart from zip entries.</p>
+ */
+public class TarTaskOutputPacker implements TaskOutputPacker {
+    static final byte[] HEADER = new byte[]{'G', 'T', 'O', 'C', 1};
+    private static final Pattern PROPERTY_PATH = Pattern.compile("property-([^/]+)(?:/(.*))?");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileSystem fileSystem;
+
+    public TarTaskOutputPacker(FileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    /**
+     * Returns whether the given header was written by this packer.
+     */
+    static boolean isTarTaskOutput(byte[] header) {
+        return Arrays.equals(HEADER, header);
+    }
+
+    @Override
+    public void pack(TaskOutputsInternal taskOutputs, OutputStream output) throws IOException {
+        output.write(HEADER);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(output, deflater, BUFFER_SIZE);
+            TarOutputStream tarOutput = new TarOutputStream(deflaterOutput);
+            tarOutput.setLongFileMode(TarOutputStream.LONGFILE_GNU);
+            for (TaskOutputFilePropertySpec propertySpec : taskOutputs.getFileProperties()) {
+                String propertyName = propertySpec.getPropertyName();
+                File outputFile = propertySpec.getOutputFile();
+                switch (propertySpec.getOutputType()) {
+                    case DIRECTORY:
+                        packDirectory("property-" + propertyName + "/", outputFile, tarOutput);
+                        break;
+                    case FILE:
+                        packFile("property-" + propertyName, outputFile, tarOutput);
+                        break;
+                    default:
+                        throw new AssertionError();
+                }
+            }
+            tarOutput.finish();
+            deflaterOutput.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void packDirectory(final String propertyRoot, File directory, final TarOutputStream tarOutput) throws IOException {
+        TarEntry rootEntry = new TarEntry(propertyRoot);
+        rootEntry.setMode(UnixStat.DIR_FLAG | (directory.isDirectory() ? fileSystem.getUnixMode(directory) : FileSystem.DEFAULT_DIR_MODE));
+        rootEntry.setModTime(directory.lastModified());
+        tarOutput.putNextEntry(rootEntry);
+        tarOutput.closeEntry();
+        new DirectoryFileTree(directory).visit(new FileVisitor() {
+            @Override
+            public void visitDir(FileVisitDetails dirDetails) {
+                try {
+                    // Trailing slash on name indicates entry is a directory
+                    TarEntry entry = new TarEntry(propertyRoot + dirDetails.getRelativePath().getPathString() + "/");
+                    entry.setMode(UnixStat.DIR_FLAG | dirDetails.getMode());
+                    entry.setModTime(dirDetails.getLastModified());
+                    tarOutput.putNextEntry(entry);
+                    tarOutput.closeEntry();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                try {
+                    TarEntry entry = new TarEntry(propertyRoot + fileDetails.getRelativePath().getPathString());
+                    entry.setMode(UnixStat.FILE_FLAG | fileDetails.getMode());
+                    entry.setModTime(fileDetails.getLastModified());
+                    entry.setSize(fileDetails.getSize());
+                    tarOutput.putNextEntry(entry);
+                    fileDetails.copyTo(tarOutput);
+                    tarOutput.closeEntry();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    private void packFile(String name, File file, TarOutputStream tarOutput) throws IOException {
+        TarEntry entry = new TarEntry(name);
+        entry.setMode(UnixStat.FILE_FLAG | fileSystem.getUnixMode(file));
+        entry.setModTime(file.lastModified());
+        entry.setSize(file.length());
+        tarOutput.putNextEntry(entry);
+        Files.copy(file, tarOutput);
+        tarOutput.closeEntry();
+    }
+
+    @Override
+    public void unpack(TaskOutputsInternal taskOutputs, InputStream input) throws IOException {
+        byte[] header = new byte[HEADER.length];
+        ByteStreams.readFully(input, header);
+        if (!isTarTaskOutput(header)) {
+            throw new IllegalStateException("Cached task output is not in the expected format");
+        }
+        Map<String, TaskOutputFilePropertySpec> propertySpecs = Maps.uniqueIndex(taskOutputs.getFileProperties(), new Function<TaskFilePropertySpec, String>() {
+            @Override
+            public String apply(TaskFilePropertySpec propertySpec) {
+                return propertySpec.getPropertyName();
+            }
+        });
+        Inflater inflater = new Inflater();
+        try {
+            TarInputStream tarInput = new TarInputStream(new InflaterInputStream(input, inflater, BUFFER_SIZE));
+            TarEntry entry;
+            while ((entry = tarInput.getNextEntry()) != null) {
+                String name = entry.getName();
+                Matcher matcher = PROPERTY_PATH.matcher(name);
+                if (!matcher.matches()) {
+                    throw new IllegalStateException(String.format("Cached task output contains unexpected entry '%s'", name));
+                }
+                String propertyName = matcher.group(1);
+                TaskOutputFilePropertySpec propertySpec = propertySpecs.get(propertyName);
+                if (propertySpec == null) {
+                    throw new IllegalStateException(String.format("No output property '%s' registered", propertyName));
+                }
+
+                String path = matcher.group(2);
+                File outputFile;
+                if (Strings.isNullOrEmpty(path)) {
+                    outputFile = propertySpec.getOutputFile();
+                } else {
+                    outputFile = new File(propertySpec.getOutputFile(), path);
+                }
+                if (entry.isDirectory()) {
+                    if (propertySpec.getOutputType() != TaskOutputFilePropertySpec.OutputType.DIRECTORY) {
+                        throw new IllegalStateException("Property should be an output directory property: " + propertyName);
+                    }
+                    FileUtils.forceMkdir(outputFile);
+                } else {
+                    Files.createParentDirs(outputFile);
+                    Files.asByteSink(outputFile).writeFrom(tarInput);
+                }
+                fileSystem.chmod(outputFile, entry.getMode() & 0777);
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -16,12 +16,13 @@
 
 package org.gradle.api.internal.tasks.cache;
 
+import java.io.Closeable;
 import java.io.IOException;
 
 /**
  * Cache protocol interface to be implemented by task output cache backends.
  */
-public interface TaskOutputCache {
+public interface TaskOutputCache extends Closeable {
     /**
      * Load the cached task output corresponding to the given task cache key. The {@code reader} will be called if an entry is found in the cache.
      * @param key the cache key.
@@ -43,4 +44,11 @@ public interface TaskOutputCache {
      * Returns a description for the cache.
      */
     String getDescription();
+
+    /**
+     * Releases any resources held by the cache. Called at the end of the build.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    void close() throws IOException;
 }
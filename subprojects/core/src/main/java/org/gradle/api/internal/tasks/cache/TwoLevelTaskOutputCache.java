@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import com.google.common.io.ByteStreams;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A cache that combines a fast local cache with a shared remote cache.
+ *
+ * <p>Entries are loaded from the local cache first. Entries found only in the remote cache are copied into the local cache before they are used.
+ * Entries are always stored in the local cache, and are copied to the remote cache when pushing is enabled.</p>
+ *
+ * <p>Entries copied between the caches are read back from the local cache without going through any statistics collected for it, so that each load or store
+ * is only counted once. A failure to copy an entry loaded from the remote cache is reported as a failure of the local cache.</p>
+ */
+public class TwoLevelTaskOutputCache implements TaskOutputCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TwoLevelTaskOutputCache.class);
+
+    private final TaskOutputCache local;
+    private final TaskOutputCache localEntries;
+    private final TaskOutputCache remote;
+    private final boolean pushToRemote;
+
+    /**
+     * @param local the local cache, possibly collecting statistics.
+     * @param localEntries the same local cache without any statistics collected for it, used to read back entries copied between the caches.
+     */
+    public TwoLevelTaskOutputCache(TaskOutputCache local, TaskOutputCache localEntries, TaskOutputCache remote, boolean pushToRemote) {
+        this.local = local;
+        this.localEntries = localEntries;
+        this.remote = remote;
+        this.pushToRemote = pushToRemote;
+    }
+
+    @Override
+    public boolean load(final TaskCacheKey key, TaskOutputReader reader) throws IOException {
+        if (local.load(key, reader)) {
+            return true;
+        }
+        StoreInLocalCache storeInLocal = new StoreInLocalCache(key);
+        boolean foundInRemote;
+        try {
+            foundInRemote = remote.load(key, storeInLocal);
+        } catch (IOException e) {
+            LOGGER.warn("Could not load cached output with cache key {} from {}", key.getHashCode(), remote.getDescription(), e);
+            return false;
+        }
+        if (storeInLocal.failure != null) {
+            LOGGER.warn("Could not store cached output with cache key {} loaded from {} in {}", key.getHashCode(), remote.getDescription(), local.getDescription(), storeInLocal.failure);
+            return false;
+        }
+        return foundInRemote && localEntries.load(key, reader);
+    }
+
+    @Override
+    public void store(final TaskCacheKey key, TaskOutputWriter writer) throws IOException {
+        local.store(key, writer);
+        if (pushToRemote) {
+            localEntries.load(key, new TaskOutputReader() {
+                @Override
+                public void readFrom(InputStream input) throws IOException {
+                    remote.store(key, copyFrom(input));
+                }
+            });
+        }
+    }
+
+    /**
+     * Copies an entry loaded from the remote cache into the local cache. A failure to store the entry is kept rather than thrown,
+     * so that it is not taken for a failure of the remote cache. Failures to read the entry are still thrown.
+     */
+    private class StoreInLocalCache implements TaskOutputReader {
+        private final TaskCacheKey key;
+        private IOException failure;
+
+        StoreInLocalCache(TaskCacheKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public void readFrom(InputStream input) throws IOException {
+            ReadFailureTrackingInputStream remoteInput = new ReadFailureTrackingInputStream(input);
+            try {
+                local.store(key, copyFrom(remoteInput));
+            } catch (IOException e) {
+                if (remoteInput.failed) {
+                    throw e;
+                }
+                failure = e;
+            }
+        }
+    }
+
+    private static class ReadFailureTrackingInputStream extends FilterInputStream {
+        private boolean failed;
+
+        ReadFailureTrackingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+
+    private static TaskOutputWriter copyFrom(final InputStream input) {
+        return new TaskOutputWriter() {
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                ByteStreams.copy(input, output);
+            }
+        };
+    }
+
+    @Override
+    public String getDescription() {
+        return String.format("two-level cache using %s and %s%s", local.getDescription(), remote.getDescription(), pushToRemote ? "" : " (pull only)");
+    }
+
+    @Override
+    public void close() throws IOException {
+        CompositeStoppable.stoppable(local, remote).stop();
+    }
+}
@@ -18,27 +18,42 @@ package org.gradle.api.internal.tasks.cache.config;
 
 import org.gradle.StartParameter;
 import org.gradle.api.internal.tasks.cache.LocalDirectoryTaskOutputCache;
+import org.gradle.api.internal.tasks.cache.StatisticsCollectingTaskOutputCache;
 import org.gradle.api.internal.tasks.cache.TaskOutputCache;
 import org.gradle.api.internal.tasks.cache.TaskOutputCacheFactory;
+import org.gradle.api.internal.tasks.cache.TwoLevelTaskOutputCache;
+import org.gradle.cache.CacheRepository;
 
 import java.io.File;
 
 public class DefaultTaskCaching implements TaskCachingInternal {
-    private static final TaskOutputCacheFactory DEFAULT_LOCAL_TASK_CACHE_FACTORY = new TaskOutputCacheFactory() {
-        @Override
-        public TaskOutputCache createCache(StartParameter startParameter) {
-            String cacheDirectoryPath = System.getProperty("org.gradle.cache.tasks.directory");
-            File cacheDirectory = cacheDirectoryPath != null
-                ? new File(cacheDirectoryPath)
-                : new File(startParameter.getGradleUserHomeDir(), "task-cache");
-            return new LocalDirectoryTaskOutputCache(cacheDirectory);
-        }
-    };
-    private TaskOutputCacheFactory factory = DEFAULT_LOCAL_TASK_CACHE_FACTORY;
+    private static final String DIRECTORY_PROPERTY = "org.gradle.cache.tasks.directory";
+    private static final String DIRECTORY_TARGET_SIZE_PROPERTY = "org.gradle.cache.tasks.directory.targetSize";
+    private static final long DEFAULT_DIRECTORY_TARGET_SIZE_IN_MEGABYTES = 5 * 1024;
+    private static final String PUSH_PROPERTY = "org.gradle.cache.tasks.push";
+
+    private final TaskOutputCacheFactory defaultLocalTaskCacheFactory;
+    private final CacheRepository cacheRepository;
+    private TaskOutputCacheFactory factory;
+
+    public DefaultTaskCaching(CacheRepository cacheRepository) {
+        this.cacheRepository = cacheRepository;
+        this.defaultLocalTaskCacheFactory = new TaskOutputCacheFactory() {
+            @Override
+            public TaskOutputCache createCache(StartParameter startParameter) {
+                String cacheDirectoryPath = System.getProperty(DIRECTORY_PROPERTY);
+                File cacheDirectory = cacheDirectoryPath != null
+                    ? new File(cacheDirectoryPath)
+                    : new File(startParameter.getGradleUserHomeDir(), "task-cache");
+                return createLocalCache(cacheDirectory);
+            }
+        };
+        this.factory = defaultLocalTaskCacheFactory;
+    }
 
     @Override
     public void useLocalCache() {
-        this.factory = DEFAULT_LOCAL_TASK_CACHE_FACTORY;
+        this.factory = defaultLocalTaskCacheFactory;
     }
 
     @Override
@@ -46,7 +61,7 @@ public class DefaultTaskCaching implements TaskCachingInternal {
         this.factory = new TaskOutputCacheFactory() {
             @Override
             public TaskOutputCache createCache(StartParameter startParameter) {
-                return new LocalDirectoryTaskOutputCache(directory);
+                return createLocalCache(directory);
             }
         };
     }
@@ -56,8 +71,37 @@ public class DefaultTaskCaching implements TaskCachingInternal {
         this.factory = factory;
     }
 
+    @Override
+    public void useTwoLevelCache(final TaskOutputCacheFactory remoteFactory) {
+        this.factory = new TaskOutputCacheFactory() {
+            @Override
+            public TaskOutputCache createCache(StartParameter startParameter) {
+                TaskOutputCache local = defaultLocalTaskCacheFactory.createCache(startParameter);
+                TaskOutputCache remote = remoteFactory.createCache(startParameter);
+                boolean pushToRemote = !"false".equals(System.getProperty(PUSH_PROPERTY));
+                return new TwoLevelTaskOutputCache(new StatisticsCollectingTaskOutputCache(local), local, new StatisticsCollectingTaskOutputCache(remote), pushToRemote);
+            }
+        };
+    }
+
     @Override
     public TaskOutputCacheFactory getCacheFactory() {
         return factory;
     }
+
+    private TaskOutputCache createLocalCache(File directory) {
+        return new LocalDirectoryTaskOutputCache(cacheRepository, directory, getLocalCacheTargetSize() * 1024 * 1024);
+    }
+
+    private static long getLocalCacheTargetSize() {
+        String targetSize = System.getProperty(DIRECTORY_TARGET_SIZE_PROPERTY);
+        if (targetSize == null) {
+            return DEFAULT_DIRECTORY_TARGET_SIZE_IN_MEGABYTES;
+        }
+        try {
+            return Long.parseLong(targetSize);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value '%s' for '%s' system property, must be the target size in megabytes", targetSize, DIRECTORY_TARGET_SIZE_PROPERTY), e);
+        }
+    }
 }
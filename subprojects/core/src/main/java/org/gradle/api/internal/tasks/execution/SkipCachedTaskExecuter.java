@@ -16,7 +16,6 @@
 
 package org.gradle.api.internal.tasks.execution;
 
-import org.gradle.StartParameter;
 import org.gradle.api.GradleException;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.TaskOutputsInternal;
@@ -29,7 +28,6 @@ import org.gradle.api.internal.tasks.cache.TaskOutputCache;
 import org.gradle.api.internal.tasks.cache.TaskOutputPacker;
 import org.gradle.api.internal.tasks.cache.TaskOutputReader;
 import org.gradle.api.internal.tasks.cache.TaskOutputWriter;
-import org.gradle.api.internal.tasks.cache.config.TaskCachingInternal;
 import org.gradle.util.Clock;
 import org.gradle.util.SingleMessageLogger;
 import org.slf4j.Logger;
@@ -42,15 +40,12 @@ import java.io.OutputStream;
 public class SkipCachedTaskExecuter implements TaskExecuter {
     private static final Logger LOGGER = LoggerFactory.getLogger(SkipCachedTaskExecuter.class);
 
-    private final TaskCachingInternal taskCaching;
-    private final StartParameter startParameter;
+    private final TaskOutputCache cache;
     private final TaskOutputPacker packer;
     private final TaskExecuter delegate;
-    private TaskOutputCache cache;
 
-    public SkipCachedTaskExecuter(TaskCachingInternal taskCaching, TaskOutputPacker packer, StartParameter startParameter, TaskExecuter delegate) {
-        this.taskCaching = taskCaching;
-        this.startParameter = startParameter;
+    public SkipCachedTaskExecuter(TaskOutputCache cache, TaskOutputPacker packer, TaskExecuter delegate) {
+        this.cache = cache;
         this.packer = packer;
         this.delegate = delegate;
         SingleMessageLogger.incubatingFeatureUsed("Task output caching");
@@ -91,7 +86,7 @@ public class SkipCachedTaskExecuter implements TaskExecuter {
 
         if (cacheKey != null) {
             try {
-                boolean found = getCache().load(cacheKey, new TaskOutputReader() {
+                boolean found = cache.load(cacheKey, new TaskOutputReader() {
                     @Override
                     public void readFrom(InputStream input) throws IOException {
                         packer.unpack(taskOutputs, input);
@@ -111,7 +106,7 @@ public class SkipCachedTaskExecuter implements TaskExecuter {
 
         if (cacheKey != null && state.getFailure() == null) {
             try {
-                getCache().store(cacheKey, new TaskOutputWriter() {
+                cache.store(cacheKey, new TaskOutputWriter() {
                     @Override
                     public void writeTo(OutputStream output) throws IOException {
                         packer.pack(taskOutputs, output);
@@ -122,12 +117,4 @@ public class SkipCachedTaskExecuter implements TaskExecuter {
             }
         }
     }
-
-    private TaskOutputCache getCache() {
-        if (cache == null) {
-            cache = taskCaching.getCacheFactory().createCache(startParameter);
-            LOGGER.info("Using {}", cache.getDescription());
-        }
-        return cache;
-    }
 }
@@ -32,11 +32,13 @@ public interface TaskCaching {
     /**
      * Use the default local directory cache. The cache directory path defaults to {@code $GRADLE_HOME/task-cache}.
      * It can also be overridden via the {@code org.gradle.cache.tasks.directory} system property.
+     * The least recently used entries are removed once the cache grows beyond its target size, which defaults to 5 GB
+     * and can be set in megabytes via the {@code org.gradle.cache.tasks.directory.targetSize} system property.
      */
     void useLocalCache();
 
     /**
-     * Use a local directory cache in the given directory.
+     * Use a local directory cache in the given directory. The directory can be shared between multiple builds running at the same time.
      */
     void useLocalCache(File directory);
 
@@ -44,4 +46,11 @@ public interface TaskCaching {
      * Use the give task output cache factory.
      */
     void useCacheFactory(TaskOutputCacheFactory factory);
+
+    /**
+     * Use the default local directory cache in front of the cache created by the given factory.
+     * Entries found only in the remote cache are copied to the local cache. Entries produced by the build are copied to the remote cache,
+     * unless the {@code org.gradle.cache.tasks.push} system property is set to {@code false}.
+     */
+    void useTwoLevelCache(TaskOutputCacheFactory remoteFactory);
 }
@@ -32,4 +32,9 @@ public interface CacheCoordinator extends CacheAccess, Closeable {
     void close();
 
     <K, V> PersistentIndexedCache<K, V> newCache(PersistentIndexedCacheParameters<K, V> parameters);
+
+    /**
+     * Returns the time that threads have spent waiting for each other to access this cache.
+     */
+    CacheLockContention getLockContention();
 }
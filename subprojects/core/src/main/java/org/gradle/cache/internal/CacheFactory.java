@@ -28,4 +28,9 @@ public interface CacheFactory {
     PersistentCache openStore(File storeDir, String displayName, LockOptions lockOptions, Action<? super PersistentCache> initializer) throws CacheOpenException;
 
     PersistentCache open(File cacheDir, String displayName, CacheValidator cacheValidator, Map<String, ?> properties, LockOptions lockOptions, Action<? super PersistentCache> initializer) throws CacheOpenException;
+
+    /**
+     * Returns the total time that threads have spent waiting for each other to access the caches opened by this factory, including caches that have since been closed.
+     */
+    CacheLockContention getLockContention();
 }
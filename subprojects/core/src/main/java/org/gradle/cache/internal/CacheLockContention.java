@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Accumulates the time that threads spend waiting for the in-process locks of a cache.
+ */
+@ThreadSafe
+public class CacheLockContention {
+    private final AtomicLong waitTimeNanos = new AtomicLong();
+    private final AtomicInteger waitCount = new AtomicInteger();
+
+    /**
+     * Acquires the given lock, recording the time spent waiting when it is held by another thread.
+     */
+    public void lock(Lock lock) {
+        if (lock.tryLock()) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        waited(System.nanoTime() - start);
+    }
+
+    public void waited(long nanos) {
+        waitTimeNanos.addAndGet(nanos);
+        waitCount.incrementAndGet();
+    }
+
+    /**
+     * Adds the waits recorded by the given contention to this one.
+     */
+    public void add(CacheLockContention other) {
+        waitTimeNanos.addAndGet(other.waitTimeNanos.get());
+        waitCount.addAndGet(other.waitCount.get());
+    }
+
+    public long getWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitTimeNanos.get());
+    }
+
+    public int getWaitCount() {
+        return waitCount.get();
+    }
+}
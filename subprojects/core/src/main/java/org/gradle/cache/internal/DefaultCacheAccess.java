@@ -23,6 +23,7 @@ import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
 import org.gradle.cache.internal.filelock.LockOptions;
+import org.gradle.cache.internal.mapped.MemoryMappedPersistentIndexedCache;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
 import org.gradle.internal.UncheckedException;
@@ -30,17 +31,30 @@ import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.serialize.Serializer;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.gradle.cache.internal.FileLockManager.LockMode.Exclusive;
 import static org.gradle.cache.internal.FileLockManager.LockMode.Shared;
 
 @ThreadSafe
 public class DefaultCacheAccess implements CacheCoordinator {
+    /**
+     * When set to true, indexed caches are stored in memory-mapped files that allow concurrent readers, instead of in B-tree files.
+     */
+    public static final String MEMORY_MAPPED_CACHES_PROPERTY = "org.gradle.cache.internal.memoryMappedIndexedCaches";
+
+    /**
+     * When set to true, changes to indexed caches are kept in memory until the outermost cache action completes, and are then written as a single batch.
+     */
+    public static final String WRITE_BEHIND_CACHES_PROPERTY = "org.gradle.cache.internal.writeBehindIndexedCaches";
 
     private final static Logger LOG = Logging.getLogger(DefaultCacheAccess.class);
 
@@ -51,6 +65,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private final CacheInitializationAction initializationAction;
     private final FileAccess fileAccess = new UnitOfWorkFileAccess();
     private final Set<MultiProcessSafePersistentIndexedCache> caches = new HashSet<MultiProcessSafePersistentIndexedCache>();
+    private final List<DefaultMultiProcessSafePersistentIndexedCache<?, ?>> writeBehindCaches = new ArrayList<DefaultMultiProcessSafePersistentIndexedCache<?, ?>>();
     private final Lock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
     private Thread owner;
@@ -60,6 +75,9 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private boolean contended;
     private final CacheAccessOperationsStack operations;
     private int cacheClosedCount;
+    private final ReadWriteLock fileAccessLock = new ReentrantReadWriteLock();
+    private final CacheLockContention lockContention = new CacheLockContention();
+    private int activeUsers;
 
     public DefaultCacheAccess(String cacheDisplayName, File lockTarget, File baseDir, FileLockManager lockManager, CacheInitializationAction initializationAction) {
         this.cacheDisplayName = cacheDisplayName;
@@ -164,6 +182,9 @@ public class DefaultCacheAccess implements CacheCoordinator {
             if (cacheClosedCount != 1) {
                 LOG.debug("Cache {} was closed {} times.", cacheDisplayName, cacheClosedCount);
             }
+            if (lockContention.getWaitCount() > 0) {
+                LOG.info("Threads waited {} ms in total for access to {} ({} times).", lockContention.getWaitTimeMillis(), cacheDisplayName, lockContention.getWaitCount());
+            }
         } finally {
             lockOptions = null;
             owner = null;
@@ -179,10 +200,15 @@ public class DefaultCacheAccess implements CacheCoordinator {
         if (lockOptions != null && lockOptions.getMode() == FileLockManager.LockMode.Shared) {
             throw new UnsupportedOperationException("Not implemented yet.");
         }
+        if (isConcurrent()) {
+            return useCacheConcurrently(operationDisplayName, factory);
+        }
 
         boolean wasStarted = false;
+        boolean outermost;
         lock.lock();
         try {
+            outermost = !operations.isInCacheAction();
             takeOwnership(operationDisplayName);
             wasStarted = onStartWork();
         } finally {
@@ -191,6 +217,9 @@ public class DefaultCacheAccess implements CacheCoordinator {
         try {
             return factory.create();
         } finally {
+            if (outermost) {
+                flushWriteBehindCaches();
+            }
             lock.lock();
             try {
                 try {
@@ -206,15 +235,95 @@ public class DefaultCacheAccess implements CacheCoordinator {
         }
     }
 
+    private <T> T useCacheConcurrently(String operationDisplayName, Factory<? extends T> factory) {
+        boolean outermost;
+        lock.lock();
+        try {
+            outermost = !operations.isInCacheAction();
+            startConcurrentUse(operationDisplayName);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return factory.create();
+        } finally {
+            if (outermost) {
+                flushWriteBehindCaches();
+            }
+            lock.lock();
+            try {
+                finishConcurrentUse();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending changes of the indexed caches. Called by the thread using the cache, without holding the lock, as the caches take the lock
+     * to access the file.
+     */
+    private void flushWriteBehindCaches() {
+        List<DefaultMultiProcessSafePersistentIndexedCache<?, ?>> toFlush;
+        lock.lock();
+        try {
+            if (writeBehindCaches.isEmpty()) {
+                return;
+            }
+            toFlush = new ArrayList<DefaultMultiProcessSafePersistentIndexedCache<?, ?>>(writeBehindCaches);
+        } finally {
+            lock.unlock();
+        }
+        for (DefaultMultiProcessSafePersistentIndexedCache<?, ?> cache : toFlush) {
+            cache.flush();
+        }
+    }
+
+    /**
+     * Returns true when the cache is locked on demand and its options allow concurrent access. Threads using the cache then do not wait for each other.
+     * The cross-process file lock is held while any thread uses the cache. Reads from the caches can happen concurrently, while writes are serialized,
+     * as the file lock tracks whether the cache files are being modified.
+     */
+    private boolean isConcurrent() {
+        return lockOptions != null && lockOptions.getMode() == FileLockManager.LockMode.None && lockOptions.isConcurrentAccess();
+    }
+
+    private void startConcurrentUse(String operationDisplayName) {
+        operations.pushCacheAction(operationDisplayName);
+        activeUsers++;
+        try {
+            onStartWork();
+        } catch (RuntimeException e) {
+            activeUsers--;
+            operations.popCacheAction();
+            throw e;
+        }
+    }
+
+    private void finishConcurrentUse() {
+        try {
+            activeUsers--;
+            if (activeUsers == 0) {
+                onEndWork();
+            }
+        } finally {
+            operations.popCacheAction();
+        }
+    }
+
     private void takeOwnership(String operationDisplayName) {
         lock.lock();
         try {
-            while (owner != null && owner != Thread.currentThread()) {
-                try {
-                    condition.await();
-                } catch (InterruptedException e) {
-                    throw UncheckedException.throwAsUncheckedException(e);
+            if (owner != null && owner != Thread.currentThread()) {
+                long start = System.nanoTime();
+                while (owner != null && owner != Thread.currentThread()) {
+                    try {
+                        condition.await();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
                 }
+                lockContention.waited(System.nanoTime() - start);
             }
             owner = Thread.currentThread();
             operations.pushCacheAction(operationDisplayName);
@@ -237,6 +346,9 @@ public class DefaultCacheAccess implements CacheCoordinator {
     }
 
     public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
+        if (isConcurrent()) {
+            return concurrentLongRunningOperation(operationDisplayName, action);
+        }
         boolean wasEnded = startLongRunningOperation(operationDisplayName);
         try {
             return action.create();
@@ -245,6 +357,37 @@ public class DefaultCacheAccess implements CacheCoordinator {
         }
     }
 
+    private <T> T concurrentLongRunningOperation(String operationDisplayName, Factory<? extends T> action) {
+        boolean wasInCacheAction;
+        lock.lock();
+        try {
+            wasInCacheAction = operations.isInCacheAction();
+            if (wasInCacheAction) {
+                activeUsers--;
+                if (activeUsers == 0) {
+                    onEndWork();
+                }
+            }
+            operations.pushLongRunningOperation(operationDisplayName);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return action.create();
+        } finally {
+            lock.lock();
+            try {
+                operations.popLongRunningOperation();
+                if (wasInCacheAction) {
+                    activeUsers++;
+                    onStartWork();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
     private boolean startLongRunningOperation(String operationDisplayName) {
         boolean wasEnded;
         lock.lock();
@@ -315,19 +458,24 @@ public class DefaultCacheAccess implements CacheCoordinator {
 
     public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final PersistentIndexedCacheParameters<K, V> parameters) {
         final File cacheFile = new File(baseDir, parameters.getCacheName() + ".bin");
-        Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<BTreePersistentIndexedCache<K, V>>() {
-            public BTreePersistentIndexedCache<K, V> create() {
+        Factory<CloseablePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<CloseablePersistentIndexedCache<K, V>>() {
+            public CloseablePersistentIndexedCache<K, V> create() {
                 return doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
             }
         };
 
-        MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+        boolean writeBehind = Boolean.getBoolean(WRITE_BEHIND_CACHES_PROPERTY);
+        DefaultMultiProcessSafePersistentIndexedCache<K, V> defaultCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess, lockContention, writeBehind);
+        MultiProcessSafePersistentIndexedCache<K, V> indexedCache = defaultCache;
         CacheDecorator decorator = parameters.getCacheDecorator();
         indexedCache = decorator == null ? indexedCache : decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache);
 
         lock.lock();
         try {
             caches.add(indexedCache);
+            if (writeBehind) {
+                writeBehindCaches.add(defaultCache);
+            }
             if (fileLock != null) {
                 String description = operations.isInCacheAction() ? operations.getDescription() : "cache creation";
                 indexedCache.onStartWork(description, stateAtOpen);
@@ -338,7 +486,12 @@ public class DefaultCacheAccess implements CacheCoordinator {
         return indexedCache;
     }
 
-    <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    <K, V> CloseablePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if (Boolean.getBoolean(MEMORY_MAPPED_CACHES_PROPERTY)) {
+            // Uses a different file, as the file format is not compatible
+            File mappedCacheFile = new File(cacheFile.getParentFile(), cacheFile.getName().replaceFirst("\\.bin$", ".mapped.bin"));
+            return new MemoryMappedPersistentIndexedCache<K, V>(mappedCacheFile, keySerializer, valueSerializer);
+        }
         return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
     }
 
@@ -377,7 +530,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private FileLock getLock() {
         lock.lock();
         try {
-            if (Thread.currentThread() != owner) {
+            if (Thread.currentThread() != owner && !(isConcurrent() && operations.isInCacheAction())) {
                 throw new IllegalStateException(String.format("The %s has not been locked for this thread. File lock: %s, owner: %s", cacheDisplayName, fileLock != null, owner));
             }
         } finally {
@@ -393,15 +546,33 @@ public class DefaultCacheAccess implements CacheCoordinator {
         }
 
         public <T> T readFile(Factory<? extends T> action) throws LockTimeoutException {
-            return getLock().readFile(action);
+            FileLock fileLock = getLock();
+            lockContention.lock(fileAccessLock.readLock());
+            try {
+                return fileLock.readFile(action);
+            } finally {
+                fileAccessLock.readLock().unlock();
+            }
         }
 
         public void updateFile(Runnable action) throws LockTimeoutException {
-            getLock().updateFile(action);
+            FileLock fileLock = getLock();
+            lockContention.lock(fileAccessLock.writeLock());
+            try {
+                fileLock.updateFile(action);
+            } finally {
+                fileAccessLock.writeLock().unlock();
+            }
         }
 
         public void writeFile(Runnable action) throws LockTimeoutException {
-            getLock().writeFile(action);
+            FileLock fileLock = getLock();
+            lockContention.lock(fileAccessLock.writeLock());
+            try {
+                fileLock.writeFile(action);
+            } finally {
+                fileAccessLock.writeLock().unlock();
+            }
         }
     }
 
@@ -415,7 +586,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
                         //the lock may have been closed
                         return;
                     }
-                    if (owner != null) {
+                    if (owner != null || activeUsers > 0) {
                         contended = true;
                         return;
                     }
@@ -437,6 +608,10 @@ public class DefaultCacheAccess implements CacheCoordinator {
         return owner;
     }
 
+    public CacheLockContention getLockContention() {
+        return lockContention;
+    }
+
     FileAccess getFileAccess() {
         return fileAccess;
     }
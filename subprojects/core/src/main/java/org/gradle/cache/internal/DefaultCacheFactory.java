@@ -33,6 +33,7 @@ public class DefaultCacheFactory implements CacheFactory, Closeable {
     private final Map<File, DirCacheReference> dirCaches = new HashMap<File, DirCacheReference>();
     private final FileLockManager lockManager;
     private final Lock lock = new ReentrantLock();
+    private final CacheLockContention closedCachesLockContention = new CacheLockContention();
 
     public DefaultCacheFactory(FileLockManager fileLockManager) {
         this.lockManager = fileLockManager;
@@ -62,6 +63,20 @@ public class DefaultCacheFactory implements CacheFactory, Closeable {
         }
     }
 
+    public CacheLockContention getLockContention() {
+        lock.lock();
+        try {
+            CacheLockContention result = new CacheLockContention();
+            result.add(closedCachesLockContention);
+            for (DirCacheReference dirCacheReference : dirCaches.values()) {
+                result.add(dirCacheReference.cache.getLockContention());
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void close() {
         lock.lock();
         try {
@@ -138,7 +153,9 @@ public class DefaultCacheFactory implements CacheFactory, Closeable {
             onClose(cache);
             dirCaches.values().remove(this);
             references.clear();
+            CacheLockContention lockContention = cache.getLockContention();
             cache.close();
+            closedCachesLockContention.add(lockContention);
         }
     }
 
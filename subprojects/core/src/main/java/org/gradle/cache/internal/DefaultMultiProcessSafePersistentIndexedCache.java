@@ -16,52 +16,110 @@
 package org.gradle.cache.internal;
 
 import org.gradle.cache.PersistentIndexedCache;
-import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.internal.Factory;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Opens the backing cache on first use and accesses it with the cross-process file lock held.
+ *
+ * <p>Threads accessing the backing cache are coordinated by a read-write lock. Thread-safe backing caches are accessed under the read lock, so threads
+ * can use them concurrently, other backing caches are accessed under the write lock. Opening and closing the backing cache always takes the write lock.</p>
+ *
+ * <p>When write-behind is enabled, added and removed entries are kept in memory and are applied to the backing cache as a single batch when
+ * {@link #flush()} is called, or when the cache is closed. The cache is closed before the file lock is released, so other processes never miss a change.</p>
+ */
 public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
     private final FileAccess fileAccess;
-    private final Factory<BTreePersistentIndexedCache<K, V>> factory;
-    private BTreePersistentIndexedCache<K, V> cache;
+    private final Factory<? extends CloseablePersistentIndexedCache<K, V>> factory;
+    private final CacheLockContention lockContention;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile CloseablePersistentIndexedCache<K, V> cache;
+    private volatile boolean threadSafe;
+    private final boolean writeBehind;
+    private final ConcurrentMap<K, PendingChange<V>> pendingChanges = new ConcurrentHashMap<K, PendingChange<V>>();
 
-    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends CloseablePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+        this(factory, fileAccess, new CacheLockContention(), false);
+    }
+
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends CloseablePersistentIndexedCache<K, V>> factory, FileAccess fileAccess, CacheLockContention lockContention, boolean writeBehind) {
         this.factory = factory;
         this.fileAccess = fileAccess;
+        this.lockContention = lockContention;
+        this.writeBehind = writeBehind;
     }
 
     public V get(final K key) {
-        final PersistentIndexedCache<K, V> cache = getCache();
+        Lock accessLock = lockForAccess();
         try {
-            return fileAccess.readFile(new Factory<V>() {
-                public V create() {
-                    return cache.get(key);
+            if (writeBehind) {
+                PendingChange<V> pendingChange = pendingChanges.get(key);
+                if (pendingChange != null) {
+                    return pendingChange.value;
                 }
-            });
-        } catch (FileIntegrityViolationException e) {
-            return null;
+            }
+            final PersistentIndexedCache<K, V> cache = getCache();
+            try {
+                return fileAccess.readFile(new Factory<V>() {
+                    public V create() {
+                        return cache.get(key);
+                    }
+                });
+            } catch (FileIntegrityViolationException e) {
+                return null;
+            }
+        } finally {
+            accessLock.unlock();
         }
     }
 
     public void put(final K key, final V value) {
-        final PersistentIndexedCache<K, V> cache = getCache();
-        // Use writeFile because the cache can internally recover from datafile
-        // corruption, so we don't care at this level if it's corrupt
-        fileAccess.writeFile(new Runnable() {
-            public void run() {
-                cache.put(key, value);
+        Lock accessLock = lockForAccess();
+        try {
+            if (writeBehind) {
+                pendingChanges.put(key, new PendingChange<V>(value));
+                return;
             }
-        });
+            final PersistentIndexedCache<K, V> cache = getCache();
+            // Use writeFile because the cache can internally recover from datafile
+            // corruption, so we don't care at this level if it's corrupt
+            fileAccess.writeFile(new Runnable() {
+                public void run() {
+                    cache.put(key, value);
+                }
+            });
+        } finally {
+            accessLock.unlock();
+        }
     }
 
     public void remove(final K key) {
-        final PersistentIndexedCache<K, V> cache = getCache();
-        // Use writeFile because the cache can internally recover from datafile
-        // corruption, so we don't care at this level if it's corrupt
-        fileAccess.writeFile(new Runnable() {
-            public void run() {
-                cache.remove(key);
+        Lock accessLock = lockForAccess();
+        try {
+            if (writeBehind) {
+                pendingChanges.put(key, PendingChange.<V>removed());
+                return;
             }
-        });
+            final PersistentIndexedCache<K, V> cache = getCache();
+            // Use writeFile because the cache can internally recover from datafile
+            // corruption, so we don't care at this level if it's corrupt
+            fileAccess.writeFile(new Runnable() {
+                public void run() {
+                    cache.remove(key);
+                }
+            });
+        } finally {
+            accessLock.unlock();
+        }
     }
 
     public void onStartWork(String operationDisplayName, FileLock.State currentCacheState) {
@@ -70,18 +128,82 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
     public void onEndWork(FileLock.State currentCacheState) {
     }
 
-    public void close() {
-        if (cache != null) {
-            try {
+    /**
+     * Applies the pending changes to the backing cache, when write-behind is enabled. Must be called while the file lock is held.
+     */
+    public void flush() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        lockContention.lock(lock.writeLock());
+        try {
+            if (cache != null && !pendingChanges.isEmpty()) {
                 fileAccess.writeFile(new Runnable() {
                     public void run() {
-                        cache.close();
+                        applyPendingChanges();
                     }
                 });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void close() {
+        lockContention.lock(lock.writeLock());
+        try {
+            if (cache != null) {
+                try {
+                    fileAccess.writeFile(new Runnable() {
+                        public void run() {
+                            try {
+                                applyPendingChanges();
+                            } finally {
+                                cache.close();
+                            }
+                        }
+                    });
+                } finally {
+                    cache = null;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyPendingChanges() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        Map<K, V> entries = new HashMap<K, V>();
+        Set<K> removedKeys = new HashSet<K>();
+        for (Map.Entry<K, PendingChange<V>> entry : pendingChanges.entrySet()) {
+            if (entry.getValue().removed) {
+                removedKeys.add(entry.getKey());
+            } else {
+                entries.put(entry.getKey(), entry.getValue().value);
+            }
+        }
+        pendingChanges.clear();
+        cache.update(entries, removedKeys);
+    }
+
+    /**
+     * Acquires the lock to hold while accessing the backing cache, opening the backing cache when required.
+     */
+    private Lock lockForAccess() {
+        if (cache == null) {
+            lockContention.lock(lock.writeLock());
+            try {
+                getCache();
             } finally {
-                cache = null;
+                lock.writeLock().unlock();
             }
         }
+        Lock accessLock = threadSafe ? lock.readLock() : lock.writeLock();
+        lockContention.lock(accessLock);
+        return accessLock;
     }
 
     private PersistentIndexedCache<K, V> getCache() {
@@ -90,10 +212,30 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
             // corruption, so we don't care at this level if it's corrupt
             fileAccess.writeFile(new Runnable() {
                 public void run() {
-                    cache = factory.create();
+                    CloseablePersistentIndexedCache<K, V> newCache = factory.create();
+                    threadSafe = newCache.isThreadSafe();
+                    cache = newCache;
                 }
             });
         }
         return cache;
     }
+
+    private static class PendingChange<V> {
+        private final V value;
+        private final boolean removed;
+
+        private PendingChange(V value) {
+            this(value, false);
+        }
+
+        private PendingChange(V value, boolean removed) {
+            this.value = value;
+            this.removed = removed;
+        }
+
+        static <V> PendingChange<V> removed() {
+            return new PendingChange<V>(null, true);
+        }
+    }
 }
@@ -85,6 +85,10 @@ public class DefaultPersistentDirectoryStore implements ReferencablePersistentCa
         return dir;
     }
 
+    public CacheLockContention getLockContention() {
+        return cacheAccess.getLockContention();
+    }
+
     @Override
     public String toString() {
         return displayName;
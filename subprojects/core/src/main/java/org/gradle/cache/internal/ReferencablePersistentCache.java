@@ -25,4 +25,9 @@ public interface ReferencablePersistentCache extends PersistentCache, Closeable
     void close();
 
     ReferencablePersistentCache open();
+
+    /**
+     * Returns the time that threads have spent waiting for each other to access this cache while it was open.
+     */
+    CacheLockContention getLockContention();
 }
@@ -16,7 +16,7 @@
 package org.gradle.cache.internal.btree;
 
 import org.gradle.api.UncheckedIOException;
-import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.internal.CloseablePersistentIndexedCache;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
@@ -40,7 +40,7 @@ import java.util.*;
 // todo - free list leaks disk space
 // todo - merge adjacent free blocks
 // todo - use more efficient lookup for free block with nearest size
-public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache<K, V> {
+public class BTreePersistentIndexedCache<K, V> implements CloseablePersistentIndexedCache<K, V> {
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
     private final File cacheFile;
     private final Serializer<K> keySerializer;
@@ -131,25 +131,7 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
     public void put(K key, V value) {
         try {
-            MessageDigestStream digestStream = new MessageDigestStream();
-            KryoBackedEncoder encoder = new KryoBackedEncoder(digestStream);
-            keySerializer.write(encoder, key);
-            encoder.flush();
-            long hashCode = digestStream.getChecksum();
-            Lookup lookup = header.getRoot().find(hashCode);
-            boolean needNewBlock = true;
-            if (lookup.entry != null) {
-                DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
-                needNewBlock = !block.useNewValue(value);
-                if (needNewBlock) {
-                    store.remove(block);
-                }
-            }
-            if (needNewBlock) {
-                DataBlock block = new DataBlock(value);
-                store.write(block);
-                lookup.indexBlock.put(hashCode, block.getPos());
-            }
+            doPut(hashKey(key), value);
             store.flush();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
@@ -158,19 +140,74 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
     public void remove(K key) {
         try {
-            Lookup lookup = header.getRoot().find(key);
-            if (lookup.entry == null) {
-                return;
-            }
-            lookup.indexBlock.remove(lookup.entry);
-            DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
-            store.remove(block);
+            doRemove(hashKey(key));
             store.flush();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
         }
     }
 
+    /**
+     * Applies the changes in the order of the key hashes, so that index blocks are visited in order, and writes the modified blocks once at the end.
+     */
+    public void update(Map<K, V> entries, Set<K> removedKeys) {
+        List<Change> changes = new ArrayList<Change>(entries.size() + removedKeys.size());
+        try {
+            for (Map.Entry<K, V> entry : entries.entrySet()) {
+                changes.add(new Change(hashKey(entry.getKey()), entry.getValue(), false));
+            }
+            for (K key : removedKeys) {
+                changes.add(new Change(hashKey(key), null, true));
+            }
+            Collections.sort(changes);
+            for (Change change : changes) {
+                if (change.removed) {
+                    doRemove(change.hashCode);
+                } else {
+                    doPut(change.hashCode, change.value);
+                }
+            }
+            store.flush();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not update %s entries in %s.", entries.size() + removedKeys.size(), this), e);
+        }
+    }
+
+    private long hashKey(K key) throws Exception {
+        MessageDigestStream digestStream = new MessageDigestStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(digestStream);
+        keySerializer.write(encoder, key);
+        encoder.flush();
+        return digestStream.getChecksum();
+    }
+
+    private void doPut(long hashCode, V value) throws Exception {
+        Lookup lookup = header.getRoot().find(hashCode);
+        boolean needNewBlock = true;
+        if (lookup.entry != null) {
+            DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
+            needNewBlock = !block.useNewValue(value);
+            if (needNewBlock) {
+                store.remove(block);
+            }
+        }
+        if (needNewBlock) {
+            DataBlock block = new DataBlock(value);
+            store.write(block);
+            lookup.indexBlock.put(hashCode, block.getPos());
+        }
+    }
+
+    private void doRemove(long hashCode) throws Exception {
+        Lookup lookup = header.getRoot().find(hashCode);
+        if (lookup.entry == null) {
+            return;
+        }
+        lookup.indexBlock.remove(lookup.entry);
+        DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
+        store.remove(block);
+    }
+
     private IndexBlock load(BlockPointer pos, IndexRoot root, IndexBlock parent, int index) {
         IndexBlock block = store.read(pos, IndexBlock.class);
         block.root = root;
@@ -197,6 +234,10 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
     }
 
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     public boolean isOpen() {
         return store.isOpen();
     }
@@ -449,12 +490,7 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
 
         public Lookup find(K key) throws Exception {
-            MessageDigestStream digestStream = new MessageDigestStream();
-            KryoBackedEncoder encoder = new KryoBackedEncoder(digestStream);
-            keySerializer.write(encoder, key);
-            encoder.flush();
-            long checksum = digestStream.getChecksum();
-            return find(checksum);
+            return find(hashKey(key));
         }
 
         private Lookup find(long hashCode) throws Exception {
@@ -624,6 +660,28 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
     }
 
+    private class Change implements Comparable<Change> {
+        private final long hashCode;
+        private final V value;
+        private final boolean removed;
+
+        private Change(long hashCode, V value, boolean removed) {
+            this.hashCode = hashCode;
+            this.value = value;
+            this.removed = removed;
+        }
+
+        public int compareTo(Change change) {
+            if (hashCode > change.hashCode) {
+                return 1;
+            }
+            if (hashCode < change.hashCode) {
+                return -1;
+            }
+            return 0;
+        }
+    }
+
     private class Lookup {
         final IndexBlock indexBlock;
         final IndexEntry entry;
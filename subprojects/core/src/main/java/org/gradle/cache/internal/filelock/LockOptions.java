@@ -23,6 +23,12 @@ public interface LockOptions {
 
     boolean isUseCrossVersionImplementation();
 
+    /**
+     * Returns true when threads may use a cache that is locked on demand at the same time, rather than one after the other.
+     * This is only safe for caches whose in-memory state is itself thread safe.
+     */
+    boolean isConcurrentAccess();
+
     /**
      * Creates a copy of these options with the given mode.
      */
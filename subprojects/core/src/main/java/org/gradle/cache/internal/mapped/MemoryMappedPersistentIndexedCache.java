@@ -0,0 +1,412 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.mapped;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.CloseablePersistentIndexedCache;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A persistent indexed cache that appends its entries to a memory-mapped file and keeps a hash index of the latest entry for each key in memory.
+ *
+ * <p>Reads do not take any locks. Writes are serialized per key by a set of striped locks, and reserve space at the end of the file atomically,
+ * so that writes of different keys can proceed concurrently. The file is mapped in fixed size segments, which are added as the file grows.</p>
+ *
+ * <p>The end of the written entries is recorded in the header of the file when the cache is closed, entries written after that are discarded when the
+ * file is opened again. The file is compacted on close when most of it is taken up by replaced or removed entries.</p>
+ *
+ * <p>Like {@link org.gradle.cache.internal.btree.BTreePersistentIndexedCache}, this cache relies on its owner to hold the cross-process file lock while it
+ * is open, and to close it when the lock is released.</p>
+ */
+public class MemoryMappedPersistentIndexedCache<K, V> implements CloseablePersistentIndexedCache<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryMappedPersistentIndexedCache.class);
+    private static final int MAGIC = 0x474d4943;
+    private static final int VERSION = 1;
+    private static final int END_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int REMOVED = -1;
+    private static final int WRITE_LOCK_STRIPES = 16;
+
+    private final File cacheFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final int segmentSize;
+    private final ConcurrentMap<Key, Long> index = new ConcurrentHashMap<Key, Long>();
+    private final Lock[] writeLocks = new Lock[WRITE_LOCK_STRIPES];
+    private final AtomicLong end = new AtomicLong();
+    private final AtomicLong garbageBytes = new AtomicLong();
+    private final Object segmentsLock = new Object();
+    private RandomAccessFile file;
+    private volatile MappedByteBuffer[] segments;
+
+    public MemoryMappedPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(cacheFile, keySerializer, valueSerializer, 1024 * 1024);
+    }
+
+    public MemoryMappedPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, int segmentSize) {
+        this.cacheFile = cacheFile;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.segmentSize = segmentSize;
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
+        try {
+            open();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + cacheFile.getName() + " (" + cacheFile + ")";
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        file = new RandomAccessFile(cacheFile, "rw");
+        segments = new MappedByteBuffer[0];
+        ensureCapacity(Math.max(file.length(), HEADER_SIZE));
+        MappedByteBuffer header = segments[0];
+        long committedEnd = header.getLong(END_OFFSET);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || committedEnd < HEADER_SIZE || committedEnd > file.length()) {
+            initialize();
+        } else if (!readIndex(committedEnd)) {
+            LOGGER.warn("{} is corrupt. Discarding.", this);
+            initialize();
+        }
+    }
+
+    private void initialize() {
+        MappedByteBuffer header = segments[0];
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putLong(END_OFFSET, HEADER_SIZE);
+        index.clear();
+        end.set(HEADER_SIZE);
+        garbageBytes.set(0);
+    }
+
+    private boolean readIndex(long committedEnd) {
+        byte[] recordHeader = new byte[RECORD_HEADER_SIZE];
+        long position = HEADER_SIZE;
+        while (position < committedEnd) {
+            if (position + RECORD_HEADER_SIZE > committedEnd) {
+                return false;
+            }
+            read(position, recordHeader, 0, RECORD_HEADER_SIZE);
+            int keyLength = getInt(recordHeader, 0);
+            int valueLength = getInt(recordHeader, 4);
+            if (keyLength < 0 || valueLength < REMOVED || position + recordLength(keyLength, valueLength) > committedEnd) {
+                return false;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            read(position + RECORD_HEADER_SIZE, keyBytes, 0, keyLength);
+            Key key = new Key(keyBytes);
+            Long previous;
+            if (valueLength == REMOVED) {
+                previous = index.remove(key);
+                garbageBytes.addAndGet(recordLength(keyLength, valueLength));
+            } else {
+                previous = index.put(key, position);
+            }
+            if (previous != null) {
+                garbageBytes.addAndGet(recordLength(previous));
+            }
+            position += recordLength(keyLength, valueLength);
+        }
+        end.set(committedEnd);
+        return true;
+    }
+
+    @Override
+    public V get(K key) {
+        try {
+            Long position = index.get(new Key(serialize(keySerializer, key)));
+            if (position == null) {
+                return null;
+            }
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(readValue(position))));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            Key indexKey = new Key(serialize(keySerializer, key));
+            byte[] valueBytes = serialize(valueSerializer, value);
+            Lock lock = writeLockFor(indexKey);
+            lock.lock();
+            try {
+                Long previous = index.get(indexKey);
+                if (previous != null && Arrays.equals(readValue(previous), valueBytes)) {
+                    return;
+                }
+                index.put(indexKey, append(indexKey.bytes, valueBytes.length, valueBytes));
+                if (previous != null) {
+                    garbageBytes.addAndGet(recordLength(previous));
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            Key indexKey = new Key(serialize(keySerializer, key));
+            Lock lock = writeLockFor(indexKey);
+            lock.lock();
+            try {
+                Long previous = index.get(indexKey);
+                if (previous == null) {
+                    return;
+                }
+                append(indexKey.bytes, REMOVED, null);
+                index.remove(indexKey);
+                garbageBytes.addAndGet(recordLength(previous) + recordLength(indexKey.bytes.length, REMOVED));
+            } finally {
+                lock.unlock();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    /**
+     * Records are appended to the end of the file, so there is no benefit in reordering the changes.
+     */
+    @Override
+    public void update(Map<K, V> entries, Set<K> removedKeys) {
+        for (Map.Entry<K, V> entry : entries.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+        for (K key : removedKeys) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        if (file == null) {
+            return;
+        }
+        try {
+            long committedEnd = end.get();
+            segments[0].putLong(END_OFFSET, committedEnd);
+            file.close();
+            long liveBytes = committedEnd - HEADER_SIZE - garbageBytes.get();
+            if (garbageBytes.get() > liveBytes && committedEnd > segmentSize) {
+                compact();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            file = null;
+            segments = null;
+            index.clear();
+        }
+    }
+
+    /**
+     * Writes the live entries to a new file, which replaces the cache file. The mapped segments of the current file are still readable after it was closed.
+     */
+    private void compact() throws IOException {
+        File compactedFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".compacted");
+        RandomAccessFile compacted = new RandomAccessFile(compactedFile, "rw");
+        try {
+            compacted.setLength(0);
+            compacted.writeInt(MAGIC);
+            compacted.writeInt(VERSION);
+            compacted.writeLong(HEADER_SIZE);
+            long compactedEnd = HEADER_SIZE;
+            for (Map.Entry<Key, Long> entry : index.entrySet()) {
+                byte[] record = new byte[recordLength(entry.getValue())];
+                read(entry.getValue(), record, 0, record.length);
+                compacted.write(record);
+                compactedEnd += record.length;
+            }
+            compacted.seek(END_OFFSET);
+            compacted.writeLong(compactedEnd);
+        } finally {
+            compacted.close();
+        }
+        if (!compactedFile.renameTo(cacheFile)) {
+            // The cache file may still be mapped on some platforms, keep using it
+            LOGGER.debug("Could not replace {} with its compacted version.", this);
+            compactedFile.delete();
+        }
+    }
+
+    private Lock writeLockFor(Key key) {
+        return writeLocks[(key.hashCode & Integer.MAX_VALUE) % writeLocks.length];
+    }
+
+    private long append(byte[] keyBytes, int valueLength, byte[] valueBytes) {
+        int length = recordLength(keyBytes.length, valueLength);
+        long position = end.getAndAdd(length);
+        ensureCapacity(position + length);
+        byte[] recordHeader = new byte[RECORD_HEADER_SIZE];
+        putInt(recordHeader, 0, keyBytes.length);
+        putInt(recordHeader, 4, valueLength);
+        write(position, recordHeader);
+        write(position + RECORD_HEADER_SIZE, keyBytes);
+        if (valueBytes != null) {
+            write(position + RECORD_HEADER_SIZE + keyBytes.length, valueBytes);
+        }
+        return position;
+    }
+
+    private byte[] readValue(long position) {
+        byte[] recordHeader = new byte[RECORD_HEADER_SIZE];
+        read(position, recordHeader, 0, RECORD_HEADER_SIZE);
+        byte[] value = new byte[getInt(recordHeader, 4)];
+        read(position + RECORD_HEADER_SIZE + getInt(recordHeader, 0), value, 0, value.length);
+        return value;
+    }
+
+    private int recordLength(long position) {
+        byte[] recordHeader = new byte[RECORD_HEADER_SIZE];
+        read(position, recordHeader, 0, RECORD_HEADER_SIZE);
+        return recordLength(getInt(recordHeader, 0), getInt(recordHeader, 4));
+    }
+
+    private static int recordLength(int keyLength, int valueLength) {
+        return RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+    }
+
+    private void ensureCapacity(long size) {
+        if ((long) segments.length * segmentSize >= size) {
+            return;
+        }
+        synchronized (segmentsLock) {
+            MappedByteBuffer[] current = segments;
+            int count = (int) ((size + segmentSize - 1) / segmentSize);
+            if (count <= current.length) {
+                return;
+            }
+            MappedByteBuffer[] grown = Arrays.copyOf(current, count);
+            try {
+                for (int i = current.length; i < count; i++) {
+                    grown[i] = file.getChannel().map(FileChannel.MapMode.READ_WRITE, (long) i * segmentSize, segmentSize);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Could not map %s.", this), e);
+            }
+            segments = grown;
+        }
+    }
+
+    private void write(long position, byte[] bytes) {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ByteBuffer segment = segments[(int) (position / segmentSize)].duplicate();
+            int segmentOffset = (int) (position % segmentSize);
+            int count = Math.min(bytes.length - offset, segmentSize - segmentOffset);
+            segment.position(segmentOffset);
+            segment.put(bytes, offset, count);
+            offset += count;
+            position += count;
+        }
+    }
+
+    private void read(long position, byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            ByteBuffer segment = segments[(int) (position / segmentSize)].duplicate();
+            int segmentOffset = (int) (position % segmentSize);
+            int count = Math.min(length, segmentSize - segmentOffset);
+            segment.position(segmentOffset);
+            segment.get(bytes, offset, count);
+            offset += count;
+            length -= count;
+            position += count;
+        }
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16 | (bytes[offset + 2] & 0xff) << 8 | bytes[offset + 3] & 0xff;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static <T> byte[] serialize(Serializer<T> serializer, T value) throws Exception {
+        ByteArrayOutputStream outStr = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outStr);
+        serializer.write(encoder, value);
+        encoder.flush();
+        return outStr.toByteArray();
+    }
+
+    private static class Key {
+        private final byte[] bytes;
+        private final int hashCode;
+
+        private Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(bytes, ((Key) obj).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.collect.ListMultimap;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static org.gradle.util.Clock.prettyTime;
+
+/**
+ * Prioritizes ready tasks by the expected length of the longest chain of tasks that cannot start before them, so that long chains start first.
+ *
+ * <p>The expected durations come from a {@link TaskDurationHistory}, which is updated with the durations of the tasks executed by the current build.
+ * When execution finishes, the idle worker time the prioritization avoided is estimated by scheduling the executed tasks again with their actual durations,
+ * once in plan order and once by priority. These simulations ignore the other constraints on parallel execution, such as overlapping outputs.</p>
+ *
+ * <p>Not thread-safe, the execution plan calls this while holding its lock.</p>
+ */
+public class CriticalPathTaskPrioritizer implements Comparator<TaskInfo> {
+    public static final String CRITICAL_PATH_TOGGLE = "org.gradle.parallel.criticalPath";
+
+    private static final Logger LOGGER = Logging.getLogger(CriticalPathTaskPrioritizer.class);
+
+    private final TaskDurationHistory durationHistory;
+    private final int workerCount;
+    private final Map<TaskInfo, Long> criticalPathLengths = new HashMap<TaskInfo, Long>();
+    private final Map<TaskInfo, Long> startTimes = new HashMap<TaskInfo, Long>();
+    private final Map<TaskInfo, Long> durations = new HashMap<TaskInfo, Long>();
+
+    public CriticalPathTaskPrioritizer(TaskDurationHistory durationHistory, int workerCount) {
+        this.durationHistory = durationHistory;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Estimates the critical path length of each of the given tasks.
+     *
+     * @param plannedTasks the tasks in plan order, where each task comes after all the tasks it must run after.
+     * @param dependents the tasks that must run after each task.
+     */
+    public void prioritize(List<TaskInfo> plannedTasks, ListMultimap<TaskInfo, TaskInfo> dependents) {
+        List<String> taskPaths = new ArrayList<String>(plannedTasks.size());
+        for (TaskInfo taskInfo : plannedTasks) {
+            taskPaths.add(taskInfo.getTask().getPath());
+        }
+        Map<String, Long> expectedDurations = durationHistory.getExpectedDurations(taskPaths);
+        long defaultDuration = average(expectedDurations.values());
+
+        criticalPathLengths.clear();
+        for (int i = plannedTasks.size() - 1; i >= 0; i--) {
+            TaskInfo taskInfo = plannedTasks.get(i);
+            Long expectedDuration = expectedDurations.get(taskInfo.getTask().getPath());
+            long longestRemainingPath = 0;
+            for (TaskInfo dependent : dependents.get(taskInfo)) {
+                Long dependentPath = criticalPathLengths.get(dependent);
+                if (dependentPath != null) {
+                    longestRemainingPath = Math.max(longestRemainingPath, dependentPath);
+                }
+            }
+            criticalPathLengths.put(taskInfo, (expectedDuration == null ? defaultDuration : expectedDuration) + longestRemainingPath);
+        }
+    }
+
+    /**
+     * Orders tasks with longer critical paths first. Tasks with equal critical path lengths are considered equal.
+     */
+    @Override
+    public int compare(TaskInfo first, TaskInfo second) {
+        return compare(criticalPathLength(second), criticalPathLength(first));
+    }
+
+    private long criticalPathLength(TaskInfo taskInfo) {
+        Long length = criticalPathLengths.get(taskInfo);
+        return length == null ? 0 : length;
+    }
+
+    public void taskStarted(TaskInfo taskInfo) {
+        startTimes.put(taskInfo, System.currentTimeMillis());
+    }
+
+    public void taskCompleted(TaskInfo taskInfo) {
+        Long startTime = startTimes.remove(taskInfo);
+        if (startTime != null) {
+            durations.put(taskInfo, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Records the durations of the executed tasks and reports the idle worker time that was avoided. Failures are logged rather than thrown,
+     * as this is called after the tasks have run, whatever their outcome.
+     */
+    public void executionFinished(List<TaskInfo> plannedTasks, ListMultimap<TaskInfo, TaskInfo> dependents) {
+        if (durations.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, Long> taskDurations = new HashMap<String, Long>();
+            long totalDuration = 0;
+            for (Map.Entry<TaskInfo, Long> entry : durations.entrySet()) {
+                taskDurations.put(entry.getKey().getTask().getPath(), entry.getValue());
+                totalDuration += entry.getValue();
+            }
+            durationHistory.recordDurations(taskDurations);
+
+            final Map<TaskInfo, Integer> planPositions = new HashMap<TaskInfo, Integer>();
+            for (TaskInfo taskInfo : plannedTasks) {
+                planPositions.put(taskInfo, planPositions.size());
+            }
+            Comparator<TaskInfo> planOrder = new Comparator<TaskInfo>() {
+                @Override
+                public int compare(TaskInfo first, TaskInfo second) {
+                    return planPositions.get(first) - planPositions.get(second);
+                }
+            };
+            Comparator<TaskInfo> priorityOrder = new Comparator<TaskInfo>() {
+                @Override
+                public int compare(TaskInfo first, TaskInfo second) {
+                    int result = CriticalPathTaskPrioritizer.this.compare(first, second);
+                    return result != 0 ? result : planPositions.get(first) - planPositions.get(second);
+                }
+            };
+            long idleInPlanOrder = workerCount * simulate(plannedTasks, dependents, planOrder) - totalDuration;
+            long idleByPriority = workerCount * simulate(plannedTasks, dependents, priorityOrder) - totalDuration;
+            LOGGER.info("Critical path prioritization avoided an estimated {} of idle worker time ({} instead of {} across {} workers).",
+                prettyTime(Math.max(0, idleInPlanOrder - idleByPriority)), prettyTime(idleByPriority), prettyTime(idleInPlanOrder), workerCount);
+        } catch (RuntimeException e) {
+            // Recording the durations is best effort, and must not replace the outcome of the build
+            LOGGER.warn("Could not record task durations for critical path prioritization.", e);
+        } finally {
+            startTimes.clear();
+            durations.clear();
+            criticalPathLengths.clear();
+        }
+    }
+
+    /**
+     * Returns the time it takes to execute the given tasks with their actual durations, when idle workers always pick the first ready task in the given order.
+     */
+    private long simulate(List<TaskInfo> plannedTasks, ListMultimap<TaskInfo, TaskInfo> dependents, Comparator<TaskInfo> order) {
+        Map<TaskInfo, Integer> incompleteDependencies = new HashMap<TaskInfo, Integer>();
+        for (TaskInfo taskInfo : plannedTasks) {
+            for (TaskInfo dependent : dependents.get(taskInfo)) {
+                Integer count = incompleteDependencies.get(dependent);
+                incompleteDependencies.put(dependent, count == null ? 1 : count + 1);
+            }
+        }
+        PriorityQueue<TaskInfo> readyTasks = new PriorityQueue<TaskInfo>(Math.max(1, plannedTasks.size()), order);
+        for (TaskInfo taskInfo : plannedTasks) {
+            if (!incompleteDependencies.containsKey(taskInfo)) {
+                readyTasks.add(taskInfo);
+            }
+        }
+        PriorityQueue<RunningTask> runningTasks = new PriorityQueue<RunningTask>();
+        long time = 0;
+        while (!readyTasks.isEmpty() || !runningTasks.isEmpty()) {
+            while (runningTasks.size() < workerCount && !readyTasks.isEmpty()) {
+                TaskInfo taskInfo = readyTasks.poll();
+                Long duration = durations.get(taskInfo);
+                runningTasks.add(new RunningTask(taskInfo, time + (duration == null ? 0 : duration)));
+            }
+            RunningTask finished = runningTasks.poll();
+            time = finished.finishTime;
+            for (TaskInfo dependent : dependents.get(finished.taskInfo)) {
+                int count = incompleteDependencies.get(dependent) - 1;
+                incompleteDependencies.put(dependent, count);
+                if (count == 0) {
+                    readyTasks.add(dependent);
+                }
+            }
+        }
+        return time;
+    }
+
+    private static long average(Iterable<Long> values) {
+        long total = 0;
+        int count = 0;
+        for (Long value : values) {
+            total += value;
+            count++;
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+    private static int compare(long first, long second) {
+        return first < second ? -1 : (first == second ? 0 : 1);
+    }
+
+    private static class RunningTask implements Comparable<RunningTask> {
+        private final TaskInfo taskInfo;
+        private final long finishTime;
+
+        private RunningTask(TaskInfo taskInfo, long finishTime) {
+            this.taskInfo = taskInfo;
+            this.finishTime = finishTime;
+        }
+
+        @Override
+        public int compareTo(RunningTask other) {
+            return CriticalPathTaskPrioritizer.compare(finishTime, other.finishTime);
+        }
+    }
+}
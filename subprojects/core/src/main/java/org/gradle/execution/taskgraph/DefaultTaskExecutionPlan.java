@@ -18,7 +18,6 @@ package org.gradle.execution.taskgraph;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
-import com.google.common.base.StandardSystemProperty;
 import com.google.common.collect.*;
 import org.gradle.api.*;
 import org.gradle.api.internal.TaskInternal;
@@ -40,7 +39,6 @@ import org.gradle.internal.graph.DirectedGraphRenderer;
 import org.gradle.internal.graph.GraphNodeRenderer;
 import org.gradle.internal.logging.text.StyledTextOutput;
 import org.gradle.util.CollectionUtils;
-import org.gradle.util.TextUtil;
 
 import java.io.File;
 import java.io.IOException;
@@ -66,7 +64,20 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Set<TaskInfo> entryTasks = new LinkedHashSet<TaskInfo>();
     private final TaskDependencyGraph graph = new TaskDependencyGraph();
     private final LinkedHashMap<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
-    private final List<TaskInfo> executionQueue = new LinkedList<TaskInfo>();
+    private final Map<TaskInfo, Integer> planPositions = new HashMap<TaskInfo, Integer>();
+    private final Set<TaskInfo> executionQueue = new HashSet<TaskInfo>();
+    private final ListMultimap<TaskInfo, TaskInfo> dependents = ArrayListMultimap.create();
+    private final Map<TaskInfo, Integer> incompleteDependencyCounts = new HashMap<TaskInfo, Integer>();
+    private final TreeSet<TaskInfo> readyQueue = new TreeSet<TaskInfo>(new Comparator<TaskInfo>() {
+        @Override
+        public int compare(TaskInfo first, TaskInfo second) {
+            int result = taskPrioritizer == null ? 0 : taskPrioritizer.compare(first, second);
+            return result != 0 ? result : planPositions.get(first) - planPositions.get(second);
+        }
+    });
+    private CriticalPathTaskPrioritizer taskPrioritizer;
+    private int incompleteQueuedTasks;
+    private int incompletePlannedTasks;
     private final List<Throwable> failures = new ArrayList<Throwable>();
     private Spec<? super Task> filter = Specs.satisfyAll();
 
@@ -74,7 +85,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final BuildCancellationToken cancellationToken;
     private final Multiset<String> projectsWithRunningTasks = HashMultiset.create();
     private final Multiset<String> projectsWithRunningNonParallelizableTasks = HashMultiset.create();
-    private final Set<TaskInternal> runningTasks = Sets.newIdentityHashSet();
+    private final OutputPathTrie<TaskInternal> runningTaskOutputPaths = new OutputPathTrie<TaskInternal>(File.separatorChar);
     private final Map<Task, Set<String>> canonicalizedOutputCache = Maps.newIdentityHashMap();
     private final Map<Task, Boolean> isParallelSafeCache = Maps.newIdentityHashMap();
     private boolean tasksCancelled;
@@ -306,8 +317,77 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 }
             }
         }
+        createExecutionQueue();
+    }
+
+    /**
+     * Queues every task of the plan, and tracks for each task how many of the tasks it must run after are not complete yet.
+     * Tasks for which this count is zero are kept in the ready queue in plan order, so workers do not need to scan the whole plan.
+     */
+    private void createExecutionQueue() {
+        clearExecutionQueue();
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            planPositions.put(taskInfo, planPositions.size());
+        }
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            executionQueue.add(taskInfo);
+            if (!taskInfo.isComplete()) {
+                incompleteQueuedTasks++;
+                incompletePlannedTasks++;
+            }
+            int incompleteDependencies = 0;
+            for (TaskInfo dependency : Iterables.concat(taskInfo.getMustSuccessors(), taskInfo.getDependencySuccessors())) {
+                dependents.put(dependency, taskInfo);
+                if (!dependency.isComplete()) {
+                    incompleteDependencies++;
+                }
+            }
+            incompleteDependencyCounts.put(taskInfo, incompleteDependencies);
+        }
+        if (taskPrioritizer != null) {
+            taskPrioritizer.prioritize(new ArrayList<TaskInfo>(executionPlan.values()), dependents);
+        }
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            if (incompleteDependencyCounts.get(taskInfo) == 0) {
+                readyQueue.add(taskInfo);
+            }
+        }
+    }
+
+    private void clearExecutionQueue() {
+        planPositions.clear();
         executionQueue.clear();
-        executionQueue.addAll(executionPlan.values());
+        dependents.clear();
+        incompleteDependencyCounts.clear();
+        readyQueue.clear();
+        incompleteQueuedTasks = 0;
+        incompletePlannedTasks = 0;
+    }
+
+    /**
+     * Must be called whenever the state of a task changes, to keep the ready queue up to date.
+     */
+    private void stateChanged(TaskInfo taskInfo, boolean wasComplete) {
+        boolean complete = taskInfo.isComplete();
+        if (complete == wasComplete) {
+            return;
+        }
+        int delta = complete ? -1 : 1;
+        if (executionQueue.contains(taskInfo)) {
+            incompleteQueuedTasks += delta;
+        }
+        if (planPositions.containsKey(taskInfo)) {
+            incompletePlannedTasks += delta;
+        }
+        for (TaskInfo dependent : dependents.get(taskInfo)) {
+            int incompleteDependencies = incompleteDependencyCounts.get(dependent) + delta;
+            incompleteDependencyCounts.put(dependent, incompleteDependencies);
+            if (incompleteDependencies == 0 && executionQueue.contains(dependent)) {
+                readyQueue.add(dependent);
+            } else if (incompleteDependencies == 1 && !complete) {
+                readyQueue.remove(dependent);
+            }
+        }
     }
 
     private void maybeRemoveProcessedShouldRunAfterEdge(Stack<GraphEdge> walkedShouldRunAfterEdges, TaskInfo taskNode) {
@@ -428,13 +508,13 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             graph.clear();
             entryTasks.clear();
             executionPlan.clear();
-            executionQueue.clear();
+            clearExecutionQueue();
             failures.clear();
             projectsWithRunningTasks.clear();
             projectsWithRunningNonParallelizableTasks.clear();
             canonicalizedOutputCache.clear();
             isParallelSafeCache.clear();
-            runningTasks.clear();
+            runningTaskOutputPaths.clear();
         } finally {
             lock.unlock();
         }
@@ -452,6 +532,27 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         this.failureHandler = handler;
     }
 
+    /**
+     * Starts the ready tasks with the longest expected chain of remaining work first, rather than in plan order. Must be called before the execution plan is determined.
+     */
+    public void useTaskPrioritizer(CriticalPathTaskPrioritizer taskPrioritizer) {
+        this.taskPrioritizer = taskPrioritizer;
+    }
+
+    /**
+     * Called once all tasks of the plan have been executed, to let the task prioritizer record the durations of the tasks.
+     */
+    public void executionFinished() {
+        lock.lock();
+        try {
+            if (taskPrioritizer != null) {
+                taskPrioritizer.executionFinished(new ArrayList<TaskInfo>(executionPlan.values()), dependents);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public TaskInfo getTaskToExecute() {
         lock.lock();
         try {
@@ -461,21 +562,27 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                         tasksCancelled = true;
                     }
                 }
+                if (incompleteQueuedTasks == 0) {
+                    return null;
+                }
                 TaskInfo nextMatching = null;
-                boolean allTasksComplete = true;
-                Iterator<TaskInfo> iterator = executionQueue.iterator();
+                Iterator<TaskInfo> iterator = readyQueue.iterator();
                 while (iterator.hasNext()) {
                     TaskInfo taskInfo = iterator.next();
-                    allTasksComplete = allTasksComplete && taskInfo.isComplete();
-                    if (taskInfo.isReady() && taskInfo.allDependenciesComplete() && canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
-                        nextMatching = taskInfo;
+                    if (taskInfo.isReady()) {
+                        if (canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
+                            nextMatching = taskInfo;
+                            iterator.remove();
+                            executionQueue.remove(taskInfo);
+                            incompleteQueuedTasks--;
+                            break;
+                        }
+                    } else if (!taskInfo.isMustNotRun()) {
+                        // Skipped, will never run. Tasks that must not run stay queued as they may still be enforced by a finalized task
                         iterator.remove();
-                        break;
+                        executionQueue.remove(taskInfo);
                     }
                 }
-                if (allTasksComplete) {
-                    return null;
-                }
                 if (nextMatching == null) {
                     try {
                         condition.await();
@@ -486,9 +593,13 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                     if (nextMatching.allDependenciesSuccessful()) {
                         nextMatching.startExecution();
                         recordTaskStarted(nextMatching);
+                        if (taskPrioritizer != null) {
+                            taskPrioritizer.taskStarted(nextMatching);
+                        }
                         return nextMatching;
                     } else {
                         nextMatching.skipExecution();
+                        stateChanged(nextMatching, false);
                         condition.signalAll();
                     }
                 }
@@ -545,41 +656,20 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     @Nullable
     private Pair<TaskInternal, String> firstTaskWithOverlappingOutput(TaskInternal candidateTask) {
-        if (runningTasks.isEmpty()) {
+        if (runningTaskOutputPaths.isEmpty()) {
             return null;
         }
 
         for (String candidateTaskOutputPath : canonicalizedOutputPaths(candidateTask)) {
-            for (TaskInternal runningTask : runningTasks) {
-                for (String runningTaskOutputPath : canonicalizedOutputPaths(runningTask)) {
-                    if (pathsOverlap(candidateTaskOutputPath, runningTaskOutputPath)) {
-                        return Pair.of(runningTask, TextUtil.shorterOf(candidateTaskOutputPath, runningTaskOutputPath));
-                    }
-                }
+            Pair<TaskInternal, String> overlap = runningTaskOutputPaths.findOverlap(candidateTaskOutputPath);
+            if (overlap != null) {
+                return overlap;
             }
         }
 
         return null;
     }
 
-
-    private boolean pathsOverlap(String firstPath, String secondPath) {
-        if (firstPath.equals(secondPath)) {
-            return true;
-        }
-
-        String shorter;
-        String longer;
-        if (firstPath.length() > secondPath.length()) {
-            shorter = secondPath;
-            longer = firstPath;
-        } else {
-            shorter = firstPath;
-            longer = secondPath;
-        }
-        return longer.startsWith(shorter + StandardSystemProperty.FILE_SEPARATOR.value());
-    }
-
     boolean isParallelizable(TaskInternal task) {
         if (intraProjectParallelization) {
             Boolean safe = isParallelSafeCache.get(task);
@@ -613,7 +703,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             projectsWithRunningNonParallelizableTasks.add(projectPath);
         }
         projectsWithRunningTasks.add(projectPath);
-        runningTasks.add(task);
+        for (String outputPath : canonicalizedOutputPaths(task)) {
+            runningTaskOutputPaths.add(outputPath, task);
+        }
     }
 
     private void recordTaskCompleted(TaskInfo taskInfo) {
@@ -623,9 +715,10 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             projectsWithRunningNonParallelizableTasks.remove(projectPath);
         }
         projectsWithRunningTasks.remove(projectPath);
-        canonicalizedOutputCache.remove(task);
         isParallelSafeCache.remove(task);
-        runningTasks.remove(task);
+        for (String outputPath : canonicalizedOutputPaths(task)) {
+            runningTaskOutputPaths.remove(outputPath, task);
+        }
     }
 
     public void taskComplete(TaskInfo taskInfo) {
@@ -637,7 +730,11 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             }
 
             taskInfo.finishExecution();
+            stateChanged(taskInfo, false);
             recordTaskCompleted(taskInfo);
+            if (taskPrioritizer != null) {
+                taskPrioritizer.taskCompleted(taskInfo);
+            }
             condition.signalAll();
         } finally {
             lock.unlock();
@@ -663,7 +760,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             enforceWithDependencies(dependencyNode, enforcedTasks);
         }
         if (node.isMustNotRun() || node.isRequired()) {
+            boolean wasComplete = node.isComplete();
             node.enforceRun();
+            stateChanged(node, wasComplete);
         }
     }
 
@@ -693,6 +792,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         for (TaskInfo taskInfo : executionPlan.values()) {
             if (taskInfo.isRequired()) {
                 taskInfo.skipExecution();
+                stateChanged(taskInfo, false);
                 aborted = true;
             }
         }
@@ -731,12 +831,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private boolean allTasksComplete() {
-        for (TaskInfo taskInfo : executionPlan.values()) {
-            if (!taskInfo.isComplete()) {
-                return false;
-            }
-        }
-        return true;
+        return incompletePlannedTasks == 0;
     }
 
     private static class GraphEdge {
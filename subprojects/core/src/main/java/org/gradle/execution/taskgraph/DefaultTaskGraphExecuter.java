@@ -81,6 +81,10 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         taskExecutionPlan.useFailureHandler(handler);
     }
 
+    public void useTaskPrioritizer(CriticalPathTaskPrioritizer taskPrioritizer) {
+        taskExecutionPlan.useTaskPrioritizer(taskPrioritizer);
+    }
+
     public void useFilter(Spec<? super Task> filter) {
         taskExecutionPlan.useFilter(filter);
         taskGraphState = TaskGraphState.DIRTY;
@@ -110,6 +114,7 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
             taskPlanExecutor.process(taskExecutionPlan, new EventFiringTaskWorker(taskExecuter.create(), buildOperationExecutor.getCurrentOperationId()));
             LOGGER.debug("Timing: Executing the DAG took " + clock.getTime());
         } finally {
+            taskExecutionPlan.executionFinished();
             taskExecutionPlan.clear();
         }
     }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.Nullable;
+import org.gradle.internal.Pair;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes paths by their segments, so that finding a path that is equal to, an ancestor of or a descendant of a given path takes time
+ * proportional to the depth of the given path rather than to the number of indexed paths.
+ *
+ * @param <T> the type of the owners of the paths
+ */
+class OutputPathTrie<T> {
+    private final char separator;
+    private final Node<T> root = new Node<T>(null, "");
+
+    OutputPathTrie(char separator) {
+        this.separator = separator;
+    }
+
+    public boolean isEmpty() {
+        return root.ownersInSubtree == 0;
+    }
+
+    public void clear() {
+        root.children.clear();
+        root.ownersInSubtree = 0;
+    }
+
+    public void add(String path, T owner) {
+        Node<T> node = root;
+        node.ownersInSubtree++;
+        int start = 0;
+        while (start <= path.length()) {
+            int end = segmentEnd(path, start);
+            node = node.child(path.substring(start, end), path.substring(0, end));
+            node.ownersInSubtree++;
+            start = end + 1;
+        }
+        node.owners.add(owner);
+    }
+
+    public void remove(String path, T owner) {
+        List<Node<T>> nodes = new ArrayList<Node<T>>();
+        Node<T> node = root;
+        nodes.add(node);
+        int start = 0;
+        while (start <= path.length()) {
+            int end = segmentEnd(path, start);
+            node = node.children.get(path.substring(start, end));
+            if (node == null) {
+                return;
+            }
+            nodes.add(node);
+            start = end + 1;
+        }
+        if (!node.owners.remove(owner)) {
+            return;
+        }
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node<T> current = nodes.get(i);
+            current.ownersInSubtree--;
+            if (current.ownersInSubtree == 0 && i > 0) {
+                nodes.get(i - 1).children.remove(current.segment);
+            }
+        }
+    }
+
+    /**
+     * Finds an indexed path that is equal to, an ancestor of or a descendant of the given path.
+     *
+     * @return the owner of the overlapping path together with the shorter of the two paths, or {@code null} when there is no overlap.
+     */
+    @Nullable
+    public Pair<T, String> findOverlap(String path) {
+        Node<T> node = root;
+        int start = 0;
+        while (start <= path.length()) {
+            int end = segmentEnd(path, start);
+            node = node.children.get(path.substring(start, end));
+            if (node == null) {
+                return null;
+            }
+            if (!node.owners.isEmpty()) {
+                return Pair.of(node.owners.get(0), node.path);
+            }
+            start = end + 1;
+        }
+        // Some descendant of the given path is indexed
+        while (node.owners.isEmpty()) {
+            node = node.children.values().iterator().next();
+        }
+        return Pair.of(node.owners.get(0), path);
+    }
+
+    private int segmentEnd(String path, int start) {
+        int end = path.indexOf(separator, start);
+        return end < 0 ? path.length() : end;
+    }
+
+    private static class Node<T> {
+        private final String segment;
+        private final String path;
+        private final Map<String, Node<T>> children = new HashMap<String, Node<T>>();
+        private final List<T> owners = new ArrayList<T>(1);
+        private int ownersInSubtree;
+
+        Node(String path, String segment) {
+            this.path = path;
+            this.segment = segment;
+        }
+
+        Node<T> child(String segment, String path) {
+            Node<T> child = children.get(segment);
+            if (child == null) {
+                child = new Node<T>(path, segment);
+                children.put(segment, child);
+            }
+            return child;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.gradle.api.internal.DynamicModulesClassPathProvider;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.CacheAccessingFileSnapshotter;
 import org.gradle.api.internal.changedetection.state.CachingFileSnapshotter;
+import org.gradle.api.internal.changedetection.state.InMemoryFileCollectionSnapshotCache;
 import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache;
 import org.gradle.api.internal.classpath.DefaultModuleRegistry;
 import org.gradle.api.internal.classpath.DefaultPluginModuleRegistry;
@@ -44,6 +45,7 @@ import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.api.internal.file.TmpDirTemporaryFileProvider;
 import org.gradle.api.internal.file.collections.DefaultDirectoryFileTreeFactory;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
+import org.gradle.api.internal.file.collections.WatchingDirectoryWalker;
 import org.gradle.api.internal.hash.DefaultHasher;
 import org.gradle.api.internal.initialization.loadercache.ClassLoaderCache;
 import org.gradle.api.internal.initialization.loadercache.DefaultClassLoaderCache;
@@ -265,6 +267,10 @@ public class GlobalScopeServices {
         return new InMemoryTaskArtifactCache();
     }
 
+    InMemoryFileCollectionSnapshotCache createInMemoryFileCollectionSnapshotCache() {
+        return new InMemoryFileCollectionSnapshotCache();
+    }
+
     DefaultFileLockContentionHandler createFileLockContentionHandler(ExecutorFactory executorFactory, InetAddressFactory inetAddressFactory) {
         return new DefaultFileLockContentionHandler(
             executorFactory,
@@ -279,8 +285,12 @@ public class GlobalScopeServices {
         return new DefaultFileLookup(fileSystem, patternSetFactory);
     }
 
-    DirectoryFileTreeFactory createDirectoryFileTreeFactory(Factory<PatternSet> patternSetFactory) {
-        return new DefaultDirectoryFileTreeFactory(patternSetFactory);
+    WatchingDirectoryWalker createWatchingDirectoryWalker(FileWatcherFactory fileWatcherFactory, ExecutorFactory executorFactory, TemporaryFileProvider temporaryFileProvider) {
+        return new WatchingDirectoryWalker(fileWatcherFactory, executorFactory, temporaryFileProvider);
+    }
+
+    DirectoryFileTreeFactory createDirectoryFileTreeFactory(Factory<PatternSet> patternSetFactory, WatchingDirectoryWalker watchingDirectoryWalker) {
+        return new DefaultDirectoryFileTreeFactory(patternSetFactory, watchingDirectoryWalker);
     }
 
     FileCollectionFactory createFileCollectionFactory() {
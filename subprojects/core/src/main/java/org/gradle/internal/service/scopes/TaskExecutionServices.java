@@ -24,6 +24,7 @@ import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.changes.DefaultTaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.changes.ShortCircuitTaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.state.CacheBackedFileSnapshotRepository;
+import org.gradle.api.internal.changedetection.state.CacheBackedTaskDurationHistory;
 import org.gradle.api.internal.changedetection.state.CacheBackedTaskHistoryRepository;
 import org.gradle.api.internal.changedetection.state.CachingFileSnapshotter;
 import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter;
@@ -31,6 +32,7 @@ import org.gradle.api.internal.changedetection.state.DefaultTaskArtifactStateCac
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshot;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshotter;
 import org.gradle.api.internal.changedetection.state.FileSnapshotter;
+import org.gradle.api.internal.changedetection.state.InMemoryFileCollectionSnapshotCache;
 import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache;
 import org.gradle.api.internal.changedetection.state.MinimalFileSetSnapshotter;
 import org.gradle.api.internal.changedetection.state.NoOpDecorator;
@@ -39,11 +41,17 @@ import org.gradle.api.internal.changedetection.state.TaskArtifactStateCacheAcces
 import org.gradle.api.internal.changedetection.state.TaskHistoryRepository;
 import org.gradle.api.internal.file.FileCollectionFactory;
 import org.gradle.api.internal.file.FileResolver;
-import org.gradle.api.internal.hash.DefaultHasher;
+import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.api.internal.hash.FileChannelHasher;
+import org.gradle.api.internal.hash.FileHashFunction;
 import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.cache.AsyncStoringTaskOutputCache;
+import org.gradle.api.internal.tasks.cache.FormatDetectingTaskOutputPacker;
+import org.gradle.api.internal.tasks.cache.LazyTaskOutputCache;
+import org.gradle.api.internal.tasks.cache.TarTaskOutputPacker;
+import org.gradle.api.internal.tasks.cache.TaskOutputCache;
 import org.gradle.api.internal.tasks.cache.TaskOutputPacker;
 import org.gradle.api.internal.tasks.cache.ZipTaskOutputPacker;
-import org.gradle.api.internal.tasks.cache.config.TaskCachingInternal;
 import org.gradle.api.internal.tasks.execution.ExecuteActionsTaskExecuter;
 import org.gradle.api.internal.tasks.execution.ExecuteAtMostOnceTaskExecuter;
 import org.gradle.api.internal.tasks.execution.PostExecutionAnalysisTaskExecuter;
@@ -56,8 +64,10 @@ import org.gradle.api.internal.tasks.execution.ValidatingTaskExecuter;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.internal.CacheDecorator;
+import org.gradle.execution.taskgraph.TaskDurationHistory;
 import org.gradle.execution.taskgraph.TaskPlanExecutor;
 import org.gradle.execution.taskgraph.TaskPlanExecutorFactory;
+import org.gradle.internal.Factory;
 import org.gradle.internal.classloader.ClassLoaderHierarchyHasher;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.environment.GradleBuildEnvironment;
@@ -76,7 +86,7 @@ import org.gradle.internal.util.SystemPropertiesUtil;
 
 public class TaskExecutionServices {
 
-    TaskExecuter createTaskExecuter(TaskArtifactStateRepository repository, TaskOutputPacker packer, StartParameter startParameter, ListenerManager listenerManager, GradleInternal gradle) {
+    TaskExecuter createTaskExecuter(TaskArtifactStateRepository repository, TaskOutputCache taskOutputCache, TaskOutputPacker packer, ListenerManager listenerManager, GradleInternal gradle) {
         // TODO - need a more comprehensible way to only collect inputs for the outer build
         //      - we are trying to ignore buildSrc here, but also avoid weirdness with use of GradleBuild tasks
         boolean isOuterBuild = gradle.getParent() == null;
@@ -93,8 +103,7 @@ public class TaskExecutionServices {
                             new SkipUpToDateTaskExecuter(
                                 repository,
                                 createSkipCachedExecuterIfNecessary(
-                                    startParameter,
-                                    gradle.getTaskCaching(),
+                                    taskOutputCache,
                                     packer,
                                     new PostExecutionAnalysisTaskExecuter(
                                         new ExecuteActionsTaskExecuter(
@@ -110,32 +119,41 @@ public class TaskExecutionServices {
         );
     }
 
-    private static TaskExecuter createSkipCachedExecuterIfNecessary(StartParameter startParameter, TaskCachingInternal taskCaching, TaskOutputPacker packer, TaskExecuter delegate) {
+    private static TaskExecuter createSkipCachedExecuterIfNecessary(TaskOutputCache taskOutputCache, TaskOutputPacker packer, TaskExecuter delegate) {
         if (SystemPropertiesUtil.isEnabled("org.gradle.cache.tasks")) {
-            return new SkipCachedTaskExecuter(taskCaching, packer, startParameter, delegate);
+            return new SkipCachedTaskExecuter(taskOutputCache, packer, delegate);
         } else {
             return delegate;
         }
     }
 
-    TaskArtifactStateCacheAccess createCacheAccess(Gradle gradle, CacheRepository cacheRepository, InMemoryTaskArtifactCache inMemoryTaskArtifactCache, GradleBuildEnvironment environment) {
+    FileHashFunction createFileHashFunction() {
+        return FileHashFunction.forId(System.getProperty("org.gradle.internal.hashing.function", FileHashFunction.MD5.getId()));
+    }
+
+    TaskArtifactStateCacheAccess createCacheAccess(Gradle gradle, CacheRepository cacheRepository, InMemoryTaskArtifactCache inMemoryTaskArtifactCache, GradleBuildEnvironment environment, FileHashFunction fileHashFunction) {
         CacheDecorator decorator;
         if (environment.isLongLivingProcess()) {
             decorator = inMemoryTaskArtifactCache;
         } else {
             decorator = new NoOpDecorator();
         }
-        return new DefaultTaskArtifactStateCacheAccess(gradle, cacheRepository, decorator);
+        return new DefaultTaskArtifactStateCacheAccess(gradle, cacheRepository, decorator, fileHashFunction);
+    }
+
+    TaskDurationHistory createTaskDurationHistory(TaskArtifactStateCacheAccess cacheAccess) {
+        return new CacheBackedTaskDurationHistory(cacheAccess);
     }
 
-    CachingFileSnapshotter createFileSnapshotter(TaskArtifactStateCacheAccess cacheAccess, StringInterner stringInterner) {
-        return new CachingFileSnapshotter(new DefaultHasher(), cacheAccess, stringInterner);
+    CachingFileSnapshotter createFileSnapshotter(TaskArtifactStateCacheAccess cacheAccess, StringInterner stringInterner, StartParameter startParameter, ExecutorFactory executorFactory, FileHashFunction fileHashFunction) {
+        int hashingThreads = Integer.getInteger("org.gradle.internal.snapshotting.hashingThreads", startParameter.getMaxWorkerCount());
+        return new CachingFileSnapshotter(new FileChannelHasher(fileHashFunction), cacheAccess, stringInterner, executorFactory, hashingThreads);
     }
 
     TaskArtifactStateRepository createTaskArtifactStateRepository(Instantiator instantiator, TaskArtifactStateCacheAccess cacheAccess, StartParameter startParameter, FileSnapshotter fileSnapshotter,
                                                                   StringInterner stringInterner, FileResolver fileResolver, FileSystem fileSystem, FileCollectionFactory fileCollectionFactory,
-                                                                  ClassLoaderHierarchyHasher classLoaderHierarchyHasher) {
-        FileCollectionSnapshotter fileCollectionSnapshotter = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess, stringInterner, fileResolver);
+                                                                  ClassLoaderHierarchyHasher classLoaderHierarchyHasher, InMemoryFileCollectionSnapshotCache snapshotCache, FileHashFunction fileHashFunction) {
+        FileCollectionSnapshotter fileCollectionSnapshotter = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess, stringInterner, fileResolver, snapshotCache, fileHashFunction);
         FileCollectionSnapshotter discoveredFileCollectionSnapshotter = new MinimalFileSetSnapshotter(fileSnapshotter, cacheAccess, stringInterner, fileResolver, fileSystem);
 
         OutputFilesCollectionSnapshotter outputFilesSnapshotter = new OutputFilesCollectionSnapshotter(fileCollectionSnapshotter, stringInterner);
@@ -179,7 +197,29 @@ public class TaskExecutionServices {
         return new DefaultBuildOperationWorkerRegistry(startParameter.getMaxWorkerCount());
     }
 
-    TaskOutputPacker createTaskResultPacker() {
-        return new ZipTaskOutputPacker();
+    TaskOutputCache createTaskOutputCache(final GradleInternal gradle, final StartParameter startParameter, final TemporaryFileProvider temporaryFileProvider, final ExecutorFactory executorFactory) {
+        return new LazyTaskOutputCache(new Factory<TaskOutputCache>() {
+            @Override
+            public TaskOutputCache create() {
+                TaskOutputCache cache = gradle.getTaskCaching().getCacheFactory().createCache(startParameter);
+                int storeThreads = startParameter.getMaxWorkerCount();
+                return new AsyncStoringTaskOutputCache(cache, temporaryFileProvider, executorFactory, storeThreads, storeThreads * 2);
+            }
+        });
+    }
+
+    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem) {
+        ZipTaskOutputPacker zipPacker = new ZipTaskOutputPacker();
+        TarTaskOutputPacker tarPacker = new TarTaskOutputPacker(fileSystem);
+        String format = System.getProperty("org.gradle.cache.tasks.format", "zip");
+        TaskOutputPacker packer;
+        if (format.equals("zip")) {
+            packer = zipPacker;
+        } else if (format.equals("tar")) {
+            packer = tarPacker;
+        } else {
+            throw new IllegalArgumentException(String.format("Unknown task output cache format '%s', must be one of 'zip' or 'tar'.", format));
+        }
+        return new FormatDetectingTaskOutputPacker(packer, zipPacker, tarPacker);
     }
 }
@@ -52,6 +52,15 @@ public class BuildProfile {
     private long projectsLoaded;
     private long projectsEvaluated;
     private long buildFinished;
+    private long cacheLockWaitTime;
+    private int cacheLockWaitCount;
+    private long inMemoryCacheHitCount;
+    private long inMemoryCacheMissCount;
+    private long inMemoryCacheEvictionCount;
+    private long inMemoryCacheSize;
+    private long snapshotCacheHitCount;
+    private long snapshotCacheMissCount;
+    private long snapshotCacheEvictionCount;
     private StartParameter startParameter;
     private boolean successful;
 
@@ -242,6 +251,118 @@ public class BuildProfile {
         return result;
     }
 
+    /**
+     * Should be set with the time (in mSec) that threads spent waiting for each other to access caches during the build.
+     * @param cacheLockWaitTime
+     */
+    public void setCacheLockWaitTime(long cacheLockWaitTime) {
+        this.cacheLockWaitTime = cacheLockWaitTime;
+    }
+
+    /**
+     * Get the total time (in mSec) that threads spent waiting for each other to access caches during the build.
+     * @return
+     */
+    public long getCacheLockWaitTime() {
+        return cacheLockWaitTime;
+    }
+
+    public void setCacheLockWaitCount(int cacheLockWaitCount) {
+        this.cacheLockWaitCount = cacheLockWaitCount;
+    }
+
+    /**
+     * Get the number of times that a thread had to wait for another thread to access a cache during the build.
+     * @return
+     */
+    public int getCacheLockWaitCount() {
+        return cacheLockWaitCount;
+    }
+
+    public void setInMemoryCacheHitCount(long inMemoryCacheHitCount) {
+        this.inMemoryCacheHitCount = inMemoryCacheHitCount;
+    }
+
+    /**
+     * Get the number of task artifact cache lookups that were answered from memory during the build.
+     * @return
+     */
+    public long getInMemoryCacheHitCount() {
+        return inMemoryCacheHitCount;
+    }
+
+    public void setInMemoryCacheMissCount(long inMemoryCacheMissCount) {
+        this.inMemoryCacheMissCount = inMemoryCacheMissCount;
+    }
+
+    /**
+     * Get the number of task artifact cache lookups that had to read from disk during the build.
+     * @return
+     */
+    public long getInMemoryCacheMissCount() {
+        return inMemoryCacheMissCount;
+    }
+
+    public void setInMemoryCacheEvictionCount(long inMemoryCacheEvictionCount) {
+        this.inMemoryCacheEvictionCount = inMemoryCacheEvictionCount;
+    }
+
+    /**
+     * Get the number of task artifact cache entries that were evicted from memory during the build.
+     * @return
+     */
+    public long getInMemoryCacheEvictionCount() {
+        return inMemoryCacheEvictionCount;
+    }
+
+    /**
+     * Should be set with the estimated size (in bytes) of the task artifact cache entries held in memory when the build finished.
+     * @param inMemoryCacheSize
+     */
+    public void setInMemoryCacheSize(long inMemoryCacheSize) {
+        this.inMemoryCacheSize = inMemoryCacheSize;
+    }
+
+    public long getInMemoryCacheSize() {
+        return inMemoryCacheSize;
+    }
+
+    public void setSnapshotCacheHitCount(long snapshotCacheHitCount) {
+        this.snapshotCacheHitCount = snapshotCacheHitCount;
+    }
+
+    /**
+     * Get the number of file collection snapshots that were reused from memory during the build.
+     * @return
+     */
+    public long getSnapshotCacheHitCount() {
+        return snapshotCacheHitCount;
+    }
+
+    public void setSnapshotCacheMissCount(long snapshotCacheMissCount) {
+        this.snapshotCacheMissCount = snapshotCacheMissCount;
+    }
+
+    /**
+     * Get the number of file collections that had to be snapshotted during the build.
+     * @return
+     */
+    public long getSnapshotCacheMissCount() {
+        return snapshotCacheMissCount;
+    }
+
+    public void setSnapshotCacheEvictionCount(long snapshotCacheEvictionCount) {
+        this.snapshotCacheEvictionCount = snapshotCacheEvictionCount;
+    }
+
+    /**
+     * Get the number of file collection snapshots that were evicted from memory during the build.
+     * @return
+     */
+    public long getSnapshotCacheEvictionCount() {
+        return snapshotCacheEvictionCount;
+    }
+
     public String getBuildStartedDescription() {
         return "Started on: " + DATE_FORMAT.format(buildStarted);
     }
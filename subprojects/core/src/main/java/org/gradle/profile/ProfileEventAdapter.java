@@ -15,6 +15,7 @@
  */
 package org.gradle.profile;
 
+import com.google.common.cache.CacheStats;
 import org.gradle.BuildListener;
 import org.gradle.BuildResult;
 import org.gradle.api.Project;
@@ -25,8 +26,12 @@ import org.gradle.api.artifacts.DependencyResolutionListener;
 import org.gradle.api.artifacts.ResolvableDependencies;
 import org.gradle.api.execution.TaskExecutionListener;
 import org.gradle.api.initialization.Settings;
+import org.gradle.api.internal.changedetection.state.InMemoryFileCollectionSnapshotCache;
+import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.api.tasks.TaskState;
+import org.gradle.cache.internal.CacheFactory;
+import org.gradle.cache.internal.CacheLockContention;
 import org.gradle.initialization.BuildCompletionListener;
 import org.gradle.initialization.BuildRequestMetaData;
 import org.gradle.internal.TimeProvider;
@@ -38,12 +43,21 @@ public class ProfileEventAdapter implements BuildListener, ProjectEvaluationList
     private final BuildRequestMetaData buildMetaData;
     private final TimeProvider timeProvider;
     private final ProfileListener listener;
+    private final CacheFactory cacheFactory;
+    private final InMemoryTaskArtifactCache inMemoryTaskArtifactCache;
+    private final InMemoryFileCollectionSnapshotCache snapshotCache;
     private BuildProfile buildProfile;
+    private CacheLockContention lockContentionAtBuildStart;
+    private InMemoryTaskArtifactCache.Statistics inMemoryCacheStatisticsAtBuildStart;
+    private CacheStats snapshotCacheStatisticsAtBuildStart;
 
-    public ProfileEventAdapter(BuildRequestMetaData buildMetaData, TimeProvider timeProvider, ProfileListener listener) {
+    public ProfileEventAdapter(BuildRequestMetaData buildMetaData, TimeProvider timeProvider, ProfileListener listener, CacheFactory cacheFactory, InMemoryTaskArtifactCache inMemoryTaskArtifactCache, InMemoryFileCollectionSnapshotCache snapshotCache) {
         this.buildMetaData = buildMetaData;
         this.timeProvider = timeProvider;
         this.listener = listener;
+        this.cacheFactory = cacheFactory;
+        this.inMemoryTaskArtifactCache = inMemoryTaskArtifactCache;
+        this.snapshotCache = snapshotCache;
     }
 
     // BuildListener
@@ -52,6 +66,9 @@ public class ProfileEventAdapter implements BuildListener, ProjectEvaluationList
         buildProfile = new BuildProfile(gradle.getStartParameter());
         buildProfile.setBuildStarted(now);
         buildProfile.setProfilingStarted(buildMetaData.getBuildTimeClock().getStartTime());
+        lockContentionAtBuildStart = cacheFactory.getLockContention();
+        inMemoryCacheStatisticsAtBuildStart = inMemoryTaskArtifactCache.getTotalStatistics();
+        snapshotCacheStatisticsAtBuildStart = snapshotCache.getStatistics();
     }
 
     public void settingsEvaluated(Settings settings) {
@@ -73,10 +90,25 @@ public class ProfileEventAdapter implements BuildListener, ProjectEvaluationList
     public void completed() {
         if(buildProfile != null) {
             buildProfile.setBuildFinished(timeProvider.getCurrentTime());
+            CacheLockContention lockContention = cacheFactory.getLockContention();
+            buildProfile.setCacheLockWaitTime(lockContention.getWaitTimeMillis() - lockContentionAtBuildStart.getWaitTimeMillis());
+            buildProfile.setCacheLockWaitCount(lockContention.getWaitCount() - lockContentionAtBuildStart.getWaitCount());
+            InMemoryTaskArtifactCache.Statistics inMemoryCacheStatistics = inMemoryTaskArtifactCache.getTotalStatistics();
+            buildProfile.setInMemoryCacheHitCount(inMemoryCacheStatistics.getHitCount() - inMemoryCacheStatisticsAtBuildStart.getHitCount());
+            buildProfile.setInMemoryCacheMissCount(inMemoryCacheStatistics.getMissCount() - inMemoryCacheStatisticsAtBuildStart.getMissCount());
+            buildProfile.setInMemoryCacheEvictionCount(inMemoryCacheStatistics.getEvictionCount() - inMemoryCacheStatisticsAtBuildStart.getEvictionCount());
+            buildProfile.setInMemoryCacheSize(inMemoryTaskArtifactCache.getEstimatedSize());
+            CacheStats snapshotCacheStatistics = snapshotCache.getStatistics().minus(snapshotCacheStatisticsAtBuildStart);
+            buildProfile.setSnapshotCacheHitCount(snapshotCacheStatistics.hitCount());
+            buildProfile.setSnapshotCacheMissCount(snapshotCacheStatistics.missCount());
+            buildProfile.setSnapshotCacheEvictionCount(snapshotCacheStatistics.evictionCount());
             try {
                 listener.buildFinished(buildProfile);
             } finally {
                 buildProfile = null;
+                lockContentionAtBuildStart = null;
+                inMemoryCacheStatisticsAtBuildStart = null;
+                snapshotCacheStatisticsAtBuildStart = null;
             }
         }
     }
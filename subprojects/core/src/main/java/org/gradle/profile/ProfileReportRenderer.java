@@ -106,7 +106,63 @@ public class ProfileReportRenderer {
                                     htmlWriter.startElement("td").characters("Task Execution").endElement();
                                     htmlWriter.startElement("td").attribute("class", "numeric").characters(DURATION_FORMAT.format(model.getElapsedTotalExecutionTime())).endElement();
                                 htmlWriter.endElement();
+                                if (model.getCacheLockWaitCount() > 0) {
+                                    htmlWriter.startElement("tr");
+                                        htmlWriter.startElement("td").characters("Waiting for Cache Locks (" + model.getCacheLockWaitCount() + " times)").endElement();
+                                        htmlWriter.startElement("td").attribute("class", "numeric").characters(DURATION_FORMAT.format(model.getCacheLockWaitTime())).endElement();
+                                    htmlWriter.endElement();
+                                }
                             htmlWriter.endElement();
+                            if (model.getInMemoryCacheHitCount() + model.getInMemoryCacheMissCount() > 0) {
+                                htmlWriter.startElement("h2").characters("In-memory Task Artifact Caches").endElement();
+                                htmlWriter.startElement("table");
+                                    htmlWriter.startElement("thead");
+                                        htmlWriter.startElement("tr");
+                                            htmlWriter.startElement("th").characters("Description").endElement();
+                                            htmlWriter.startElement("th").attribute("class", "numeric").characters("Count").endElement();
+                                        htmlWriter.endElement();
+                                    htmlWriter.endElement();
+                                    htmlWriter.startElement("tr");
+                                        htmlWriter.startElement("td").characters("Hits").endElement();
+                                        htmlWriter.startElement("td").attribute("class", "numeric").characters(String.valueOf(model.getInMemoryCacheHitCount())).endElement();
+                                    htmlWriter.endElement();
+                                    htmlWriter.startElement("tr");
+                                        htmlWriter.startElement("td").characters("Misses").endElement();
+                                        htmlWriter.startElement("td").attribute("class", "numeric").characters(String.valueOf(model.getInMemoryCacheMissCount())).endElement();
+                                    htmlWriter.endElement();
+                                    htmlWriter.startElement("tr");
+                                        htmlWriter.startElement("td").characters("Evictions").endElement();
+                                        htmlWriter.startElement("td").attribute("class", "numeric").characters(String.valueOf(model.getInMemoryCacheEvictionCount())).endElement();
+                                    htmlWriter.endElement();
+                                    htmlWriter.startElement("tr");
+                                        htmlWriter.startElement("td").characters("Estimated size at end of build (KB)").endElement();
+                                        htmlWriter.startElement("td").attribute("class", "numeric").characters(String.valueOf(model.getInMemoryCacheSize() / 1024)).endElement();
+                                    htmlWriter.endElement();
+                                htmlWriter.endElement();
+                            }
+                            if (model.getSnapshotCacheHitCount() + model.getSnapshotCacheMissCount() > 0) {
+                                htmlWriter.startElement("h2").characters("In-memory File Collection Snapshots").endElement();
+                                htmlWriter.startElement("table");
+                                    htmlWriter.startElement("thead");
+                                        htmlWriter.startElement("tr");
+                                            htmlWriter.startElement("th").characters("Description").endElement();
+                                            htmlWriter.startElement("th").attribute("class", "numeric").characters("Count").endElement();
+                                        htmlWriter.endElement();
+                                    htmlWriter.endElement();
+                                    htmlWriter.startElement("tr");
+                                        htmlWriter.startElement("td").characters("Reused snapshots").endElement();
+                                        htmlWriter.startElement("td").attribute("class", "numeric").characters(String.valueOf(model.getSnapshotCacheHitCount())).endElement();
+                                    htmlWriter.endElement();
+                                    htmlWriter.startElement("tr");
+                                        htmlWriter.startElement("td").characters("Created snapshots").endElement();
+                                        htmlWriter.startElement("td").attribute("class", "numeric").characters(String.valueOf(model.getSnapshotCacheMissCount())).endElement();
+                                    htmlWriter.endElement();
+                                    htmlWriter.startElement("tr");
+                                        htmlWriter.startElement("td").characters("Evicted snapshots").endElement();
+                                        htmlWriter.startElement("td").attribute("class", "numeric").characters(String.valueOf(model.getSnapshotCacheEvictionCount())).endElement();
+                                    htmlWriter.endElement();
+                                htmlWriter.endElement();
+                            }
                         htmlWriter.endElement();
                         htmlWriter.startElement("div").attribute("class", "tab").attribute("id", "tab1");
                             htmlWriter.startElement("h2").characters("Configuration").endElement();
@@ -19,6 +19,7 @@ import com.google.common.collect.Maps;
 import org.gradle.api.Action;
 import org.gradle.cache.*;
 import org.gradle.cache.internal.CacheFactory;
+import org.gradle.cache.internal.CacheLockContention;
 import org.gradle.cache.internal.filelock.LockOptions;
 import org.gradle.internal.Factory;
 import org.gradle.internal.serialize.Serializer;
@@ -42,6 +43,10 @@ public class InMemoryCacheFactory implements CacheFactory {
         return cache;
     }
 
+    public CacheLockContention getLockContention() {
+        return new CacheLockContention();
+    }
+
     public <K, V> PersistentIndexedCache<K, V> openIndexedCache(File cacheDir, CacheValidator validator, Map<String, ?> properties, LockOptions lockOptions, Serializer<V> serializer) {
         return new InMemoryIndexedCache<K, V>(serializer);
     }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.changedetection.state
+
+import com.google.common.hash.HashCode
+import org.gradle.api.internal.TaskInputsInternal
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.changedetection.rules.InputFilesTaskStateChanges
+import org.gradle.api.internal.file.collections.SimpleFileCollection
+import org.gradle.api.internal.tasks.TaskInputFilePropertySpec
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.Factory
+import org.gradle.internal.serialize.Serializer
+import org.gradle.internal.serialize.SerializerSpec
+
+class CacheBackedTaskHistoryRepositoryTest extends SerializerSpec {
+    final TaskArtifactStateCacheAccess cacheAccess = Mock()
+    final PersistentIndexedCache<String, Object> indexedCache = Mock()
+    final FileSnapshotRepository snapshotRepository = Mock()
+    final FileCollectionSnapshotter snapshotter = Mock()
+    final Map<String, byte[]> storedHistory = [:]
+    final Map<FileCollectionSnapshot, Long> snapshotIds = [:]
+    final TaskInternal task = Stub(TaskInternal) {
+        getPath() >> ":task"
+        getName() >> "task"
+        getOutputs() >> Stub(TaskOutputsInternal) {
+            getFiles() >> new SimpleFileCollection()
+        }
+        getInputs() >> Stub(TaskInputsInternal) {
+            getFileProperties() >> fileProperties("a", "b")
+        }
+    }
+    Serializer<Object> historySerializer
+    CacheBackedTaskHistoryRepository repository
+
+    def setup() {
+        _ * cacheAccess.createCache("taskArtifacts", String, _) >> { String name, Class type, Serializer serializer ->
+            historySerializer = serializer
+            indexedCache
+        }
+        _ * cacheAccess.useCache(_, _ as Factory) >> { String description, Factory factory -> factory.create() }
+        _ * cacheAccess.useCache(_, _ as Runnable) >> { String description, Runnable action -> action.run() }
+        _ * indexedCache.put(_, _) >> { String key, Object value -> storedHistory[key] = toBytes(value, historySerializer) }
+        _ * indexedCache.get(_) >> { String key -> storedHistory[key] == null ? null : fromBytes(storedHistory[key], historySerializer) }
+        _ * snapshotRepository.add(_) >> { FileCollectionSnapshot snapshot -> snapshotIds.get(snapshot, 0L) }
+        repository = new CacheBackedTaskHistoryRepository(cacheAccess, snapshotRepository, new StringInterner())
+    }
+
+    def "summary hashes of the input and output properties survive serialization"() {
+        given:
+        storeExecution([a: snapshot(1), b: snapshot(2)], [out: snapshot(3)])
+
+        when:
+        def previous = repository.getHistory(task).previousExecution
+
+        then:
+        previous.inputFilesSummaries == [a: hash(1), b: hash(2)]
+        previous.outputFilesSummaries == [out: hash(3)]
+        previous.inputFilesSnapshot.keySet() == ["a", "b"] as Set
+        0 * snapshotRepository.get(_)
+    }
+
+    def "does not load the previous snapshots of properties whose summary is unchanged"() {
+        given:
+        storeExecution([a: snapshot(1), b: snapshot(2)], [:])
+        def history = repository.getHistory(task)
+        _ * snapshotter.snapshot({ it.propertyName == "a" }) >> snapshot(1)
+        _ * snapshotter.snapshot({ it.propertyName == "b" }) >> snapshot(2)
+
+        when:
+        def changes = new InputFilesTaskStateChanges(history.previousExecution, history.currentExecution, task, snapshotter).iterator().toList()
+
+        then:
+        changes.empty
+        0 * snapshotRepository.get(_)
+    }
+
+    def "loads the previous snapshot of a property whose summary has changed"() {
+        given:
+        def previousSnapshotOfB = snapshot(2)
+        storeExecution([a: snapshot(1), b: previousSnapshotOfB], [:])
+        def history = repository.getHistory(task)
+        def currentSnapshotOfB = Mock(FileCollectionSnapshot) {
+            getSummaryHash() >> hash(4)
+        }
+        _ * snapshotter.snapshot({ it.propertyName == "a" }) >> snapshot(1)
+        _ * snapshotter.snapshot({ it.propertyName == "b" }) >> currentSnapshotOfB
+
+        when:
+        def changes = new InputFilesTaskStateChanges(history.previousExecution, history.currentExecution, task, snapshotter).iterator().toList()
+
+        then:
+        changes.empty
+        1 * snapshotRepository.get(2) >> previousSnapshotOfB
+        1 * currentSnapshotOfB.iterateContentChangesSince(previousSnapshotOfB, "Input property 'b'") >> [].iterator()
+        0 * snapshotRepository.get(_)
+    }
+
+    private void storeExecution(Map<String, FileCollectionSnapshot> inputs, Map<String, FileCollectionSnapshot> outputs) {
+        def history = repository.getHistory(task)
+        def current = history.currentExecution
+        current.taskClass = "TaskClass"
+        current.inputFilesSnapshot = inputs
+        current.outputFilesSnapshot = outputs
+        current.discoveredInputFilesSnapshot = Stub(FileCollectionSnapshot)
+        (inputs + outputs).values().each { snapshotIds[it] = it.summaryHash.asInt() as long }
+        history.update()
+    }
+
+    private FileCollectionSnapshot snapshot(int summary) {
+        Stub(FileCollectionSnapshot) {
+            getSummaryHash() >> hash(summary)
+        }
+    }
+
+    private static HashCode hash(int value) {
+        HashCode.fromInt(value)
+    }
+
+    private SortedSet<TaskInputFilePropertySpec> fileProperties(String... names) {
+        def properties = new TreeSet<TaskInputFilePropertySpec>({ a, b -> a.propertyName <=> b.propertyName } as Comparator)
+        names.each { name ->
+            properties.add(Stub(TaskInputFilePropertySpec) {
+                getPropertyName() >> name
+            })
+        }
+        properties
+    }
+}
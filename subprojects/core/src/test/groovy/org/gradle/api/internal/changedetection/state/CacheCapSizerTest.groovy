@@ -25,24 +25,21 @@ import spock.lang.Specification
 class CacheCapSizerTest extends Specification {
     @Rule SetSystemProperties systemProperties = new SetSystemProperties()
 
-    def "cache cap sizer adjusts caps based on maximum heap size"() {
+    def "cache cap sizer adjusts memory budget based on maximum heap size"() {
         given:
         def capSizer = new InMemoryTaskArtifactCache.CacheCapSizer(maxHeapMB)
 
-        when:
-        def caps = capSizer.calculateCaps()
-
-        then:
-        caps == expectedCaps
+        expect:
+        capSizer.calculateMaxWeightKb() == expectedMaxWeightKb
 
         where:
-        maxHeapMB | expectedCaps
-        100       | [taskArtifacts:400, compilationState:200, fileHashes:80000, fileSnapshots:2000]
-        200       | [taskArtifacts:400, compilationState:200, fileHashes:80000, fileSnapshots:2000]
-        768       | [taskArtifacts: 1600, compilationState: 800, fileHashes: 325200, fileSnapshots: 8100]
-        1024      | [taskArtifacts: 2300, fileHashes: 459900, compilationState: 1100, fileSnapshots: 11500]
-        1536      | [taskArtifacts: 3600, fileHashes: 729400, compilationState: 1800, fileSnapshots: 18200]
-        2048      | [taskArtifacts: 4900, fileHashes: 998900, compilationState: 2400, fileSnapshots: 24900]
+        maxHeapMB | expectedMaxWeightKb
+        100       | 40900
+        200       | 40900
+        768       | 166500
+        1024      | 235500
+        1536      | 373400
+        2048      | 511400
     }
 
     def "cache cap sizer honors reserved space when specified"() {
@@ -50,19 +47,16 @@ class CacheCapSizerTest extends Specification {
         System.setProperty(HeapProportionalCacheSizer.CACHE_RESERVED_SYSTEM_PROPERTY, reserved.toString())
         def capSizer = new InMemoryTaskArtifactCache.CacheCapSizer(maxHeapMB)
 
-        when:
-        def caps = capSizer.calculateCaps()
-
-        then:
-        caps == expectedCaps
+        expect:
+        capSizer.calculateMaxWeightKb() == expectedMaxWeightKb
 
         where:
-        maxHeapMB | reserved | expectedCaps
-        100       | 50       | [taskArtifacts: 400, compilationState: 200, fileHashes: 80000, fileSnapshots: 2000]
-        200       | 200      | [taskArtifacts: 400, compilationState: 200, fileHashes: 80000, fileSnapshots: 2000]
-        968       | 200      | [taskArtifacts: 1600, compilationState: 800, fileHashes: 325200, fileSnapshots: 8100]
-        1224      | 200      | [taskArtifacts: 2300, fileHashes: 459900, compilationState: 1100, fileSnapshots: 11500]
-        2036      | 500      | [taskArtifacts: 3600, fileHashes: 729400, compilationState: 1800, fileSnapshots: 18200]
-        4096      | 2048     | [taskArtifacts: 4900, fileHashes: 998900, compilationState: 2400, fileSnapshots: 24900]
+        maxHeapMB | reserved | expectedMaxWeightKb
+        100       | 50       | 40900
+        200       | 200      | 40900
+        968       | 200      | 166500
+        1224      | 200      | 235500
+        2036      | 500      | 373400
+        4096      | 2048     | 511400
     }
 }
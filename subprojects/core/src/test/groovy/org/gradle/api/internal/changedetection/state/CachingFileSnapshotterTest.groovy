@@ -18,9 +18,12 @@ package org.gradle.api.internal.changedetection.state
 
 import com.google.common.base.Charsets
 import com.google.common.hash.Hashing
+import org.gradle.api.file.FileTreeElement
 import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.hash.DefaultHasher
 import org.gradle.api.internal.hash.Hasher
 import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.resource.TextResource
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
@@ -137,4 +140,62 @@ class CachingFileSnapshotterTest extends Specification {
         1 * resource.text >> "hello"
         0 * _._
     }
+
+    def snapshotsMultipleFilesInOrder() {
+        def other = tmpDir.createFile("other")
+        other.write("other-content")
+        def otherHash = Hashing.md5().hashString("other", Charsets.UTF_8)
+
+        when:
+        def result = hasher.snapshotAll([fileDetails(file), fileDetails(other)])
+
+        then:
+        result*.hash == [hash, otherHash]
+
+        and:
+        1 * cache.get(file.getAbsolutePath()) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), file.lastModified())
+        1 * cache.get(other.getAbsolutePath()) >> null
+        1 * target.hash(other) >> otherHash
+        1 * cache.put(other.getAbsolutePath(), { it.hash == otherHash })
+        0 * _._
+    }
+
+    def hashesFilesMissingFromCacheConcurrently() {
+        def executorFactory = new DefaultExecutorFactory()
+        def entries = [:]
+        def concurrentCacheAccess = Stub(TaskArtifactStateCacheAccess) {
+            createCache("fileHashes", _, _) >> Stub(PersistentIndexedCache) {
+                get(_) >> { String key -> entries[key] }
+                put(_, _) >> { String key, value ->
+                    assert Thread.currentThread() == testThread
+                    entries[key] = value
+                }
+            }
+            longRunningOperation(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+        }
+        def concurrentHasher = new CachingFileSnapshotter(new DefaultHasher(), concurrentCacheAccess, new StringInterner(), executorFactory, 4)
+        def files = (1..20).collect { tmpDir.file("dir/file${it}").createFile() << "content $it" }
+        testThread = Thread.currentThread()
+
+        when:
+        def result = concurrentHasher.snapshotAll(files.collect { fileDetails(it) })
+
+        then:
+        result*.hash == files.collect { new DefaultHasher().hash(it) }
+        entries.size() == 20
+
+        cleanup:
+        concurrentHasher.stop()
+        executorFactory.stop()
+    }
+
+    private Thread testThread
+
+    private FileTreeElement fileDetails(File file) {
+        return Stub(FileTreeElement) {
+            getFile() >> file
+            getSize() >> file.length()
+            getLastModified() >> file.lastModified()
+        }
+    }
 }
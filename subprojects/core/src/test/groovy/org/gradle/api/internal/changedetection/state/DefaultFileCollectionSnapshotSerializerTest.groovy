@@ -20,6 +20,9 @@ import com.google.common.base.Charsets
 import com.google.common.hash.Hashing
 import org.gradle.api.internal.cache.StringInterner
 import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.DefaultNormalizedFileSnapshot
+import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.IgnoredPathFileSnapshot
+import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.IndexedNormalizedFileSnapshot
+import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.NonNormalizedFileSnapshot
 import org.gradle.internal.serialize.SerializerSpec
 
 class DefaultFileCollectionSnapshotSerializerTest extends SerializerSpec {
@@ -58,4 +61,31 @@ class DefaultFileCollectionSnapshotSerializerTest extends SerializerSpec {
         then:
         out.snapshots.keySet() as List == ['/3', '/2', '/1']
     }
+
+    def "reads and writes paths sharing prefixes with all kinds of normalization"() {
+        when:
+        def hash1 = Hashing.md5().hashString("foo", Charsets.UTF_8)
+        def hash2 = Hashing.md5().hashString("bar", Charsets.UTF_8)
+        DefaultFileCollectionSnapshot out = serialize(new DefaultFileCollectionSnapshot([
+            "/root/src/b/Foo.java": new IndexedNormalizedFileSnapshot("/root/src/b/Foo.java", 10, new FileHashSnapshot(hash1)),
+            "/root/src/a/Foo.java": new NonNormalizedFileSnapshot("/root/src/a/Foo.java", new FileHashSnapshot(hash2)),
+            "/root/src/a": new IgnoredPathFileSnapshot(DirSnapshot.getInstance()),
+            "/root/src/\uD83D\uDE00": new DefaultNormalizedFileSnapshot("smile", MissingFileSnapshot.getInstance()),
+            "/root/src/\uD83D\uDE01": new DefaultNormalizedFileSnapshot("grin", MissingFileSnapshot.getInstance())
+        ], TaskFilePropertyCompareType.UNORDERED), serializer)
+
+        then:
+        out.snapshots instanceof PackedFileSnapshotMap
+        out.snapshots.keySet() as List == ["/root/src/b/Foo.java", "/root/src/a/Foo.java", "/root/src/a", "/root/src/\uD83D\uDE00", "/root/src/\uD83D\uDE01"]
+        out.snapshots["/root/src/b/Foo.java"].normalizedPath == "b/Foo.java"
+        out.snapshots["/root/src/b/Foo.java"].snapshot.hash == hash1
+        out.snapshots["/root/src/a/Foo.java"].normalizedPath == "/root/src/a/Foo.java"
+        out.snapshots["/root/src/a/Foo.java"].snapshot.hash == hash2
+        out.snapshots["/root/src/a"] instanceof IgnoredPathFileSnapshot
+        out.snapshots["/root/src/a"].snapshot instanceof DirSnapshot
+        out.snapshots["/root/src/\uD83D\uDE00"].normalizedPath == "smile"
+        out.snapshots["/root/src/\uD83D\uDE01"].normalizedPath == "grin"
+        out.snapshots["/root/src/\uD83D\uDE01"].snapshot instanceof MissingFileSnapshot
+        !out.snapshots.containsKey("/root/src")
+    }
 }
@@ -80,4 +80,89 @@ class DefaultFileCollectionSnapshotTest extends Specification {
         1 * builder.putBytes(HashCode.fromInt(123).asBytes())
         0 * _
     }
+
+    def "order-insensitive collection snapshot ignores order when calculating summary hash"() {
+        def oldSnapshot = snapshot(TaskFilePropertyCompareType.UNORDERED, "file1.txt": 123, "file2.txt": 234)
+        def newSnapshot = snapshot(TaskFilePropertyCompareType.UNORDERED, "file2.txt": 234, "file1.txt": 123)
+
+        expect:
+        oldSnapshot.summaryHash == newSnapshot.summaryHash
+        !newSnapshot.iterateContentChangesSince(oldSnapshot, "TYPE").hasNext()
+    }
+
+    def "order-sensitive collection snapshot considers order when calculating summary hash"() {
+        def oldSnapshot = snapshot(TaskFilePropertyCompareType.ORDERED, "file1.txt": 123, "file2.txt": 234)
+        def newSnapshot = snapshot(TaskFilePropertyCompareType.ORDERED, "file2.txt": 234, "file1.txt": 123)
+
+        expect:
+        oldSnapshot.summaryHash != newSnapshot.summaryHash
+        newSnapshot.iterateContentChangesSince(oldSnapshot, "TYPE").hasNext()
+    }
+
+    def "summary hash changes when file content or compare type changes"() {
+        def summaryHash = snapshot(TaskFilePropertyCompareType.UNORDERED, "file1.txt": 123).summaryHash
+
+        expect:
+        summaryHash == snapshot(TaskFilePropertyCompareType.UNORDERED, "file1.txt": 123).summaryHash
+        summaryHash != snapshot(TaskFilePropertyCompareType.UNORDERED, "file1.txt": 234).summaryHash
+        summaryHash != snapshot(TaskFilePropertyCompareType.UNORDERED, "file2.txt": 123).summaryHash
+        summaryHash != snapshot(TaskFilePropertyCompareType.OUTPUT, "file1.txt": 123).summaryHash
+        summaryHash != snapshot([:], TaskFilePropertyCompareType.UNORDERED).summaryHash
+    }
+
+    def "summary hash is derived from the tree hash of the packed snapshots"() {
+        def current = snapshot(TaskFilePropertyCompareType.UNORDERED, "file1.txt": 123, "file2.txt": 234)
+        def persisted = new DefaultFileCollectionSnapshot(PackedFileSnapshotMap.of(snapshot(TaskFilePropertyCompareType.UNORDERED, "file2.txt": 234, "file1.txt": 123).snapshots), TaskFilePropertyCompareType.UNORDERED)
+
+        expect:
+        current.summaryHash == persisted.summaryHash
+        current.packedSnapshots.rootHash == persisted.packedSnapshots.rootHash
+    }
+
+    def "order-sensitive summary hash considers normalized paths"() {
+        def oldSnapshot = new DefaultFileCollectionSnapshot([
+            "file1.txt": new DefaultNormalizedFileSnapshot("a/file1.txt", new FileHashSnapshot(HashCode.fromInt(123)))
+        ], TaskFilePropertyCompareType.ORDERED)
+        def newSnapshot = new DefaultFileCollectionSnapshot([
+            "file1.txt": new DefaultNormalizedFileSnapshot("b/file1.txt", new FileHashSnapshot(HashCode.fromInt(123)))
+        ], TaskFilePropertyCompareType.ORDERED)
+
+        expect:
+        oldSnapshot.summaryHash != newSnapshot.summaryHash
+        newSnapshot.iterateContentChangesSince(oldSnapshot, "TYPE").hasNext()
+    }
+
+    def "comparing with a packed snapshot leaves the current snapshot unchanged"() {
+        def current = snapshot(TaskFilePropertyCompareType.UNORDERED, "file1.txt": 123, "file2.txt": 234)
+        def snapshots = current.snapshots
+        def previous = new DefaultFileCollectionSnapshot(PackedFileSnapshotMap.of(snapshot(TaskFilePropertyCompareType.UNORDERED, "file1.txt": 123).snapshots), TaskFilePropertyCompareType.UNORDERED)
+
+        when:
+        def changes = current.iterateContentChangesSince(previous, "Input").toList()
+
+        then:
+        changes.size() == 1
+        current.snapshots.is(snapshots)
+    }
+
+    def "packs the current snapshot once for all comparisons"() {
+        def current = snapshot(TaskFilePropertyCompareType.UNORDERED, "file1.txt": 123, "file2.txt": 234)
+        def previous = new DefaultFileCollectionSnapshot(PackedFileSnapshotMap.of(snapshot(TaskFilePropertyCompareType.UNORDERED, "file1.txt": 123).snapshots), TaskFilePropertyCompareType.UNORDERED)
+
+        when:
+        current.iterateContentChangesSince(previous, "Input").toList()
+        def packed = current.packedSnapshots
+        current.iterateContentChangesSince(previous, "Input").toList()
+
+        then:
+        current.packedSnapshots.is(packed)
+    }
+
+    private static DefaultFileCollectionSnapshot snapshot(Map<String, Integer> hashes, TaskFilePropertyCompareType compareType) {
+        Map<String, NormalizedFileSnapshot> snapshots = [:]
+        hashes.each { path, hash ->
+            snapshots[path] = new DefaultNormalizedFileSnapshot(path, new FileHashSnapshot(HashCode.fromInt(hash)))
+        }
+        return new DefaultFileCollectionSnapshot(snapshots, compareType)
+    }
 }
@@ -25,6 +25,7 @@ import org.gradle.api.internal.changedetection.rules.ChangeType
 import org.gradle.api.internal.changedetection.rules.FileChange
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.api.internal.file.collections.SimpleFileCollection
+import org.gradle.api.internal.hash.FileHashFunction
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.ChangeListener
@@ -34,6 +35,7 @@ import spock.lang.Specification
 import static TaskFilePropertyCompareType.OUTPUT
 import static TaskFilePropertyCompareType.UNORDERED
 import static TaskFilePropertyPathSensitivityType.ABSOLUTE
+import static TaskFilePropertyPathSensitivityType.RELATIVE
 import static org.gradle.api.internal.changedetection.state.TaskFilePropertyCompareType.ORDERED
 
 public class DefaultFileCollectionSnapshotterTest extends Specification {
@@ -56,6 +58,13 @@ public class DefaultFileCollectionSnapshotterTest extends Specification {
                 getHash() >> Files.asByteSource(file).hash(Hashing.md5())
             }
         }
+        fileSnapshotter.snapshotAll(_) >> { List<FileTreeElement> fileTreeElements ->
+            return fileTreeElements.collect { fileTreeElement ->
+                Stub(FileSnapshot) {
+                    getHash() >> Files.asByteSource(fileTreeElement.file).hash(Hashing.md5())
+                }
+            }
+        }
         cacheAccess.useCache(_, _) >> { String name, Runnable action ->
             action.run()
         }
@@ -269,6 +278,38 @@ public class DefaultFileCollectionSnapshotterTest extends Specification {
         snapshot.files.collect { it.name } == testfileNames
     }
 
+    def "reuses cached snapshot of identical file collection"() {
+        given:
+        def cachingSnapshotter = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess, stringInterner, TestFiles.resolver(), new InMemoryFileCollectionSnapshotCache(1000), FileHashFunction.MD5)
+        TestFile file = tmpDir.createFile('file1')
+        TestFile dir = tmpDir.createDir('dir')
+        dir.createFile('file2')
+
+        when:
+        def snapshot = cachingSnapshotter.snapshot(files(file, dir), UNORDERED, ABSOLUTE)
+
+        then:
+        cachingSnapshotter.snapshot(files(file, dir), UNORDERED, ABSOLUTE).is(snapshot)
+        !cachingSnapshotter.snapshot(files(file, dir), ORDERED, ABSOLUTE).is(snapshot)
+        !cachingSnapshotter.snapshot(files(file, dir), UNORDERED, RELATIVE).is(snapshot)
+        !cachingSnapshotter.snapshot(files(file), UNORDERED, ABSOLUTE).is(snapshot)
+    }
+
+    def "does not reuse cached snapshot when a file has changed"() {
+        given:
+        def cachingSnapshotter = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess, stringInterner, TestFiles.resolver(), new InMemoryFileCollectionSnapshotCache(1000), FileHashFunction.MD5)
+        TestFile file = tmpDir.createFile('file1')
+        def snapshot = cachingSnapshotter.snapshot(files(file), UNORDERED, ABSOLUTE)
+
+        when:
+        file << "changed content"
+        def newSnapshot = cachingSnapshotter.snapshot(files(file), UNORDERED, ABSOLUTE)
+
+        then:
+        !newSnapshot.is(snapshot)
+        newSnapshot.snapshots[file.absolutePath].snapshot.hash == Files.asByteSource(file).hash(Hashing.md5())
+    }
+
     private static void changes(FileCollectionSnapshot newSnapshot, FileCollectionSnapshot oldSnapshot, ChangeListener<String> listener) {
         newSnapshot.iterateContentChangesSince(oldSnapshot, "TYPE").each { FileChange change ->
             switch (change.type) {
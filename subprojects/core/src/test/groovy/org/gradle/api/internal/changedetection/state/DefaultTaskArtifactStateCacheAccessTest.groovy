@@ -16,6 +16,7 @@
 package org.gradle.api.internal.changedetection.state
 
 import org.gradle.api.internal.GradleInternal
+import org.gradle.api.internal.hash.FileHashFunction
 import org.gradle.cache.CacheBuilder
 import org.gradle.cache.CacheRepository
 import org.gradle.cache.PersistentCache
@@ -32,11 +33,12 @@ class DefaultTaskArtifactStateCacheAccessTest extends Specification {
         PersistentCache backingCache = Mock()
 
         when:
-        new DefaultTaskArtifactStateCacheAccess(gradle, cacheRepository, new NoOpDecorator())
+        new DefaultTaskArtifactStateCacheAccess(gradle, cacheRepository, new NoOpDecorator(), FileHashFunction.MURMUR3_128)
 
         then:
         1 * cacheRepository.cache(gradle, "taskArtifacts") >> cacheBuilder
         1 * cacheBuilder.withDisplayName(_) >> cacheBuilder
+        1 * cacheBuilder.withProperties([fileHashFunction: "murmur3_128"]) >> cacheBuilder
         1 * cacheBuilder.withLockOptions(LockOptionsBuilder.mode(FileLockManager.LockMode.None)) >> cacheBuilder
         1 * cacheBuilder.open() >> backingCache
         0 * _._
@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.changedetection.state
 
+import org.gradle.cache.internal.FileLock
 import org.gradle.cache.internal.MultiProcessSafePersistentIndexedCache
 import spock.lang.Specification
 
@@ -133,4 +134,127 @@ class InMemoryTaskArtifactCacheTest extends Specification {
         0 * target._
     }
 
+    def "evicts entries by estimated size"() {
+        given:
+        def cacheFactory = new InMemoryTaskArtifactCache(40000)
+        def cache = cacheFactory.decorate("path/fileSnapshots.bin", "fileSnapshots", target)
+        def smallSnapshot = snapshot(1)
+        def largeSnapshot = snapshot(200)
+
+        when:
+        cache.put(1L, smallSnapshot)
+        cache.put(2L, largeSnapshot)
+        def small = cache.get(1L)
+        def large = cache.get(2L)
+
+        then:
+        small == smallSnapshot
+        large == largeSnapshot
+        0 * target.get(1L)
+        1 * target.get(2L) >> largeSnapshot
+
+        and:
+        cacheFactory.estimatedSize <= cacheFactory.maxWeight
+        def statistics = cacheFactory.statistics["path/fileSnapshots.bin"]
+        statistics.hitCount == 1
+        statistics.missCount == 1
+        statistics.evictionCount == 2
+    }
+
+    def "retains entries up to the maximum entry weight"() {
+        given:
+        def cacheFactory = new InMemoryTaskArtifactCache(40000)
+        def cache = cacheFactory.decorate("path/fileSnapshots.bin", "fileSnapshots", target)
+        def snapshot = snapshot(100)
+
+        when:
+        cache.put(1L, snapshot)
+        def result = cache.get(1L)
+
+        then:
+        result == snapshot
+        0 * target.get(_)
+
+        and:
+        InMemoryTaskArtifactCache.weigh(new InMemoryTaskArtifactCache.CacheEntryKey(null, 1L), snapshot) > 40000 / 4
+        cacheFactory.maxEntryWeight == 40000
+    }
+
+    def "splits large budgets into segments that can hold large entries"() {
+        expect:
+        new InMemoryTaskArtifactCache(maxWeight).maxEntryWeight == maxEntryWeight
+
+        where:
+        maxWeight         | maxEntryWeight
+        8 * 1024 * 1024   | 8 * 1024 * 1024
+        32 * 1024 * 1024  | 16 * 1024 * 1024
+        48 * 1024 * 1024  | 24 * 1024 * 1024
+        200 * 1024 * 1024 | 50 * 1024 * 1024
+    }
+
+    def "invalidates only the entries of the cache that was updated by another process"() {
+        given:
+        def otherTarget = Mock(MultiProcessSafePersistentIndexedCache)
+        def hashes = cacheFactory.decorate("path/fileHashes.bin", "fileHashes", target)
+        def snapshots = cacheFactory.decorate("path/fileSnapshots.bin", "fileSnapshots", otherTarget)
+        def initialState = Stub(FileLock.State)
+        def updatedState = Stub(FileLock.State) {
+            hasBeenUpdatedSince(initialState) >> true
+        }
+        def unchangedState = Stub(FileLock.State) {
+            hasBeenUpdatedSince(initialState) >> false
+        }
+        hashes.onStartWork("hashes", initialState)
+        snapshots.onStartWork("snapshots", initialState)
+        hashes.put("key", "value")
+        snapshots.put("key", "value")
+        hashes.onEndWork(initialState)
+        snapshots.onEndWork(initialState)
+
+        when:
+        hashes.onStartWork("hashes", updatedState)
+        snapshots.onStartWork("snapshots", unchangedState)
+        def hash = hashes.get("key")
+        def snapshot = snapshots.get("key")
+
+        then:
+        hash == "new value"
+        snapshot == "value"
+        1 * target.get("key") >> "new value"
+        0 * otherTarget.get(_)
+    }
+
+    def "shares memory budget between caches"() {
+        given:
+        def hashes = cacheFactory.decorate("path/fileHashes.bin", "fileHashes", target)
+        def snapshots = cacheFactory.decorate("path/fileSnapshots.bin", "fileSnapshots", target)
+
+        when:
+        hashes.put("key", "value")
+        def sizeOfHashes = cacheFactory.estimatedSize
+        snapshots.put(1L, snapshot(10))
+
+        then:
+        sizeOfHashes > 0
+        cacheFactory.estimatedSize > sizeOfHashes
+    }
+
+    def "can shrink caches"() {
+        given:
+        def cache = cacheFactory.decorate("path/fileSnapshots.bin", "fileSnapshots", target)
+        (1..10).each { cache.put("key" + it, "value") }
+        def sizeBefore = cacheFactory.estimatedSize
+
+        when:
+        cacheFactory.shrink()
+
+        then:
+        cacheFactory.estimatedSize <= sizeBefore / 2
+    }
+
+    private FileCollectionSnapshot snapshot(int fileCount) {
+        Stub(FileCollectionSnapshot) {
+            getSnapshots() >> (1..fileCount).collectEntries { ["file" + it, Stub(NormalizedFileSnapshot)] }
+        }
+    }
 }
@@ -16,6 +16,10 @@
 
 package org.gradle.api.internal.changedetection.state
 
+import com.google.common.base.Charsets
+import com.google.common.collect.Lists
+import com.google.common.hash.Hashing
+import org.gradle.api.internal.changedetection.state.TaskFilePropertyPathSensitivityType.NonNormalizedFileSnapshot
 import spock.lang.Shared
 
 import static org.gradle.api.internal.changedetection.rules.ChangeType.*
@@ -56,4 +60,68 @@ class OrderInsensitiveTaskFilePropertyCompareStrategyTest extends AbstractTaskFi
         where:
         strategy << [includeAdded, excludeAdded]
     }
+
+    def "detects changes against packed snapshots"() {
+        def previous = PackedFileSnapshotMap.of([
+            "one": fileSnapshot("one", "1"),
+            "three": fileSnapshot("three", "3"),
+            "two": fileSnapshot("two", "2"),
+            "dir": new NonNormalizedFileSnapshot("dir", DirSnapshot.getInstance())
+        ])
+        def current = [
+            "two": fileSnapshot("two", "changed"),
+            "four": fileSnapshot("four", "4"),
+            "one": fileSnapshot("one", "1"),
+            "dir": new NonNormalizedFileSnapshot("dir", DirSnapshot.getInstance())
+        ]
+
+        expect:
+        Lists.newArrayList(includeAdded.iterateContentChangesSince(current, previous, "test")) == [change("two", MODIFIED), change("four", ADDED), change("three", REMOVED)]
+        Lists.newArrayList(excludeAdded.iterateContentChangesSince(current, previous, "test")) == [change("two", MODIFIED), change("three", REMOVED)]
+    }
+
+    def "compares packed snapshots by directory"() {
+        def previous = PackedFileSnapshotMap.of([
+            "/src": dirSnapshot("/src"),
+            "/src/a": dirSnapshot("/src/a"),
+            "/src/a/One.java": fileSnapshot("/src/a/One.java", "1"),
+            "/src/a/Two.java": fileSnapshot("/src/a/Two.java", "2"),
+            "/src/b/Three.java": fileSnapshot("/src/b/Three.java", "3"),
+            "/src/b-c/Four.java": fileSnapshot("/src/b-c/Four.java", "4"),
+            "/src/d/e/Five.java": fileSnapshot("/src/d/e/Five.java", "5")
+        ])
+        def current = PackedFileSnapshotMap.of([
+            "/src": dirSnapshot("/src"),
+            "/src/a": dirSnapshot("/src/a"),
+            "/src/a/One.java": fileSnapshot("/src/a/One.java", "1"),
+            "/src/a/Two.java": fileSnapshot("/src/a/Two.java", "changed"),
+            "/src/b-c/Four.java": fileSnapshot("/src/b-c/Four.java", "4"),
+            "/src/b0": fileSnapshot("/src/b0", "6"),
+            "/src/d/e/Five.java": fileSnapshot("/src/d/e/Five.java", "5")
+        ])
+
+        expect:
+        Lists.newArrayList(includeAdded.iterateContentChangesSince(current, previous, "test")) == [change("/src/a/Two.java", MODIFIED), change("/src/b0", ADDED), change("/src/b/Three.java", REMOVED)]
+        Lists.newArrayList(excludeAdded.iterateContentChangesSince(current, previous, "test")) == [change("/src/a/Two.java", MODIFIED), change("/src/b/Three.java", REMOVED)]
+        Lists.newArrayList(includeAdded.iterateContentChangesSince(PackedFileSnapshotMap.of(new LinkedHashMap(previous)), previous, "test")).empty
+    }
+
+    def "packed snapshots with the same content have the same root hash"() {
+        def snapshots = [
+            "/src/a/One.java": fileSnapshot("/src/a/One.java", "1"),
+            "/src/b/Two.java": fileSnapshot("/src/b/Two.java", "2")
+        ]
+
+        expect:
+        PackedFileSnapshotMap.of(snapshots).rootHash == PackedFileSnapshotMap.of(snapshots.entrySet().toList().reverse().collectEntries { [it.key, it.value] }).rootHash
+        PackedFileSnapshotMap.of(snapshots).rootHash != PackedFileSnapshotMap.of(snapshots + ["/src/b/Two.java": fileSnapshot("/src/b/Two.java", "changed")]).rootHash
+    }
+
+    private static NormalizedFileSnapshot dirSnapshot(String path) {
+        new NonNormalizedFileSnapshot(path, DirSnapshot.getInstance())
+    }
+
+    private static NormalizedFileSnapshot fileSnapshot(String path, String content) {
+        new NonNormalizedFileSnapshot(path, new FileHashSnapshot(Hashing.md5().hashString(content, Charsets.UTF_8)))
+    }
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.file.collections
+
+import groovy.io.FileType
+import org.gradle.api.file.FileVisitDetails
+import org.gradle.api.file.FileVisitor
+import org.gradle.api.file.RelativePath
+import org.gradle.api.internal.file.DefaultTemporaryFileProvider
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.specs.Spec
+import org.gradle.api.tasks.util.PatternSet
+import org.gradle.internal.Factory
+import org.gradle.internal.concurrent.Stoppable
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+class WatchingDirectoryWalkerTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def fileWatcher = Mock(FileWatcher)
+    def fileWatcherFactory = Stub(FileWatcherFactory) {
+        watch(_, _) >> fileWatcher
+    }
+    def fileSystemWalker = new DefaultDirectoryWalker(TestFiles.fileSystem())
+    def walkedDirs = []
+    def delegate = { File dir, RelativePath path, FileVisitor visitor, Spec spec, AtomicBoolean stopFlag, boolean postfix ->
+        walkedDirs << dir
+        fileSystemWalker.walkDir(dir, path, visitor, spec, stopFlag, postfix)
+    } as DirectoryWalker
+    def temporaryFileProvider = new DefaultTemporaryFileProvider({ tmpDir.file("tmp") } as Factory)
+    def walker = new WatchingDirectoryWalker(fileWatcherFactory, delegate, TestFiles.fileSystem(), temporaryFileProvider, 100, true, 5000)
+    TestFile root
+
+    def setup() {
+        tmpDir.createDir("tmp")
+        root = new TestFile(tmpDir.createDir("root").canonicalFile)
+        root.createFile("a/b.txt")
+        root.createFile("c.txt")
+    }
+
+    def "serves later walks of a tree from memory"() {
+        when:
+        def first = visit()
+        def second = visit()
+
+        then:
+        1 * fileWatcher.watch(_)
+        first == ["a", "a/b.txt", "c.txt"] as Set
+        second == first
+        walkedDirs == [root]
+        walker.walkCount == 2
+        walker.avoidedStatCalls == 3
+    }
+
+    def "walks directories that changed again"() {
+        given:
+        visit()
+
+        when:
+        def newFile = root.createFile("a/d.txt")
+        walker.onChange(fileWatcher, FileWatcherEvent.create(newFile))
+
+        then:
+        visit() == ["a", "a/b.txt", "a/d.txt", "c.txt"] as Set
+        walkedDirs == [root, root.file("a")]
+    }
+
+    def "walks the whole tree again after the watcher overflows"() {
+        given:
+        visit()
+
+        when:
+        root.createFile("e.txt")
+        walker.onChange(fileWatcher, FileWatcherEvent.undefined())
+
+        then:
+        visit() == ["a", "a/b.txt", "c.txt", "e.txt"] as Set
+        walkedDirs == [root, root]
+        walker.overflowCount == 1
+    }
+
+    def "watches the tree again when its root is deleted"() {
+        given:
+        visit()
+
+        when:
+        walker.onChange(fileWatcher, FileWatcherEvent.delete(root))
+        visit()
+
+        then:
+        1 * fileWatcher.watch(_)
+        walkedDirs == [root, root]
+    }
+
+    def "does not retain trees that exceed the limit"() {
+        given:
+        walker = new WatchingDirectoryWalker(fileWatcherFactory, delegate, TestFiles.fileSystem(), temporaryFileProvider, 2, true, 5000)
+
+        when:
+        visit()
+        visit()
+
+        then:
+        walkedDirs == [root, root]
+        walker.avoidedStatCalls == 0
+    }
+
+    def "waits for changes that have not been reported yet before using a retained tree in a new build"() {
+        given:
+        visit()
+        walker.buildStarted()
+        def newFile = root.createFile("a/d.txt")
+
+        when:
+        def watcherThread = deliverOnSync(FileWatcherEvent.create(newFile))
+        def paths = visit()
+        watcherThread.join()
+
+        then:
+        paths == ["a", "a/b.txt", "a/d.txt", "c.txt"] as Set
+        walkedDirs == [root, root.file("a")]
+        root.list() as Set == ["a", "c.txt"] as Set
+        root.file("a").list() as Set == ["b.txt", "d.txt"] as Set
+    }
+
+    def "walks the whole tree again when pending changes cannot be confirmed"() {
+        given:
+        walker = new WatchingDirectoryWalker(fileWatcherFactory, delegate, TestFiles.fileSystem(), temporaryFileProvider, 100, true, 10)
+        visit()
+        walker.buildStarted()
+        root.createFile("a/d.txt")
+
+        when:
+        def paths = visit()
+
+        then:
+        paths == ["a", "a/b.txt", "a/d.txt", "c.txt"] as Set
+        walkedDirs == [root, root]
+        root.list() as Set == ["a", "c.txt"] as Set
+
+        when:
+        visit()
+
+        then:
+        walkedDirs == [root, root]
+    }
+
+    def "walks the file system when disabled"() {
+        given:
+        walker = new WatchingDirectoryWalker(fileWatcherFactory, delegate, TestFiles.fileSystem(), temporaryFileProvider, 100, false, 5000)
+
+        when:
+        visit()
+        visit()
+
+        then:
+        0 * fileWatcher.watch(_)
+        walkedDirs == [root, root]
+    }
+
+    def "postfix walks go to the file system"() {
+        when:
+        visit()
+        visit(true)
+
+        then:
+        walkedDirs == [root, root]
+    }
+
+    def "stops the delegate walker when stopped"() {
+        given:
+        def stoppableDelegate = Mock(StoppableDirectoryWalker)
+        walker = new WatchingDirectoryWalker(fileWatcherFactory, stoppableDelegate, TestFiles.fileSystem(), temporaryFileProvider, 100, true, 5000)
+
+        when:
+        walker.stop()
+
+        then:
+        1 * stoppableDelegate.stop()
+    }
+
+    /**
+     * Simulates the watcher reporting the given event, followed by the event for the marker file created by the walker in its sync directory.
+     */
+    private Thread deliverOnSync(FileWatcherEvent pendingEvent) {
+        def thread = new Thread({
+            File marker = null
+            while (marker == null) {
+                tmpDir.file("tmp").eachFileRecurse(FileType.FILES) { marker = it }
+                Thread.sleep(10)
+            }
+            walker.onChange(fileWatcher, pendingEvent)
+            walker.onChange(fileWatcher, FileWatcherEvent.create(marker))
+        })
+        thread.start()
+        return thread
+    }
+
+    private Set<String> visit(boolean postfix = false) {
+        def paths = [] as Set
+        def tree = new DirectoryFileTree(root, new PatternSet(), { walker } as Factory)
+        if (postfix) {
+            tree.postfix()
+        }
+        tree.visit(new FileVisitor() {
+            @Override
+            void visitDir(FileVisitDetails dirDetails) {
+                paths << dirDetails.relativePath.pathString
+            }
+
+            @Override
+            void visitFile(FileVisitDetails fileDetails) {
+                paths << fileDetails.relativePath.pathString
+            }
+        })
+        return paths
+    }
+
+    interface StoppableDirectoryWalker extends DirectoryWalker, Stoppable {
+    }
+}
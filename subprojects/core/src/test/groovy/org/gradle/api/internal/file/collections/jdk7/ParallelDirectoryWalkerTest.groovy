@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.file.collections.jdk7
+
+import org.gradle.api.file.FileVisitDetails
+import org.gradle.api.file.FileVisitor
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.file.collections.DirectoryFileTree
+import org.gradle.api.tasks.util.PatternSet
+import org.gradle.internal.Factory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.StoppableExecutor
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicInteger
+
+@UsesNativeServices
+class ParallelDirectoryWalkerTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def walker = new ParallelDirectoryWalker(TestFiles.fileSystem(), new DefaultExecutorFactory())
+
+    def cleanup() {
+        walker.stop()
+    }
+
+    def "returns same set of files and attributes as the JDK7 walker"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        generateFilesAndSubDirectories(rootDir, 10, 5, 3, 1, new AtomicInteger(0))
+
+        when:
+        def visitedWithParallelWalker = walkFiles(rootDir, new PatternSet(), walker)
+        def visitedWithJdk7Walker = walkFiles(rootDir, new PatternSet(), new Jdk7DirectoryWalker(TestFiles.fileSystem()))
+
+        then:
+        visitedWithParallelWalker.size() == 340
+        visitedWithParallelWalker.size() == visitedWithJdk7Walker.size()
+        visitedWithJdk7Walker.each { FileVisitDetails details ->
+            def other = visitedWithParallelWalker.find { it.file.absolutePath == details.file.absolutePath }
+            assert other != null
+            assert other.relativePath == details.relativePath
+            assert other.lastModified == details.lastModified
+            assert other.directory == details.directory
+            assert details.directory || other.size == details.size
+        }
+    }
+
+    def "visits entries in name order regardless of creation order"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        rootDir.createFile("b/z.txt")
+        rootDir.createFile("b/a.txt")
+        rootDir.createFile("c.txt")
+        rootDir.createFile("a/y/x.txt")
+
+        expect:
+        walkFiles(rootDir, new PatternSet(), walker)*.path == ["a", "a/y", "a/y/x.txt", "b", "b/a.txt", "b/z.txt", "c.txt"]
+        walkFiles(rootDir, new PatternSet(), walker, true)*.path == ["a/y/x.txt", "a/y", "a", "b/a.txt", "b/z.txt", "b", "c.txt"]
+    }
+
+    def "applies include and exclude patterns and does not descend into excluded directories"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        rootDir.createFile("a.txt")
+        rootDir.createFile("a/b/c.txt")
+        rootDir.createFile("a/b/c.html")
+        rootDir.createFile("subdir1/a/b/c.txt")
+
+        def patterns = new PatternSet()
+        patterns.include("**/*.txt")
+        patterns.exclude("subdir1/**")
+
+        expect:
+        walkFiles(rootDir, patterns, walker)*.path == ["a", "a/b", "a/b/c.txt", "a.txt"]
+    }
+
+    def "stops walking when requested by the visitor"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        generateFilesAndSubDirectories(rootDir, 10, 5, 3, 1, new AtomicInteger(0))
+        def visited = []
+        def fileTree = new DirectoryFileTree(rootDir, new PatternSet(), { walker } as Factory)
+
+        when:
+        fileTree.visit([
+            visitFile: { FileVisitDetails details ->
+                visited << details
+                if (visited.size() == 5) {
+                    details.stopVisiting()
+                }
+            },
+            visitDir: { visited << it }
+        ] as FileVisitor)
+
+        then:
+        visited.size() == 5
+    }
+
+    def "reads directories using an executor that is stopped with the walker"() {
+        given:
+        def executor = Mock(StoppableExecutor)
+        def executorFactory = Mock(ExecutorFactory)
+
+        when:
+        def walker = new ParallelDirectoryWalker(TestFiles.fileSystem(), executorFactory)
+
+        then:
+        1 * executorFactory.create("Directory walker", _) >> executor
+
+        when:
+        walker.stop()
+
+        then:
+        1 * executor.stop()
+    }
+
+    private generateFilesAndSubDirectories(TestFile parentDir, int fileCount, int dirCount, int maxDepth, int currentDepth, AtomicInteger fileIdGenerator) {
+        for (int i = 0; i < fileCount; i++) {
+            parentDir.createFile("file" + fileIdGenerator.incrementAndGet()) << ("x" * fileIdGenerator.get())
+        }
+        if (currentDepth < maxDepth) {
+            for (int i = 0; i < dirCount; i++) {
+                TestFile subDir = parentDir.createDir("dir" + fileIdGenerator.incrementAndGet())
+                generateFilesAndSubDirectories(subDir, fileCount, dirCount, maxDepth, currentDepth + 1, fileIdGenerator)
+            }
+        }
+    }
+
+    private static List<FileVisitDetails> walkFiles(File rootDir, PatternSet patterns, walkerInstance, boolean postfix = false) {
+        def fileTree = new DirectoryFileTree(rootDir, patterns, { walkerInstance } as Factory)
+        if (postfix) {
+            fileTree = fileTree.postfix()
+        }
+        def visited = []
+        def visitClosure = { visited << it }
+        fileTree.visit([visitFile: visitClosure, visitDir: visitClosure] as FileVisitor)
+        visited
+    }
+}
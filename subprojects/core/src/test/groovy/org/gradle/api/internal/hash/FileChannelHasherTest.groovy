@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash
+
+import com.google.common.base.Charsets
+import org.gradle.api.UncheckedIOException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class FileChannelHasherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def "hashes file contents using #hashFunction with memory mapping #useMemoryMapping"() {
+        def hasher = new FileChannelHasher(hashFunction, useMemoryMapping)
+        def empty = tmpDir.file("empty").createFile()
+        def small = tmpDir.file("small")
+        small.text = "small"
+        def large = tmpDir.file("large")
+        def contents = new byte[1024 * 1024 + 17]
+        new Random(42).nextBytes(contents)
+        large.bytes = contents
+
+        expect:
+        hasher.hash(empty) == expected(hashFunction, new byte[0])
+        hasher.hash(small) == expected(hashFunction, "small".bytes)
+        hasher.hash(large) == expected(hashFunction, contents)
+
+        where:
+        hashFunction                     | useMemoryMapping
+        FileHashFunction.MD5             | true
+        FileHashFunction.MD5             | false
+        FileHashFunction.MURMUR3_128     | true
+        FileHashFunction.SHA1            | false
+    }
+
+    def "hashes differ between hash functions"() {
+        def file = tmpDir.file("file")
+        file.text = "content"
+
+        expect:
+        new FileChannelHasher(FileHashFunction.MD5).hash(file) != new FileChannelHasher(FileHashFunction.MURMUR3_128).hash(file)
+    }
+
+    def "fails to hash missing file"() {
+        def file = tmpDir.file("missing")
+
+        when:
+        new FileChannelHasher(FileHashFunction.MD5).hash(file)
+
+        then:
+        UncheckedIOException e = thrown()
+        e.message == "Failed to create md5 hash for file '$file'."
+    }
+
+    def "looks up hash function by id"() {
+        expect:
+        FileHashFunction.forId("murmur3_128") == FileHashFunction.MURMUR3_128
+
+        when:
+        FileHashFunction.forId("crc32")
+
+        then:
+        IllegalArgumentException e = thrown()
+        e.message == "Unknown file hash function 'crc32'. Supported functions are md5, sha1 and murmur3_128."
+    }
+
+    private static expected(FileHashFunction hashFunction, byte[] contents) {
+        def function = hashFunction.hashFunction
+        def signature = function.hashString(FileChannelHasher.name, Charsets.UTF_8).asBytes()
+        return function.newHasher().putBytes(signature).putBytes(contents).hash()
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache
+
+import org.gradle.api.internal.file.DefaultTemporaryFileProvider
+import org.gradle.internal.Factory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+
+class AsyncStoringTaskOutputCacheTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def temporaryFileProvider = new DefaultTemporaryFileProvider({ temporaryFolder.testDirectory } as Factory)
+    def executorFactory = new DefaultExecutorFactory()
+    def entries = new ConcurrentHashMap<String, byte[]>()
+    def delegate = new MapBasedTaskOutputCache("test", entries)
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "stores all entries before close returns"() {
+        def cache = new AsyncStoringTaskOutputCache(delegate, temporaryFileProvider, executorFactory, 2, 2)
+
+        when:
+        10.times { index ->
+            cache.store(key("key-$index")) { output -> output.write("data-$index".bytes) }
+        }
+        cache.close()
+
+        then:
+        entries.size() == 10
+        10.times { index ->
+            assert new String(entries["key-$index".toString()]) == "data-$index"
+        }
+        temporaryFolder.testDirectory.listFiles().length == 0
+    }
+
+    def "does not fail when backing cache cannot store entry"() {
+        def failingDelegate = Mock(TaskOutputCache)
+        def cache = new AsyncStoringTaskOutputCache(failingDelegate, temporaryFileProvider, executorFactory, 1, 1)
+
+        when:
+        cache.store(key("key")) { output -> output.write("data".bytes) }
+        cache.close()
+
+        then:
+        1 * failingDelegate.store(_, _) >> { throw new IOException("Broken") }
+        1 * failingDelegate.close()
+        temporaryFolder.testDirectory.listFiles().length == 0
+    }
+
+    def "propagates failure to write outputs"() {
+        def cache = new AsyncStoringTaskOutputCache(delegate, temporaryFileProvider, executorFactory, 1, 1)
+
+        when:
+        cache.store(key("key")) { output -> throw new IOException("Broken") }
+
+        then:
+        thrown IOException
+        temporaryFolder.testDirectory.listFiles().length == 0
+
+        cleanup:
+        cache.close()
+    }
+
+    private static TaskCacheKey key(String hashCode) {
+        return { hashCode } as TaskCacheKey
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache
+
+import org.gradle.cache.internal.CacheScopeMapping
+import org.gradle.cache.internal.DefaultCacheRepository
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.testfixtures.internal.InMemoryCacheFactory
+import org.junit.Rule
+import spock.lang.Specification
+
+class LocalDirectoryTaskOutputCacheTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheRepository = new DefaultCacheRepository(Mock(CacheScopeMapping), new InMemoryCacheFactory())
+    def cacheDir = temporaryFolder.createDir("cache")
+    def cache = new LocalDirectoryTaskOutputCache(cacheRepository, cacheDir, 1000)
+
+    def "stores entry atomically and loads it"() {
+        def key = key("0123456789abcdef0123456789abcdef")
+
+        when:
+        cache.store(key, writer(100))
+
+        then:
+        cacheDir.file(key.hashCode).length() == 100
+        cacheDir.listFiles().findAll { it.name.endsWith(".part") }.empty
+
+        when:
+        def loaded = null
+        def found = cache.load(key, { input -> loaded = input.bytes } as TaskOutputReader)
+
+        then:
+        found
+        loaded.length == 100
+    }
+
+    def "does not find missing entry"() {
+        expect:
+        !cache.load(key("0123456789abcdef0123456789abcdef"), Mock(TaskOutputReader))
+    }
+
+    def "removes temporary file when writing entry fails"() {
+        def key = key("0123456789abcdef0123456789abcdef")
+
+        when:
+        cache.store(key, { output -> throw new IOException("Broken") } as TaskOutputWriter)
+
+        then:
+        thrown IOException
+        !cacheDir.file(key.hashCode).exists()
+        cacheDir.listFiles().findAll { it.name.endsWith(".part") }.empty
+    }
+
+    def "removes least recently used entries when target size is exceeded"() {
+        def accessedEntry = entry("00000000000000000000000000000001", 400, 1000)
+        def leastRecentlyUsedEntry = entry("00000000000000000000000000000002", 400, 2000)
+        def newEntry = entry("00000000000000000000000000000003", 400, 3000)
+
+        when:
+        cache.load(key(accessedEntry.name), Mock(TaskOutputReader))
+        cache.close()
+
+        then:
+        accessedEntry.exists()
+        !leastRecentlyUsedEntry.exists()
+        newEntry.exists()
+    }
+
+    def "keeps entries when target size is not exceeded"() {
+        def first = entry("00000000000000000000000000000001", 400, 1000)
+        def second = entry("00000000000000000000000000000002", 400, 2000)
+
+        when:
+        cache.close()
+
+        then:
+        first.exists()
+        second.exists()
+    }
+
+    private TestFile entry(String name, int size, long lastModified) {
+        def file = cacheDir.file(name)
+        file.bytes = new byte[size]
+        file.lastModified = lastModified
+        return file
+    }
+
+    private static TaskOutputWriter writer(int size) {
+        return { output -> output.write(new byte[size]) } as TaskOutputWriter
+    }
+
+    private static TaskCacheKey key(String hashCode) {
+        return { hashCode } as TaskCacheKey
+    }
+}
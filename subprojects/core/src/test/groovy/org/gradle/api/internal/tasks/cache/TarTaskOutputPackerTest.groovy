@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache
+
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.tasks.TaskOutputFilePropertySpec
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.internal.tasks.TaskOutputFilePropertySpec.OutputType.DIRECTORY
+import static org.gradle.api.internal.tasks.TaskOutputFilePropertySpec.OutputType.FILE
+
+class TarTaskOutputPackerTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def fileSystem = TestFiles.fileSystem()
+    def tarPacker = new TarTaskOutputPacker(fileSystem)
+    def zipPacker = new ZipTaskOutputPacker()
+
+    def "can pack and unpack single file"() {
+        def sourceFile = temporaryFolder.file("source.txt")
+        sourceFile.text = "output"
+        def targetFile = temporaryFolder.file("target.txt")
+
+        when:
+        def packed = pack(tarPacker, outputs(property("test", FILE, sourceFile)))
+        unpack(tarPacker, packed, outputs(property("test", FILE, targetFile)))
+
+        then:
+        targetFile.text == "output"
+    }
+
+    def "can pack and unpack directory"() {
+        def sourceDir = temporaryFolder.createDir("source")
+        sourceDir.file("a.txt").text = "a"
+        sourceDir.file("sub/b.txt").text = "b"
+        sourceDir.createDir("empty")
+        def targetDir = temporaryFolder.file("target")
+
+        when:
+        def packed = pack(tarPacker, outputs(property("test", DIRECTORY, sourceDir)))
+        unpack(tarPacker, packed, outputs(property("test", DIRECTORY, targetDir)))
+
+        then:
+        targetDir.file("a.txt").text == "a"
+        targetDir.file("sub/b.txt").text == "b"
+        targetDir.file("empty").isDirectory()
+    }
+
+    @Requires(TestPrecondition.FILE_PERMISSIONS)
+    def "restores file permissions"() {
+        def sourceFile = temporaryFolder.file("source.sh")
+        sourceFile.text = "#!/bin/sh"
+        fileSystem.chmod(sourceFile, 0750)
+        def targetFile = temporaryFolder.file("target.sh")
+
+        when:
+        def packed = pack(tarPacker, outputs(property("test", FILE, sourceFile)))
+        unpack(tarPacker, packed, outputs(property("test", FILE, targetFile)))
+
+        then:
+        fileSystem.getUnixMode(targetFile) == 0750
+    }
+
+    def "format detecting packer unpacks entries in either format"() {
+        def sourceFile = temporaryFolder.file("source.txt")
+        sourceFile.text = "output"
+        def targetFile = temporaryFolder.file("target.txt")
+        def detectingPacker = new FormatDetectingTaskOutputPacker(tarPacker, zipPacker, tarPacker)
+
+        when:
+        unpack(detectingPacker, pack(packer, outputs(property("test", FILE, sourceFile))), outputs(property("test", FILE, targetFile)))
+
+        then:
+        targetFile.text == "output"
+
+        where:
+        packer << [tarPacker, zipPacker]
+    }
+
+    private static byte[] pack(TaskOutputPacker packer, TaskOutputsInternal outputs) {
+        def output = new ByteArrayOutputStream()
+        packer.pack(outputs, output)
+        return output.toByteArray()
+    }
+
+    private static void unpack(TaskOutputPacker packer, byte[] packed, TaskOutputsInternal outputs) {
+        packer.unpack(outputs, new ByteArrayInputStream(packed))
+    }
+
+    private TaskOutputsInternal outputs(TaskOutputFilePropertySpec... properties) {
+        def outputs = Stub(TaskOutputsInternal)
+        outputs.fileProperties >> new TreeSet<TaskOutputFilePropertySpec>(properties as List)
+        return outputs
+    }
+
+    private TaskOutputFilePropertySpec property(String name, TaskOutputFilePropertySpec.OutputType type, File file) {
+        def property = Stub(TaskOutputFilePropertySpec)
+        property.propertyName >> name
+        property.outputType >> type
+        property.outputFile >> file
+        property.compareTo(_) >> { args -> name <=> args[0].propertyName }
+        return property
+    }
+}
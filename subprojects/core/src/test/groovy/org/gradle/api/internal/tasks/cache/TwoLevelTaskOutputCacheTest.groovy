@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache
+
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+
+class TwoLevelTaskOutputCacheTest extends Specification {
+    def localEntries = new ConcurrentHashMap<String, byte[]>()
+    def remoteEntries = new ConcurrentHashMap<String, byte[]>()
+    def uncountedLocal = new MapBasedTaskOutputCache("local", localEntries)
+    def local = new StatisticsCollectingTaskOutputCache(uncountedLocal)
+    def remote = new StatisticsCollectingTaskOutputCache(new MapBasedTaskOutputCache("remote", remoteEntries))
+    def key = { "key" } as TaskCacheKey
+
+    def "loads entry from local cache first"() {
+        def cache = new TwoLevelTaskOutputCache(local, uncountedLocal, remote, true)
+        localEntries["key"] = "local".bytes
+        remoteEntries["key"] = "remote".bytes
+
+        expect:
+        load(cache) == "local"
+        local.hits == 1
+        remote.hits == 0
+        remote.misses == 0
+    }
+
+    def "copies entry found in remote cache to local cache"() {
+        def cache = new TwoLevelTaskOutputCache(local, uncountedLocal, remote, true)
+        remoteEntries["key"] = "remote".bytes
+
+        expect:
+        load(cache) == "remote"
+        new String(localEntries["key"]) == "remote"
+        local.misses == 1
+        local.hits == 0
+        remote.hits == 1
+        remote.misses == 0
+    }
+
+    def "does not find entry missing from both caches"() {
+        def cache = new TwoLevelTaskOutputCache(local, uncountedLocal, remote, true)
+
+        expect:
+        !cache.load(key, Mock(TaskOutputReader))
+        local.misses == 1
+        remote.misses == 1
+        localEntries.isEmpty()
+    }
+
+    def "stores entry in both caches when pushing is enabled"() {
+        def cache = new TwoLevelTaskOutputCache(local, uncountedLocal, remote, true)
+
+        when:
+        cache.store(key, { output -> output.write("data".bytes) } as TaskOutputWriter)
+
+        then:
+        new String(localEntries["key"]) == "data"
+        new String(remoteEntries["key"]) == "data"
+    }
+
+    def "does not count copying a stored entry to the remote cache as a hit"() {
+        def cache = new TwoLevelTaskOutputCache(local, uncountedLocal, remote, true)
+
+        when:
+        cache.store(key, { output -> output.write("data".bytes) } as TaskOutputWriter)
+
+        then:
+        local.stores == 1
+        remote.stores == 1
+        local.hits == 0
+        local.misses == 0
+        remote.hits == 0
+        remote.misses == 0
+    }
+
+    def "stores entry only in local cache when pushing is disabled"() {
+        def cache = new TwoLevelTaskOutputCache(local, uncountedLocal, remote, false)
+
+        when:
+        cache.store(key, { output -> output.write("data".bytes) } as TaskOutputWriter)
+
+        then:
+        new String(localEntries["key"]) == "data"
+        remoteEntries.isEmpty()
+    }
+
+    def "ignores failure to load from remote cache"() {
+        def failingRemote = Mock(TaskOutputCache)
+        def cache = new TwoLevelTaskOutputCache(local, uncountedLocal, failingRemote, true)
+
+        when:
+        def found = cache.load(key, Mock(TaskOutputReader))
+
+        then:
+        !found
+        1 * failingRemote.load(key, _) >> { throw new IOException("Broken") }
+    }
+
+    def "ignores failure to store entry loaded from remote cache in local cache"() {
+        def failingLocal = Mock(TaskOutputCache)
+        def cache = new TwoLevelTaskOutputCache(failingLocal, failingLocal, remote, true)
+        remoteEntries["key"] = "remote".bytes
+
+        when:
+        def found = cache.load(key, Mock(TaskOutputReader))
+
+        then:
+        !found
+        1 * failingLocal.load(key, _) >> false
+        1 * failingLocal.store(key, _) >> { throw new IOException("Broken") }
+        0 * failingLocal._
+        remote.hits == 1
+    }
+
+    private String load(TaskOutputCache cache) {
+        String result = null
+        assert cache.load(key, { input -> result = input.text } as TaskOutputReader)
+        return result
+    }
+}
@@ -16,7 +16,6 @@
 
 package org.gradle.api.internal.tasks.execution
 
-import org.gradle.StartParameter
 import org.gradle.api.GradleException
 import org.gradle.api.Project
 import org.gradle.api.internal.TaskInternal
@@ -27,9 +26,7 @@ import org.gradle.api.internal.tasks.TaskExecutionContext
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.internal.tasks.cache.TaskCacheKey
 import org.gradle.api.internal.tasks.cache.TaskOutputCache
-import org.gradle.api.internal.tasks.cache.TaskOutputCacheFactory
 import org.gradle.api.internal.tasks.cache.TaskOutputPacker
-import org.gradle.api.internal.tasks.cache.config.TaskCachingInternal
 import spock.lang.Specification
 
 public class SkipCachedTaskExecuterTest extends Specification {
@@ -42,13 +39,10 @@ public class SkipCachedTaskExecuterTest extends Specification {
     def taskContext = Mock(TaskExecutionContext)
     def taskArtifactState = Mock(TaskArtifactState)
     def taskOutputCache = Mock(TaskOutputCache)
-    def taskOutputCacheFactory = Mock(TaskOutputCacheFactory)
-    def taskCaching = Mock(TaskCachingInternal)
     def taskOutputPacker = Mock(TaskOutputPacker)
-    def startParameter = Mock(StartParameter)
     def cacheKey = Mock(TaskCacheKey)
 
-    def executer = new SkipCachedTaskExecuter(taskCaching, taskOutputPacker, startParameter, delegate)
+    def executer = new SkipCachedTaskExecuter(taskOutputCache, taskOutputPacker, delegate)
 
     def "skip task when cached results exist"() {
         when:
@@ -62,9 +56,6 @@ public class SkipCachedTaskExecuterTest extends Specification {
         1 * taskContext.getTaskArtifactState() >> taskArtifactState
         1 * taskArtifactState.calculateCacheKey() >> cacheKey
 
-        1 * taskCaching.getCacheFactory() >> taskOutputCacheFactory
-        1 * taskOutputCacheFactory.createCache(_) >> taskOutputCache
-        1 * taskOutputCache.getDescription() >> "test"
         1 * taskOutputCache.load(cacheKey, _) >> true
         1 * taskState.upToDate("FROM-CACHE")
         0 * _
@@ -82,9 +73,6 @@ public class SkipCachedTaskExecuterTest extends Specification {
         1 * taskContext.getTaskArtifactState() >> taskArtifactState
         1 * taskArtifactState.calculateCacheKey() >> cacheKey
 
-        1 * taskCaching.getCacheFactory() >> taskOutputCacheFactory
-        1 * taskOutputCacheFactory.createCache(_) >> taskOutputCache
-        1 * taskOutputCache.getDescription() >> "test"
         1 * taskOutputCache.load(cacheKey, _) >> false
 
         then:
@@ -108,9 +96,6 @@ public class SkipCachedTaskExecuterTest extends Specification {
         1 * taskContext.getTaskArtifactState() >> taskArtifactState
         1 * taskArtifactState.calculateCacheKey() >> cacheKey
 
-        1 * taskCaching.getCacheFactory() >> taskOutputCacheFactory
-        1 * taskOutputCacheFactory.createCache(_) >> taskOutputCache
-        1 * taskOutputCache.getDescription() >> "test"
         1 * taskOutputCache.load(cacheKey, _) >> false
 
         then:
@@ -191,9 +176,6 @@ public class SkipCachedTaskExecuterTest extends Specification {
         1 * taskContext.getTaskArtifactState() >> taskArtifactState
         1 * taskArtifactState.calculateCacheKey() >> cacheKey
 
-        1 * taskCaching.getCacheFactory() >> taskOutputCacheFactory
-        1 * taskOutputCacheFactory.createCache(_) >> taskOutputCache
-        1 * taskOutputCache.getDescription() >> "test"
         1 * taskOutputCache.load(cacheKey, _) >> { throw new RuntimeException("Bad cache") }
 
         then:
@@ -217,9 +199,6 @@ public class SkipCachedTaskExecuterTest extends Specification {
         1 * taskContext.getTaskArtifactState() >> taskArtifactState
         1 * taskArtifactState.calculateCacheKey() >> cacheKey
 
-        1 * taskCaching.getCacheFactory() >> taskOutputCacheFactory
-        1 * taskOutputCacheFactory.createCache(_) >> taskOutputCache
-        1 * taskOutputCache.getDescription() >> "test"
         1 * taskOutputCache.load(cacheKey, _) >> false
 
         then:
@@ -340,6 +340,84 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         thrown(UnsupportedOperationException)
     }
 
+    def "threads can use cache at the same time when concurrent access is enabled"() {
+        when:
+        access.open(mode(None).allowConcurrentAccess())
+        async {
+            start {
+                access.useCache("operation 1") {
+                    instant.started1
+                    thread.blockUntil.started2
+                }
+            }
+            start {
+                access.useCache("operation 2") {
+                    instant.started2
+                    thread.blockUntil.started1
+                }
+            }
+        }
+
+        then:
+        1 * lockManager.lock(lockFile, mode(Exclusive).allowConcurrentAccess(), "<display-name>", _) >> lock
+        !access.owner
+    }
+
+    def "file access is available to all threads using the cache when concurrent access is enabled"() {
+        def runnable = Mock(Runnable)
+        when:
+        access.open(mode(None).allowConcurrentAccess())
+        async {
+            start {
+                access.useCache("operation 1") {
+                    instant.started1
+                    thread.blockUntil.started2
+                    access.fileAccess.updateFile(runnable)
+                }
+            }
+            start {
+                access.useCache("operation 2") {
+                    instant.started2
+                    thread.blockUntil.started1
+                    access.fileAccess.updateFile(runnable)
+                }
+            }
+        }
+
+        then:
+        1 * lockManager.lock(lockFile, mode(Exclusive).allowConcurrentAccess(), "<display-name>", _) >> lock
+        2 * lock.updateFile(runnable)
+    }
+
+    def "contended lock is released when the last thread finishes using the cache when concurrent access is enabled"() {
+        given:
+        lockManager.lock(lockFile, mode(Exclusive).allowConcurrentAccess(), "<display-name>", _) >> lock
+        lock.getMode() >> Exclusive
+        access.open(mode(None).allowConcurrentAccess())
+
+        when:
+        async {
+            start {
+                access.useCache("operation 1") {
+                    instant.started1
+                    thread.blockUntil.contended
+                    thread.blockUntil.finished2
+                }
+            }
+            start {
+                access.useCache("operation 2") {
+                    thread.blockUntil.started1
+                    access.whenContended().run()
+                    instant.contended
+                }
+                instant.finished2
+            }
+        }
+
+        then:
+        1 * lock.close()
+    }
+
     def "long running operation pushes an operation and releases ownership but not lock"() {
         Factory<String> action = Mock()
 
@@ -22,6 +22,8 @@ import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.concurrent.TimeUnit
+
 import static org.gradle.cache.internal.FileLockManager.LockMode.Exclusive
 import static org.gradle.cache.internal.FileLockManager.LockMode.Shared
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode
@@ -188,6 +190,24 @@ class DefaultCacheFactoryTest extends Specification {
         0 * _
     }
 
+    public void "reports lock contention of open and closed caches"() {
+        when:
+        def closedCache = factory.openStore(tmpDir.createDir("closed"), "<closed>", mode(Exclusive), null)
+        closedCache.reference.cache.lockContention.waited(TimeUnit.MILLISECONDS.toNanos(20))
+        closedCache.close()
+        def openCache = factory.openStore(tmpDir.createDir("open"), "<open>", mode(Exclusive), null)
+        openCache.reference.cache.lockContention.waited(TimeUnit.MILLISECONDS.toNanos(5))
+        openCache.reference.cache.lockContention.waited(TimeUnit.MILLISECONDS.toNanos(10))
+        def lockContention = factory.lockContention
+
+        then:
+        lockContention.waitCount == 3
+        lockContention.waitTimeMillis == 35
+
+        cleanup:
+        factory.close()
+    }
+
     public void "fails when directory cache is already open with different properties"() {
         given:
         factory.open(tmpDir.testDirectory, null, null, [prop: 'value'], mode(Exclusive), null)
@@ -128,6 +128,59 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         0 * _._
     }
 
+    def "keeps changes in memory until flushed when write-behind is enabled"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, new CacheLockContention(), true)
+
+        given:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * factory.create() >> backingCache
+
+        when:
+        cache.put("key", "value")
+        cache.remove("removed")
+
+        then:
+        cache.get("key") == "value"
+        cache.get("removed") == null
+        0 * _._
+
+        when:
+        cache.flush()
+
+        then:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * backingCache.update([key: "value"], ["removed"] as Set)
+        0 * _._
+
+        when:
+        cache.flush()
+
+        then:
+        0 * _._
+    }
+
+    def "writes pending changes before closing when write-behind is enabled"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, new CacheLockContention(), true)
+
+        given:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * factory.create() >> backingCache
+        cache.put("key", "value")
+
+        when:
+        cache.close()
+
+        then:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+
+        then:
+        1 * backingCache.update([key: "value"], [] as Set)
+
+        then:
+        1 * backingCache.close()
+        0 * _._
+    }
+
     def cacheOpened() {
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
         1 * factory.create() >> backingCache
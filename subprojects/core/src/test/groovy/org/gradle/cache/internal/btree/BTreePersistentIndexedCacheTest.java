@@ -241,6 +241,31 @@ public class BTreePersistentIndexedCacheTest {
         verifyAndCloseCache();
     }
 
+    @Test
+    public void persistsBatchOfAddedAndRemovedEntries() {
+        createCache();
+        checkAdds(1, 2, 3, 4, 5, 6, 7, 8);
+
+        Map<String, Integer> entries = new HashMap<String, Integer>();
+        for (int i = 6; i < 20; i++) {
+            entries.put("key_" + i, i * 10);
+        }
+        Set<String> removed = new HashSet<String>(Arrays.asList("key_1", "key_3", "key_5", "unknown"));
+        cache.update(entries, removed);
+
+        cache.reset();
+
+        assertNull(cache.get("key_1"));
+        assertThat(cache.get("key_2"), equalTo(2));
+        assertNull(cache.get("key_3"));
+        assertThat(cache.get("key_4"), equalTo(4));
+        assertNull(cache.get("key_5"));
+        for (int i = 6; i < 20; i++) {
+            assertThat(cache.get("key_" + i), equalTo(i * 10));
+        }
+        verifyAndCloseCache();
+    }
+
     @Test
     public void handlesBadlyFormedCacheFile() throws IOException {
         cacheFile.createNewFile();
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.mapped
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class MemoryMappedPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cacheFile = tmpDir.file("cache.bin")
+
+    def createCache(int segmentSize = 64) {
+        new MemoryMappedPersistentIndexedCache<String, String>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER, segmentSize)
+    }
+
+    def "reads back entries after they are added, replaced and removed"() {
+        def cache = createCache()
+
+        when:
+        cache.put("a", "value a")
+        cache.put("b", "value b")
+        cache.put("a", "new value a")
+        cache.remove("b")
+        cache.remove("missing")
+
+        then:
+        cache.get("a") == "new value a"
+        cache.get("b") == null
+        cache.get("missing") == null
+
+        cleanup:
+        cache.close()
+    }
+
+    def "keeps entries spanning several segments when reopened"() {
+        def longValue = "x" * 1000
+        def cache = createCache()
+
+        when:
+        (1..20).each { cache.put("key$it", "$longValue$it") }
+        cache.remove("key3")
+        cache.close()
+        cache = createCache()
+
+        then:
+        cache.get("key1") == "${longValue}1"
+        cache.get("key20") == "${longValue}20"
+        cache.get("key3") == null
+
+        cleanup:
+        cache.close()
+    }
+
+    def "compacts file when most entries have been replaced"() {
+        def cache = createCache()
+
+        when:
+        (1..100).each { cache.put("key", "value$it") }
+        def uncompactedLength = cacheFile.length()
+        cache.close()
+        cache = createCache()
+
+        then:
+        cacheFile.length() < uncompactedLength
+        cache.get("key") == "value100"
+
+        cleanup:
+        cache.close()
+    }
+
+    def "discards file that is not a cache file"() {
+        cacheFile.text = "not a cache"
+
+        when:
+        def cache = createCache()
+
+        then:
+        cache.get("key") == null
+
+        when:
+        cache.put("key", "value")
+
+        then:
+        cache.get("key") == "value"
+
+        cleanup:
+        cache.close()
+    }
+
+    def "supports concurrent readers and writers"() {
+        def cache = createCache(4096)
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def futures = (1..8).collect { thread ->
+            executor.submit({
+                (1..200).each { entry ->
+                    cache.put("key$thread-$entry", "value$thread-$entry")
+                    assert cache.get("key$thread-$entry") == "value$thread-$entry"
+                }
+            } as Runnable)
+        }
+        futures*.get(30, TimeUnit.SECONDS)
+        cache.close()
+        cache = createCache(4096)
+
+        then:
+        (1..8).every { thread -> (1..200).every { entry -> cache.get("key$thread-$entry") == "value$thread-$entry" } }
+
+        cleanup:
+        executor.shutdownNow()
+        cache.close()
+    }
+}
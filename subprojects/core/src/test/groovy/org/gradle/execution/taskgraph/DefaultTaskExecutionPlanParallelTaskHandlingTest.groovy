@@ -172,6 +172,87 @@ class DefaultTaskExecutionPlanParallelTaskHandlingTest extends AbstractProjectBu
         requestedTasksBecomeAvailableForExecution()
     }
 
+    def "task becomes available for execution as soon as its dependencies complete regardless of its position in the plan"() {
+        given:
+        Task a = root.task("a", type: Parallel)
+        Task b = root.task("b", type: Parallel)
+        Task c = root.task("c", type: Parallel).dependsOn(a)
+        Task d = root.task("d", type: Parallel).dependsOn(b)
+
+        when:
+        addToGraphAndPopulate(c, d)
+        startTasks(2)
+
+        then:
+        startedTasks*.task == [a, b]
+
+        when:
+        def taskB = startedTasks.remove(1)
+        executionPlan.taskComplete(taskB)
+        startTasks(1)
+
+        then:
+        startedTasks*.task == [a, d]
+
+        when:
+        completeAllStartedTasks()
+        startTasks(1)
+
+        then:
+        startedTasks*.task == [c]
+
+        when:
+        completeAllStartedTasks()
+
+        then:
+        executionPlan.getTaskToExecute() == null
+    }
+
+    def "starts task with the longest expected critical path first when prioritizing tasks"() {
+        given:
+        def durationHistory = Mock(TaskDurationHistory)
+        executionPlan.useTaskPrioritizer(new CriticalPathTaskPrioritizer(durationHistory, 2))
+        Task a = root.task("a", type: Parallel)
+        Task b = root.task("b", type: Parallel)
+        Task c = root.task("c", type: Parallel).dependsOn(b)
+
+        when:
+        addToGraphAndPopulate(a, c)
+        startTasks(1)
+
+        then:
+        1 * durationHistory.getExpectedDurations(_) >> [":a": 100L, ":b": 60L, ":c": 60L]
+        startedTasks*.task == [b]
+
+        when:
+        startTasks(1)
+        completeAllStartedTasks()
+        startTasks(1)
+        completeAllStartedTasks()
+        executionPlan.executionFinished()
+
+        then:
+        1 * durationHistory.recordDurations({ it.keySet() == [":a", ":b", ":c"] as Set })
+    }
+
+    def "failure to record task durations does not fail the build"() {
+        given:
+        def durationHistory = Stub(TaskDurationHistory) {
+            recordDurations(_) >> { throw new RuntimeException("broken") }
+        }
+        executionPlan.useTaskPrioritizer(new CriticalPathTaskPrioritizer(durationHistory, 2))
+        Task a = root.task("a", type: Parallel)
+
+        when:
+        addToGraphAndPopulate(a)
+        startTasks(1)
+        completeAllStartedTasks()
+        executionPlan.executionFinished()
+
+        then:
+        noExceptionThrown()
+    }
+
     def "a parallelizable task with custom actions is not run in parallel"() {
         given:
         Task a = root.task("a", type: Parallel)
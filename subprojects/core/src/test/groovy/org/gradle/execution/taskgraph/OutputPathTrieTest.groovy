@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.internal.Pair
+import spock.lang.Specification
+
+class OutputPathTrieTest extends Specification {
+    def trie = new OutputPathTrie<String>('/' as char)
+
+    def "finds no overlap in empty trie"() {
+        expect:
+        trie.empty
+        trie.findOverlap("/a/b") == null
+    }
+
+    def "finds overlap of #path with indexed path"() {
+        given:
+        trie.add("/root/build/classes", "compile")
+
+        expect:
+        trie.findOverlap(path) == expected
+
+        where:
+        path                              | expected
+        "/root/build/classes"             | Pair.of("compile", "/root/build/classes")
+        "/root/build/classes/Foo.class"   | Pair.of("compile", "/root/build/classes")
+        "/root/build"                     | Pair.of("compile", "/root/build")
+        "/root"                           | Pair.of("compile", "/root")
+        "/root/build/classes-other"       | null
+        "/root/build/class"               | null
+        "/root/build/resources"           | null
+        "/other"                          | null
+    }
+
+    def "finds overlap only while path is indexed"() {
+        when:
+        trie.add("/a/b", "first")
+        trie.add("/a/c", "second")
+
+        then:
+        trie.findOverlap("/a") in [Pair.of("first", "/a"), Pair.of("second", "/a")]
+
+        when:
+        trie.remove("/a/b", "first")
+
+        then:
+        trie.findOverlap("/a/b") == null
+        trie.findOverlap("/a") == Pair.of("second", "/a")
+
+        when:
+        trie.remove("/a/c", "second")
+
+        then:
+        trie.empty
+        trie.findOverlap("/a") == null
+    }
+
+    def "keeps path indexed while it has other owners"() {
+        when:
+        trie.add("/a/b", "first")
+        trie.add("/a/b", "second")
+        trie.remove("/a/b", "first")
+
+        then:
+        trie.findOverlap("/a/b") == Pair.of("second", "/a/b")
+    }
+
+    def "ignores removal of paths that are not indexed"() {
+        given:
+        trie.add("/a/b", "first")
+
+        when:
+        trie.remove("/a", "first")
+        trie.remove("/a/b/c", "first")
+        trie.remove("/a/b", "second")
+
+        then:
+        trie.findOverlap("/a/b") == Pair.of("first", "/a/b")
+    }
+
+    def "can clear trie"() {
+        given:
+        trie.add("/a/b", "first")
+
+        when:
+        trie.clear()
+
+        then:
+        trie.empty
+        trie.findOverlap("/a/b") == null
+    }
+}
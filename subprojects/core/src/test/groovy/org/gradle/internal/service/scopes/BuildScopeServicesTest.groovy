@@ -25,6 +25,8 @@ import org.gradle.api.internal.SettingsInternal
 import org.gradle.api.internal.ThreadGlobalInstantiator
 import org.gradle.api.internal.artifacts.DependencyManagementServices
 import org.gradle.api.internal.changedetection.state.CacheAccessingFileSnapshotter
+import org.gradle.api.internal.changedetection.state.InMemoryFileCollectionSnapshotCache
+import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache
 import org.gradle.api.internal.classpath.DefaultModuleRegistry
 import org.gradle.api.internal.classpath.ModuleRegistry
 import org.gradle.api.internal.classpath.PluginModuleRegistry
@@ -304,6 +306,9 @@ public class BuildScopeServicesTest extends Specification {
     def providesAProfileEventAdapter() {
         setup:
         expectParentServiceLocated(BuildRequestMetaData)
+        expectParentServiceLocated(CacheFactory)
+        expectParentServiceLocated(InMemoryTaskArtifactCache)
+        expectParentServiceLocated(InMemoryFileCollectionSnapshotCache)
         expectListenerManagerCreated()
 
         expect:
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.profile
+
+import com.google.common.cache.CacheStats
+import org.gradle.StartParameter
+import org.gradle.api.internal.changedetection.state.InMemoryFileCollectionSnapshotCache
+import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache
+import org.gradle.api.invocation.Gradle
+import org.gradle.cache.internal.CacheFactory
+import org.gradle.cache.internal.CacheLockContention
+import org.gradle.initialization.BuildRequestMetaData
+import org.gradle.internal.TimeProvider
+import org.gradle.util.Clock
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class ProfileEventAdapterTest extends Specification {
+    def buildMetaData = Stub(BuildRequestMetaData) {
+        getBuildTimeClock() >> Stub(Clock)
+    }
+    def timeProvider = Stub(TimeProvider)
+    def listener = Mock(ProfileListener)
+    def cacheFactory = Mock(CacheFactory)
+    def inMemoryTaskArtifactCache = Mock(InMemoryTaskArtifactCache) {
+        getTotalStatistics() >> new InMemoryTaskArtifactCache.Statistics()
+    }
+    def snapshotCache = Mock(InMemoryFileCollectionSnapshotCache) {
+        getStatistics() >> new CacheStats(0, 0, 0, 0, 0, 0)
+    }
+    def gradle = Stub(Gradle) {
+        getStartParameter() >> new StartParameter()
+    }
+    def adapter = new ProfileEventAdapter(buildMetaData, timeProvider, listener, cacheFactory, inMemoryTaskArtifactCache, snapshotCache)
+
+    def "reports cache lock contention that happened during the build"() {
+        def atStart = contention(2, 100)
+        def atEnd = contention(5, 350)
+        BuildProfile profile
+
+        when:
+        adapter.buildStarted(gradle)
+        adapter.completed()
+
+        then:
+        2 * cacheFactory.getLockContention() >>> [atStart, atEnd]
+        1 * listener.buildFinished(_) >> { BuildProfile p -> profile = p }
+        profile.cacheLockWaitCount == 3
+        profile.cacheLockWaitTime == 250
+    }
+
+    def "reports in-memory task artifact cache usage during the build"() {
+        cacheFactory.getLockContention() >> new CacheLockContention()
+        def atStart = statistics(10, 4, 1)
+        def atEnd = statistics(25, 6, 4)
+        BuildProfile profile
+
+        when:
+        adapter.buildStarted(gradle)
+        adapter.completed()
+
+        then:
+        2 * inMemoryTaskArtifactCache.getTotalStatistics() >>> [atStart, atEnd]
+        1 * inMemoryTaskArtifactCache.getEstimatedSize() >> 2048
+        1 * listener.buildFinished(_) >> { BuildProfile p -> profile = p }
+        profile.inMemoryCacheHitCount == 15
+        profile.inMemoryCacheMissCount == 2
+        profile.inMemoryCacheEvictionCount == 3
+        profile.inMemoryCacheSize == 2048
+    }
+
+    def "reports file collection snapshot reuse during the build"() {
+        cacheFactory.getLockContention() >> new CacheLockContention()
+        BuildProfile profile
+
+        when:
+        adapter.buildStarted(gradle)
+        adapter.completed()
+
+        then:
+        2 * snapshotCache.getStatistics() >>> [new CacheStats(7, 3, 0, 0, 0, 1), new CacheStats(12, 5, 0, 0, 0, 4)]
+        1 * listener.buildFinished(_) >> { BuildProfile p -> profile = p }
+        profile.snapshotCacheHitCount == 5
+        profile.snapshotCacheMissCount == 2
+        profile.snapshotCacheEvictionCount == 3
+    }
+
+    private InMemoryTaskArtifactCache.Statistics statistics(long hits, long misses, long evictions) {
+        Stub(InMemoryTaskArtifactCache.Statistics) {
+            getHitCount() >> hits
+            getMissCount() >> misses
+            getEvictionCount() >> evictions
+        }
+    }
+
+    private static CacheLockContention contention(int waitCount, long totalWaitMillis) {
+        def contention = new CacheLockContention()
+        (waitCount - 1).times { contention.waited(0) }
+        contention.waited(TimeUnit.MILLISECONDS.toNanos(totalWaitMillis))
+        contention
+    }
+}
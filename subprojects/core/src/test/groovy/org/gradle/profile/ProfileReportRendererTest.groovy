@@ -218,6 +218,103 @@ class ProfileReportRendererTest extends Specification {
 </div>"""))
     }
 
+    def "renders time spent waiting for cache locks"() {
+        def model = new BuildProfile(new StartParameter())
+        def file = temp.file("report.html")
+        model.cacheLockWaitTime = 1500
+        model.cacheLockWaitCount = 4
+
+        when:
+        new ProfileReportRenderer().writeTo(model, file)
+
+        then:
+        file.text.contains(toPlatformLineSeparators("""<tr>
+<td>Waiting for Cache Locks (4 times)</td>
+<td class="numeric">1.500s</td>
+</tr>
+"""))
+    }
+
+    def "does not render cache lock waits when there were none"() {
+        def model = new BuildProfile(new StartParameter())
+        def file = temp.file("report.html")
+
+        when:
+        new ProfileReportRenderer().writeTo(model, file)
+
+        then:
+        !file.text.contains("Waiting for Cache Locks")
+    }
+
+    def "renders in-memory task artifact cache statistics"() {
+        def model = new BuildProfile(new StartParameter())
+        def file = temp.file("report.html")
+        model.inMemoryCacheHitCount = 120
+        model.inMemoryCacheMissCount = 30
+        model.inMemoryCacheEvictionCount = 5
+        model.inMemoryCacheSize = 4096
+
+        when:
+        new ProfileReportRenderer().writeTo(model, file)
+
+        then:
+        file.text.contains(toPlatformLineSeparators("""<tr>
+<td>Hits</td>
+<td class="numeric">120</td>
+</tr>
+<tr>
+<td>Misses</td>
+<td class="numeric">30</td>
+</tr>
+<tr>
+<td>Evictions</td>
+<td class="numeric">5</td>
+</tr>
+<tr>
+<td>Estimated size at end of build (KB)</td>
+<td class="numeric">4</td>
+</tr>
+"""))
+    }
+
+    def "does not render in-memory task artifact cache statistics when the caches were not used"() {
+        def model = new BuildProfile(new StartParameter())
+        def file = temp.file("report.html")
+
+        when:
+        new ProfileReportRenderer().writeTo(model, file)
+
+        then:
+        !file.text.contains("In-memory Task Artifact Caches")
+    }
+
+    def "renders in-memory file collection snapshot statistics"() {
+        def model = new BuildProfile(new StartParameter())
+        def file = temp.file("report.html")
+        model.snapshotCacheHitCount = 40
+        model.snapshotCacheMissCount = 12
+        model.snapshotCacheEvictionCount = 2
+
+        when:
+        new ProfileReportRenderer().writeTo(model, file)
+
+        then:
+        file.text.contains(toPlatformLineSeparators("""<tr>
+<td>Reused snapshots</td>
+<td class="numeric">40</td>
+</tr>
+<tr>
+<td>Created snapshots</td>
+<td class="numeric">12</td>
+</tr>
+<tr>
+<td>Evicted snapshots</td>
+<td class="numeric">2</td>
+</tr>
+"""))
+        !file.text.contains("In-memory Task Artifact Caches")
+    }
+
     private long time(int hour, int mins, int secs, int ms = 0) {
         def cal = new GregorianCalendar(2010, 1, 5, hour, mins, secs)
         cal.add(Calendar.MILLISECOND, ms)
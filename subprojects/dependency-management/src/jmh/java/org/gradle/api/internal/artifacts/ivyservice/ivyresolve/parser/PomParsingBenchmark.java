@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares parsing a corpus of POMs into a W3C DOM with parsing them using {@link StreamingPomParser}.
+ *
+ * <p>The corpus is made up of the POMs found in the directory given by the {@value #CORPUS_PROPERTY} system property, which defaults to the local Maven
+ * repository. At most {@link #MAX_POMS} POMs are used.</p>
+ */
+@State(Scope.Benchmark)
+public class PomParsingBenchmark {
+    public static final String CORPUS_PROPERTY = "org.gradle.jmh.pomCorpus";
+    public static final int MAX_POMS = 2000;
+
+    @Param({"dom", "streaming"})
+    String parser;
+
+    private final List<byte[]> poms = new ArrayList<byte[]>();
+    private final List<String> systemIds = new ArrayList<String>();
+    private byte[] entities;
+    private DocumentBuilderFactory documentBuilderFactory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File corpus = new File(System.getProperty(CORPUS_PROPERTY, new File(System.getProperty("user.home"), ".m2/repository").getPath()));
+        collectPoms(corpus);
+        if (poms.isEmpty()) {
+            throw new IllegalStateException("No POMs found in " + corpus + ". Set the " + CORPUS_PROPERTY + " system property to a directory containing POMs.");
+        }
+        entities = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setValidating(false);
+    }
+
+    private void collectPoms(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (poms.size() >= MAX_POMS) {
+                return;
+            }
+            if (file.isDirectory()) {
+                collectPoms(file);
+            } else if (file.getName().endsWith(".pom")) {
+                poms.add(FileUtils.readFileToByteArray(file));
+                systemIds.add(file.toURI().toASCIIString());
+            }
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws Exception {
+        boolean dom = parser.equals("dom");
+        for (int i = 0; i < poms.size(); i++) {
+            ByteArrayInputStream content = new ByteArrayInputStream(poms.get(i));
+            if (dom) {
+                blackhole.consume(parseToDom(content, systemIds.get(i)));
+            } else {
+                blackhole.consume(StreamingPomParser.parse(content, systemIds.get(i)));
+            }
+        }
+    }
+
+    private Document parseToDom(ByteArrayInputStream content, String systemId) throws Exception {
+        DocumentBuilder builder = documentBuilderFactory.newDocumentBuilder();
+        builder.setEntityResolver(new EntityResolver() {
+            public InputSource resolveEntity(String publicId, String systemId) {
+                if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
+                    return new InputSource(new ByteArrayInputStream(entities));
+                }
+                return null;
+            }
+        });
+        return builder.parse(new AddDTDFilterInputStream(content), systemId);
+    }
+}
@@ -45,15 +45,18 @@ import java.util.Set;
 
 public class DefaultLenientConfiguration implements LenientConfiguration {
     private CacheLockingManager cacheLockingManager;
+    private final ParallelArtifactDownloader artifactDownloader;
     private final Configuration configuration;
     private final Set<UnresolvedDependency> unresolvedDependencies;
     private final ResolvedArtifacts artifactResults;
     private final Factory<TransientConfigurationResults> transientConfigurationResultsFactory;
 
-    public DefaultLenientConfiguration(Configuration configuration, CacheLockingManager cacheLockingManager, Set<UnresolvedDependency> unresolvedDependencies,
-                                       ResolvedArtifacts artifactResults, Factory<TransientConfigurationResults> transientConfigurationResultsLoader) {
+    public DefaultLenientConfiguration(Configuration configuration, CacheLockingManager cacheLockingManager, ParallelArtifactDownloader artifactDownloader,
+                                       Set<UnresolvedDependency> unresolvedDependencies, ResolvedArtifacts artifactResults,
+                                       Factory<TransientConfigurationResults> transientConfigurationResultsLoader) {
         this.configuration = configuration;
         this.cacheLockingManager = cacheLockingManager;
+        this.artifactDownloader = artifactDownloader;
         this.unresolvedDependencies = unresolvedDependencies;
         this.artifactResults = artifactResults;
         this.transientConfigurationResultsFactory = transientConfigurationResultsLoader;
@@ -113,12 +116,13 @@ public class DefaultLenientConfiguration implements LenientConfiguration {
 
     public Set<File> getFiles(Spec<? super Dependency> dependencySpec) {
         Set<ResolvedArtifact> artifacts = getArtifacts(dependencySpec);
-        return getFiles(artifacts);
+        // Already downloaded by getArtifacts()
+        return getFiles(artifacts, false);
     }
 
     public Set<File> getFilesStrict(Spec<? super Dependency> dependencySpec) {
         Set<ResolvedArtifact> artifacts = getAllArtifacts(dependencySpec);
-        return getFiles(artifacts);
+        return getFiles(artifacts, true);
     }
 
     /**
@@ -130,6 +134,7 @@ public class DefaultLenientConfiguration implements LenientConfiguration {
         final Set<ResolvedArtifact> allArtifacts = getAllArtifacts(dependencySpec);
         return cacheLockingManager.useCache("retrieve artifacts from " + configuration, new Factory<Set<ResolvedArtifact>>() {
             public Set<ResolvedArtifact> create() {
+                artifactDownloader.downloadAll(allArtifacts, configuration.toString());
                 return CollectionUtils.filter(allArtifacts, new Spec<ResolvedArtifact>() {
                     public boolean isSatisfiedBy(ResolvedArtifact element) {
                         try {
@@ -144,10 +149,13 @@ public class DefaultLenientConfiguration implements LenientConfiguration {
         });
     }
 
-    private Set<File> getFiles(final Set<ResolvedArtifact> artifacts) {
+    private Set<File> getFiles(final Set<ResolvedArtifact> artifacts, final boolean downloadInParallel) {
         final Set<File> files = new LinkedHashSet<File>();
         cacheLockingManager.useCache("resolve files from " + configuration, new Runnable() {
             public void run() {
+                if (downloadInParallel) {
+                    artifactDownloader.downloadAll(artifacts, configuration.toString());
+                }
                 for (ResolvedArtifact artifact : artifacts) {
                     File depFile = artifact.getFile();
                     if (depFile != null) {
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads the files of a set of resolved artifacts on a pool of threads, ahead of the artifacts being used.
+ *
+ * <p>Each artifact is resolved by calling {@link ResolvedArtifact#getFile()}, which leaves the file in the artifact and in the persistent caches.
+ * The caller then uses the artifacts in the usual order, so that the resulting files, and any failures, are the same as without downloading in parallel.
+ * Failures are ignored here, and are reported when the caller resolves the artifact again.</p>
+ *
+ * <p>The download threads hold the cache lock while they use the caches, and release it for remote requests. The caller must own the cache lock, which
+ * is released while it waits for the downloads to complete.</p>
+ */
+public class ParallelArtifactDownloader implements Stoppable {
+    public static final String DOWNLOAD_THREADS_PROPERTY = "org.gradle.internal.resolve.artifactDownloadThreads";
+
+    private final ExecutorFactory executorFactory;
+    private final CacheLockingManager cacheLockingManager;
+    private final int downloadThreads;
+    private StoppableExecutor executor;
+
+    public ParallelArtifactDownloader(ExecutorFactory executorFactory, CacheLockingManager cacheLockingManager, int downloadThreads) {
+        this.executorFactory = executorFactory;
+        this.cacheLockingManager = cacheLockingManager;
+        this.downloadThreads = downloadThreads;
+    }
+
+    /**
+     * Downloads the files of the given artifacts, and waits for the downloads to complete. Does nothing when downloading in parallel is disabled.
+     */
+    public void downloadAll(Collection<? extends ResolvedArtifact> artifacts, String displayName) {
+        if (downloadThreads < 1 || artifacts.size() < 2) {
+            return;
+        }
+        StoppableExecutor executor = getExecutor();
+        final List<Future<?>> downloads = new ArrayList<Future<?>>(artifacts.size());
+        for (final ResolvedArtifact artifact : artifacts) {
+            downloads.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    cacheLockingManager.useCache("Download " + artifact, new Runnable() {
+                        @Override
+                        public void run() {
+                            artifact.getFile();
+                        }
+                    });
+                }
+            }));
+        }
+        cacheLockingManager.longRunningOperation("Wait for downloads of " + displayName, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (Future<?> download : downloads) {
+                        try {
+                            download.get();
+                        } catch (ExecutionException e) {
+                            // Ignore, the caller will resolve the artifact again and report the failure
+                        } catch (CancellationException e) {
+                            // Ignore
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    for (Future<?> download : downloads) {
+                        download.cancel(false);
+                    }
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        });
+    }
+
+    private synchronized StoppableExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Artifact downloads", downloadThreads);
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+}
@@ -31,13 +31,14 @@ import org.gradle.internal.resolve.result.BuildableModuleVersionListingResolveRe
 
 /**
  * A wrapper around a {@link ModuleComponentRepository} that handles releasing the cache lock before making remote calls.
+ * Artifact downloads are also limited by the given {@link RepositoryConnectionLimiter}, once the cache lock has been released.
  */
 public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComponentRepository {
     private final ModuleComponentRepositoryAccess remoteAccess;
 
-    public CacheLockReleasingModuleComponentsRepository(ModuleComponentRepository repository, CacheLockingManager cacheLockingManager) {
+    public CacheLockReleasingModuleComponentsRepository(ModuleComponentRepository repository, CacheLockingManager cacheLockingManager, RepositoryConnectionLimiter connectionLimiter) {
         super(repository);
-        this.remoteAccess = new LockReleasingRepositoryAccess(repository.getName(), repository.getRemoteAccess(), cacheLockingManager);
+        this.remoteAccess = new LockReleasingRepositoryAccess(repository.getId(), repository.getName(), repository.getRemoteAccess(), cacheLockingManager, connectionLimiter);
     }
 
     @Override
@@ -46,19 +47,24 @@ public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComp
     }
 
     private static class LockReleasingRepositoryAccess implements ModuleComponentRepositoryAccess {
+        private final String id;
         private final String name;
         private final ModuleComponentRepositoryAccess delegate;
         private final CacheLockingManager cacheLockingManager;
+        private final RepositoryConnectionLimiter connectionLimiter;
 
         @Override
         public String toString() {
             return "unlocking > " + delegate.toString();
         }
 
-        private LockReleasingRepositoryAccess(String name, ModuleComponentRepositoryAccess delegate, CacheLockingManager cacheLockingManager) {
+        private LockReleasingRepositoryAccess(String id, String name, ModuleComponentRepositoryAccess delegate, CacheLockingManager cacheLockingManager,
+                                              RepositoryConnectionLimiter connectionLimiter) {
+            this.id = id;
             this.name = name;
             this.delegate = delegate;
             this.cacheLockingManager = cacheLockingManager;
+            this.connectionLimiter = connectionLimiter;
         }
 
         @Override
@@ -102,7 +108,11 @@ public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComp
         public void resolveArtifact(final ComponentArtifactMetadata artifact, final ModuleSource moduleSource, final BuildableArtifactResolveResult result) {
             cacheLockingManager.longRunningOperation("Download " + artifact + " using repository " + name, new Runnable() {
                 public void run() {
-                    delegate.resolveArtifact(artifact, moduleSource, result);
+                    connectionLimiter.withConnection(id, new Runnable() {
+                        public void run() {
+                            delegate.resolveArtifact(artifact, moduleSource, result);
+                        }
+                    });
                 }
             });
         }
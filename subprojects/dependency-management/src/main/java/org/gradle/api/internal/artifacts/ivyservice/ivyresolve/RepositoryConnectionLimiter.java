@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve;
+
+import org.gradle.internal.UncheckedException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of artifact downloads that run at the same time against each repository. The limits are shared by all resolves in the build.
+ *
+ * <p>An action must not be run with the cache lock held, as another thread may hold a connection while it waits for the lock.</p>
+ */
+public class RepositoryConnectionLimiter {
+    public static final String MAX_CONNECTIONS_PROPERTY = "org.gradle.internal.resolve.maxConnectionsPerRepository";
+    public static final int DEFAULT_MAX_CONNECTIONS = 4;
+
+    private final int maxConnectionsPerRepository;
+    private final ConcurrentMap<String, Semaphore> connections = new ConcurrentHashMap<String, Semaphore>();
+
+    public RepositoryConnectionLimiter(int maxConnectionsPerRepository) {
+        this.maxConnectionsPerRepository = maxConnectionsPerRepository;
+    }
+
+    /**
+     * Runs the given action once a connection to the given repository is available. Runs the action immediately when there is no limit.
+     */
+    public void withConnection(String repositoryId, Runnable action) {
+        if (maxConnectionsPerRepository < 1) {
+            action.run();
+            return;
+        }
+        Semaphore semaphore = connectionsFor(repositoryId);
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        try {
+            action.run();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private Semaphore connectionsFor(String repositoryId) {
+        Semaphore semaphore = connections.get(repositoryId);
+        if (semaphore == null) {
+            Semaphore newSemaphore = new Semaphore(maxConnectionsPerRepository);
+            semaphore = connections.putIfAbsent(repositoryId, newSemaphore);
+            if (semaphore == null) {
+                semaphore = newSemaphore;
+            }
+        }
+        return semaphore;
+    }
+}
@@ -25,11 +25,15 @@ import org.gradle.internal.resolve.resolver.ArtifactResolver;
 import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
 import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class UserResolverChain implements ComponentResolvers {
     private final RepositoryChainDependencyToComponentIdResolver componentIdResolver;
     private final RepositoryChainComponentMetaDataResolver componentResolver;
     private final RepositoryChainArtifactResolver artifactResolver;
     private final ComponentSelectionRulesInternal componentSelectionRules;
+    private final List<String> repositoryIds = new ArrayList<String>();
 
     public UserResolverChain(VersionSelectorScheme versionSelectorScheme, VersionComparator versionComparator, ComponentSelectionRulesInternal componentSelectionRules) {
         this.componentSelectionRules = componentSelectionRules;
@@ -56,7 +60,15 @@ public class UserResolverChain implements ComponentResolvers {
         return componentSelectionRules;
     }
 
+    /**
+     * Returns the ids of the repositories in this chain, in order.
+     */
+    public List<String> getRepositoryIds() {
+        return repositoryIds;
+    }
+
     public void add(ModuleComponentRepository repository) {
+        repositoryIds.add(repository.getId());
         componentIdResolver.add(repository);
         componentResolver.add(repository);
         artifactResolver.add(repository);
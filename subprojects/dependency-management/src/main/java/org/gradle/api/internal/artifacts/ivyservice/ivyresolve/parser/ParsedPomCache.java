@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import com.google.common.collect.MapMaker;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Caches the parsed content of parent and imported POMs for the duration of a build, so that a POM shared by many modules is parsed only once.
+ *
+ * <p>Entries are keyed by the module version and the local file that the POM was resolved to, which identifies the repository it was found in.
+ * The key also includes the length and last modified time of the file, so that a POM that is changed during the build, for example in a file
+ * based repository or the local Maven repository, is parsed again.
+ * Only the parsed elements are cached: each {@link PomReader} created from them interpolates properties separately, as the result depends on the
+ * POM that refers to the parent.</p>
+ */
+public class ParsedPomCache implements Stoppable {
+    public final static String TOGGLE_PROPERTY = "org.gradle.resolution.parsedPomCache";
+
+    private final Map<Key, PomElement> parsedPoms = new MapMaker().makeMap();
+    private final boolean enabled;
+
+    public ParsedPomCache() {
+        enabled = !"false".equalsIgnoreCase(System.getProperty(TOGGLE_PROPERTY));
+    }
+
+    /**
+     * Returns the parsed content of the given POM, parsing it if it has not been parsed before.
+     */
+    public PomElement parse(ModuleComponentIdentifier id, LocallyAvailableExternalResource resource) {
+        if (!enabled) {
+            return PomReader.parse(resource);
+        }
+        File file = resource.getLocalResource().getFile();
+        Key key = new Key(id, file, file.length(), file.lastModified());
+        PomElement projectElement = parsedPoms.get(key);
+        if (projectElement == null) {
+            projectElement = PomReader.parse(resource);
+            parsedPoms.put(key, projectElement);
+        }
+        return projectElement;
+    }
+
+    public void stop() {
+        parsedPoms.clear();
+    }
+
+    private static class Key {
+        private final ModuleComponentIdentifier id;
+        private final File file;
+        private final long length;
+        private final long lastModified;
+
+        Key(ModuleComponentIdentifier id, File file, long length, long lastModified) {
+            this.id = id;
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key other = (Key) o;
+            return id.equals(other.id) && file.equals(other.file) && length == other.length && lastModified == other.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = id.hashCode();
+            result = 31 * result + file.hashCode();
+            result = 31 * result + (int) (length ^ (length >>> 32));
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An element of a POM, as retained by {@link StreamingPomParser}. Holds the name of the element, its text content and the child elements that were retained.
+ */
+public final class PomElement {
+    private final String name;
+    private List<PomElement> children = Collections.emptyList();
+    private String textContent = "";
+
+    PomElement(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the text of this element, not including the text of any child elements.
+     */
+    public String getTextContent() {
+        return textContent;
+    }
+
+    public List<PomElement> getChildren() {
+        return children;
+    }
+
+    void setTextContent(String textContent) {
+        this.textContent = textContent;
+    }
+
+    void addChild(PomElement child) {
+        if (children.isEmpty()) {
+            children = new ArrayList<PomElement>(4);
+        }
+        children.add(child);
+    }
+
+    /**
+     * Called once all children have been added. A parsed parent POM is shared by all the POMs that refer to it, so its elements must not change afterwards.
+     */
+    void freeze() {
+        if (!children.isEmpty()) {
+            children = Collections.unmodifiableList(children);
+        }
+    }
+
+    public static String getFirstChildText(PomElement parentElem, String name) {
+        PomElement node = getFirstChildElement(parentElem, name);
+        if (node != null) {
+            return node.getTextContent();
+        } else {
+            return null;
+        }
+    }
+
+    public static PomElement getFirstChildElement(PomElement parentElem, String name) {
+        if (parentElem == null) {
+            return null;
+        }
+        for (PomElement child : parentElem.children) {
+            if (name.equals(child.name)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    public static List<PomElement> getAllChilds(PomElement parent) {
+        if (parent == null) {
+            return Collections.emptyList();
+        }
+        return parent.children;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
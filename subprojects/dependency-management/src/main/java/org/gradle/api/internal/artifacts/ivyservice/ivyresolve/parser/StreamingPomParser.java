@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.UncheckedException;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses a POM in a single pass, retaining only those elements that are used to build the module meta-data: the coordinates, parent, relocation, properties,
+ * dependencies, dependency management and profiles. Everything else, such as the build and reporting configuration, is skipped without being kept in memory.
+ *
+ * <p>The text of each retained element is the same as the text content of the corresponding DOM element, that is the text directly contained by the
+ * element, with entity references replaced.</p>
+ */
+public final class StreamingPomParser {
+    private static final byte[] M2_ENTITIES_RESOURCE;
+    private static final SAXParserFactory SAX_PARSER_FACTORY;
+
+    private static final ElementFilter ALL = new ElementFilter();
+    private static final ElementFilter DEPENDENCIES = new ElementFilter().retain("dependency", ALL);
+    private static final ElementFilter DEPENDENCY_MGT = new ElementFilter().retain("dependencies", DEPENDENCIES);
+    private static final ElementFilter PROFILE = new ElementFilter()
+        .retain("id", ALL)
+        .retain("activation", ALL)
+        .retain("properties", ALL)
+        .retain("dependencies", DEPENDENCIES)
+        .retain("dependencyManagement", DEPENDENCY_MGT);
+    private static final ElementFilter PROJECT = new ElementFilter()
+        .retain("groupId", ALL)
+        .retain("artifactId", ALL)
+        .retain("version", ALL)
+        .retain("packaging", ALL)
+        .retain("description", ALL)
+        .retain("parent", ALL)
+        .retain("distributionManagement", new ElementFilter().retain("relocation", ALL))
+        .retain("properties", ALL)
+        .retain("dependencies", DEPENDENCIES)
+        .retain("dependencyManagement", DEPENDENCY_MGT)
+        .retain("profiles", new ElementFilter().retain("profile", PROFILE));
+
+    static {
+        byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        M2_ENTITIES_RESOURCE = bytes;
+
+        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
+        // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(ClassLoader.getSystemClassLoader().getParent());
+        try {
+            SAX_PARSER_FACTORY = SAXParserFactory.newInstance();
+            SAX_PARSER_FACTORY.setValidating(false);
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    private StreamingPomParser() {
+    }
+
+    /**
+     * Parses the given POM content, and returns its root element.
+     */
+    public static PomElement parse(InputStream stream, String systemId) throws IOException, SAXException {
+        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
+        // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(ClassLoader.getSystemClassLoader().getParent());
+        try {
+            InputSource source = new InputSource(new AddDTDFilterInputStream(stream));
+            source.setSystemId(systemId);
+            RetainingHandler handler = new RetainingHandler();
+            newSaxParser().parse(source, handler);
+            return handler.root;
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    private static SAXParser newSaxParser() {
+        try {
+            return SAX_PARSER_FACTORY.newSAXParser();
+        } catch (ParserConfigurationException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (SAXException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    /**
+     * Describes which children of an element are retained.
+     */
+    private static class ElementFilter {
+        private final Map<String, ElementFilter> retained = new HashMap<String, ElementFilter>();
+
+        ElementFilter retain(String name, ElementFilter filter) {
+            retained.put(name, filter);
+            return this;
+        }
+
+        ElementFilter filterFor(String name) {
+            if (this == ALL) {
+                return ALL;
+            }
+            return retained.get(name);
+        }
+    }
+
+    private static class RetainingHandler extends DefaultHandler {
+        private final List<PomElement> elements = new ArrayList<PomElement>();
+        private final List<ElementFilter> filters = new ArrayList<ElementFilter>();
+        private final List<StringBuilder> texts = new ArrayList<StringBuilder>();
+        private PomElement root;
+        private int skippedDepth;
+
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId) {
+            if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
+                return new InputSource(new ByteArrayInputStream(M2_ENTITIES_RESOURCE));
+            }
+            return null;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (skippedDepth > 0) {
+                skippedDepth++;
+                return;
+            }
+            ElementFilter filter;
+            if (root == null) {
+                filter = PROJECT;
+            } else {
+                filter = filters.get(filters.size() - 1).filterFor(qName);
+                if (filter == null) {
+                    skippedDepth = 1;
+                    return;
+                }
+            }
+            PomElement element = new PomElement(qName);
+            if (root == null) {
+                root = element;
+            } else {
+                elements.get(elements.size() - 1).addChild(element);
+            }
+            elements.add(element);
+            filters.add(filter);
+            texts.add(null);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (skippedDepth > 0) {
+                skippedDepth--;
+                return;
+            }
+            int last = elements.size() - 1;
+            StringBuilder text = texts.remove(last);
+            PomElement element = elements.remove(last);
+            if (text != null) {
+                element.setTextContent(text.toString());
+            }
+            element.freeze();
+            filters.remove(last);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (skippedDepth > 0 || elements.isEmpty()) {
+                return;
+            }
+            int last = texts.size() - 1;
+            StringBuilder text = texts.get(last);
+            if (text == null) {
+                text = new StringBuilder(length);
+                texts.set(last, text);
+            }
+            text.append(ch, start, length);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            characters(ch, start, length);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.internal.component.model.DependencyMetadata;
+
+/**
+ * Resolves component meta-data ahead of the dependency graph traversal that needs it.
+ */
+public interface ComponentMetaDataPrefetcher {
+    ComponentMetaDataPrefetcher NONE = new ComponentMetaDataPrefetcher() {
+        @Override
+        public void prefetch(ComponentIdentifier identifier, DependencyMetadata dependency) {
+        }
+
+        @Override
+        public void awaitPrefetched(ComponentIdentifier identifier) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    /**
+     * Starts resolving the meta-data of the given component, as requested by the given dependency. Does nothing when the component has already been prefetched or resolved.
+     */
+    void prefetch(ComponentIdentifier identifier, DependencyMetadata dependency);
+
+    /**
+     * Waits for any prefetching of the meta-data of the given component to complete. Called before the traversal resolves the meta-data itself.
+     */
+    void awaitPrefetched(ComponentIdentifier identifier);
+
+    /**
+     * Discards any prefetching that has not yet started.
+     */
+    void cancel();
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+
+/**
+ * Creates the {@link ComponentMetaDataPrefetcher} for each dependency graph traversal. All prefetchers created by a factory share a pool of threads.
+ */
+public class ComponentMetaDataPrefetcherFactory implements Stoppable {
+    public static final String PREFETCH_THREADS_PROPERTY = "org.gradle.internal.resolve.metadataPrefetchThreads";
+
+    private final ExecutorFactory executorFactory;
+    private final CacheLockingManager cacheLockingManager;
+    private final int prefetchThreads;
+    private StoppableExecutor executor;
+
+    public ComponentMetaDataPrefetcherFactory(ExecutorFactory executorFactory, CacheLockingManager cacheLockingManager, int prefetchThreads) {
+        this.executorFactory = executorFactory;
+        this.cacheLockingManager = cacheLockingManager;
+        this.prefetchThreads = prefetchThreads;
+    }
+
+    /**
+     * Creates a prefetcher that resolves meta-data using the given resolver. Returns {@link ComponentMetaDataPrefetcher#NONE} when prefetching is disabled.
+     */
+    public ComponentMetaDataPrefetcher create(ComponentMetaDataResolver resolver) {
+        if (prefetchThreads < 1) {
+            return ComponentMetaDataPrefetcher.NONE;
+        }
+        return new ParallelComponentMetaDataPrefetcher(resolver, getExecutor(), cacheLockingManager);
+    }
+
+    private synchronized StoppableExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Dependency meta-data prefetching", prefetchThreads);
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+}
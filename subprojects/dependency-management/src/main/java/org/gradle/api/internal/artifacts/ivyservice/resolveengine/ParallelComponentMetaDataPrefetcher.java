@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Resolves component meta-data on a pool of threads, ahead of the dependency graph traversal.
+ *
+ * <p>Prefetching resolves each component using the same resolver as the traversal, which leaves the meta-data in the in-memory and persistent caches.
+ * The traversal still resolves every component itself, in the same order as without prefetching, but no longer waits on a remote request for each one.
+ * Graph selection and conflict resolution stay on the traversal thread.</p>
+ *
+ * <p>The prefetching threads hold the cache lock while they use the caches, and release it for remote requests in the same way as the traversal.
+ * The traversal releases the cache lock while it waits for a prefetch to complete. Only module components requested without any overrides are prefetched,
+ * so that a prefetch never caches a different result to the one the traversal would have resolved.</p>
+ *
+ * <p>This class is not thread-safe, and is used by a single traversal.</p>
+ */
+public class ParallelComponentMetaDataPrefetcher implements ComponentMetaDataPrefetcher {
+    private final ComponentMetaDataResolver resolver;
+    private final ExecutorService executor;
+    private final CacheLockingManager cacheLockingManager;
+    private final Map<ComponentIdentifier, Future<?>> prefetches = new HashMap<ComponentIdentifier, Future<?>>();
+
+    public ParallelComponentMetaDataPrefetcher(ComponentMetaDataResolver resolver, ExecutorService executor, CacheLockingManager cacheLockingManager) {
+        this.resolver = resolver;
+        this.executor = executor;
+        this.cacheLockingManager = cacheLockingManager;
+    }
+
+    @Override
+    public void prefetch(final ComponentIdentifier identifier, DependencyMetadata dependency) {
+        if (!(identifier instanceof ModuleComponentIdentifier) || prefetches.containsKey(identifier)) {
+            return;
+        }
+        final ComponentOverrideMetadata overrideMetadata = DefaultComponentOverrideMetadata.forDependency(dependency);
+        if (overrideMetadata.isChanging() || !overrideMetadata.getArtifacts().isEmpty() || overrideMetadata.getClientModule() != null) {
+            return;
+        }
+        prefetches.put(identifier, executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                cacheLockingManager.useCache("Prefetch meta-data for " + identifier, new Runnable() {
+                    @Override
+                    public void run() {
+                        resolver.resolve(identifier, overrideMetadata, new DefaultBuildableComponentResolveResult());
+                    }
+                });
+            }
+        }));
+    }
+
+    @Override
+    public void awaitPrefetched(ComponentIdentifier identifier) {
+        if (!prefetches.containsKey(identifier)) {
+            // Resolved by the traversal, so there is no need to prefetch it later
+            prefetches.put(identifier, null);
+            return;
+        }
+        final Future<?> prefetch = prefetches.get(identifier);
+        if (prefetch == null || prefetch.isDone()) {
+            return;
+        }
+        cacheLockingManager.longRunningOperation("Wait for meta-data of " + identifier, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    prefetch.get();
+                } catch (ExecutionException e) {
+                    // Ignore, the traversal will resolve the component again and report the failure
+                } catch (CancellationException e) {
+                    // Ignore
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void cancel() {
+        for (Future<?> prefetch : prefetches.values()) {
+            if (prefetch != null) {
+                prefetch.cancel(false);
+            }
+        }
+        prefetches.clear();
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import org.gradle.api.Action;
+import org.gradle.api.Nullable;
+import org.gradle.api.artifacts.DependencySubstitution;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.memcache.InMemoryCachedRepositoryFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.Exclude;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.concurrent.Stoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shares the dependency graphs resolved in a build between configurations with exactly the same resolution inputs, such as a 'runtime' configuration
+ * that declares no dependencies of its own and the 'compile' configuration that it extends.
+ *
+ * <p>Two resolutions have the same inputs when their root configurations belong to the same component, declare the same dependency instances
+ * with the same values and the same excludes, and are resolved against the same repositories with the same project-wide rules. Their resolution
+ * strategies must have the same conflict resolution, forced modules, dependency substitution rules and component selection rules. A resolution
+ * with the same inputs as an earlier one replays the recorded graph to its visitors, with its own configuration as the root, instead of
+ * traversing the graph again. Artifacts are still resolved separately for each resolution.</p>
+ *
+ * <p>Graphs with unresolved dependencies are not shared, nor are graphs that include other configurations of the root component, as the root
+ * component's meta-data is built again for each resolution. Sharing requires the in-memory repository cache, which already gives every
+ * resolution in a build the same meta-data and versions, whatever its cache policy.</p>
+ */
+public class SharedDependencyGraphs implements Stoppable {
+    public static final String TOGGLE_PROPERTY = "org.gradle.resolution.shareResultsAcrossConfigurations";
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedDependencyGraphs.class);
+
+    private final Map<Key, RecordedGraph> graphs = new MapMaker().makeMap();
+    private final boolean enabled;
+
+    public SharedDependencyGraphs() {
+        this("true".equalsIgnoreCase(System.getProperty(TOGGLE_PROPERTY)) && !"false".equalsIgnoreCase(System.getProperty(InMemoryCachedRepositoryFactory.TOGGLE_PROPERTY)));
+    }
+
+    SharedDependencyGraphs(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Resolves the dependency graph of the given context using the given builder, or replays the graph recorded for an earlier resolution with the same inputs.
+     *
+     * @param repositoryIds the ids of the repositories to resolve from, in order, or null when they are not known.
+     */
+    public void resolve(ResolveContext resolveContext, ComponentResolveMetadata rootComponent, @Nullable List<String> repositoryIds, GlobalDependencyResolutionRules globalRules,
+                        DependencyGraphBuilder builder, DependencyGraphVisitor visitor) {
+        Key key = enabled && repositoryIds != null ? Key.of(resolveContext, rootComponent, repositoryIds, globalRules) : null;
+        if (key == null) {
+            builder.resolve(resolveContext, visitor);
+            return;
+        }
+
+        RecordedGraph graph = graphs.get(key);
+        if (graph != null) {
+            LOGGER.debug("Reusing the dependency graph of {} for {}.", graph.root, resolveContext);
+            ConfigurationMetadata rootConfiguration = rootComponent.getConfiguration(resolveContext.getName());
+            graph.replay(new ReplayedRootNode(graph.root, new ResolvedConfigurationIdentifier(rootComponent.getId(), resolveContext.getName()), rootConfiguration), visitor);
+            return;
+        }
+
+        GraphRecorder recorder = new GraphRecorder();
+        builder.resolve(resolveContext, new CompositeDependencyGraphVisitor(visitor, recorder));
+        if (recorder.shareable) {
+            graphs.put(key, new RecordedGraph(recorder.root, recorder.nodes, recorder.edges));
+        }
+    }
+
+    @Override
+    public void stop() {
+        graphs.clear();
+    }
+
+    private static class RecordedGraph {
+        private final DependencyGraphNode root;
+        private final List<DependencyGraphNode> nodes;
+        private final List<DependencyGraphNode> edges;
+
+        RecordedGraph(DependencyGraphNode root, List<DependencyGraphNode> nodes, List<DependencyGraphNode> edges) {
+            this.root = root;
+            this.nodes = nodes;
+            this.edges = edges;
+        }
+
+        void replay(DependencyGraphNode replayedRoot, DependencyGraphVisitor visitor) {
+            visitor.start(replayedRoot);
+            for (DependencyGraphNode node : nodes) {
+                visitor.visitNode(node == root ? replayedRoot : node);
+            }
+            for (DependencyGraphNode node : edges) {
+                visitor.visitEdge(node == root ? replayedRoot : node);
+            }
+            visitor.finish(replayedRoot);
+        }
+    }
+
+    /**
+     * Records the events of a graph traversal, and whether the graph can be shared.
+     */
+    private static class GraphRecorder implements DependencyGraphVisitor {
+        private final List<DependencyGraphNode> nodes = Lists.newArrayList();
+        private final List<DependencyGraphNode> edges = Lists.newArrayList();
+        private DependencyGraphNode root;
+        private boolean shareable = true;
+
+        @Override
+        public void start(DependencyGraphNode root) {
+            this.root = root;
+        }
+
+        @Override
+        public void visitNode(DependencyGraphNode node) {
+            nodes.add(node);
+            if (node != root && node.getOwner() == root.getOwner()) {
+                shareable = false;
+            }
+            for (DependencyGraphEdge edge : node.getOutgoingEdges()) {
+                if (edge.getFailure() != null) {
+                    shareable = false;
+                }
+            }
+        }
+
+        @Override
+        public void visitEdge(DependencyGraphNode node) {
+            edges.add(node);
+        }
+
+        @Override
+        public void finish(DependencyGraphNode root) {
+        }
+    }
+
+    /**
+     * The root of a replayed graph: the root configuration of the replaying resolution, with the edges of the recorded root.
+     */
+    private static class ReplayedRootNode implements DependencyGraphNode {
+        private final DependencyGraphNode recordedRoot;
+        private final ResolvedConfigurationIdentifier id;
+        private final ConfigurationMetadata metadata;
+
+        ReplayedRootNode(DependencyGraphNode recordedRoot, ResolvedConfigurationIdentifier id, ConfigurationMetadata metadata) {
+            this.recordedRoot = recordedRoot;
+            this.id = id;
+            this.metadata = metadata;
+        }
+
+        @Override
+        public Long getResultId() {
+            return recordedRoot.getResultId();
+        }
+
+        @Override
+        public ResolvedConfigurationIdentifier getNodeId() {
+            return id;
+        }
+
+        @Override
+        public DependencyGraphComponent getOwner() {
+            return recordedRoot.getOwner();
+        }
+
+        @Override
+        public Set<? extends DependencyGraphEdge> getIncomingEdges() {
+            return recordedRoot.getIncomingEdges();
+        }
+
+        @Override
+        public Set<? extends DependencyGraphEdge> getOutgoingEdges() {
+            return recordedRoot.getOutgoingEdges();
+        }
+
+        @Override
+        public ConfigurationMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%s)", id.getId(), id.getConfiguration());
+        }
+    }
+
+    private static class Key {
+        private final Class<?> contextType;
+        private final ComponentIdentifier componentId;
+        private final ModuleVersionIdentifier moduleVersionId;
+        private final List<DependencyKey> dependencies;
+        private final List<ExcludeKey> excludes;
+        private final boolean transitive;
+        private final Class<?> conflictResolution;
+        private final List<ModuleVersionSelector> forcedModules;
+        private final Action<DependencySubstitution> substitutionRules;
+        private final List<Object> componentSelectionRules;
+        private final List<String> repositoryIds;
+        private final GlobalDependencyResolutionRules globalRules;
+
+        private Key(ResolveContext resolveContext, ComponentResolveMetadata rootComponent, List<DependencyKey> dependencies, List<ExcludeKey> excludes, boolean transitive,
+                    List<String> repositoryIds, GlobalDependencyResolutionRules globalRules) {
+            ResolutionStrategyInternal resolutionStrategy = resolveContext.getResolutionStrategy();
+            this.contextType = resolveContext.getClass();
+            this.componentId = rootComponent.getComponentId();
+            this.moduleVersionId = rootComponent.getId();
+            this.dependencies = dependencies;
+            this.excludes = excludes;
+            this.transitive = transitive;
+            this.conflictResolution = resolutionStrategy.getConflictResolution().getClass();
+            this.forcedModules = Lists.newArrayList(resolutionStrategy.getForcedModules());
+            this.substitutionRules = resolutionStrategy.getDependencySubstitution().getRuleAction();
+            this.componentSelectionRules = Lists.<Object>newArrayList(resolutionStrategy.getComponentSelection().getRules());
+            this.repositoryIds = repositoryIds;
+            this.globalRules = globalRules;
+        }
+
+        /**
+         * Returns the key for the given resolution, or null when its graph cannot be shared.
+         */
+        @Nullable
+        static Key of(ResolveContext resolveContext, ComponentResolveMetadata rootComponent, List<String> repositoryIds, GlobalDependencyResolutionRules globalRules) {
+            ConfigurationMetadata rootConfiguration = rootComponent.getConfiguration(resolveContext.getName());
+            if (rootConfiguration == null) {
+                return null;
+            }
+            List<DependencyKey> dependencies = Lists.newArrayList();
+            for (DependencyMetadata dependency : rootConfiguration.getDependencies()) {
+                if (!(dependency instanceof DslOriginDependencyMetadata)) {
+                    return null;
+                }
+                dependencies.add(new DependencyKey((DslOriginDependencyMetadata) dependency));
+            }
+            return new Key(resolveContext, rootComponent, dependencies, ExcludeKey.of(rootConfiguration.getExcludes()), rootConfiguration.isTransitive(), repositoryIds, globalRules);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key other = (Key) o;
+            return contextType.equals(other.contextType)
+                && componentId.equals(other.componentId)
+                && moduleVersionId.equals(other.moduleVersionId)
+                && dependencies.equals(other.dependencies)
+                && excludes.equals(other.excludes)
+                && transitive == other.transitive
+                && conflictResolution.equals(other.conflictResolution)
+                && forcedModules.equals(other.forcedModules)
+                && substitutionRules.equals(other.substitutionRules)
+                && componentSelectionRules.equals(other.componentSelectionRules)
+                && repositoryIds.equals(other.repositoryIds)
+                && globalRules == other.globalRules;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(componentId, dependencies, excludes, forcedModules, repositoryIds);
+        }
+    }
+
+    /**
+     * A declared dependency of the root configuration. Dependencies are the same when they come from the same declaration and have the same values.
+     */
+    private static class DependencyKey {
+        private final ModuleDependency source;
+        private final ComponentSelector selector;
+        private final ModuleVersionSelector requested;
+        private final String moduleConfiguration;
+        private final String dependencyConfiguration;
+        private final Set<IvyArtifactName> artifacts;
+        private final List<ExcludeKey> excludes;
+        private final boolean force;
+        private final boolean changing;
+        private final boolean transitive;
+
+        DependencyKey(DslOriginDependencyMetadata dependency) {
+            this.source = dependency.getSource();
+            this.selector = dependency.getSelector();
+            this.requested = dependency.getRequested();
+            this.moduleConfiguration = dependency.getModuleConfiguration();
+            this.dependencyConfiguration = dependency.getDependencyConfiguration();
+            this.artifacts = dependency.getArtifacts();
+            this.excludes = ExcludeKey.of(dependency.getExcludes());
+            this.force = dependency.isForce();
+            this.changing = dependency.isChanging();
+            this.transitive = dependency.isTransitive();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            DependencyKey other = (DependencyKey) o;
+            return source == other.source
+                && Objects.equal(selector, other.selector)
+                && Objects.equal(requested, other.requested)
+                && Objects.equal(moduleConfiguration, other.moduleConfiguration)
+                && Objects.equal(dependencyConfiguration, other.dependencyConfiguration)
+                && artifacts.equals(other.artifacts)
+                && excludes.equals(other.excludes)
+                && force == other.force
+                && changing == other.changing
+                && transitive == other.transitive;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(source);
+        }
+    }
+
+    private static class ExcludeKey {
+        private final ModuleIdentifier moduleId;
+        private final IvyArtifactName artifact;
+        private final Set<String> configurations;
+        private final String matcher;
+
+        ExcludeKey(Exclude exclude) {
+            this.moduleId = exclude.getModuleId();
+            this.artifact = exclude.getArtifact();
+            this.configurations = exclude.getConfigurations();
+            this.matcher = exclude.getMatcher();
+        }
+
+        static List<ExcludeKey> of(Collection<Exclude> excludes) {
+            List<ExcludeKey> keys = Lists.newArrayListWithCapacity(excludes.size());
+            for (Exclude exclude : excludes) {
+                keys.add(new ExcludeKey(exclude));
+            }
+            return keys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ExcludeKey other = (ExcludeKey) o;
+            return moduleId.equals(other.moduleId)
+                && artifact.equals(other.artifact)
+                && configurations.equals(other.configurations)
+                && Objects.equal(matcher, other.matcher);
+        }
+
+        @Override
+        public int hashCode() {
+            return moduleId.hashCode();
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.gradle.api.artifacts.result.ComponentSelectionReason;
 import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
 import org.gradle.api.internal.artifacts.ResolveContext;
 import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ComponentMetaDataPrefetcher;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ComponentResolutionState;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ModuleConflictResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusion;
@@ -71,14 +72,22 @@ public class DependencyGraphBuilder {
     private final ResolveContextToComponentResolver moduleResolver;
     private final DependencyToComponentIdResolver idResolver;
     private final ComponentMetaDataResolver metaDataResolver;
+    private final ComponentMetaDataPrefetcher metaDataPrefetcher;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
                                   ResolveContextToComponentResolver resolveContextToComponentResolver,
                                   ConflictHandler conflictHandler) {
+        this(componentIdResolver, componentMetaDataResolver, resolveContextToComponentResolver, conflictHandler, ComponentMetaDataPrefetcher.NONE);
+    }
+
+    public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
+                                  ResolveContextToComponentResolver resolveContextToComponentResolver,
+                                  ConflictHandler conflictHandler, ComponentMetaDataPrefetcher metaDataPrefetcher) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
         this.conflictHandler = conflictHandler;
+        this.metaDataPrefetcher = metaDataPrefetcher;
     }
 
     public void resolve(ResolveContext resolveContext, DependencyGraphVisitor modelVisitor) {
@@ -86,10 +95,14 @@ public class DependencyGraphBuilder {
         DefaultBuildableComponentResolveResult rootModule = new DefaultBuildableComponentResolveResult();
         moduleResolver.resolve(resolveContext, rootModule);
 
-        ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver);
+        ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, metaDataPrefetcher);
         conflictHandler.registerResolver(new DirectDependencyForcingResolver(resolveState.root.moduleRevision));
 
-        traverseGraph(resolveState, conflictHandler);
+        try {
+            traverseGraph(resolveState, conflictHandler);
+        } finally {
+            metaDataPrefetcher.cancel();
+        }
         resolveState.root.moduleRevision.setSelectionReason(VersionSelectionReasons.ROOT);
 
         assembleResult(resolveState, modelVisitor);
@@ -111,6 +124,13 @@ public class DependencyGraphBuilder {
                 dependencies.clear();
                 node.visitOutgoingDependencies(dependencies);
 
+                if (metaDataPrefetcher != ComponentMetaDataPrefetcher.NONE) {
+                    // Start fetching the meta-data of the targets in the background, before visiting the edges one at a time
+                    for (DependencyEdge dependency : dependencies) {
+                        dependency.prefetchMetaData();
+                    }
+                }
+
                 for (DependencyEdge dependency : dependencies) {
                     LOGGER.debug("Visiting dependency {}", dependency);
 
@@ -225,6 +245,12 @@ public class DependencyGraphBuilder {
             return from;
         }
 
+        public void prefetchMetaData() {
+            if (targetModuleRevision == null) {
+                selector.prefetchMetaData();
+            }
+        }
+
         /**
          * @return The resolved module version
          */
@@ -340,14 +366,16 @@ public class DependencyGraphBuilder {
         private final IdGenerator<Long> idGenerator;
         private final DependencyToComponentIdResolver idResolver;
         private final ComponentMetaDataResolver metaDataResolver;
+        private final ComponentMetaDataPrefetcher metaDataPrefetcher;
         private final Set<ConfigurationNode> queued = new HashSet<ConfigurationNode>();
         private final LinkedList<ConfigurationNode> queue = new LinkedList<ConfigurationNode>();
 
         public ResolveState(IdGenerator<Long> idGenerator, ComponentResolveResult rootResult, String rootConfigurationName, DependencyToComponentIdResolver idResolver,
-                            ComponentMetaDataResolver metaDataResolver) {
+                            ComponentMetaDataResolver metaDataResolver, ComponentMetaDataPrefetcher metaDataPrefetcher) {
             this.idGenerator = idGenerator;
             this.idResolver = idResolver;
             this.metaDataResolver = metaDataResolver;
+            this.metaDataPrefetcher = metaDataPrefetcher;
             ModuleVersionResolveState rootVersion = getRevision(rootResult.getId());
             rootVersion.setMetaData(rootResult.getMetaData());
             root = new RootConfigurationNode(idGenerator.generateId(), rootVersion, new ResolvedConfigurationIdentifier(rootVersion.id, rootConfigurationName), this);
@@ -604,6 +632,7 @@ public class DependencyGraphBuilder {
                 return;
             }
 
+            module.resolveState.metaDataPrefetcher.awaitPrefetched(idResolveResult.getId());
             DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
             resolver.resolve(idResolveResult.getId(), DefaultComponentOverrideMetadata.forDependency(firstReference.dependencyMetadata), result);
             if (result.getFailure() != null) {
@@ -894,6 +923,36 @@ public class DependencyGraphBuilder {
             return targetModule;
         }
 
+        /**
+         * Resolves the component id for this selector, and starts fetching the meta-data of the component in the background.
+         */
+        public void prefetchMetaData() {
+            if (targetModuleRevision != null || !resolveComponentId()) {
+                return;
+            }
+            if (idResolveResult.getMetaData() == null) {
+                resolveState.metaDataPrefetcher.prefetch(idResolveResult.getId(), dependencyMetadata);
+            }
+        }
+
+        /**
+         * @return true if the component id was resolved, false if there is a failure to resolve this selector.
+         */
+        private boolean resolveComponentId() {
+            if (failure != null) {
+                return false;
+            }
+            if (idResolveResult == null) {
+                idResolveResult = new DefaultBuildableComponentIdResolveResult();
+                resolver.resolve(dependencyMetadata, idResolveResult);
+                if (idResolveResult.getFailure() != null) {
+                    failure = idResolveResult.getFailure();
+                    return false;
+                }
+            }
+            return true;
+        }
+
         /**
          * @return The module version, or null if there is a failure to resolve this selector.
          */
@@ -901,14 +960,7 @@ public class DependencyGraphBuilder {
             if (targetModuleRevision != null) {
                 return targetModuleRevision;
             }
-            if (failure != null) {
-                return null;
-            }
-
-            idResolveResult = new DefaultBuildableComponentIdResolveResult();
-            resolver.resolve(dependencyMetadata, idResolveResult);
-            if (idResolveResult.getFailure() != null) {
-                failure = idResolveResult.getFailure();
+            if (!resolveComponentId()) {
                 return null;
             }
 
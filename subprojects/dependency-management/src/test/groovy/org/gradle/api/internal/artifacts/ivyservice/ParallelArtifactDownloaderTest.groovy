@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.gradle.api.artifacts.ResolvedArtifact
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.resolve.ArtifactResolveException
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ParallelArtifactDownloaderTest extends Specification {
+    def cacheLockingManager = Mock(CacheLockingManager) {
+        _ * useCache(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+        _ * longRunningOperation(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+    }
+    def executorFactory = new DefaultExecutorFactory()
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "downloads artifacts concurrently and waits for all of them"() {
+        def downloader = new ParallelArtifactDownloader(executorFactory, cacheLockingManager, 2)
+        def bothStarted = new CountDownLatch(2)
+        def artifact1 = Mock(ResolvedArtifact)
+        def artifact2 = Mock(ResolvedArtifact)
+
+        when:
+        downloader.downloadAll([artifact1, artifact2], "config")
+
+        then:
+        1 * artifact1.getFile() >> {
+            bothStarted.countDown()
+            assert bothStarted.await(10, TimeUnit.SECONDS)
+            new File("a")
+        }
+        1 * artifact2.getFile() >> {
+            bothStarted.countDown()
+            assert bothStarted.await(10, TimeUnit.SECONDS)
+            new File("b")
+        }
+
+        cleanup:
+        downloader.stop()
+    }
+
+    def "ignores failure to download an artifact"() {
+        def downloader = new ParallelArtifactDownloader(executorFactory, cacheLockingManager, 2)
+        def artifact1 = Mock(ResolvedArtifact)
+        def artifact2 = Mock(ResolvedArtifact)
+
+        when:
+        downloader.downloadAll([artifact1, artifact2], "config")
+
+        then:
+        1 * artifact1.getFile() >> { throw new ArtifactResolveException("broken") }
+        1 * artifact2.getFile() >> new File("b")
+
+        cleanup:
+        downloader.stop()
+    }
+
+    def "does nothing when disabled"() {
+        def downloader = new ParallelArtifactDownloader(executorFactory, cacheLockingManager, 0)
+        def artifact1 = Mock(ResolvedArtifact)
+        def artifact2 = Mock(ResolvedArtifact)
+
+        when:
+        downloader.downloadAll([artifact1, artifact2], "config")
+
+        then:
+        0 * artifact1._
+        0 * artifact2._
+        0 * cacheLockingManager._
+    }
+}
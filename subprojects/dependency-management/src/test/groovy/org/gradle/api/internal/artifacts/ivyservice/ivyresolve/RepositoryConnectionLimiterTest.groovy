@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class RepositoryConnectionLimiterTest extends Specification {
+    def executor = Executors.newFixedThreadPool(6)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "limits the number of concurrent actions for each repository"() {
+        def limiter = new RepositoryConnectionLimiter(2)
+        def active = [repo1: new AtomicInteger(), repo2: new AtomicInteger()]
+        def maxActive = [repo1: new AtomicInteger(), repo2: new AtomicInteger()]
+        def done = new CountDownLatch(6)
+
+        when:
+        6.times { i ->
+            def repo = i % 2 == 0 ? "repo1" : "repo2"
+            executor.execute {
+                limiter.withConnection(repo, {
+                    def current = active[repo].incrementAndGet()
+                    maxActive[repo].set(Math.max(maxActive[repo].get(), current))
+                    Thread.sleep(50)
+                    active[repo].decrementAndGet()
+                } as Runnable)
+                done.countDown()
+            }
+        }
+
+        then:
+        done.await(10, TimeUnit.SECONDS)
+        maxActive.repo1.get() <= 2
+        maxActive.repo2.get() <= 2
+    }
+
+    def "runs action immediately when there is no limit"() {
+        def limiter = new RepositoryConnectionLimiter(0)
+        def action = Mock(Runnable)
+
+        when:
+        limiter.withConnection("repo", action)
+
+        then:
+        1 * action.run()
+    }
+
+    def "releases connection when action fails"() {
+        def limiter = new RepositoryConnectionLimiter(1)
+        def action = Mock(Runnable)
+
+        when:
+        limiter.withConnection("repo", { throw new RuntimeException("broken") } as Runnable)
+
+        then:
+        thrown(RuntimeException)
+
+        when:
+        limiter.withConnection("repo", action)
+
+        then:
+        1 * action.run()
+    }
+}
@@ -198,6 +198,116 @@ class GradlePomModuleDescriptorParserTest extends AbstractGradlePomModuleDescrip
         hasDefaultDependencyArtifact(dep)
     }
 
+    def "parses a parent pom shared by several poms only once"() {
+        given:
+        def parent = tmpDir.file("parent.xml") << """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>parent</artifactId>
+    <version>version-one</version>
+
+    <dependencies>
+        <dependency>
+            <groupId>group-two</groupId>
+            <artifactId>artifact-two</artifactId>
+            <version>1.2</version>
+        </dependency>
+    </dependencies>
+</project>
+"""
+        def childPom = { String artifactId ->
+            """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>${artifactId}</artifactId>
+    <version>version-one</version>
+
+    <parent>
+        <groupId>group-one</groupId>
+        <artifactId>parent</artifactId>
+        <version>version-one</version>
+    </parent>
+</project>
+"""
+        }
+        def otherPomFile = tmpDir.file("other.xml")
+        pomFile << childPom("artifact-one")
+        otherPomFile << childPom("artifact-three")
+
+        and:
+        parseContext.getMetaDataArtifact(_, MAVEN_POM) >> { new DefaultLocallyAvailableExternalResource(parent.toURI(), new DefaultLocallyAvailableResource(parent)) }
+
+        when:
+        parsePom()
+        // Replace the parent without changing its length or last modified time, so that only a reparse would notice
+        def lastModified = parent.lastModified()
+        parent.text = "<project><broken>".padRight(parent.length() as int)
+        parent.setLastModified(lastModified)
+        def other = parser.parseMetaData(parseContext, otherPomFile, true).descriptor
+
+        then:
+        descriptor.componentIdentifier == componentId('group-one', 'artifact-one', 'version-one')
+        single(descriptor.dependencies).requested == moduleId('group-two', 'artifact-two', '1.2')
+        other.componentIdentifier == componentId('group-one', 'artifact-three', 'version-one')
+        single(other.dependencies).requested == moduleId('group-two', 'artifact-two', '1.2')
+    }
+
+    def "parses a shared parent pom again when it changes"() {
+        given:
+        def parentPom = { String version ->
+            """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>parent</artifactId>
+    <version>version-one</version>
+
+    <dependencies>
+        <dependency>
+            <groupId>group-two</groupId>
+            <artifactId>artifact-two</artifactId>
+            <version>${version}</version>
+        </dependency>
+    </dependencies>
+</project>
+"""
+        }
+        def childPom = { String artifactId ->
+            """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>${artifactId}</artifactId>
+    <version>version-one</version>
+
+    <parent>
+        <groupId>group-one</groupId>
+        <artifactId>parent</artifactId>
+        <version>version-one</version>
+    </parent>
+</project>
+"""
+        }
+        def parent = tmpDir.file("parent.xml") << parentPom("1.2")
+        def otherPomFile = tmpDir.file("other.xml")
+        pomFile << childPom("artifact-one")
+        otherPomFile << childPom("artifact-three")
+
+        and:
+        parseContext.getMetaDataArtifact(_, MAVEN_POM) >> { new DefaultLocallyAvailableExternalResource(parent.toURI(), new DefaultLocallyAvailableResource(parent)) }
+
+        when:
+        parsePom()
+        parent.text = parentPom("1.2.1")
+        def other = parser.parseMetaData(parseContext, otherPomFile, true).descriptor
+
+        then:
+        single(descriptor.dependencies).requested == moduleId('group-two', 'artifact-two', '1.2')
+        single(other.dependencies).requested == moduleId('group-two', 'artifact-two', '1.2.1')
+    }
+
     def "throws exception if parent pom dependency management section does not provide default values for dependency"() {
         given:
         def parent = tmpDir.file("parent.xml") << """
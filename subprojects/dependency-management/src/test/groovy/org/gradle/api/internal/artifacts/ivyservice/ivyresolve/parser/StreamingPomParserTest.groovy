@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser
+
+import spock.lang.Specification
+
+class StreamingPomParserTest extends Specification {
+    def "retains only the elements used to build the module meta-data"() {
+        when:
+        def project = parse("""
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>version-one</version>
+    <name>Test Artifact One</name>
+    <dependencies>
+        <dependency>
+            <groupId>group-two</groupId>
+            <artifactId>artifact-two</artifactId>
+            <exclusions>
+                <exclusion>
+                    <groupId>group-three</groupId>
+                    <artifactId>artifact-three</artifactId>
+                </exclusion>
+            </exclusions>
+        </dependency>
+        <ignored/>
+    </dependencies>
+    <build>
+        <plugins>
+            <plugin>
+                <artifactId>maven-compiler-plugin</artifactId>
+            </plugin>
+        </plugins>
+    </build>
+    <profiles>
+        <profile>
+            <id>profile-1</id>
+            <build/>
+            <properties>
+                <prop>value</prop>
+            </properties>
+        </profile>
+    </profiles>
+</project>
+""")
+
+        then:
+        project.name == "project"
+        project.children*.name == ["groupId", "artifactId", "version", "dependencies", "profiles"]
+        PomElement.getFirstChildElement(project, "dependencies").children*.name == ["dependency"]
+        def dependency = PomElement.getFirstChildElement(PomElement.getFirstChildElement(project, "dependencies"), "dependency")
+        dependency.children*.name == ["groupId", "artifactId", "exclusions"]
+        PomElement.getFirstChildElement(PomElement.getFirstChildElement(dependency, "exclusions"), "exclusion").children*.name == ["groupId", "artifactId"]
+        def profile = PomElement.getFirstChildElement(PomElement.getFirstChildElement(project, "profiles"), "profile")
+        profile.children*.name == ["id", "properties"]
+        PomElement.getFirstChildText(PomElement.getFirstChildElement(profile, "properties"), "prop") == "value"
+    }
+
+    def "parsed elements cannot be modified"() {
+        when:
+        def project = parse("""
+<project>
+    <dependencies>
+        <dependency>
+            <groupId>group-two</groupId>
+        </dependency>
+    </dependencies>
+</project>
+""")
+
+        and:
+        project.children.clear()
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        PomElement.getAllChilds(PomElement.getFirstChildElement(project, "dependencies")).clear()
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "text content includes only the text directly contained by the element"() {
+        when:
+        def project = parse("""<?xml version="1.0" encoding="UTF-8"?>
+<project>
+    <description>before<![CDATA[ <cdata> ]]>&amp;&copy;<ignored>nested</ignored>after</description>
+    <properties>
+        <empty/>
+        <spaced>  value  </spaced>
+    </properties>
+</project>
+""")
+
+        then:
+        PomElement.getFirstChildText(project, "description") == "before <cdata> &©after"
+        def properties = PomElement.getFirstChildElement(project, "properties")
+        PomElement.getFirstChildText(properties, "empty") == ""
+        PomElement.getFirstChildText(properties, "spaced") == "  value  "
+    }
+
+    def "returns the first of several elements with the same name"() {
+        when:
+        def project = parse("""
+<project>
+    <groupId>first</groupId>
+    <groupId>second</groupId>
+</project>
+""")
+
+        then:
+        PomElement.getFirstChildText(project, "groupId") == "first"
+        PomElement.getFirstChildText(project, "artifactId") == null
+    }
+
+    def "retains the root element whatever its name"() {
+        when:
+        def root = parse("""
+<model>
+    <groupId>group-one</groupId>
+</model>
+""")
+
+        then:
+        root.name == "model"
+        PomElement.getFirstChildText(root, "groupId") == "group-one"
+    }
+
+    private static PomElement parse(String content) {
+        return StreamingPomParser.parse(new ByteArrayInputStream(content.getBytes("UTF-8")), new File("pom.xml").toURI().toASCIIString())
+    }
+}
@@ -913,6 +913,45 @@ class DependencyGraphBuilderTest extends Specification {
         result.components == ids(root, forced, b)
     }
 
+    def "prefetches meta-data for the targets of outgoing dependencies before resolving them"() {
+        given:
+        def prefetcher = Mock(ComponentMetaDataPrefetcher)
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, new DefaultConflictHandler(conflictResolver, moduleReplacements), prefetcher)
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        traverses root, a
+        traverses root, b
+        traverses a, c
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        1 * prefetcher.prefetch(a.componentId, _)
+        1 * prefetcher.prefetch(b.componentId, _)
+
+        then:
+        1 * prefetcher.awaitPrefetched(a.componentId)
+
+        then:
+        1 * prefetcher.awaitPrefetched(b.componentId)
+
+        then:
+        1 * prefetcher.prefetch(c.componentId, _)
+
+        then:
+        1 * prefetcher.awaitPrefetched(c.componentId)
+
+        then:
+        1 * prefetcher.cancel()
+        0 * prefetcher._
+
+        and:
+        result.components == ids(root, a, b, c)
+    }
+
     def revision(String name, String revision = '1.0') {
         // TODO Shouldn't really be using the local component implementation here
         def id = newId("group", name, revision)
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine
+
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.local.model.DefaultProjectComponentIdentifier
+import org.gradle.internal.component.model.DependencyMetadata
+import org.gradle.internal.component.model.IvyArtifactName
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ParallelComponentMetaDataPrefetcherTest extends Specification {
+    def resolver = Mock(ComponentMetaDataResolver)
+    def cacheLockingManager = Mock(CacheLockingManager) {
+        _ * useCache(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+        _ * longRunningOperation(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+    }
+    def executor = Executors.newFixedThreadPool(2)
+    def prefetcher = new ParallelComponentMetaDataPrefetcher(resolver, executor, cacheLockingManager)
+    def id = DefaultModuleComponentIdentifier.newId("group", "a", "1.0")
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "resolves meta-data in the background and waits for it when requested"() {
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+
+        when:
+        prefetcher.prefetch(id, dependency())
+        started.await(10, TimeUnit.SECONDS)
+        release.countDown()
+        prefetcher.awaitPrefetched(id)
+
+        then:
+        1 * resolver.resolve(id, { !it.changing && it.artifacts.empty }, _) >> {
+            started.countDown()
+            release.await()
+        }
+    }
+
+    def "prefetches each component at most once"() {
+        when:
+        prefetcher.prefetch(id, dependency())
+        prefetcher.prefetch(id, dependency())
+        prefetcher.awaitPrefetched(id)
+
+        then:
+        1 * resolver.resolve(id, _, _)
+    }
+
+    def "does not prefetch a component already resolved by the traversal"() {
+        when:
+        prefetcher.awaitPrefetched(id)
+        prefetcher.prefetch(id, dependency())
+        prefetcher.awaitPrefetched(id)
+
+        then:
+        0 * resolver._
+    }
+
+    def "does not prefetch components requested with overrides or local components"() {
+        when:
+        prefetcher.prefetch(id, dependency(changing: true))
+        prefetcher.prefetch(DefaultModuleComponentIdentifier.newId("group", "b", "1.0"), dependency(artifacts: [Stub(IvyArtifactName)] as Set))
+        prefetcher.prefetch(DefaultProjectComponentIdentifier.newId(":a"), dependency())
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+
+        then:
+        0 * resolver._
+    }
+
+    def "ignores failure to prefetch"() {
+        given:
+        resolver.resolve(id, _, _) >> { throw new RuntimeException("broken") }
+
+        when:
+        prefetcher.prefetch(id, dependency())
+        prefetcher.awaitPrefetched(id)
+
+        then:
+        noExceptionThrown()
+    }
+
+    private DependencyMetadata dependency(Map<String, ?> args = [:]) {
+        return Stub(DependencyMetadata) {
+            isChanging() >> (args.changing ?: false)
+            getArtifacts() >> (args.artifacts ?: [] as Set)
+        }
+    }
+}
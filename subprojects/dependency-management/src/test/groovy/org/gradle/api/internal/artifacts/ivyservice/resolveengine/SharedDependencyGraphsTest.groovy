@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine
+
+import org.gradle.api.artifacts.ModuleDependency
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules
+import org.gradle.api.internal.artifacts.ResolveContext
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionRules
+import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.DefaultResolutionStrategy
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor
+import org.gradle.api.internal.tasks.DefaultTaskDependency
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.local.model.DefaultLocalComponentMetadata
+import org.gradle.internal.component.local.model.DefaultProjectComponentIdentifier
+import org.gradle.internal.component.local.model.DslOriginDependencyMetadataWrapper
+import org.gradle.internal.component.model.ConfigurationMetadata
+import org.gradle.internal.component.model.IvyArtifactName
+import org.gradle.internal.component.model.LocalComponentDependencyMetadata
+import org.gradle.internal.resolve.ModuleVersionResolveException
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionSelector.newSelector
+
+class SharedDependencyGraphsTest extends Specification {
+    def builder = Mock(DependencyGraphBuilder)
+    def globalRules = Stub(GlobalDependencyResolutionRules)
+    def rootComponent = new DefaultLocalComponentMetadata(newId("group", "root", "1.0"), DefaultProjectComponentIdentifier.newId(":root"), "release")
+    def rootOwner = Stub(DependencyGraphComponent)
+    def sharedGraphs = new SharedDependencyGraphs(true)
+
+    def setup() {
+        addConfiguration("compile")
+        addConfiguration("runtime", "compile")
+        addConfiguration("testCompile", "compile")
+        addDependency("compile", "a")
+        addDependency("testCompile", "b")
+    }
+
+    def "replays the graph of an earlier resolution with the same inputs instead of resolving it again"() {
+        def root = node(1, rootOwner)
+        def a = node(2)
+        def runtimeVisitor = Mock(DependencyGraphVisitor)
+
+        when:
+        resolve("compile", Mock(DependencyGraphVisitor))
+
+        then:
+        1 * builder.resolve({ it.name == "compile" }, _) >> { ResolveContext context, DependencyGraphVisitor visitor -> traverse(visitor, root, a) }
+
+        when:
+        resolve("runtime", runtimeVisitor)
+
+        then:
+        0 * builder._
+
+        then:
+        1 * runtimeVisitor.start({ isRootOf(it, root, "runtime") })
+
+        then:
+        1 * runtimeVisitor.visitNode({ isRootOf(it, root, "runtime") })
+
+        then:
+        1 * runtimeVisitor.visitNode(a)
+
+        then:
+        1 * runtimeVisitor.visitEdge({ isRootOf(it, root, "runtime") })
+
+        then:
+        1 * runtimeVisitor.visitEdge(a)
+
+        then:
+        1 * runtimeVisitor.finish({ isRootOf(it, root, "runtime") })
+        0 * runtimeVisitor._
+    }
+
+    def "resolves the graph again when the declared dependencies differ"() {
+        when:
+        resolve("compile", Mock(DependencyGraphVisitor))
+        resolve("testCompile", Mock(DependencyGraphVisitor))
+
+        then:
+        1 * builder.resolve({ it.name == "compile" }, _) >> { ResolveContext context, DependencyGraphVisitor visitor -> traverse(visitor, node(1, rootOwner), node(2)) }
+        1 * builder.resolve({ it.name == "testCompile" }, _) >> { ResolveContext context, DependencyGraphVisitor visitor -> traverse(visitor, node(1, rootOwner), node(2), node(3)) }
+    }
+
+    def "resolves the graph again when the resolution strategies differ"() {
+        def strategy = new DefaultResolutionStrategy(DependencySubstitutionRules.NO_OP)
+        strategy.force("group:a:2.0")
+
+        when:
+        resolve("compile", Mock(DependencyGraphVisitor))
+        resolve("runtime", Mock(DependencyGraphVisitor), strategy)
+
+        then:
+        2 * builder.resolve(_, _) >> { ResolveContext context, DependencyGraphVisitor visitor -> traverse(visitor, node(1, rootOwner), node(2)) }
+    }
+
+    def "resolves the graph again when the dependency substitution rules differ"() {
+        def strategy = new DefaultResolutionStrategy(DependencySubstitutionRules.NO_OP)
+        strategy.eachDependency { }
+
+        when:
+        resolve("compile", Mock(DependencyGraphVisitor))
+        resolve("runtime", Mock(DependencyGraphVisitor), strategy)
+
+        then:
+        2 * builder.resolve(_, _) >> { ResolveContext context, DependencyGraphVisitor visitor -> traverse(visitor, node(1, rootOwner), node(2)) }
+    }
+
+    def "does not share a graph with unresolved dependencies"() {
+        def failedEdge = Stub(DependencyGraphEdge) {
+            getFailure() >> new ModuleVersionResolveException(newSelector("group", "a", "1.0"), "broken")
+        }
+        def root = node(1, rootOwner, [failedEdge] as Set)
+
+        when:
+        resolve("compile", Mock(DependencyGraphVisitor))
+        resolve("runtime", Mock(DependencyGraphVisitor))
+
+        then:
+        2 * builder.resolve(_, _) >> { ResolveContext context, DependencyGraphVisitor visitor -> traverse(visitor, root) }
+    }
+
+    def "does not share graphs when disabled"() {
+        sharedGraphs = new SharedDependencyGraphs(false)
+
+        when:
+        resolve("compile", Mock(DependencyGraphVisitor))
+        resolve("runtime", Mock(DependencyGraphVisitor))
+
+        then:
+        2 * builder.resolve(_, _)
+    }
+
+    def resolve(String configuration, DependencyGraphVisitor visitor, ResolutionStrategyInternal strategy = new DefaultResolutionStrategy(DependencySubstitutionRules.NO_OP)) {
+        def context = Stub(ResolveContext) {
+            getName() >> configuration
+            getResolutionStrategy() >> strategy
+        }
+        sharedGraphs.resolve(context, rootComponent, ["repo"], globalRules, builder, visitor)
+    }
+
+    def addConfiguration(String name, String... extendsFrom) {
+        def hierarchy = ([name] + (extendsFrom as List)) as Set<String>
+        rootComponent.addConfiguration(name, name, extendsFrom as Set<String>, hierarchy, true, true, new DefaultTaskDependency())
+    }
+
+    def addDependency(String configuration, String name) {
+        def selector = newSelector("group", name, "1.0")
+        def dependency = new LocalComponentDependencyMetadata(DefaultModuleComponentSelector.newSelector(selector), selector, configuration, "default", [] as Set<IvyArtifactName>, [], false, false, true)
+        rootComponent.addDependency(new DslOriginDependencyMetadataWrapper(dependency, Stub(ModuleDependency)))
+    }
+
+    def node(long id, DependencyGraphComponent owner = Stub(DependencyGraphComponent), Set<DependencyGraphEdge> outgoingEdges = [] as Set) {
+        return new TestNode(resultId: id, owner: owner, outgoingEdges: outgoingEdges)
+    }
+
+    static void traverse(DependencyGraphVisitor visitor, DependencyGraphNode root, DependencyGraphNode... others) {
+        def nodes = [root] + (others as List)
+        visitor.start(root)
+        nodes.each { visitor.visitNode(it) }
+        nodes.each { visitor.visitEdge(it) }
+        visitor.finish(root)
+    }
+
+    static boolean isRootOf(DependencyGraphNode node, DependencyGraphNode recordedRoot, String configuration) {
+        return node.resultId == recordedRoot.resultId && node.owner == recordedRoot.owner && node.nodeId.configuration == configuration && node.metadata.name == configuration
+    }
+
+    static class TestNode implements DependencyGraphNode {
+        Long resultId
+        ResolvedConfigurationIdentifier nodeId
+        DependencyGraphComponent owner
+        Set<DependencyGraphEdge> incomingEdges = [] as Set
+        Set<DependencyGraphEdge> outgoingEdges
+        ConfigurationMetadata metadata
+    }
+}
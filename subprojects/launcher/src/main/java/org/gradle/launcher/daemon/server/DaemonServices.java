@@ -16,6 +16,9 @@
 package org.gradle.launcher.daemon.server;
 
 import com.google.common.collect.ImmutableList;
+import org.gradle.api.internal.changedetection.state.InMemoryFileCollectionSnapshotCache;
+import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache;
+import org.gradle.api.internal.file.collections.WatchingDirectoryWalker;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.TrueTimeProvider;
@@ -47,9 +50,11 @@ import org.gradle.launcher.daemon.server.exec.HandleCancel;
 import org.gradle.launcher.daemon.server.exec.HintGCAfterBuild;
 import org.gradle.launcher.daemon.server.exec.LogAndCheckHealth;
 import org.gradle.launcher.daemon.server.exec.LogToClient;
+import org.gradle.launcher.daemon.server.exec.ReportRetainedFileTreeUsage;
 import org.gradle.launcher.daemon.server.exec.RequestStopIfSingleUsedDaemon;
 import org.gradle.launcher.daemon.server.exec.ResetDeprecationLogger;
 import org.gradle.launcher.daemon.server.exec.ReturnResult;
+import org.gradle.launcher.daemon.server.exec.ShrinkCachesOnMemoryPressure;
 import org.gradle.launcher.daemon.server.exec.StartBuildOrRespondWithBusy;
 import org.gradle.launcher.daemon.server.exec.WatchForDisconnection;
 import org.gradle.launcher.daemon.server.health.DaemonHealthCheck;
@@ -137,7 +142,7 @@ public class DaemonServices extends DefaultServiceRegistry {
         return Executors.newScheduledThreadPool(1);
     }
 
-    protected ImmutableList<DaemonCommandAction> createDaemonCommandActions(DaemonContext daemonContext, ProcessEnvironment processEnvironment, DaemonHealthStats healthStats, DaemonHealthCheck healthCheck, BuildExecuter buildActionExecuter, DaemonRunningStats runningStats) {
+    protected ImmutableList<DaemonCommandAction> createDaemonCommandActions(DaemonContext daemonContext, ProcessEnvironment processEnvironment, DaemonHealthStats healthStats, DaemonHealthCheck healthCheck, BuildExecuter buildActionExecuter, DaemonRunningStats runningStats, DaemonMemoryStatus memoryStatus, InMemoryTaskArtifactCache inMemoryTaskArtifactCache, InMemoryFileCollectionSnapshotCache inMemoryFileCollectionSnapshotCache, WatchingDirectoryWalker watchingDirectoryWalker) {
         File daemonLog = getDaemonLogFile();
         DaemonDiagnostics daemonDiagnostics = new DaemonDiagnostics(daemonLog, daemonContext.getPid());
         return ImmutableList.of(
@@ -147,9 +152,11 @@ public class DaemonServices extends DefaultServiceRegistry {
             new ReturnResult(),
             new StartBuildOrRespondWithBusy(daemonDiagnostics), // from this point down, the daemon is 'busy'
             new HintGCAfterBuild(),
+            new ShrinkCachesOnMemoryPressure(memoryStatus, inMemoryTaskArtifactCache, inMemoryFileCollectionSnapshotCache),
             new EstablishBuildEnvironment(processEnvironment),
             new LogToClient(loggingManager, daemonDiagnostics), // from this point down, logging is sent back to the client
             new LogAndCheckHealth(healthStats, healthCheck),
+            new ReportRetainedFileTreeUsage(watchingDirectoryWalker),
             new ForwardClientInput(),
             new RequestStopIfSingleUsedDaemon(),
             new ResetDeprecationLogger(),
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.launcher.daemon.server.exec;
+
+import org.gradle.api.internal.file.collections.WatchingDirectoryWalker;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.launcher.daemon.server.api.DaemonCommandAction;
+import org.gradle.launcher.daemon.server.api.DaemonCommandExecution;
+
+/**
+ * Tells the retained file trees that a build has started, and reports how much file system access was saved by serving directory walks from them.
+ */
+public class ReportRetainedFileTreeUsage implements DaemonCommandAction {
+    private static final Logger LOGGER = Logging.getLogger(ReportRetainedFileTreeUsage.class);
+
+    private final WatchingDirectoryWalker walker;
+
+    public ReportRetainedFileTreeUsage(WatchingDirectoryWalker walker) {
+        this.walker = walker;
+    }
+
+    @Override
+    public void execute(DaemonCommandExecution execution) {
+        walker.buildStarted();
+        walker.resetStatistics();
+        try {
+            execution.proceed();
+        } finally {
+            if (walker.getWalkCount() > 0 || walker.getOverflowCount() > 0) {
+                LOGGER.info("Served {} directory walks from retained file trees, avoiding {} file system stat calls ({} watcher overflows).",
+                    walker.getWalkCount(), walker.getAvoidedStatCalls(), walker.getOverflowCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.launcher.daemon.server.exec;
+
+import org.gradle.api.internal.changedetection.state.InMemoryFileCollectionSnapshotCache;
+import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache;
+import org.gradle.launcher.daemon.server.api.DaemonCommandAction;
+import org.gradle.launcher.daemon.server.api.DaemonCommandExecution;
+import org.gradle.launcher.daemon.server.health.DaemonMemoryStatus;
+
+/**
+ * Releases some of the memory held by the in-memory task artifact caches and file collection snapshots after a build, when the daemon is running low on memory.
+ */
+public class ShrinkCachesOnMemoryPressure implements DaemonCommandAction {
+    private final DaemonMemoryStatus memoryStatus;
+    private final InMemoryTaskArtifactCache inMemoryTaskArtifactCache;
+    private final InMemoryFileCollectionSnapshotCache inMemoryFileCollectionSnapshotCache;
+
+    public ShrinkCachesOnMemoryPressure(DaemonMemoryStatus memoryStatus, InMemoryTaskArtifactCache inMemoryTaskArtifactCache, InMemoryFileCollectionSnapshotCache inMemoryFileCollectionSnapshotCache) {
+        this.memoryStatus = memoryStatus;
+        this.inMemoryTaskArtifactCache = inMemoryTaskArtifactCache;
+        this.inMemoryFileCollectionSnapshotCache = inMemoryFileCollectionSnapshotCache;
+    }
+
+    @Override
+    public void execute(DaemonCommandExecution execution) {
+        execution.proceed();
+        if (memoryStatus.isTenuredSpaceUnderPressure()) {
+            inMemoryTaskArtifactCache.shrink();
+            inMemoryFileCollectionSnapshotCache.invalidateAll();
+        }
+    }
+}
@@ -69,6 +69,23 @@ public class DaemonMemoryStatus {
         });
     }
 
+    /**
+     * Returns true when tenured space usage has reached the threshold, regardless of how often garbage is collected. This happens before the tenured
+     * space is considered to be exhausted, and can be used to release memory.
+     */
+    public boolean isTenuredSpaceUnderPressure() {
+        GarbageCollectionStats gcStats = stats.getGcMonitor().getTenuredStats();
+
+        return exceedsThreshold(TENURED, gcStats, new Spec<GarbageCollectionStats>() {
+            @Override
+            public boolean isSatisfiedBy(GarbageCollectionStats gcStats) {
+                return tenuredUsageThreshold != 0
+                    && gcStats.getEventCount() >= 5
+                    && gcStats.getUsage() >= tenuredUsageThreshold;
+            }
+        });
+    }
+
     public boolean isPermGenSpaceExhausted() {
         GarbageCollectionStats gcStats = stats.getGcMonitor().getPermGenStats();
 
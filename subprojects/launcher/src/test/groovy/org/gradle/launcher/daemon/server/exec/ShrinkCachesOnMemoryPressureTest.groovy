@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.launcher.daemon.server.exec
+
+import org.gradle.api.internal.changedetection.state.InMemoryFileCollectionSnapshotCache
+import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache
+import org.gradle.launcher.daemon.server.api.DaemonCommandExecution
+import org.gradle.launcher.daemon.server.health.DaemonMemoryStatus
+import spock.lang.Specification
+
+class ShrinkCachesOnMemoryPressureTest extends Specification {
+    def memoryStatus = Mock(DaemonMemoryStatus)
+    def cache = Mock(InMemoryTaskArtifactCache)
+    def snapshotCache = Mock(InMemoryFileCollectionSnapshotCache)
+    def execution = Mock(DaemonCommandExecution)
+    def action = new ShrinkCachesOnMemoryPressure(memoryStatus, cache, snapshotCache)
+
+    def "shrinks caches after build when tenured space is under pressure"() {
+        when:
+        action.execute(execution)
+
+        then:
+        1 * execution.proceed()
+
+        then:
+        1 * memoryStatus.isTenuredSpaceUnderPressure() >> true
+        1 * cache.shrink()
+        1 * snapshotCache.invalidateAll()
+    }
+
+    def "leaves caches alone when there is no memory pressure"() {
+        when:
+        action.execute(execution)
+
+        then:
+        1 * execution.proceed()
+        1 * memoryStatus.isTenuredSpaceUnderPressure() >> false
+        0 * cache._
+        0 * snapshotCache._
+    }
+}
@@ -90,6 +90,29 @@ class DaemonMemoryStatusTest extends Specification {
         1.0           | 75             | 1.0  | 100  | true
     }
 
+    @Unroll
+    def "knows when tenured space is under pressure (#usageThreshold <= #used)"() {
+        when:
+        System.setProperty(TENURED_USAGE_EXPIRE_AT, usageThreshold.toString())
+        gcMonitor.getTenuredStats() >> {
+            Stub(GarbageCollectionStats) {
+                getUsage() >> used
+                getRate() >> 0.1
+                getEventCount() >> 10
+            }
+        }
+
+        then:
+        status.isTenuredSpaceUnderPressure() == underPressure
+
+        where:
+        usageThreshold | used | underPressure
+        90             | 100  | true
+        90             | 90   | true
+        90             | 89   | false
+        0              | 100  | false
+    }
+
     @Unroll
     def "knows when perm gen space is exhausted (#usageThreshold <= #used, #usageThreshold <= #used)"() {
         when:
@@ -34,8 +34,13 @@ class HttpTaskOutputCacheTest extends Specification {
         cache = new HttpTaskOutputCache(server.uri.resolve("/cache/"))
     }
 
+    def cleanup() {
+        cache.close()
+    }
+
     def "can cache artifact"() {
         def destFile = tempDir.file("cached.zip")
+        server.expectHeadMissing("/cache/0123456abcdef")
         server.expectPut("/cache/0123456abcdef", destFile)
 
         when:
@@ -47,16 +52,94 @@ class HttpTaskOutputCacheTest extends Specification {
         destFile.text == "Data"
     }
 
+    def "does not upload artifact already present in cache"() {
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        server.expectHead("/cache/0123456abcdef", srcFile)
+
+        when:
+        cache.store(key) { output ->
+            throw new AssertionError("Should not be called")
+        }
+        then:
+        1 * key.hashCode >> "0123456abcdef"
+    }
+
+    def "fails when server rejects artifact"() {
+        def destFile = tempDir.file("cached.zip")
+        server.expectHeadMissing("/cache/0123456abcdef")
+        server.expectPut("/cache/0123456abcdef", destFile, 500)
+
+        when:
+        cache.store(key) { output ->
+            output << "Data"
+        }
+        then:
+        1 * key.hashCode >> "0123456abcdef"
+        def ex = thrown IOException
+        ex.message.contains("500")
+    }
+
+    def "can cache artifact with credentials"() {
+        cache.close()
+        def uri = server.uri.resolve("/cache/")
+        cache = new HttpTaskOutputCache(new URI(uri.scheme, "user:password", uri.host, uri.port, uri.path, null, null))
+        def destFile = tempDir.file("cached.zip")
+        server.expectHeadMissing("/cache/0123456abcdef")
+        server.expectPut("/cache/0123456abcdef", "user", "password", destFile)
+
+        when:
+        cache.store(key) { output ->
+            output << "Data"
+        }
+        then:
+        1 * key.hashCode >> "0123456abcdef"
+        destFile.text == "Data"
+        cache.description == "HTTP cache at $uri"
+    }
+
     def "can load artifact from cache"() {
         def srcFile = tempDir.file("cached.zip")
         srcFile.text = "Data"
         server.expectGet("/cache/0123456abcdef", srcFile)
 
         when:
-        cache.load(key) { input ->
+        def found = cache.load(key) { input ->
+            assert input.text == "Data"
+        }
+        then:
+        1 * key.hashCode >> "0123456abcdef"
+        found
+    }
+
+    def "can load gzip encoded artifact from cache"() {
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        server.expectGetGZipped("/cache/0123456abcdef", srcFile)
+
+        when:
+        def found = cache.load(key) { input ->
             assert input.text == "Data"
         }
         then:
         1 * key.hashCode >> "0123456abcdef"
+        found
+    }
+
+    def "can make subsequent requests with the shared client"() {
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        server.expectGetMissing("/cache/0123456abcdef")
+        server.expectGet("/cache/0123456abcdef", srcFile)
+
+        when:
+        def first = cache.load(key) { input -> }
+        def second = cache.load(key) { input ->
+            assert input.text == "Data"
+        }
+        then:
+        2 * key.hashCode >> "0123456abcdef"
+        !first
+        second
     }
 }
@@ -17,12 +17,27 @@
 package org.gradle.cache.tasks.http;
 
 import org.apache.commons.lang.IncompleteArgumentException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
 import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.gradle.api.internal.tasks.cache.TaskCacheKey;
 import org.gradle.api.internal.tasks.cache.TaskOutputCache;
 import org.gradle.api.internal.tasks.cache.TaskOutputReader;
@@ -34,83 +49,178 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Task output cache backed by an HTTP server. Entries are loaded via GET and stored via PUT to {@code <root>/<cache key>}.
+ *
+ * <p>All requests made during the build share a single pooled client, so that connections are kept alive between requests.
+ * Credentials can be given as user info in the root URI, and are sent preemptively using basic authentication.</p>
+ */
 public class HttpTaskOutputCache implements TaskOutputCache {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpTaskOutputCache.class);
 
     private final URI root;
+    private final HttpHost host;
+    private final boolean authenticate;
+    private final boolean compressUploads;
+    private final CloseableHttpClient httpClient;
 
     public HttpTaskOutputCache(URI root) {
+        this(root, HttpTaskOutputCacheSettings.defaults());
+    }
+
+    public HttpTaskOutputCache(URI root, HttpTaskOutputCacheSettings settings) {
         if (!root.getPath().endsWith("/")) {
             throw new IncompleteArgumentException("HTTP cache root URI must end with '/'");
         }
-        this.root = root;
+        this.root = withoutUserInfo(root);
+        this.host = URIUtils.extractHost(root);
+        this.compressUploads = settings.isCompressUploads();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(settings.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(settings.getMaxConnections());
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(settings.getConnectTimeoutMillis())
+            .setConnectionRequestTimeout(settings.getConnectTimeoutMillis())
+            .setSocketTimeout(settings.getSocketTimeoutMillis())
+            .build();
+        // Content compression is enabled by default, so responses are requested and decoded with gzip encoding
+        HttpClientBuilder builder = HttpClientBuilder.create()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig);
+
+        String userInfo = root.getUserInfo();
+        this.authenticate = userInfo != null;
+        if (authenticate) {
+            BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+            credentialsProvider.setCredentials(new AuthScope(host), new UsernamePasswordCredentials(userInfo));
+            builder.setDefaultCredentialsProvider(credentialsProvider);
+        }
+        this.httpClient = builder.build();
     }
 
     @Override
     public boolean load(TaskCacheKey key, TaskOutputReader reader) throws IOException {
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        final URI uri = getUri(key);
+        HttpGet httpGet = new HttpGet(uri);
+        final CloseableHttpResponse response = execute(httpGet);
         try {
-            final URI uri = root.resolve("./" + key.getHashCode());
-            HttpGet httpGet = new HttpGet(uri);
-            final CloseableHttpResponse response = httpClient.execute(httpGet);
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Response for GET {}: {}", uri, response.getStatusLine());
-            }
-            try {
-                int statusCode = response.getStatusLine().getStatusCode();
-                if (statusCode >= 200 && statusCode < 300) {
-                    reader.readFrom(response.getEntity().getContent());
-                    return true;
-                } else {
-                    return false;
-                }
-            } finally {
-                response.close();
+            if (isSuccessful(response)) {
+                reader.readFrom(response.getEntity().getContent());
+                // Read anything the reader did not consume, so that the connection can be reused
+                EntityUtils.consume(response.getEntity());
+                return true;
+            } else {
+                EntityUtils.consumeQuietly(response.getEntity());
+                return false;
             }
         } finally {
-            httpClient.close();
+            response.close();
         }
     }
 
     @Override
     public void store(TaskCacheKey key, final TaskOutputWriter output) throws IOException {
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        try {
-            final URI uri = root.resolve(key.getHashCode());
-            HttpPut httpPut = new HttpPut(uri);
-            httpPut.setEntity(new AbstractHttpEntity() {
-                @Override
-                public boolean isRepeatable() {
-                    return true;
-                }
+        final URI uri = getUri(key);
+        if (exists(uri)) {
+            LOGGER.debug("Not storing {} as it is already present in the cache", uri);
+            return;
+        }
+        HttpPut httpPut = new HttpPut(uri);
+        AbstractHttpEntity entity = new AbstractHttpEntity() {
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
 
-                @Override
-                public long getContentLength() {
-                    return -1;
-                }
+            @Override
+            public long getContentLength() {
+                return -1;
+            }
 
-                @Override
-                public InputStream getContent() throws IOException, UnsupportedOperationException {
-                    throw new UnsupportedOperationException();
-                }
+            @Override
+            public InputStream getContent() throws IOException, UnsupportedOperationException {
+                throw new UnsupportedOperationException();
+            }
 
-                @Override
-                public void writeTo(OutputStream outstream) throws IOException {
+            @Override
+            public void writeTo(OutputStream outstream) throws IOException {
+                if (compressUploads) {
+                    GZIPOutputStream gzipOutput = new GZIPOutputStream(outstream);
+                    output.writeTo(gzipOutput);
+                    gzipOutput.finish();
+                } else {
                     output.writeTo(outstream);
                 }
+            }
 
-                @Override
-                public boolean isStreaming() {
-                    return false;
-                }
-            });
-            CloseableHttpResponse response = httpClient.execute(httpPut);
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Response for PUT {}: {}", uri, response.getStatusLine());
+            @Override
+            public boolean isStreaming() {
+                return false;
+            }
+        };
+        if (compressUploads) {
+            entity.setContentEncoding("gzip");
+        }
+        httpPut.setEntity(entity);
+        CloseableHttpResponse response = execute(httpPut);
+        try {
+            EntityUtils.consumeQuietly(response.getEntity());
+            if (!isSuccessful(response)) {
+                throw new IOException(String.format("Storing entry at %s failed with response: %s", uri, response.getStatusLine()));
             }
         } finally {
-            httpClient.close();
+            response.close();
+        }
+    }
+
+    private boolean exists(URI uri) throws IOException {
+        CloseableHttpResponse response = execute(new HttpHead(uri));
+        try {
+            return isSuccessful(response);
+        } finally {
+            response.close();
+        }
+    }
+
+    private CloseableHttpResponse execute(HttpUriRequest request) throws IOException {
+        CloseableHttpResponse response = httpClient.execute(request, createContext());
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Response for {} {}: {}", request.getMethod(), request.getURI(), response.getStatusLine());
+        }
+        return response;
+    }
+
+    private HttpClientContext createContext() {
+        HttpClientContext context = HttpClientContext.create();
+        if (authenticate) {
+            AuthCache authCache = new BasicAuthCache();
+            authCache.put(host, new BasicScheme());
+            context.setAuthCache(authCache);
+        }
+        return context;
+    }
+
+    private URI getUri(TaskCacheKey key) {
+        return root.resolve("./" + key.getHashCode());
+    }
+
+    private static boolean isSuccessful(HttpResponse response) {
+        int statusCode = response.getStatusLine().getStatusCode();
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    private static URI withoutUserInfo(URI uri) {
+        if (uri.getUserInfo() == null) {
+            return uri;
+        }
+        try {
+            return new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), uri.getPath(), uri.getQuery(), uri.getFragment());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(String.format("Invalid HTTP cache root URI: %s", uri), e);
         }
     }
 
@@ -118,4 +228,9 @@ public class HttpTaskOutputCache implements TaskOutputCache {
     public String getDescription() {
         return "HTTP cache at " + root;
     }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
 }
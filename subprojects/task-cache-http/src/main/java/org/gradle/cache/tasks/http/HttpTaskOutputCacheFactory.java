@@ -25,6 +25,10 @@ import java.net.URI;
 
 public class HttpTaskOutputCacheFactory implements TaskOutputCacheFactory {
     private static final String HTTP_URI_PROPERTY = "org.gradle.cache.tasks.http.uri";
+    private static final String HTTP_MAX_CONNECTIONS_PROPERTY = "org.gradle.cache.tasks.http.maxConnections";
+    private static final String HTTP_CONNECT_TIMEOUT_PROPERTY = "org.gradle.cache.tasks.http.connectTimeout";
+    private static final String HTTP_SOCKET_TIMEOUT_PROPERTY = "org.gradle.cache.tasks.http.socketTimeout";
+    private static final String HTTP_COMPRESS_UPLOADS_PROPERTY = "org.gradle.cache.tasks.http.compressUploads";
 
     private final URI root;
 
@@ -42,6 +46,24 @@ public class HttpTaskOutputCacheFactory implements TaskOutputCacheFactory {
 
     @Override
     public TaskOutputCache createCache(StartParameter startParameter) {
-        return new HttpTaskOutputCache(root);
+        HttpTaskOutputCacheSettings settings = new HttpTaskOutputCacheSettings(
+            getIntProperty(HTTP_MAX_CONNECTIONS_PROPERTY, HttpTaskOutputCacheSettings.DEFAULT_MAX_CONNECTIONS),
+            getIntProperty(HTTP_CONNECT_TIMEOUT_PROPERTY, HttpTaskOutputCacheSettings.DEFAULT_CONNECT_TIMEOUT_MILLIS),
+            getIntProperty(HTTP_SOCKET_TIMEOUT_PROPERTY, HttpTaskOutputCacheSettings.DEFAULT_SOCKET_TIMEOUT_MILLIS),
+            Boolean.getBoolean(HTTP_COMPRESS_UPLOADS_PROPERTY)
+        );
+        return new HttpTaskOutputCache(root, settings);
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new GradleException(String.format("Invalid value '%s' for '%s' system property, must be an integer", value, name), e);
+        }
     }
 }
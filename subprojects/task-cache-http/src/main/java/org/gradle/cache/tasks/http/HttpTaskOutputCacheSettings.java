@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.tasks.http;
+
+/**
+ * Settings for the HTTP client shared by all requests made to an HTTP task output cache during a build.
+ */
+public class HttpTaskOutputCacheSettings {
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+    public static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 30000;
+
+    private final int maxConnections;
+    private final int connectTimeoutMillis;
+    private final int socketTimeoutMillis;
+    private final boolean compressUploads;
+
+    public HttpTaskOutputCacheSettings(int maxConnections, int connectTimeoutMillis, int socketTimeoutMillis, boolean compressUploads) {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("Maximum number of connections to the HTTP cache must be positive");
+        }
+        this.maxConnections = maxConnections;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.socketTimeoutMillis = socketTimeoutMillis;
+        this.compressUploads = compressUploads;
+    }
+
+    public static HttpTaskOutputCacheSettings defaults() {
+        return new HttpTaskOutputCacheSettings(DEFAULT_MAX_CONNECTIONS, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_SOCKET_TIMEOUT_MILLIS, false);
+    }
+
+    /**
+     * The maximum number of pooled connections kept open to the cache server.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    /**
+     * Whether uploaded entries should be sent with gzip content encoding. Downloads always accept gzip encoded responses.
+     */
+    public boolean isCompressUploads() {
+        return compressUploads;
+    }
+}